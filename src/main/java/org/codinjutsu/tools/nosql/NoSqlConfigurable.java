@@ -37,6 +37,7 @@ import com.intellij.ui.*;
 import com.intellij.ui.table.JBTable;
 import org.apache.commons.lang.StringUtils;
 import org.codinjutsu.tools.nosql.commons.view.ServerConfigurationPanelFactory;
+import org.codinjutsu.tools.nosql.redis.logic.RedisConnectionManager;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.Nullable;
 
@@ -232,6 +233,7 @@ public class NoSqlConfigurable extends BaseConfigurable {
     public void apply() throws ConfigurationException {
         stopEditing();
         if (areConfigurationsModified()) {
+            releaseChangedServers();
             configuration.setServerConfigurations(configurations);
         }
 
@@ -254,6 +256,19 @@ public class NoSqlConfigurable extends BaseConfigurable {
 //        return redisShellPanel.isShellPathModified(NoSqlConfiguration.getInstance(project).getShellPath(DatabaseVendor.REDIS));
 //    }
 
+    /**
+     * Closes the connections of the Redis servers edited or removed: they would otherwise stay open until the
+     * project is closed, under a url or password no longer used.
+     */
+    private void releaseChangedServers() {
+        RedisConnectionManager connectionManager = RedisConnectionManager.getInstance(project);
+        for (ServerConfiguration existingConfiguration : configuration.getServerConfigurations()) {
+            if (DatabaseVendor.REDIS.equals(existingConfiguration.getDatabaseVendor()) && !configurations.contains(existingConfiguration)) {
+                connectionManager.release(existingConfiguration);
+            }
+        }
+    }
+
     private boolean areConfigurationsModified() {
         List<ServerConfiguration> existingConfigurations = NoSqlConfiguration.getInstance(project).getServerConfigurations();
 
@@ -19,6 +19,7 @@ package org.codinjutsu.tools.nosql;
 import com.intellij.openapi.components.*;
 import com.intellij.openapi.project.Project;
 import com.intellij.util.xmlb.XmlSerializerUtil;
+import org.codinjutsu.tools.nosql.redis.model.RedisPoolSettings;
 
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -37,6 +38,7 @@ public class NoSqlConfiguration implements PersistentStateComponent<NoSqlConfigu
 
     private List<ServerConfiguration> serverConfigurations = new LinkedList<ServerConfiguration>();
     private Map<DatabaseVendor, String> shellPathByDatabaseVendor = new HashMap<DatabaseVendor, String>();
+    private RedisPoolSettings redisPoolSettings = new RedisPoolSettings();
 
     public static NoSqlConfiguration getInstance(Project project) {
         return ServiceManager.getService(project, NoSqlConfiguration.class);
@@ -74,4 +76,12 @@ public class NoSqlConfiguration implements PersistentStateComponent<NoSqlConfigu
     public void setShellPath(DatabaseVendor databaseVendor, String shellPath) {
         shellPathByDatabaseVendor.put(databaseVendor, shellPath);
     }
+
+    public RedisPoolSettings getRedisPoolSettings() {
+        return redisPoolSettings;
+    }
+
+    public void setRedisPoolSettings(RedisPoolSettings redisPoolSettings) {
+        this.redisPoolSettings = redisPoolSettings;
+    }
 }
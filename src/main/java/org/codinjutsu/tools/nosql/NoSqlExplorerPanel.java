@@ -23,6 +23,7 @@ import com.intellij.openapi.actionSystem.ActionManager;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.DefaultActionGroup;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.MessageType;
 import com.intellij.openapi.ui.popup.Balloon;
@@ -32,11 +33,15 @@ import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.treeStructure.Tree;
 import com.intellij.uiDesigner.core.GridConstraints;
 import com.intellij.uiDesigner.core.GridLayoutManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.ui.tree.TreeUtil;
-import org.codinjutsu.tools.nosql.commons.logic.ConfigurationException;
 import org.codinjutsu.tools.nosql.commons.model.Database;
 import org.codinjutsu.tools.nosql.commons.model.DatabaseServer;
 import org.codinjutsu.tools.nosql.commons.utils.GuiUtils;
+import org.codinjutsu.tools.nosql.commons.view.action.AnalyzeKeysAction;
+import org.codinjutsu.tools.nosql.commons.view.action.CopyKeysAction;
+import org.codinjutsu.tools.nosql.commons.view.action.ExportDatabaseAction;
+import org.codinjutsu.tools.nosql.commons.view.action.HotKeysAction;
 import org.codinjutsu.tools.nosql.commons.view.action.NoSqlDatabaseConsoleAction;
 import org.codinjutsu.tools.nosql.commons.view.action.OpenPluginSettingsAction;
 import org.codinjutsu.tools.nosql.commons.view.action.RefreshServerAction;
@@ -56,12 +61,19 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import static org.codinjutsu.tools.nosql.commons.utils.GuiUtils.showNotification;
 
 public class NoSqlExplorerPanel extends JPanel implements Disposable {
 
+    static final int MAX_PARALLEL_SERVER_LOADS = 4;
+
+    private static final Logger LOG = Logger.getInstance(NoSqlExplorerPanel.class);
+
     private static final URL pluginSettingsUrl = GuiUtils.isUnderDarcula() ? GuiUtils.getIconResource("pluginSettings_dark.png") : GuiUtils.getIconResource("pluginSettings.png");
 
     private JPanel rootPanel;
@@ -73,6 +85,8 @@ public class NoSqlExplorerPanel extends JPanel implements Disposable {
 
     private final Project project;
     private final DatabaseVendorClientManager databaseVendorClientManager;
+    private final ExecutorService serverLoader = AppExecutorUtil.createBoundedApplicationPoolExecutor("NoSql server loading", MAX_PARALLEL_SERVER_LOADS);
+    private int runningServerLoads;
 
     public NoSqlExplorerPanel(Project project, DatabaseVendorClientManager databaseVendorClientManager) {
         this.project = project;
@@ -119,6 +133,16 @@ public class NoSqlExplorerPanel extends JPanel implements Disposable {
             DefaultMutableTreeNode serverNode = new DefaultMutableTreeNode(mongoServer);
             rootNode.add(serverNode);
             if (serverConfiguration.isConnectOnIdeStartup()) {
+                // the databases of the last session are shown right away, the servers are loaded MAX_PARALLEL_SERVER_LOADS at a time
+                List<String> knownDatabases = serverConfiguration.getKnownDatabases();
+                if (knownDatabases != null) {
+                    List<Database> databases = new LinkedList<>();
+                    for (String databaseName : knownDatabases) {
+                        databases.add(new RedisDatabase(databaseName));
+                    }
+                    mongoServer.setDatabases(databases);
+                    addDatabasesIfAny(mongoServer, serverNode);
+                }
                 this.reloadServerConfiguration(serverNode, false);
             }
         }
@@ -127,32 +151,49 @@ public class NoSqlExplorerPanel extends JPanel implements Disposable {
     }
 
 
+    /**
+     * Loads the databases of a server on a background thread. A server failing, e.g. unreachable, is shown in error
+     * without affecting the others. Must be called on the EDT.
+     */
     public void reloadServerConfiguration(final DefaultMutableTreeNode serverNode, final boolean expandAfterLoading) {
         //todo why this would happen. should send error to server.
         if (serverNode == null || serverNode.getUserObject() == null) {
 
             return;
         }
+        final DatabaseServer databaseServer = (DatabaseServer) serverNode.getUserObject();
+        databaseServer.setStatus(DatabaseServer.Status.LOADING);
+        runningServerLoads++;
         databaseTree.setPaintBusy(true);
 
-        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+        serverLoader.execute(new Runnable() {
             @Override
             public void run() {
-                final DatabaseServer databaseServer = (DatabaseServer) serverNode.getUserObject();
                 try {
                     databaseVendorClientManager.loadServer(databaseServer);
 
                     GuiUtils.runInSwingThread(new Runnable() {
                         @Override
                         public void run() {
-                            databaseTree.invalidate();
+                            databaseServer.setStatus(DatabaseServer.Status.OK);
+                            databaseServer.getConfiguration().setKnownDatabases(databaseNames(databaseServer.getDatabases()));
+                            if (databaseTree == null) {
+                                return;
+                            }
+                            finishServerLoad();
+                            if (databaseNames(databaseServer.getDatabases()).equals(displayedDatabaseNames(serverNode))) {
+                                // loaded as known from the last session: the nodes, and their selection, are kept
+                                ((DefaultTreeModel) databaseTree.getModel()).nodeChanged(serverNode);
+                            } else {
+                                databaseTree.invalidate();
 
-                            serverNode.removeAllChildren();
-                            addDatabasesIfAny(databaseServer, serverNode);
+                                serverNode.removeAllChildren();
+                                addDatabasesIfAny(databaseServer, serverNode);
 
-                            ((DefaultTreeModel) databaseTree.getModel()).reload(serverNode);
+                                ((DefaultTreeModel) databaseTree.getModel()).reload(serverNode);
 
-                            databaseTree.revalidate();
+                                databaseTree.revalidate();
+                            }
 
                             if (expandAfterLoading) {
                                 GuiUtils.expand(databaseTree, TreeUtil.getPathFromRoot(serverNode), 1);
@@ -161,19 +202,51 @@ public class NoSqlExplorerPanel extends JPanel implements Disposable {
                         }
                     });
 
-                } catch (ConfigurationException confEx) {
-                    databaseServer.setStatus(DatabaseServer.Status.ERROR);
-                    showNotification(treePanel,
-                            MessageType.ERROR,
-                            String.format("Error when connecting on %s", databaseServer.getLabel()),
-                            Balloon.Position.atLeft);
-                } finally {
-                    databaseTree.setPaintBusy(false);
+                } catch (RuntimeException ex) {
+                    LOG.warn("Unable to load " + databaseServer.getLabel(), ex);
+                    GuiUtils.runInSwingThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            databaseServer.setStatus(DatabaseServer.Status.ERROR);
+                            if (databaseTree == null) {
+                                return;
+                            }
+                            finishServerLoad();
+                            ((DefaultTreeModel) databaseTree.getModel()).nodeChanged(serverNode);
+                            showNotification(treePanel,
+                                    MessageType.ERROR,
+                                    String.format("Error when connecting on %s", databaseServer.getLabel()),
+                                    Balloon.Position.atLeft);
+                        }
+                    });
                 }
             }
         });
     }
 
+    private void finishServerLoad() {
+        runningServerLoads--;
+        if (runningServerLoads == 0) {
+            databaseTree.setPaintBusy(false);
+        }
+    }
+
+    private static List<String> databaseNames(List<Database> databases) {
+        List<String> names = new ArrayList<>(databases.size());
+        for (Database database : databases) {
+            names.add(database.getName());
+        }
+        return names;
+    }
+
+    private static List<String> displayedDatabaseNames(DefaultMutableTreeNode serverNode) {
+        List<String> names = new ArrayList<>(serverNode.getChildCount());
+        for (int i = 0; i < serverNode.getChildCount(); i++) {
+            names.add(((Database) ((DefaultMutableTreeNode) serverNode.getChildAt(i)).getUserObject()).getName());
+        }
+        return names;
+    }
+
     private void addDatabasesIfAny(DatabaseServer databaseServer, DefaultMutableTreeNode serverNode) {
         for (Database database : databaseServer.getDatabases()) {
             DefaultMutableTreeNode databaseNode = new DefaultMutableTreeNode(database);
@@ -226,10 +299,18 @@ public class NoSqlExplorerPanel extends JPanel implements Disposable {
         DefaultActionGroup actionGroup = new DefaultActionGroup("NoSqlExplorerGroup", false);
         ViewCollectionValuesAction viewCollectionValuesAction = new ViewCollectionValuesAction(this);
         RefreshServerAction refreshServerAction = new RefreshServerAction(this);
+        ExportDatabaseAction exportDatabaseAction = new ExportDatabaseAction(this);
+        CopyKeysAction copyKeysAction = new CopyKeysAction(this);
+        AnalyzeKeysAction analyzeKeysAction = new AnalyzeKeysAction(this);
+        HotKeysAction hotKeysAction = new HotKeysAction(this);
         if (ApplicationManager.getApplication() != null) {
             actionGroup.add(refreshServerAction);
             actionGroup.add(new NoSqlDatabaseConsoleAction(this));
             actionGroup.add(viewCollectionValuesAction);
+            actionGroup.add(exportDatabaseAction);
+            actionGroup.add(copyKeysAction);
+            actionGroup.add(analyzeKeysAction);
+            actionGroup.add(hotKeysAction);
             actionGroup.add(expandAllAction);
             actionGroup.add(collapseAllAction);
             actionGroup.addSeparator();
@@ -242,6 +323,10 @@ public class NoSqlExplorerPanel extends JPanel implements Disposable {
         if (ApplicationManager.getApplication() != null) {
             actionPopupGroup.add(refreshServerAction);
             actionPopupGroup.add(viewCollectionValuesAction);
+            actionPopupGroup.add(exportDatabaseAction);
+            actionPopupGroup.add(copyKeysAction);
+            actionPopupGroup.add(analyzeKeysAction);
+            actionPopupGroup.add(hotKeysAction);
 //            actionPopupGroup.add(new DropCollectionAction(this));
 //            actionPopupGroup.add(new DropDatabaseAction(this));
         }
@@ -289,6 +374,7 @@ public class NoSqlExplorerPanel extends JPanel implements Disposable {
 
     @Override
     public void dispose() {
+        serverLoader.shutdownNow();
         databaseTree = null;
     }
 
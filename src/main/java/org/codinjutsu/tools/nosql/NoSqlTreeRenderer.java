@@ -19,6 +19,7 @@ package org.codinjutsu.tools.nosql;
 import com.intellij.icons.AllIcons;
 import com.intellij.ui.ColoredTreeCellRenderer;
 import com.intellij.ui.JBColor;
+import com.intellij.ui.SimpleTextAttributes;
 import org.apache.commons.lang.StringUtils;
 import org.codinjutsu.tools.nosql.commons.model.Database;
 import org.codinjutsu.tools.nosql.commons.model.DatabaseServer;
@@ -44,6 +45,13 @@ public class NoSqlTreeRenderer extends ColoredTreeCellRenderer {
             DatabaseServer mongoServer = (DatabaseServer) userObject;
             String label = mongoServer.getLabel();
             String host = mongoServer.getServerUrl();
+            if (DatabaseServer.Status.LOADING.equals(mongoServer.getStatus())) {
+                // its databases may still be the ones of the last session
+                append(StringUtils.isBlank(label) ? host : label, SimpleTextAttributes.GRAYED_ATTRIBUTES);
+                setToolTipText(host + " (connecting)");
+                setIcon(mongoServer.getConfiguration().getDatabaseVendor().icon);
+                return;
+            }
             append(StringUtils.isBlank(label) ? host : label);
 
             if (DatabaseServer.Status.OK.equals(mongoServer.getStatus())) {
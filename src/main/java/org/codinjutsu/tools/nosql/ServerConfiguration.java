@@ -18,6 +18,8 @@ package org.codinjutsu.tools.nosql;
 
 import org.codinjutsu.tools.nosql.commons.model.AuthenticationSettings;
 
+import java.util.List;
+
 public class ServerConfiguration implements Cloneable {
 
     private String label;
@@ -35,6 +37,8 @@ public class ServerConfiguration implements Cloneable {
 
     private AuthenticationSettings authenticationSettings = new AuthenticationSettings();
 
+    private List<String> knownDatabases;
+
     public DatabaseVendor getDatabaseVendor() {
         return databaseVendor;
     }
@@ -104,6 +108,18 @@ public class ServerConfiguration implements Cloneable {
         return authenticationSettings;
     }
 
+    /**
+     * @return the databases found when the server was last loaded, shown until it answers again; null if never loaded.
+     * Not part of the configuration itself, hence left out of {@link #equals(Object)}.
+     */
+    public List<String> getKnownDatabases() {
+        return knownDatabases;
+    }
+
+    public void setKnownDatabases(List<String> knownDatabases) {
+        this.knownDatabases = knownDatabases;
+    }
+
     public ServerConfiguration clone() {
         try {
             return (ServerConfiguration) super.clone();
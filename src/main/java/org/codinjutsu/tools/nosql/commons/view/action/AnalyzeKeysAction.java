@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.commons.view.action;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.MessageType;
+import com.intellij.openapi.ui.popup.Balloon;
+import org.codinjutsu.tools.nosql.NoSqlExplorerPanel;
+import org.codinjutsu.tools.nosql.ServerConfiguration;
+import org.codinjutsu.tools.nosql.dialog.AnalyzeKeysDialog;
+import org.codinjutsu.tools.nosql.dialog.KeyAnalysisReportDialog;
+import org.codinjutsu.tools.nosql.redis.logic.RedisClient;
+import org.codinjutsu.tools.nosql.redis.logic.RedisKeyAnalyzer;
+import org.codinjutsu.tools.nosql.redis.model.RedisDatabase;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyAnalysis;
+import org.jetbrains.annotations.NotNull;
+
+import static org.codinjutsu.tools.nosql.commons.utils.GuiUtils.showNotification;
+
+public class AnalyzeKeysAction extends AnAction implements DumbAware {
+
+    private final NoSqlExplorerPanel noSqlExplorerPanel;
+
+    public AnalyzeKeysAction(NoSqlExplorerPanel noSqlExplorerPanel) {
+        super("Analyze memory", "Find the biggest keys and the memory used by key prefix", AllIcons.Actions.Find);
+        this.noSqlExplorerPanel = noSqlExplorerPanel;
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent event) {
+        final Project project = event.getProject();
+        final ServerConfiguration configuration = noSqlExplorerPanel.getConfiguration();
+        final RedisDatabase database = noSqlExplorerPanel.getSelectedRedisDatabase();
+        if (project == null || configuration == null || database == null) {
+            return;
+        }
+        final AnalyzeKeysDialog dialog = new AnalyzeKeysDialog(project, database.getName());
+        if (!dialog.showAndGet()) {
+            return;
+        }
+        new Task.Backgroundable(project, "Analyzing database " + database.getName(), true) {
+
+            private RedisKeyAnalysis analysis;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setText("Analyzing keys matching " + dialog.getPattern());
+                RedisKeyAnalyzer analyzer = new RedisKeyAnalyzer(dialog.getTopKeyCount(), dialog.getMemorySamples(), dialog.getSeparator(),
+                        RedisKeyAnalyzer.DEFAULT_BATCH_SIZE, indicator);
+                analysis = RedisClient.getInstance(project).analyzeKeys(configuration, database, dialog.getPattern(), analyzer);
+            }
+
+            @Override
+            public void onSuccess() {
+                new KeyAnalysisReportDialog(project, database.getName(), analysis).show();
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                showNotification(noSqlExplorerPanel, MessageType.ERROR,
+                        String.format("Analysis failed: %s", error.getMessage()), Balloon.Position.atLeft);
+            }
+        }.queue();
+    }
+
+    @Override
+    public void update(AnActionEvent event) {
+        event.getPresentation().setVisible(noSqlExplorerPanel.getSelectedRedisDatabase() != null);
+    }
+}
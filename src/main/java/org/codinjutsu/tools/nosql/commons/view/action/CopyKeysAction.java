@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.commons.view.action;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.MessageType;
+import com.intellij.openapi.ui.popup.Balloon;
+import org.codinjutsu.tools.nosql.NoSqlExplorerPanel;
+import org.codinjutsu.tools.nosql.ServerConfiguration;
+import org.codinjutsu.tools.nosql.dialog.CopyKeysDialog;
+import org.codinjutsu.tools.nosql.redis.logic.RedisClient;
+import org.codinjutsu.tools.nosql.redis.logic.RedisKeyMigrator;
+import org.codinjutsu.tools.nosql.redis.model.RedisDatabase;
+import org.jetbrains.annotations.NotNull;
+
+import static org.codinjutsu.tools.nosql.commons.utils.GuiUtils.showNotification;
+
+public class CopyKeysAction extends AnAction implements DumbAware {
+
+    private final NoSqlExplorerPanel noSqlExplorerPanel;
+
+    public CopyKeysAction(NoSqlExplorerPanel noSqlExplorerPanel) {
+        super("Copy keys to...", "Copy the keys of the database to another server or database", AllIcons.Actions.Copy);
+        this.noSqlExplorerPanel = noSqlExplorerPanel;
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent event) {
+        final Project project = event.getProject();
+        final ServerConfiguration source = noSqlExplorerPanel.getConfiguration();
+        final RedisDatabase sourceDatabase = noSqlExplorerPanel.getSelectedRedisDatabase();
+        if (project == null || source == null || sourceDatabase == null) {
+            return;
+        }
+        final CopyKeysDialog dialog = new CopyKeysDialog(project, source, sourceDatabase);
+        if (!dialog.showAndGet()) {
+            return;
+        }
+        final ServerConfiguration target = dialog.getTarget();
+        final RedisDatabase targetDatabase = dialog.getTargetDatabase();
+        new Task.Backgroundable(project, "Copying keys of database " + sourceDatabase.getName(), true) {
+
+            private long copiedKeys;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setText("Copying keys matching " + dialog.getPattern() + " to " + target.getServerUrl());
+                RedisKeyMigrator migrator = new RedisKeyMigrator(RedisKeyMigrator.DEFAULT_BATCH_SIZE, indicator);
+                copiedKeys = RedisClient.getInstance(project).copyKeys(source, sourceDatabase, dialog.getPattern(), target, targetDatabase, migrator);
+            }
+
+            @Override
+            public void onSuccess() {
+                showNotification(noSqlExplorerPanel, MessageType.INFO,
+                        String.format("%d keys copied to %s", copiedKeys, target.getServerUrl()), Balloon.Position.atLeft);
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                showNotification(noSqlExplorerPanel, MessageType.ERROR,
+                        String.format("Copy failed: %s", error.getMessage()), Balloon.Position.atLeft);
+            }
+        }.queue();
+    }
+
+    @Override
+    public void update(AnActionEvent event) {
+        event.getPresentation().setVisible(noSqlExplorerPanel.getSelectedRedisDatabase() != null);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.commons.view.action;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.MessageType;
+import com.intellij.openapi.ui.popup.Balloon;
+import org.codinjutsu.tools.nosql.NoSqlExplorerPanel;
+import org.codinjutsu.tools.nosql.ServerConfiguration;
+import org.codinjutsu.tools.nosql.dialog.ExportKeysDialog;
+import org.codinjutsu.tools.nosql.redis.logic.RedisClient;
+import org.codinjutsu.tools.nosql.redis.logic.RedisKeyExporter;
+import org.codinjutsu.tools.nosql.redis.model.RedisDatabase;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.codinjutsu.tools.nosql.commons.utils.GuiUtils.showNotification;
+
+public class ExportDatabaseAction extends AnAction implements DumbAware {
+
+    private final NoSqlExplorerPanel noSqlExplorerPanel;
+
+    public ExportDatabaseAction(NoSqlExplorerPanel noSqlExplorerPanel) {
+        super("Export database", "Export the keys of the database to a file", AllIcons.ToolbarDecorator.Export);
+        this.noSqlExplorerPanel = noSqlExplorerPanel;
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent event) {
+        final Project project = event.getProject();
+        final ServerConfiguration configuration = noSqlExplorerPanel.getConfiguration();
+        final RedisDatabase database = noSqlExplorerPanel.getSelectedRedisDatabase();
+        if (project == null || configuration == null || database == null) {
+            return;
+        }
+        final ExportKeysDialog dialog = new ExportKeysDialog(project, database.getName());
+        if (!dialog.showAndGet()) {
+            return;
+        }
+        final File file = dialog.getFile();
+        new Task.Backgroundable(project, "Exporting database " + database.getName(), true) {
+
+            private long exportedKeys;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setText("Exporting keys matching " + dialog.getPattern() + " to " + file.getName());
+                RedisKeyExporter exporter = new RedisKeyExporter(dialog.getFormat(), RedisKeyExporter.DEFAULT_BATCH_SIZE, indicator);
+                try {
+                    exportedKeys = RedisClient.getInstance(project).exportKeys(configuration, database, dialog.getPattern(), exporter, file.toPath());
+                } catch (IOException ex) {
+                    throw new RuntimeException("Cannot write " + file, ex);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                showNotification(noSqlExplorerPanel, MessageType.INFO,
+                        String.format("%d keys exported to %s", exportedKeys, file.getName()), Balloon.Position.atLeft);
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                showNotification(noSqlExplorerPanel, MessageType.ERROR,
+                        String.format("Export failed: %s", error.getMessage()), Balloon.Position.atLeft);
+            }
+        }.queue();
+    }
+
+    @Override
+    public void update(AnActionEvent event) {
+        event.getPresentation().setVisible(noSqlExplorerPanel.getSelectedRedisDatabase() != null);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.commons.view.action;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import org.codinjutsu.tools.nosql.NoSqlExplorerPanel;
+import org.codinjutsu.tools.nosql.ServerConfiguration;
+import org.codinjutsu.tools.nosql.dialog.HotKeysDialog;
+import org.codinjutsu.tools.nosql.redis.logic.RedisClient;
+
+public class HotKeysAction extends AnAction implements DumbAware {
+
+    private final NoSqlExplorerPanel noSqlExplorerPanel;
+
+    public HotKeysAction(NoSqlExplorerPanel noSqlExplorerPanel) {
+        super("Hot keys", "Sample the most accessed keys of the server", AllIcons.Actions.Lightning);
+        this.noSqlExplorerPanel = noSqlExplorerPanel;
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent event) {
+        Project project = event.getProject();
+        ServerConfiguration configuration = noSqlExplorerPanel.getConfiguration();
+        if (project == null || configuration == null) {
+            return;
+        }
+        new HotKeysDialog(project, RedisClient.getInstance(project), configuration).show();
+    }
+
+    @Override
+    public void update(AnActionEvent event) {
+        event.getPresentation().setVisible(noSqlExplorerPanel.getConfiguration() != null);
+    }
+}
@@ -16,7 +16,6 @@
 
 package org.codinjutsu.tools.nosql.commons.view.action;
 
-import com.intellij.execution.ExecutionException;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.PlatformDataKeys;
@@ -53,13 +52,14 @@ public class NoSqlDatabaseConsoleAction extends AnAction implements DumbAware {
 
         NoSqlConfiguration configuration = NoSqlConfiguration.getInstance(project);
 
+        ServerConfiguration serverConfiguration = noSqlExplorerPanel.getConfiguration();
+        // the redis console runs in process, the mongo one needs its shell
         e.getPresentation().setVisible(
                 configuration != null &&
-                        (StringUtils.isNotBlank(configuration.getShellPath(DatabaseVendor.MONGO)) ||
-                                StringUtils.isNotBlank(configuration.getShellPath(DatabaseVendor.REDIS))
-                        ) &&
-                        noSqlExplorerPanel.getConfiguration() != null &&
-                        noSqlExplorerPanel.getConfiguration().isSingleServer()
+                        serverConfiguration != null &&
+                        serverConfiguration.isSingleServer() &&
+                        (DatabaseVendor.REDIS.equals(serverConfiguration.getDatabaseVendor()) ||
+                                StringUtils.isNotBlank(configuration.getShellPath(DatabaseVendor.MONGO)))
         );
         e.getPresentation().setEnabled(
                         noSqlExplorerPanel.getSelectedRedisDatabase() != null
@@ -84,12 +84,7 @@ public class NoSqlDatabaseConsoleAction extends AnAction implements DumbAware {
 //                throw new RuntimeException(e1);
 //            }
         } else if (DatabaseVendor.REDIS.equals(configuration.getDatabaseVendor())) {
-            RedisConsoleRunner consoleRunner = new RedisConsoleRunner(project, configuration, noSqlExplorerPanel.getSelectedRedisDatabase());
-            try {
-                consoleRunner.initAndRun();
-            } catch (ExecutionException e1) {
-                throw new RuntimeException(e1);
-            }
+            new RedisConsoleRunner(project, configuration, noSqlExplorerPanel.getSelectedRedisDatabase()).initAndRun();
         }
 
     }
@@ -0,0 +1,81 @@
+package org.codinjutsu.tools.nosql.dialog;
+
+import com.google.common.collect.Lists;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.ui.ValidationInfo;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.FormBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.codinjutsu.tools.nosql.redis.logic.RedisKeyAnalyzer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.util.List;
+
+/**
+ * Asks for the keys to analyze, the number of biggest keys reported per type, the MEMORY USAGE samples and the prefix separator.
+ *
+ * @author bruce ge
+ */
+public class AnalyzeKeysDialog extends DialogWrapper {
+
+    private final JBTextField patternField = new JBTextField("*");
+    private final JBTextField topKeyCountField = new JBTextField(String.valueOf(RedisKeyAnalyzer.DEFAULT_TOP_KEY_COUNT));
+    private final JBTextField samplesField = new JBTextField(String.valueOf(RedisKeyAnalyzer.DEFAULT_MEMORY_SAMPLES));
+    private final JBTextField separatorField = new JBTextField(RedisKeyAnalyzer.DEFAULT_SEPARATOR);
+
+    public AnalyzeKeysDialog(@Nullable Project project, String databaseName) {
+        super(project, true);
+        setTitle("Analyze memory of redis database " + databaseName);
+        init();
+    }
+
+    public String getPattern() {
+        return patternField.getText();
+    }
+
+    public int getTopKeyCount() {
+        return NumberUtils.toInt(topKeyCountField.getText(), RedisKeyAnalyzer.DEFAULT_TOP_KEY_COUNT);
+    }
+
+    /**
+     * @return the number of elements MEMORY USAGE samples in collections, 0 for all of them
+     */
+    public int getMemorySamples() {
+        return NumberUtils.toInt(samplesField.getText(), RedisKeyAnalyzer.DEFAULT_MEMORY_SAMPLES);
+    }
+
+    public String getSeparator() {
+        return separatorField.getText();
+    }
+
+    @NotNull
+    @Override
+    protected List<ValidationInfo> doValidateAll() {
+        List<ValidationInfo> validatedInfos = Lists.newArrayList();
+        if (StringUtils.isBlank(patternField.getText())) {
+            validatedInfos.add(new ValidationInfo("pattern should not be empty", patternField));
+        }
+        if (NumberUtils.toInt(topKeyCountField.getText(), 0) <= 0) {
+            validatedInfos.add(new ValidationInfo("key count should be a positive number", topKeyCountField));
+        }
+        if (NumberUtils.toInt(samplesField.getText(), -1) < 0) {
+            validatedInfos.add(new ValidationInfo("samples should be a number, 0 for all the elements", samplesField));
+        }
+        return validatedInfos;
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        return FormBuilder.createFormBuilder()
+                .addLabeledComponent("keys matching", patternField)
+                .addLabeledComponent("biggest keys per type", topKeyCountField)
+                .addLabeledComponent("memory samples", samplesField)
+                .addLabeledComponent("prefix separator", separatorField)
+                .getPanel();
+    }
+}
@@ -0,0 +1,92 @@
+package org.codinjutsu.tools.nosql.dialog;
+
+import com.google.common.collect.Lists;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.ui.ValidationInfo;
+import com.intellij.ui.ColoredListCellRenderer;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.FormBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.codinjutsu.tools.nosql.DatabaseVendor;
+import org.codinjutsu.tools.nosql.NoSqlConfiguration;
+import org.codinjutsu.tools.nosql.ServerConfiguration;
+import org.codinjutsu.tools.nosql.redis.model.RedisDatabase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.util.List;
+
+/**
+ * Asks for the server and database receiving a copy of the keys, and the pattern of the copied keys.
+ *
+ * @author bruce ge
+ */
+public class CopyKeysDialog extends DialogWrapper {
+
+    private final ComboBox<ServerConfiguration> targetComboBox = new ComboBox<>();
+    private final JBTextField targetDatabaseField;
+    private final JBTextField patternField = new JBTextField("*");
+
+    public CopyKeysDialog(@NotNull Project project, ServerConfiguration source, RedisDatabase sourceDatabase) {
+        super(project, true);
+        for (ServerConfiguration configuration : NoSqlConfiguration.getInstance(project).getServerConfigurations()) {
+            if (DatabaseVendor.REDIS.equals(configuration.getDatabaseVendor())) {
+                targetComboBox.addItem(configuration);
+            }
+        }
+        targetComboBox.setRenderer(new ColoredListCellRenderer<ServerConfiguration>() {
+            @Override
+            protected void customizeCellRenderer(@NotNull JList<? extends ServerConfiguration> list, ServerConfiguration value,
+                                                 int index, boolean selected, boolean hasFocus) {
+                if (value != null) {
+                    append(StringUtils.defaultIfBlank(value.getLabel(), value.getServerUrl()));
+                }
+            }
+        });
+        targetComboBox.setSelectedItem(source);
+        targetDatabaseField = new JBTextField(sourceDatabase.getName());
+        setTitle("Copy keys of redis database " + sourceDatabase.getName());
+        init();
+    }
+
+    public ServerConfiguration getTarget() {
+        return (ServerConfiguration) targetComboBox.getSelectedItem();
+    }
+
+    public RedisDatabase getTargetDatabase() {
+        return new RedisDatabase(targetDatabaseField.getText().trim());
+    }
+
+    public String getPattern() {
+        return patternField.getText();
+    }
+
+    @NotNull
+    @Override
+    protected List<ValidationInfo> doValidateAll() {
+        List<ValidationInfo> validatedInfos = Lists.newArrayList();
+        if (getTarget() == null) {
+            validatedInfos.add(new ValidationInfo("no redis server is configured", targetComboBox));
+        }
+        if (!StringUtils.isNumeric(targetDatabaseField.getText().trim()) || StringUtils.isBlank(targetDatabaseField.getText())) {
+            validatedInfos.add(new ValidationInfo("database should be a number", targetDatabaseField));
+        }
+        if (StringUtils.isBlank(patternField.getText())) {
+            validatedInfos.add(new ValidationInfo("pattern should not be empty", patternField));
+        }
+        return validatedInfos;
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        return FormBuilder.createFormBuilder()
+                .addLabeledComponent("target server", targetComboBox)
+                .addLabeledComponent("target database", targetDatabaseField)
+                .addLabeledComponent("keys matching", patternField)
+                .getPanel();
+    }
+}
@@ -0,0 +1,101 @@
+package org.codinjutsu.tools.nosql.dialog;
+
+import com.google.common.collect.Lists;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.ui.TextFieldWithBrowseButton;
+import com.intellij.openapi.ui.ValidationInfo;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.FormBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.codinjutsu.tools.nosql.redis.logic.RedisExportFormat;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.io.File;
+import java.util.List;
+
+/**
+ * Asks for the file to export a database to, its format and the pattern of the exported keys.
+ *
+ * @author bruce ge
+ */
+public class ExportKeysDialog extends DialogWrapper {
+
+    private final TextFieldWithBrowseButton fileField = new TextFieldWithBrowseButton();
+    private final ComboBox<RedisExportFormat> formatComboBox = new ComboBox<>(RedisExportFormat.values());
+    private final JBTextField patternField = new JBTextField("*");
+
+    public ExportKeysDialog(@Nullable Project project, String databaseName) {
+        super(project, true);
+        fileField.addActionListener(event -> {
+            RedisExportFormat format = getFormat();
+            VirtualFileWrapper file = FileChooserFactory.getInstance()
+                    .createSaveFileDialog(new FileSaverDescriptor("Export Keys", "File receiving the keys", format.extension), project)
+                    .save(null, "redis-db" + databaseName + "." + format.extension);
+            if (file != null) {
+                fileField.setText(file.getFile().getPath());
+            }
+        });
+        formatComboBox.addActionListener(event -> {
+            String path = fileField.getText();
+            if (StringUtils.isNotBlank(path)) {
+                fileField.setText(withExtension(path, getFormat()));
+            }
+        });
+        setTitle("Export redis database " + databaseName);
+        init();
+    }
+
+    private static String withExtension(String path, RedisExportFormat format) {
+        for (RedisExportFormat other : RedisExportFormat.values()) {
+            if (path.endsWith("." + other.extension)) {
+                return path.substring(0, path.length() - other.extension.length()) + format.extension;
+            }
+        }
+        return path;
+    }
+
+    public File getFile() {
+        return new File(fileField.getText());
+    }
+
+    public RedisExportFormat getFormat() {
+        return (RedisExportFormat) formatComboBox.getSelectedItem();
+    }
+
+    public String getPattern() {
+        return patternField.getText();
+    }
+
+    @NotNull
+    @Override
+    protected List<ValidationInfo> doValidateAll() {
+        List<ValidationInfo> validatedInfos = Lists.newArrayList();
+        File file = getFile();
+        if (StringUtils.isBlank(fileField.getText()) || file.isDirectory()) {
+            validatedInfos.add(new ValidationInfo("file should not be empty", fileField));
+        } else if (file.getAbsoluteFile().getParentFile() == null || !file.getAbsoluteFile().getParentFile().isDirectory()) {
+            validatedInfos.add(new ValidationInfo("directory does not exist", fileField));
+        }
+        if (StringUtils.isBlank(patternField.getText())) {
+            validatedInfos.add(new ValidationInfo("pattern should not be empty", patternField));
+        }
+        return validatedInfos;
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        return FormBuilder.createFormBuilder()
+                .addLabeledComponent("file", fileField)
+                .addLabeledComponent("format", formatComboBox)
+                .addLabeledComponent("keys matching", patternField)
+                .getPanel();
+    }
+}
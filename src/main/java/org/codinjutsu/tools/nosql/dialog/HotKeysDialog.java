@@ -0,0 +1,144 @@
+package org.codinjutsu.tools.nosql.dialog;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.TableView;
+import com.intellij.util.ui.ColumnInfo;
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.ListTableModel;
+import org.codinjutsu.tools.nosql.ServerConfiguration;
+import org.codinjutsu.tools.nosql.commons.utils.GuiUtils;
+import org.codinjutsu.tools.nosql.redis.logic.RedisClient;
+import org.codinjutsu.tools.nosql.redis.logic.RedisHotKeyDetector;
+import org.codinjutsu.tools.nosql.redis.model.RedisHotKey;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows the hottest keys of a server, sampled again on a fixed interval while the dialog is open.
+ *
+ * @author bruce ge
+ */
+public class HotKeysDialog extends DialogWrapper {
+
+    private static final Logger LOG = Logger.getInstance(HotKeysDialog.class);
+
+    private final RedisClient redisClient;
+    private final ServerConfiguration configuration;
+    private final RedisHotKeyDetector detector;
+    private final ListTableModel<RedisHotKey> tableModel = new ListTableModel<>(
+            new HotKeyColumn("Database") {
+                @Override
+                public Object valueOf(RedisHotKey hotKey) {
+                    return hotKey.getDatabase();
+                }
+            },
+            new HotKeyColumn("Key") {
+                @Override
+                public Object valueOf(RedisHotKey hotKey) {
+                    return hotKey.getKey();
+                }
+            },
+            new HotKeyColumn("Hotness") {
+                @Override
+                public Object valueOf(RedisHotKey hotKey) {
+                    return hotKey.getHotness();
+                }
+            },
+            new HotKeyColumn("Last score") {
+                @Override
+                public Object valueOf(RedisHotKey hotKey) {
+                    return hotKey.getLastScore();
+                }
+            });
+    private final JBLabel summaryLabel = new JBLabel("Sampling...");
+    private final Timer refreshTimer;
+    private boolean sampling;
+
+    public HotKeysDialog(@Nullable Project project, RedisClient redisClient, ServerConfiguration configuration) {
+        super(project, true);
+        this.redisClient = redisClient;
+        this.configuration = configuration;
+        this.detector = new RedisHotKeyDetector(RedisHotKeyDetector.DEFAULT_TOP_KEY_COUNT, RedisHotKeyDetector.DEFAULT_SAMPLES_PER_ROUND,
+                RedisHotKeyDetector.DEFAULT_INTERVAL_SECONDS);
+        this.refreshTimer = new Timer((int) TimeUnit.SECONDS.toMillis(RedisHotKeyDetector.DEFAULT_INTERVAL_SECONDS), event -> sample());
+        this.refreshTimer.setInitialDelay(0);
+        setModal(false);
+        setTitle("Hot keys of " + configuration.getLabel());
+        init();
+        refreshTimer.start();
+    }
+
+    /**
+     * Runs a round on a pooled thread, skipped while the previous one is still running.
+     */
+    private void sample() {
+        if (sampling) {
+            return;
+        }
+        sampling = true;
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            String error = null;
+            try {
+                redisClient.sampleHotKeys(configuration, detector);
+            } catch (Exception ex) {
+                LOG.warn("Cannot sample the hot keys of " + configuration.getLabel(), ex);
+                error = ex.getMessage();
+            }
+            final String samplingError = error;
+            GuiUtils.runInSwingThread(() -> {
+                sampling = false;
+                tableModel.setItems(detector.getHotKeys());
+                summaryLabel.setText(summary(samplingError));
+            });
+        });
+    }
+
+    private String summary(@Nullable String error) {
+        if (error != null) {
+            return "Sampling failed: " + error;
+        }
+        Boolean frequencyScored = detector.isFrequencyScored();
+        String scoring = frequencyScored == null ? "no key scored yet"
+                : frequencyScored ? "scored by OBJECT FREQ" : "scored by OBJECT IDLETIME, idle for less than "
+                + RedisHotKeyDetector.DEFAULT_INTERVAL_SECONDS + "s counts as accessed";
+        return String.format("%d keys sampled in %d rounds, %s", detector.getSampledKeys(), detector.getRounds(), scoring);
+    }
+
+    @NotNull
+    @Override
+    protected Action[] createActions() {
+        return new Action[]{getOKAction()};
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(summaryLabel, BorderLayout.NORTH);
+        panel.add(new JBScrollPane(new TableView<>(tableModel)), BorderLayout.CENTER);
+        panel.setPreferredSize(JBUI.size(650, 400));
+        return panel;
+    }
+
+    @Override
+    protected void dispose() {
+        refreshTimer.stop();
+        super.dispose();
+    }
+
+    private abstract static class HotKeyColumn extends ColumnInfo<RedisHotKey, Object> {
+
+        HotKeyColumn(String name) {
+            super(name);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.codinjutsu.tools.nosql.dialog;
+
+import com.google.common.collect.Lists;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.ui.TextFieldWithBrowseButton;
+import com.intellij.openapi.ui.ValidationInfo;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.FormBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.codinjutsu.tools.nosql.redis.logic.RedisBulkWriter;
+import org.codinjutsu.tools.nosql.redis.logic.RedisImportFormat;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.io.File;
+import java.util.List;
+
+/**
+ * Asks for the file to import, its format, the write batch size and a TTL for the imported keys.
+ *
+ * @author bruce ge
+ */
+public class ImportKeysDialog extends DialogWrapper {
+
+    private final TextFieldWithBrowseButton fileField = new TextFieldWithBrowseButton();
+    private final ComboBox<RedisImportFormat> formatComboBox = new ComboBox<>(RedisImportFormat.values());
+    private final JBTextField batchSizeField = new JBTextField(String.valueOf(RedisBulkWriter.DEFAULT_BATCH_SIZE));
+    private final JBTextField ttlField = new JBTextField("0");
+
+    public ImportKeysDialog(@Nullable Project project) {
+        super(project, true);
+        fileField.addBrowseFolderListener("Import Keys", "File of keys in CSV, NDJSON or RESP", project,
+                FileChooserDescriptorFactory.createSingleFileNoJarsDescriptor());
+        fileField.getTextField().getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                guessFormat();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                guessFormat();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                guessFormat();
+            }
+        });
+        setTitle("Import keys into redis");
+        init();
+    }
+
+    private void guessFormat() {
+        if (StringUtils.isNotBlank(fileField.getText())) {
+            formatComboBox.setSelectedItem(RedisImportFormat.forFileName(fileField.getText()));
+        }
+    }
+
+    public File getFile() {
+        return new File(fileField.getText());
+    }
+
+    public RedisImportFormat getFormat() {
+        return (RedisImportFormat) formatComboBox.getSelectedItem();
+    }
+
+    public int getBatchSize() {
+        return NumberUtils.toInt(batchSizeField.getText(), RedisBulkWriter.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @return the TTL given to every imported key in seconds, 0 for none
+     */
+    public long getTtlSeconds() {
+        return NumberUtils.toLong(ttlField.getText(), 0);
+    }
+
+    @NotNull
+    @Override
+    protected List<ValidationInfo> doValidateAll() {
+        List<ValidationInfo> validatedInfos = Lists.newArrayList();
+        if (!getFile().isFile()) {
+            validatedInfos.add(new ValidationInfo("file does not exist", fileField));
+        }
+        if (NumberUtils.toInt(batchSizeField.getText(), 0) <= 0) {
+            validatedInfos.add(new ValidationInfo("batch size should be a positive number", batchSizeField));
+        }
+        if (NumberUtils.toLong(ttlField.getText(), -1) < 0) {
+            validatedInfos.add(new ValidationInfo("ttl should be a number of seconds, 0 for none", ttlField));
+        }
+        return validatedInfos;
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        return FormBuilder.createFormBuilder()
+                .addLabeledComponent("file", fileField)
+                .addLabeledComponent("format", formatComboBox)
+                .addLabeledComponent("batch size", batchSizeField)
+                .addLabeledComponent("ttl (seconds)", ttlField)
+                .getPanel();
+    }
+}
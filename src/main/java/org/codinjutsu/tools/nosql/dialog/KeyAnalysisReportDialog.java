@@ -0,0 +1,88 @@
+package org.codinjutsu.tools.nosql.dialog;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.components.JBTabbedPane;
+import com.intellij.ui.table.TableView;
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.ListTableModel;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyAnalysis;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyAnalysis.BigKey;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyAnalysis.Usage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Shows the biggest keys of a database and its memory by key type and by key prefix.
+ *
+ * @author bruce ge
+ */
+public class KeyAnalysisReportDialog extends DialogWrapper {
+
+    private final RedisKeyAnalysis analysis;
+
+    public KeyAnalysisReportDialog(@Nullable Project project, String databaseName, RedisKeyAnalysis analysis) {
+        super(project, true);
+        this.analysis = analysis;
+        setTitle("Memory of redis database " + databaseName);
+        init();
+    }
+
+    @NotNull
+    @Override
+    protected Action[] createActions() {
+        return new Action[]{getOKAction()};
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        String sizeName = analysis.isMemoryUsageAvailable() ? "Memory" : "Length";
+        JBTabbedPane tabs = new JBTabbedPane();
+        tabs.addTab("Biggest keys", reportTable(analysis.getBiggestKeys(),
+                new ReportColumn<>("Key", BigKey::getKey),
+                new ReportColumn<>("Type", bigKey -> bigKey.getKeyType().label),
+                new ReportColumn<>("Length", BigKey::getLength),
+                new ReportColumn<>(sizeName, bigKey -> formatSize(bigKey.getSize()))));
+        tabs.addTab("By type", usageTable("Type", sizeName, analysis.getUsageByType()));
+        tabs.addTab("By prefix", usageTable("Prefix", sizeName, analysis.getUsageByPrefix()));
+
+        String summary = String.format("%d keys, %s", analysis.getKeyCount(), formatSize(analysis.getTotalSize()));
+        if (!analysis.isMemoryUsageAvailable()) {
+            summary += " (MEMORY USAGE is not supported by the server, sizes are lengths)";
+        }
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JBLabel(summary), BorderLayout.NORTH);
+        panel.add(tabs, BorderLayout.CENTER);
+        panel.setPreferredSize(JBUI.size(700, 450));
+        return panel;
+    }
+
+    private JComponent usageTable(String name, String sizeName, List<Usage> usages) {
+        long totalSize = Math.max(1, analysis.getTotalSize());
+        return reportTable(usages,
+                new ReportColumn<>(name, Usage::getName),
+                new ReportColumn<>("Keys", Usage::getKeyCount),
+                new ReportColumn<>(sizeName, usage -> formatSize(usage.getSize())),
+                new ReportColumn<>("Share", usage -> String.format("%.1f %%", 100.0 * usage.getSize() / totalSize)));
+    }
+
+    /**
+     * @param rows rows already ordered biggest first
+     */
+    @SafeVarargs
+    private static <T> JComponent reportTable(List<T> rows, ReportColumn<T>... columns) {
+        return new JBScrollPane(new TableView<>(new ListTableModel<>(columns, rows)));
+    }
+
+    private String formatSize(long size) {
+        return analysis.isMemoryUsageAvailable() ? StringUtil.formatFileSize(size) : String.valueOf(size);
+    }
+}
@@ -0,0 +1,27 @@
+package org.codinjutsu.tools.nosql.dialog;
+
+import com.intellij.util.ui.ColumnInfo;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Function;
+
+/**
+ * Read-only column of a report table.
+ *
+ * @author bruce ge
+ */
+class ReportColumn<T> extends ColumnInfo<T, Object> {
+
+    private final Function<T, Object> getter;
+
+    ReportColumn(String name, Function<T, Object> getter) {
+        super(name);
+        this.getter = getter;
+    }
+
+    @Nullable
+    @Override
+    public Object valueOf(T row) {
+        return getter.apply(row);
+    }
+}
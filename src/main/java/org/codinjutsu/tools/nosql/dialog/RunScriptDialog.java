@@ -0,0 +1,75 @@
+package org.codinjutsu.tools.nosql.dialog;
+
+import com.google.common.collect.Lists;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.ui.TextFieldWithBrowseButton;
+import com.intellij.openapi.ui.ValidationInfo;
+import com.intellij.ui.components.JBCheckBox;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.FormBuilder;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.codinjutsu.tools.nosql.redis.logic.RedisScriptRunner;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.io.File;
+import java.util.List;
+
+/**
+ * Asks for the script file to run, the pipeline batch size and whether its blocks run as transactions.
+ *
+ * @author bruce ge
+ */
+public class RunScriptDialog extends DialogWrapper {
+
+    private final TextFieldWithBrowseButton fileField = new TextFieldWithBrowseButton();
+    private final JBTextField batchSizeField = new JBTextField(String.valueOf(RedisScriptRunner.DEFAULT_BATCH_SIZE));
+    private final JBCheckBox transactionCheckBox = new JBCheckBox("Run each block of lines in a MULTI/EXEC transaction");
+
+    public RunScriptDialog(@Nullable Project project) {
+        super(project, true);
+        fileField.addBrowseFolderListener("Run Script", "File of redis commands, one per line", project,
+                FileChooserDescriptorFactory.createSingleFileNoJarsDescriptor());
+        transactionCheckBox.setToolTipText("Blocks are separated by blank lines");
+        setTitle("Run redis script file");
+        init();
+    }
+
+    public File getFile() {
+        return new File(fileField.getText());
+    }
+
+    public int getBatchSize() {
+        return NumberUtils.toInt(batchSizeField.getText(), RedisScriptRunner.DEFAULT_BATCH_SIZE);
+    }
+
+    public boolean isTransactionPerBlock() {
+        return transactionCheckBox.isSelected();
+    }
+
+    @NotNull
+    @Override
+    protected List<ValidationInfo> doValidateAll() {
+        List<ValidationInfo> validatedInfos = Lists.newArrayList();
+        if (!getFile().isFile()) {
+            validatedInfos.add(new ValidationInfo("file does not exist", fileField));
+        }
+        if (NumberUtils.toInt(batchSizeField.getText(), 0) <= 0) {
+            validatedInfos.add(new ValidationInfo("batch size should be a positive number", batchSizeField));
+        }
+        return validatedInfos;
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        return FormBuilder.createFormBuilder()
+                .addLabeledComponent("file", fileField)
+                .addLabeledComponent("batch size", batchSizeField)
+                .addComponent(transactionCheckBox)
+                .getPanel();
+    }
+}
@@ -0,0 +1,57 @@
+package org.codinjutsu.tools.nosql.dialog;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.TableView;
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.ListTableModel;
+import org.codinjutsu.tools.nosql.redis.model.RedisScriptReport;
+import org.codinjutsu.tools.nosql.redis.model.RedisScriptReport.CommandError;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Shows the throughput of a script run and the commands that failed.
+ *
+ * @author bruce ge
+ */
+public class ScriptReportDialog extends DialogWrapper {
+
+    private final RedisScriptReport report;
+
+    public ScriptReportDialog(@Nullable Project project, String fileName, RedisScriptReport report) {
+        super(project, true);
+        this.report = report;
+        setTitle("Run of " + fileName);
+        init();
+    }
+
+    @NotNull
+    @Override
+    protected Action[] createActions() {
+        return new Action[]{getOKAction()};
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        String summary = report.toString();
+        if (report.getFailedCommands() > report.getErrors().size()) {
+            summary += String.format(" (the first %d errors are listed)", report.getErrors().size());
+        }
+        TableView<CommandError> errorTable = new TableView<>(new ListTableModel<>(new ReportColumn[]{
+                new ReportColumn<CommandError>("Line", CommandError::getLine),
+                new ReportColumn<CommandError>("Command", CommandError::getCommand),
+                new ReportColumn<CommandError>("Error", CommandError::getMessage)}, report.getErrors()));
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JBLabel(summary), BorderLayout.NORTH);
+        panel.add(new JBScrollPane(errorTable), BorderLayout.CENTER);
+        panel.setPreferredSize(JBUI.size(700, 400));
+        return panel;
+    }
+}
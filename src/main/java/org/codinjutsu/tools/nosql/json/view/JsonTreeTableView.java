@@ -69,6 +69,13 @@ public class JsonTreeTableView extends TreeTable {
     private final ColumnInfo[] columns;
 
     public JsonTreeTableView(TreeNode rootNode, ColumnInfo[] columnInfos) {
+        this(rootNode, columnInfos, 2);
+    }
+
+    /**
+     * @param expandedLevels depth of the initially expanded nodes, the hidden root being level 1
+     */
+    public JsonTreeTableView(TreeNode rootNode, ColumnInfo[] columnInfos, int expandedLevels) {
         super(new ListTreeTableModelOnColumns(rootNode, columnInfos));
         this.columns = columnInfos;
 
@@ -79,7 +86,7 @@ public class JsonTreeTableView extends TreeTable {
         UIUtil.setLineStyleAngled(tree);
         setTreeCellRenderer(new KeyCellRenderer());
 
-        TreeUtil.expand(tree, 2);
+        TreeUtil.expand(tree, expandedLevels);
 
         new TreeTableSpeedSearch(this, new Convertor<TreePath, String>() {
             @Override
@@ -21,12 +21,16 @@ import org.codinjutsu.tools.nosql.ServerConfiguration;
 import org.codinjutsu.tools.nosql.redis.model.RedisDatabase;
 import redis.clients.jedis.Tuple;
 
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class RedisUtils {
 
+    private static final String ELLIPSIS = "...";
+
     public static String stringifySortedSet(Set<Tuple> sortedSet) {
         List<String> stringifiedTuples = new LinkedList<String>();
         for (Tuple tuple : sortedSet) {
@@ -45,6 +49,61 @@ public class RedisUtils {
         return String.format("(%s, %s)", tuple.getElement(), tuple.getScore());
     }
 
+    /**
+     * Same text as the stringify methods and {@code toString} for a list, a set, a sorted set or a hash, but stops
+     * reading the elements once {@code maxLength} characters are reached; a longer value ends with "...".
+     */
+    public static String previewValue(Object value, int maxLength) {
+        if (value instanceof List) {
+            return previewElements((List) value, "[", "]", maxLength);
+        } else if (value instanceof Collection) {
+            return previewElements((Collection) value, "{", "}", maxLength);
+        } else if (value instanceof Map) {
+            return previewElements(((Map) value).entrySet(), "{", "}", maxLength);
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * Appends no more than what is needed to exceed {@code maxLength}, a single element can be megabytes long.
+     */
+    private static void appendBounded(StringBuilder preview, Object element, int maxLength) {
+        String text = String.valueOf(element);
+        int remaining = Math.max(0, maxLength + 1 - preview.length());
+        preview.append(text, 0, Math.min(text.length(), remaining));
+    }
+
+    private static String previewElements(Collection elements, String open, String close, int maxLength) {
+        StringBuilder preview = new StringBuilder(Math.min(maxLength, 1024) + 1).append(open);
+        boolean first = true;
+        for (Object element : elements) {
+            if (preview.length() > maxLength) {
+                break;
+            }
+            if (!first) {
+                preview.append(", ");
+            }
+            first = false;
+            if (element instanceof Tuple) {
+                preview.append('(');
+                appendBounded(preview, ((Tuple) element).getElement(), maxLength);
+                preview.append(", ").append(((Tuple) element).getScore()).append(')');
+            } else if (element instanceof Map.Entry) {
+                appendBounded(preview, ((Map.Entry) element).getKey(), maxLength);
+                preview.append('=');
+                appendBounded(preview, ((Map.Entry) element).getValue(), maxLength);
+            } else {
+                appendBounded(preview, element, maxLength);
+            }
+        }
+        preview.append(close);
+        if (preview.length() <= maxLength) {
+            return preview.toString();
+        }
+        preview.setLength(Math.max(open.length(), maxLength - ELLIPSIS.length() - close.length()));
+        return preview.append(ELLIPSIS).append(close).toString();
+    }
+
     public static String buildUrl(ServerConfiguration serverConfiguration, RedisDatabase database) {
         return String.format("-n %s", database.getName());
     }
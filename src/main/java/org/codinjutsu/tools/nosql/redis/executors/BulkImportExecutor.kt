@@ -0,0 +1,43 @@
+package org.codinjutsu.tools.nosql.redis.executors
+
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.progress.ProgressManager
+import org.codinjutsu.tools.nosql.redis.logic.RedisBulkWriter
+import org.codinjutsu.tools.nosql.redis.logic.RedisImportFormat
+import org.codinjutsu.tools.nosql.redis.logic.RedisQueryExecutor
+import redis.clients.jedis.JedisCommands
+import java.io.BufferedInputStream
+import java.io.File
+import java.io.FileInputStream
+
+
+/**
+ * Imports a file into the selected database through pipelined writes.
+ * Runs on the query thread, whose progress indicator follows the bytes read and cancels the import.
+ *
+ * @author bruce ge
+ */
+class BulkImportExecutor(val file: File, val format: RedisImportFormat, val batchSize: Int, val ttlSeconds: Long) : RedisQueryExecutor {
+
+    override fun handleRedisQuery(command: JedisCommands) {
+        val indicator = ApplicationManager.getApplication()?.let { ProgressManager.getInstance().progressIndicator }
+        indicator?.isIndeterminate = false
+        val length = Math.max(file.length(), 1L)
+        CountingInputStream(BufferedInputStream(FileInputStream(file))) { read ->
+            indicator?.checkCanceled()
+            indicator?.fraction = read.toDouble() / length
+        }.use { input ->
+            RedisBulkWriter(command, batchSize, ttlSeconds * 1000, indicator).use { writer ->
+                format.read(input, writer)
+                writer.flush()
+                LOG.info("imported ${file.name}: ${writer.writtenCommands} commands, ${writer.throughput} commands/s")
+            }
+        }
+    }
+
+    companion object {
+        private val LOG = Logger.getInstance(BulkImportExecutor::class.java)
+    }
+
+}
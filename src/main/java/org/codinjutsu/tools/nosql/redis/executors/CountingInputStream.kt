@@ -0,0 +1,43 @@
+package org.codinjutsu.tools.nosql.redis.executors
+
+import java.io.FilterInputStream
+import java.io.InputStream
+
+
+/**
+ * Reports the bytes read so far every [REPORT_STEP] bytes, used to follow the progress of a file.
+ *
+ * @author bruce ge
+ */
+internal class CountingInputStream(input: InputStream, val onRead: (Long) -> Unit) : FilterInputStream(input) {
+    private var count = 0L
+
+    override fun read(): Int {
+        val b = super.read()
+        if (b != -1) {
+            advance(1)
+        }
+        return b
+    }
+
+    override fun read(b: ByteArray, off: Int, len: Int): Int {
+        val n = super.read(b, off, len)
+        if (n > 0) {
+            advance(n.toLong())
+        }
+        return n
+    }
+
+    private fun advance(n: Long) {
+        val previous = count
+        count += n
+        // reporting on every byte would cost more than reading the file
+        if (count / REPORT_STEP != previous / REPORT_STEP) {
+            onRead(count)
+        }
+    }
+
+    companion object {
+        private const val REPORT_STEP = 64 * 1024L
+    }
+}
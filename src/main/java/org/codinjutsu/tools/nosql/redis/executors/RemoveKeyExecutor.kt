@@ -1,22 +1,26 @@
 package org.codinjutsu.tools.nosql.redis.executors
 
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.progress.ProgressManager
+import org.codinjutsu.tools.nosql.redis.logic.RedisKeyDeleter
 import org.codinjutsu.tools.nosql.redis.logic.RedisQueryExecutor
-import redis.clients.jedis.Jedis
 import redis.clients.jedis.JedisCommands
 
 
 /**
+ * Deletes the given keys and, when a pattern is given, every key matching it.
+ * Runs on the query thread, whose progress indicator shows the deleted count and cancels the deletion.
  *
  * @author bruce ge
  */
-class RemoveKeyExecutor(val lists: MutableSet<ByteArray>) : RedisQueryExecutor {
+class RemoveKeyExecutor(val lists: MutableSet<ByteArray>, val pattern: ByteArray? = null) : RedisQueryExecutor {
 
     override fun handleRedisQuery(command: JedisCommands) {
-        if (command is Jedis) {
-            //need to use with bytes?
-            for (oneKey in lists) {
-                command.del(oneKey);
-            }
+        val indicator = ApplicationManager.getApplication()?.let { ProgressManager.getInstance().progressIndicator }
+        val deleter = RedisKeyDeleter(indicator)
+        deleter.delete(command, lists)
+        if (pattern != null) {
+            deleter.deleteMatching(command, pattern)
         }
     }
 
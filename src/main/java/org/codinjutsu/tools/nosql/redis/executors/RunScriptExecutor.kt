@@ -0,0 +1,44 @@
+package org.codinjutsu.tools.nosql.redis.executors
+
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.progress.ProgressManager
+import org.codinjutsu.tools.nosql.redis.logic.RedisQueryExecutor
+import org.codinjutsu.tools.nosql.redis.logic.RedisScriptRunner
+import org.codinjutsu.tools.nosql.redis.model.RedisScriptReport
+import redis.clients.jedis.JedisCommands
+import java.io.BufferedInputStream
+import java.io.File
+import java.io.FileInputStream
+import java.util.function.Consumer
+
+
+/**
+ * Runs a script file of commands against the selected database through pipelined batches.
+ * Runs on the query thread, whose progress indicator follows the bytes read and cancels the run; the report is
+ * handed to [onReport] on that thread once the script is over.
+ *
+ * @author bruce ge
+ */
+class RunScriptExecutor(val file: File, val batchSize: Int, val transactionPerBlock: Boolean,
+                        val onReport: Consumer<RedisScriptReport>) : RedisQueryExecutor {
+
+    override fun handleRedisQuery(command: JedisCommands) {
+        val indicator = ApplicationManager.getApplication()?.let { ProgressManager.getInstance().progressIndicator }
+        indicator?.isIndeterminate = false
+        val length = Math.max(file.length(), 1L)
+        val report = CountingInputStream(BufferedInputStream(FileInputStream(file))) { read ->
+            indicator?.checkCanceled()
+            indicator?.fraction = read.toDouble() / length
+        }.bufferedReader(Charsets.UTF_8).use { script ->
+            RedisScriptRunner(command, batchSize, transactionPerBlock, indicator).run(script)
+        }
+        LOG.info("ran ${file.name}: $report")
+        onReport.accept(report)
+    }
+
+    companion object {
+        private val LOG = Logger.getInstance(RunScriptExecutor::class.java)
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+/**
+ * Count-Min sketch: estimates the total weight added for a key in a fixed amount of memory, never under-estimating it.
+ * <p>
+ * Each row is indexed by a hash of its own, derived from two base hashes of the key.
+ */
+public class CountMinSketch {
+
+    private final long[][] counters;
+    private final int width;
+
+    public CountMinSketch(int depth, int width) {
+        this.counters = new long[depth][width];
+        this.width = width;
+    }
+
+    /**
+     * @return the estimated weight of the key, this weight included
+     */
+    public long add(byte[] key, long weight) {
+        int hash1 = hash(key, 0x9747b28c);
+        int hash2 = hash(key, hash1);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counters.length; row++) {
+            int column = Math.floorMod(hash1 + row * hash2, width);
+            counters[row][column] += weight;
+            estimate = Math.min(estimate, counters[row][column]);
+        }
+        return estimate;
+    }
+
+    public long estimate(byte[] key) {
+        int hash1 = hash(key, 0x9747b28c);
+        int hash2 = hash(key, hash1);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counters.length; row++) {
+            estimate = Math.min(estimate, counters[row][Math.floorMod(hash1 + row * hash2, width)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Halves every counter, so that the weights added long ago count less than the recent ones.
+     */
+    public void decay() {
+        for (long[] row : counters) {
+            for (int column = 0; column < row.length; column++) {
+                row[column] >>= 1;
+            }
+        }
+    }
+
+    // FNV-1a, finalized with the murmur3 mix to spread the low bits
+    private static int hash(byte[] key, int seed) {
+        int hash = 0x811c9dc5 ^ seed;
+        for (byte b : key) {
+            hash ^= b;
+            hash *= 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import kotlin.text.Charsets;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisCommands;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.JedisClusterCRC16;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers commands and sends them {@code batchSize} at a time in a single pipeline, written as is in the RESP protocol
+ * so that any command goes through, whatever its arguments.
+ * <p>
+ * On a cluster, every batch is split by the master owning the slot of each key and each part is pipelined on
+ * that master. A command is routed by its first argument, except the multi-key commands: DEL, UNLINK, TOUCH, EXISTS
+ * and MSET are split into one command per slot, while MSETNX and the two-key commands are refused when their keys
+ * do not share a slot.
+ * <p>
+ * When a TTL is set, each key written by SET, RPUSH, LPUSH, SADD, HSET, HMSET, ZADD or MSET in a batch gets one
+ * PEXPIRE at the end of the batch. A key given its own TTL by the written commands, with EXPIRE, PEXPIRE, EXPIREAT,
+ * PEXPIREAT, PERSIST or a SET with an EX, PX, EXAT, PXAT or KEEPTTL option, keeps it: it no longer gets the default
+ * one, until a plain SET discards its TTL.
+ */
+public class RedisBulkWriter implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final byte[] PEXPIRE = "PEXPIRE".getBytes(Charsets.UTF_8);
+
+    private static final Set<String> SINGLE_KEY_WRITES = new HashSet<>(Arrays.asList("SET", "RPUSH", "LPUSH", "SADD",
+            "HSET", "HMSET", "ZADD"));
+    // every argument is a key
+    private static final Set<String> KEYS_COMMANDS = new HashSet<>(Arrays.asList("DEL", "UNLINK", "TOUCH", "EXISTS"));
+    // the arguments are key value pairs
+    private static final Set<String> KEY_VALUE_COMMANDS = new HashSet<>(Arrays.asList("MSET", "MSETNX"));
+    // atomic commands whose two first arguments are keys
+    private static final Set<String> TWO_KEY_COMMANDS = new HashSet<>(Arrays.asList("RENAME", "RENAMENX", "SMOVE",
+            "RPOPLPUSH", "LMOVE", "COPY"));
+    // commands setting or removing the TTL of their key
+    private static final Set<String> TTL_COMMANDS = new HashSet<>(Arrays.asList("EXPIRE", "PEXPIRE", "EXPIREAT",
+            "PEXPIREAT", "PERSIST"));
+    private static final Set<String> SET_TTL_OPTIONS = new HashSet<>(Arrays.asList("EX", "PX", "EXAT", "PXAT",
+            "KEEPTTL"));
+
+    private final JedisCommands commands;
+    private final int batchSize;
+    private final long defaultTtlMillis;
+    private final ProgressIndicator indicator;
+    private final String[] slotMasters;
+
+    private final List<byte[][]> pendingCommands = new ArrayList<>();
+    private final Map<ByteBuffer, Long> pendingExpirations = new LinkedHashMap<>();
+    // kept across batches: a key written again in a later batch must not get the default TTL either
+    private final Set<ByteBuffer> keysWithOwnTtl = new HashSet<>();
+
+    private final long startNanos = System.nanoTime();
+    private long writtenCommands;
+
+    /**
+     * @param commands         a connection with the target database selected, or a cluster
+     * @param defaultTtlMillis TTL given to every written key, 0 to keep them persistent
+     */
+    public RedisBulkWriter(JedisCommands commands, int batchSize, long defaultTtlMillis, @Nullable ProgressIndicator indicator) {
+        this.commands = commands;
+        this.batchSize = batchSize;
+        this.defaultTtlMillis = defaultTtlMillis;
+        this.indicator = indicator;
+        this.slotMasters = commands instanceof JedisCluster ? new RedisClusterNodes((JedisCluster) commands).slotMasters() : null;
+    }
+
+    public void write(byte[]... command) {
+        if (command.length == 0) {
+            throw new IllegalArgumentException("a command needs at least a name");
+        }
+        pendingCommands.add(command);
+        if (defaultTtlMillis > 0) {
+            applyDefaultTtl(command);
+        }
+        if (pendingCommands.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    private void applyDefaultTtl(byte[][] command) {
+        String name = commandName(command);
+        if (command.length > 1 && (TTL_COMMANDS.contains(name) || "SET".equals(name) && hasTtlOption(command))) {
+            // the stream decides: its TTL is not overwritten by the PEXPIRE sent at the end of the batch
+            ByteBuffer key = ByteBuffer.wrap(command[1]);
+            pendingExpirations.remove(key);
+            keysWithOwnTtl.add(key);
+            return;
+        }
+        if ("SET".equals(name) && command.length > 1) {
+            // a plain SET discards the TTL of the key
+            keysWithOwnTtl.remove(ByteBuffer.wrap(command[1]));
+        }
+        for (byte[] key : writtenKeys(command)) {
+            ByteBuffer wrappedKey = ByteBuffer.wrap(key);
+            if (!keysWithOwnTtl.contains(wrappedKey)) {
+                pendingExpirations.putIfAbsent(wrappedKey, defaultTtlMillis);
+            }
+        }
+    }
+
+    private static boolean hasTtlOption(byte[][] command) {
+        for (int i = 3; i < command.length; i++) {
+            if (SET_TTL_OPTIONS.contains(new String(command[i], Charsets.UTF_8).toUpperCase(Locale.ROOT))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void write(String... command) {
+        byte[][] encoded = new byte[command.length][];
+        for (int i = 0; i < command.length; i++) {
+            encoded[i] = command[i].getBytes(Charsets.UTF_8);
+        }
+        write(encoded);
+    }
+
+    /**
+     * Gives its own TTL to a key written in the current batch, replacing the default one.
+     */
+    public void expire(byte[] key, long ttlMillis) {
+        pendingExpirations.put(ByteBuffer.wrap(key), ttlMillis);
+    }
+
+    public long getWrittenCommands() {
+        return writtenCommands;
+    }
+
+    /**
+     * @return the written commands per second since the writer was created
+     */
+    public long getThroughput() {
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return writtenCommands * 1000 / elapsedMillis;
+    }
+
+    public void flush() {
+        if (pendingCommands.isEmpty() && pendingExpirations.isEmpty()) {
+            return;
+        }
+        if (indicator != null) {
+            indicator.checkCanceled();
+        }
+        List<byte[][]> batch = new ArrayList<>(pendingCommands);
+        for (Map.Entry<ByteBuffer, Long> expiration : pendingExpirations.entrySet()) {
+            batch.add(new byte[][]{PEXPIRE, expiration.getKey().array(),
+                    String.valueOf(expiration.getValue()).getBytes(Charsets.UTF_8)});
+        }
+        pendingCommands.clear();
+        pendingExpirations.clear();
+
+        if (commands instanceof Jedis) {
+            send((Jedis) commands, batch);
+        } else if (commands instanceof JedisCluster) {
+            sendToMasters((JedisCluster) commands, batch);
+        }
+        writtenCommands += batch.size();
+        if (indicator != null) {
+            indicator.setText2(String.format("%d commands written, %d/s", writtenCommands, getThroughput()));
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void sendToMasters(JedisCluster cluster, List<byte[][]> batch) {
+        Map<String, List<byte[][]>> commandsByMaster = new LinkedHashMap<>();
+        for (byte[][] command : batch) {
+            for (Map.Entry<Integer, byte[][]> slotCommand : splitBySlot(command).entrySet()) {
+                int slot = slotCommand.getKey();
+                String master = slotMasters[slot];
+                if (master == null) {
+                    throw new JedisException("hash slot " + slot + " is not served by any node");
+                }
+                commandsByMaster.computeIfAbsent(master, node -> new ArrayList<>()).add(slotCommand.getValue());
+            }
+        }
+        Map<String, JedisPool> pools = cluster.getClusterNodes();
+        for (Map.Entry<String, List<byte[][]>> masterCommands : commandsByMaster.entrySet()) {
+            JedisPool pool = pools.get(masterCommands.getKey());
+            if (pool == null) {
+                throw new JedisException("no connection pool for cluster node " + masterCommands.getKey());
+            }
+            try (Jedis connection = pool.getResource()) {
+                send(connection, masterCommands.getValue());
+            }
+        }
+    }
+
+    private static void send(Jedis jedis, List<byte[][]> batch) {
+        ByteArrayOutputStream pipeline = new ByteArrayOutputStream();
+        for (byte[][] command : batch) {
+            RedisExportFormat.writeCommand(pipeline, command);
+        }
+        Client client = jedis.getClient();
+        try {
+            // any command: written as is, the client only reads the replies
+            OutputStream output = client.getSocket().getOutputStream();
+            pipeline.writeTo(output);
+            output.flush();
+        } catch (IOException ex) {
+            client.disconnect();
+            throw new JedisConnectionException(ex);
+        }
+        JedisDataException firstError = null;
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                client.getOne();
+            } catch (JedisDataException ex) {
+                // every reply is still read so that the connection can be reused
+                if (firstError == null) {
+                    firstError = ex;
+                }
+            }
+        }
+        if (firstError != null) {
+            throw firstError;
+        }
+    }
+
+    /**
+     * @return the keys given the default TTL when written by this command
+     */
+    private static List<byte[]> writtenKeys(byte[][] command) {
+        String name = commandName(command);
+        if (command.length > 2 && SINGLE_KEY_WRITES.contains(name)) {
+            return Collections.singletonList(command[1]);
+        }
+        if ("MSET".equals(name)) {
+            List<byte[]> keys = new ArrayList<>(command.length / 2);
+            for (int i = 1; i < command.length; i += 2) {
+                keys.add(command[i]);
+            }
+            return keys;
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the command, or its parts when its keys span several hash slots, by slot
+     */
+    private static Map<Integer, byte[][]> splitBySlot(byte[][] command) {
+        String name = commandName(command);
+        if (command.length < 2) {
+            throw new JedisException(name + " has no key to route it to a cluster node");
+        }
+        int slot = JedisClusterCRC16.getSlot(command[1]);
+        if (TWO_KEY_COMMANDS.contains(name) && command.length > 2 && JedisClusterCRC16.getSlot(command[2]) != slot) {
+            throw new JedisException(name + " keys are in different hash slots");
+        }
+        int argumentsPerKey = KEYS_COMMANDS.contains(name) ? 1 : KEY_VALUE_COMMANDS.contains(name) ? 2 : 0;
+        if (argumentsPerKey == 0) {
+            return Collections.singletonMap(slot, command);
+        }
+        Map<Integer, List<byte[]>> argumentsBySlot = new LinkedHashMap<>();
+        for (int i = 1; i < command.length; i += argumentsPerKey) {
+            List<byte[]> arguments = argumentsBySlot.computeIfAbsent(JedisClusterCRC16.getSlot(command[i]),
+                    keySlot -> new ArrayList<>(Collections.singletonList(command[0])));
+            arguments.addAll(Arrays.asList(command).subList(i, Math.min(i + argumentsPerKey, command.length)));
+        }
+        if (argumentsBySlot.size() == 1) {
+            return Collections.singletonMap(slot, command);
+        }
+        if ("MSETNX".equals(name)) {
+            // split, it would no longer set all the keys or none
+            throw new JedisException(name + " keys are in different hash slots");
+        }
+        Map<Integer, byte[][]> commandsBySlot = new LinkedHashMap<>();
+        for (Map.Entry<Integer, List<byte[]>> slotArguments : argumentsBySlot.entrySet()) {
+            commandsBySlot.put(slotArguments.getKey(), slotArguments.getValue().toArray(new byte[0][]));
+        }
+        return commandsBySlot;
+    }
+
+    private static String commandName(byte[][] command) {
+        return new String(command[0], Charsets.UTF_8).toUpperCase(Locale.ROOT);
+    }
+}
@@ -16,11 +16,10 @@
 
 package org.codinjutsu.tools.nosql.redis.logic;
 
-import com.google.common.collect.Maps;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
-import com.intellij.util.ArrayUtil;
 import kotlin.text.Charsets;
 import org.apache.commons.lang.StringUtils;
 import org.codinjutsu.tools.nosql.DatabaseVendor;
@@ -30,11 +29,14 @@ import org.codinjutsu.tools.nosql.commons.model.AuthenticationSettings;
 import org.codinjutsu.tools.nosql.commons.model.Database;
 import org.codinjutsu.tools.nosql.commons.model.DatabaseServer;
 import org.codinjutsu.tools.nosql.redis.model.*;
+import org.jetbrains.annotations.Nullable;
 import redis.clients.jedis.*;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.JedisClusterCRC16;
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class RedisClient implements DatabaseClient {
 
@@ -45,26 +47,39 @@ public class RedisClient implements DatabaseClient {
 
     private static Logger LOG = Logger.getInstance(RedisClient.class);
 
+    private final RedisConnectionManager connectionManager;
+
+    public RedisClient() {
+        this.connectionManager = new RedisConnectionManager();
+    }
+
+    public RedisClient(Project project) {
+        this.connectionManager = RedisConnectionManager.getInstance(project);
+    }
 
     @Override
     public void connect(ServerConfiguration serverConfiguration) {
-        if (createJedis(serverConfiguration) instanceof Jedis) {
-            Jedis jedis = (Jedis) createJedis(serverConfiguration);
-            jedis.connect();
-            String userDatabase = serverConfiguration.getUserDatabase();
-            int index = 0;
-            if (StringUtils.isNotEmpty(userDatabase)) {
-                index = Integer.parseInt(userDatabase);
+        JedisCommands commands = createJedis(serverConfiguration);
+        if (commands instanceof Jedis) {
+            try (Jedis jedis = (Jedis) commands) {
+                String userDatabase = serverConfiguration.getUserDatabase();
+                int index = 0;
+                if (StringUtils.isNotEmpty(userDatabase)) {
+                    index = Integer.parseInt(userDatabase);
+                }
+                jedis.select(index);
             }
-            jedis.select(index);
         }
     }
 
     @Override
     public void loadServer(DatabaseServer databaseServer) {
-        if (createJedis(databaseServer.getConfiguration()) instanceof Jedis) {
-            Jedis jedis = (Jedis) createJedis(databaseServer.getConfiguration());
-            List<String> databaseNumberTuple = jedis.configGet("databases");
+        JedisCommands commands = createJedis(databaseServer.getConfiguration());
+        if (commands instanceof Jedis) {
+            List<String> databaseNumberTuple;
+            try (Jedis jedis = (Jedis) commands) {
+                databaseNumberTuple = jedis.configGet("databases");
+            }
             List<Database> databases = new LinkedList<>();
             String userDatabase = databaseServer.getConfiguration().getUserDatabase();
             if (StringUtils.isNotEmpty(userDatabase)) {
@@ -116,142 +131,286 @@ public class RedisClient implements DatabaseClient {
 
 
     public RedisResult loadRecords(ServerConfiguration serverConfiguration, RedisDatabase database, RedisQuery query, RedisQueryExecutor executor) {
+        return loadRecords(serverConfiguration, database, query, executor, RedisResultListener.NONE, null);
+    }
+
+    public RedisResult loadRecords(ServerConfiguration serverConfiguration, RedisDatabase database, RedisQuery query, RedisQueryExecutor executor,
+                                   RedisResultListener listener, @Nullable ProgressIndicator indicator) {
         JedisCommands commands = createJedis(serverConfiguration);
         byte[] filterCondition = query.getFilter().getBytes(Charsets.UTF_8);
+        RedisLoadTimings timings = new RedisLoadTimings();
+        RedisKeyScanner scanner = new RedisKeyScanner(query.getScanCount(), query.getMaxKeys(), indicator, timings);
+        RedisBatchLoader loader = query.isValueSearch() ? RedisValueSearch.forQuery(query, commands instanceof JedisCluster, timings) : RedisPipelinedLoader.forQuery(query, timings);
         if (commands instanceof Jedis) {
-            Jedis jedis = (Jedis) commands;
-            jedis.connect();
-            jedis.select(Integer.parseInt(database.getName()));
-            executor.handleRedisQuery(jedis);
-            return keySearch(jedis, filterCondition);
+            try (Jedis jedis = (Jedis) commands) {
+                jedis.select(Integer.parseInt(database.getName()));
+                executor.handleRedisQuery(jedis);
+                return keySearch(jedis, filterCondition, scanner, loader, listener);
+            }
         }
         if (commands instanceof JedisCluster) {
             JedisCluster cluster = (JedisCluster) commands;
             executor.handleRedisQuery(commands);
-            return keySearch(cluster, filterCondition);
+            return keySearch(cluster, filterCondition, scanner, loader, listener);
         }
         return null;
     }
 
-    private RedisResult keySearch(JedisCommands commands, byte[] filterCondition) {
-
+    private RedisResult keySearch(JedisCommands commands, byte[] filterCondition, RedisKeyScanner scanner, RedisBatchLoader loader,
+                                  RedisResultListener listener) {
+        RedisResult result = new RedisResult();
         if (commands instanceof Jedis) {
             Jedis jedis = (Jedis) commands;
-            return sortKeys(jedis, jedis.keys(filterCondition));
+            scanner.scan(jedis, filterCondition, keys -> appendBatch(result, loader.load(jedis, keys), listener));
+        } else if (commands instanceof JedisCluster) {
+            Map<String, String> nodeErrors = scanner.scan((JedisCluster) commands, filterCondition,
+                    (connection, keys) -> appendBatch(result, loader.load(connection, keys), listener));
+            result.setNodeErrors(nodeErrors);
+        } else {
+            return null;
         }
-        if (commands instanceof JedisCluster) {
-            JedisCluster cluster = (JedisCluster) commands;
-            TreeSet<RedisResult> resultTreeSet = new TreeSet<>();
-            Map<String, JedisPool> clusterNodes = cluster.getClusterNodes();
-            clusterNodes.keySet().stream().map(clusterNodes::get).map(JedisPool::getResource).forEachOrdered(conn -> {
-                try {
-                    resultTreeSet.add(sortKeys(conn, conn.keys(filterCondition)));
-                } catch (Exception e) {
-                } finally {
-                    conn.close();
-                }
-            });
-
-            RedisResult result = new RedisResult();
-            final List<RedisRecord> redisRecords = new LinkedList<>();
-            resultTreeSet.forEach(x -> redisRecords.addAll(x.getResults()));
-            redisRecords.forEach(redisRecord -> {
-                RedisKeyType keyType = redisRecord.getKeyType();
-                String key = redisRecord.getKey();
-                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
-                Object value = redisRecord.getValue();
-                if (RedisKeyType.LIST.equals(keyType)) {
-                    result.addList(key, (List) value, keyBytes);
-                } else if (RedisKeyType.SET.equals(keyType)) {
-                    result.addSet(key, (Set) value, keyBytes);
-                } else if (RedisKeyType.HASH.equals(keyType)) {
-                    result.addHash(key, (Map) value, keyBytes);
-                } else if (RedisKeyType.ZSET.equals(keyType)) {
-                    result.addSortedSet(key, (Set<Tuple>) value, keyBytes);
-                } else if (RedisKeyType.STRING.equals(keyType)) {
-                    result.addString(key, (String) value, keyBytes);
-                } else {
-                    //ignore this.
-                    throw new RuntimeException("unSupport type:" + keyType);
-                }
+        result.setKeyLimitReached(scanner.isLimitReached());
+        if (loader instanceof RedisValueSearch) {
+            RedisValueSearch search = (RedisValueSearch) loader;
+            result.setSkippedKeys(search.getSkippedKeyCount(), search.getSkippedKeys());
+        }
+        result.setTimings(loader.getTimings());
+        LOG.info("Redis query loaded: " + loader.getTimings());
+        return result;
+    }
 
-            });
-            return result;
+    /**
+     * Loads the value of a single key, used by the browse mode when a key is expanded.
+     *
+     * @return the loaded record or null if the key does not exist anymore
+     */
+    @Nullable
+    public RedisRecord loadValue(ServerConfiguration serverConfiguration, RedisDatabase database, byte[] key) {
+        JedisCommands commands = createJedis(serverConfiguration);
+        RedisPipelinedLoader loader = RedisPipelinedLoader.forSingleKey(new RedisLoadTimings());
+        RedisResult result;
+        if (commands instanceof Jedis) {
+            try (Jedis jedis = (Jedis) commands) {
+                jedis.select(Integer.parseInt(database.getName()));
+                result = loader.load(jedis, Collections.singletonList(key));
+            }
+        } else if (commands instanceof JedisCluster) {
+            result = loader.load((JedisCluster) commands, key);
+        } else {
+            return null;
         }
+        return result.size() == 0 ? null : result.getRecord(0);
+    }
 
-        return null;
+    /**
+     * Loads the page of a collection following the given cursor.
+     */
+    public RedisValuePage loadValuePage(ServerConfiguration serverConfiguration, RedisDatabase database, byte[] key, RedisKeyType keyType,
+                                        String cursor, int pageSize) {
+        JedisCommands commands = createJedis(serverConfiguration);
+        RedisValuePager pager = new RedisValuePager(pageSize);
+        if (commands instanceof Jedis) {
+            try (Jedis jedis = (Jedis) commands) {
+                jedis.select(Integer.parseInt(database.getName()));
+                return pager.loadPage(jedis, key, keyType, cursor);
+            }
+        } else if (commands instanceof JedisCluster) {
+            return pager.loadPage((JedisCluster) commands, key, keyType, cursor);
+        }
+        throw new IllegalStateException("should not happen");
     }
 
-    private RedisResult sortKeys(Jedis jedis, Set<byte[]> keys) {
-        RedisResult redisResult = new RedisResult();
-        for (byte[] key : keys) {
-            //may be null pointer.
-            String type = jedis.type(key);
-            RedisKeyType keyType = RedisKeyType.getKeyType(type);
-            if (RedisKeyType.LIST.equals(keyType)) {
-                List<byte[]> values = jedis.lrange(key, 0, -1);
-                List<String> collect = values.stream().map(this::convertByteToString).collect(Collectors.toList());
-                redisResult.addList(convertByteToString(key), collect, key);
-            } else if (RedisKeyType.SET.equals(keyType)) {
-                Set<byte[]> values = jedis.smembers(key);
-                Set<String> collect = values.stream().map(this::convertByteToString).collect(Collectors.toSet());
-                redisResult.addSet(convertByteToString(key), collect, key);
-            } else if (RedisKeyType.HASH.equals(keyType)) {
-                Map<byte[], byte[]> values = jedis.hgetAll(key);
-                Map<String, String> myValues = Maps.newHashMap();
-                for (byte[] bytes : values.keySet()) {
-                    myValues.put(convertByteToString(bytes), convertByteToString(values.get(bytes)));
-                }
-                redisResult.addHash(convertByteToString(key), myValues, key);
-            } else if (RedisKeyType.ZSET.equals(keyType)) {
-                Set<Tuple> valuesWithScores = jedis.zrangeByScoreWithScores(key, "-inf".getBytes(Charsets.UTF_8), "+inf".getBytes(Charsets.UTF_8));
-                redisResult.addSortedSet(convertByteToString(key), valuesWithScores, key);
-            } else if (RedisKeyType.STRING.equals(keyType)) {
-                byte[] value = jedis.get(key);
-                redisResult.addString(convertByteToString(key), convertByteToString(value), key);
-            } else {
-                //ignore this.
-                throw new RuntimeException("unSupport type:" + type);
+    /**
+     * Fetches the TTL, length, encoding and memory usage of a batch of keys in one pipelined round trip per node.
+     */
+    public List<RedisKeyMetadata> loadMetadata(ServerConfiguration serverConfiguration, RedisDatabase database, List<byte[]> keys,
+                                               List<RedisKeyType> keyTypes) {
+        JedisCommands commands = createJedis(serverConfiguration);
+        RedisMetadataLoader loader = new RedisMetadataLoader();
+        if (commands instanceof Jedis) {
+            try (Jedis jedis = (Jedis) commands) {
+                jedis.select(Integer.parseInt(database.getName()));
+                return loader.load(jedis, keys, keyTypes);
             }
+        } else if (commands instanceof JedisCluster) {
+            return loader.load((JedisCluster) commands, keys, keyTypes);
         }
-        return redisResult;
+        throw new IllegalStateException("should not happen");
     }
 
-    private String convertByteToString(byte[] b) {
-        if (b == null) {
-            return null;
+    /**
+     * Streams the keys of a database matching a glob pattern into a file.
+     *
+     * @return the number of exported keys
+     */
+    public long exportKeys(ServerConfiguration serverConfiguration, RedisDatabase database, String pattern, RedisKeyExporter exporter,
+                           Path file) throws IOException {
+        JedisCommands commands = createJedis(serverConfiguration);
+        byte[] filterCondition = pattern.getBytes(Charsets.UTF_8);
+        if (commands instanceof Jedis) {
+            try (Jedis jedis = (Jedis) commands) {
+                jedis.select(Integer.parseInt(database.getName()));
+                return exporter.export(jedis, filterCondition, file);
+            }
         }
-        return new String(b, Charsets.UTF_8);
+        return exporter.export(commands, filterCondition, file);
     }
 
-    private JedisCommands createJedis(ServerConfiguration serverConfiguration) {
-        String[] servers = serverConfiguration.getServerUrl().split(",");
-        if (!ArrayUtil.isEmpty(servers)) {
-            if (servers.length > 1) {
-                Set<HostAndPort> hostAndPortSet = new HashSet<>();
-                for (String hostAndPort : servers) {
-                    String[] hostAndPortArry = hostAndPort.split(":");
-                    HostAndPort andPort = new HostAndPort(hostAndPortArry[0], Integer.valueOf(hostAndPortArry[1]));
-                    hostAndPortSet.add(andPort);
-                }
-                return new JedisCluster(hostAndPortSet);
+    /**
+     * Reports the biggest keys and the memory by key prefix of the keys of a database matching a glob pattern.
+     */
+    public RedisKeyAnalysis analyzeKeys(ServerConfiguration serverConfiguration, RedisDatabase database, String pattern,
+                                        RedisKeyAnalyzer analyzer) {
+        JedisCommands commands = createJedis(serverConfiguration);
+        byte[] filterCondition = pattern.getBytes(Charsets.UTF_8);
+        if (commands instanceof Jedis) {
+            try (Jedis jedis = (Jedis) commands) {
+                jedis.select(Integer.parseInt(database.getName()));
+                return analyzer.analyze(jedis, filterCondition);
+            }
+        }
+        return analyzer.analyze(commands, filterCondition);
+    }
+
+    /**
+     * Runs one hot-key sampling round over the databases of a server.
+     */
+    public void sampleHotKeys(ServerConfiguration serverConfiguration, RedisHotKeyDetector detector) {
+        JedisCommands commands = createJedis(serverConfiguration);
+        if (commands instanceof Jedis) {
+            try (Jedis jedis = (Jedis) commands) {
+                detector.sample(jedis);
+            }
+            return;
+        }
+        detector.sample(commands);
+    }
+
+    /**
+     * Subscribes to the keyspace notifications of the keys of a database matching a glob pattern, on dedicated connections.
+     *
+     * @return the subscriber, not started yet
+     */
+    public RedisKeyspaceSubscriber subscribeToKeyspace(ServerConfiguration serverConfiguration, RedisDatabase database, String pattern,
+                                                       RedisKeyspaceSubscriber.KeyEventListener listener) {
+        return new RedisKeyspaceSubscriber(connectionManager.openDedicatedConnections(serverConfiguration),
+                Integer.parseInt(database.getName()), pattern.getBytes(Charsets.UTF_8), listener);
+    }
+
+    /**
+     * @return the TYPE reply of each key, "none" for a missing key
+     */
+    public List<String> loadKeyTypes(ServerConfiguration serverConfiguration, RedisDatabase database, List<byte[]> keys) {
+        JedisCommands commands = createJedis(serverConfiguration);
+        if (commands instanceof Jedis) {
+            try (Jedis jedis = (Jedis) commands) {
+                jedis.select(Integer.parseInt(database.getName()));
+                return loadKeyTypes(jedis, keys);
+            }
+        }
+        if (!(commands instanceof JedisCluster)) {
+            return new ArrayList<>();
+        }
+        JedisCluster cluster = (JedisCluster) commands;
+        String[] slotMasters = new RedisClusterNodes(cluster).slotMasters();
+        Map<String, List<Integer>> keyIndicesByMaster = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            int slot = JedisClusterCRC16.getSlot(keys.get(i));
+            String master = slotMasters[slot];
+            if (master == null) {
+                throw new JedisException("hash slot " + slot + " is not served by any node");
+            }
+            keyIndicesByMaster.computeIfAbsent(master, node -> new ArrayList<>()).add(i);
+        }
+
+        String[] types = new String[keys.size()];
+        Map<String, JedisPool> pools = cluster.getClusterNodes();
+        for (Map.Entry<String, List<Integer>> masterKeys : keyIndicesByMaster.entrySet()) {
+            JedisPool pool = pools.get(masterKeys.getKey());
+            if (pool == null) {
+                throw new JedisException("no connection pool for cluster node " + masterKeys.getKey());
+            }
+            List<byte[]> nodeKeys = new ArrayList<>(masterKeys.getValue().size());
+            for (int index : masterKeys.getValue()) {
+                nodeKeys.add(keys.get(index));
             }
-            if (servers.length == 1) {
-                String redisUri = "redis://";
-                String password = serverConfiguration.getAuthenticationSettings().getPassword();
-//    In this way, when special characters are input(example: characters '[' or ']'), special characters will be abnormal.
-
-//                if (StringUtils.isNotEmpty(password)) {
-//                    redisUri += ":" + password + "@";
-//                }
-                redisUri += serverConfiguration.getServerUrl();
-                Jedis jedis = new Jedis(redisUri);
-                if (StringUtils.isNotEmpty(password)) {
-                    jedis.auth(password);
+            List<String> nodeTypes;
+            try (Jedis connection = pool.getResource()) {
+                nodeTypes = loadKeyTypes(connection, nodeKeys);
+            }
+            for (int i = 0; i < nodeTypes.size(); i++) {
+                types[masterKeys.getValue().get(i)] = nodeTypes.get(i);
+            }
+        }
+        return Arrays.asList(types);
+    }
+
+    private static List<String> loadKeyTypes(Jedis jedis, List<byte[]> keys) {
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<String>> responses = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            responses.add(pipeline.type(key));
+        }
+        pipeline.sync();
+        List<String> types = new ArrayList<>(keys.size());
+        for (Response<String> response : responses) {
+            types.add(response.get());
+        }
+        return types;
+    }
+
+    /**
+     * @return a console session on a connection of its own to the server, opened on its first command
+     */
+    public RedisConsoleSession openConsoleSession(ServerConfiguration serverConfiguration, RedisDatabase database) {
+        return new RedisConsoleSession(() -> connectionManager.openDedicatedConnection(serverConfiguration),
+                Integer.parseInt(database.getName()));
+    }
+
+    /**
+     * Copies the keys matching a glob pattern from a database to another one, possibly on another server.
+     *
+     * @return the number of copied keys
+     */
+    public long copyKeys(ServerConfiguration sourceConfiguration, RedisDatabase sourceDatabase, String pattern,
+                         ServerConfiguration targetConfiguration, @Nullable RedisDatabase targetDatabase, RedisKeyMigrator migrator) {
+        JedisCommands source = createJedis(sourceConfiguration);
+        try {
+            if (source instanceof Jedis) {
+                ((Jedis) source).select(Integer.parseInt(sourceDatabase.getName()));
+            }
+            JedisCommands target = createJedis(targetConfiguration);
+            try {
+                if (target instanceof Jedis && targetDatabase != null) {
+                    ((Jedis) target).select(Integer.parseInt(targetDatabase.getName()));
+                }
+                return migrator.copy(source, target, pattern.getBytes(Charsets.UTF_8));
+            } finally {
+                if (target instanceof Jedis) {
+                    ((Jedis) target).close();
                 }
-                return jedis;
+            }
+        } finally {
+            if (source instanceof Jedis) {
+                ((Jedis) source).close();
             }
         }
-        throw new RuntimeException("Service configuration error:");
+    }
+
+    private static void appendBatch(RedisResult result, RedisResult batch, RedisResultListener listener) {
+        // cluster nodes are scanned concurrently: keep the listener calls serialized
+        synchronized (result) {
+            if (!listener.keepsRecords()) {
+                result.addAll(batch);
+            }
+            listener.batchLoaded(batch);
+        }
+    }
+
+    /**
+     * @return a pooled connection that must be closed once used when it is a {@link Jedis}, or the shared cluster client
+     */
+    private JedisCommands createJedis(ServerConfiguration serverConfiguration) {
+        return connectionManager.getConnection(serverConfiguration);
     }
 }
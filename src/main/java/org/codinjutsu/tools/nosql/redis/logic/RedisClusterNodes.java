@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.SafeEncoder;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs a task against every master of a cluster, in parallel.
+ * <p>
+ * Replicas are skipped: they hold a copy of their master's keys, so visiting them only produces duplicates.
+ */
+public class RedisClusterNodes {
+
+    public static final int MAX_PARALLEL_NODES = 8;
+
+    private static final Logger LOG = Logger.getInstance(RedisClusterNodes.class);
+
+    public interface NodeTask {
+        void run(String node, Jedis connection);
+    }
+
+    private final JedisCluster cluster;
+    private final int parallelism;
+
+    public RedisClusterNodes(JedisCluster cluster) {
+        this(cluster, MAX_PARALLEL_NODES);
+    }
+
+    public RedisClusterNodes(JedisCluster cluster, int parallelism) {
+        this.cluster = cluster;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Runs the task on each master with its own connection and waits for all of them.
+     * A failing node does not stop the others.
+     *
+     * @return the error message of each node that failed, by "host:port"
+     */
+    public Map<String, String> forEachMaster(NodeTask task) {
+        Map<String, JedisPool> nodes = cluster.getClusterNodes();
+        List<String> masters = findMasters(nodes);
+        Map<String, String> errors = new ConcurrentSkipListMap<>();
+        if (masters.isEmpty()) {
+            return errors;
+        }
+
+        // bounded view of the shared application pool: no thread is created per call
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Redis cluster nodes",
+                Math.min(parallelism, masters.size()));
+        try {
+            Map<String, Future<?>> futures = new LinkedHashMap<>();
+            for (String master : masters) {
+                JedisPool pool = nodes.get(master);
+                if (pool == null) {
+                    errors.put(master, "no connection pool for this node");
+                    continue;
+                }
+                futures.put(master, executor.submit(() -> {
+                    try (Jedis connection = pool.getResource()) {
+                        task.run(master, connection);
+                    }
+                    return null;
+                }));
+            }
+            for (Map.Entry<String, Future<?>> future : futures.entrySet()) {
+                await(future.getKey(), future.getValue(), futures.values(), errors);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return errors;
+    }
+
+    /**
+     * Runs the task on the master owning a hash slot only, on the calling thread.
+     *
+     * @return the error message of that master if it failed, by "host:port"
+     */
+    public Map<String, String> onSlotMaster(int slot, NodeTask task) {
+        Map<String, String> errors = new ConcurrentSkipListMap<>();
+        String master = slotMasters()[slot];
+        if (master == null) {
+            errors.put("slot " + slot, "hash slot is not served by any node");
+            return errors;
+        }
+        JedisPool pool = cluster.getClusterNodes().get(master);
+        if (pool == null) {
+            errors.put(master, "no connection pool for this node");
+            return errors;
+        }
+        try (Jedis connection = pool.getResource()) {
+            task.run(master, connection);
+        } catch (JedisException e) {
+            LOG.warn("Unable to query cluster node " + master, e);
+            errors.put(master, String.valueOf(e.getMessage()));
+        }
+        return errors;
+    }
+
+    private static void await(String node, Future<?> future, Collection<Future<?>> all, Map<String, String> errors) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelAll(all);
+            throw new RedisKeyScanner.ScanCancelledException();
+        } catch (CancellationException e) {
+            errors.put(node, "cancelled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JedisException) {
+                LOG.warn("Unable to query cluster node " + node, cause);
+                errors.put(node, String.valueOf(cause.getMessage()));
+                return;
+            }
+            // cancellation or a programming error: stop the other nodes and let it surface
+            cancelAll(all);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static void cancelAll(Collection<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * @return the master owning each hash slot, by slot number; null for an unassigned slot
+     */
+    public String[] slotMasters() {
+        return slotMastersOf(clusterSlots(cluster.getClusterNodes()));
+    }
+
+    /**
+     * Keeps the first address of each slot range, which is its master.
+     */
+    static List<String> findMasters(Map<String, JedisPool> nodes) {
+        return mastersOf(clusterSlots(nodes));
+    }
+
+    /**
+     * @return the CLUSTER SLOTS reply of the first reachable node
+     */
+    private static List<Object> clusterSlots(Map<String, JedisPool> nodes) {
+        JedisException lastError = null;
+        for (Map.Entry<String, JedisPool> node : nodes.entrySet()) {
+            try (Jedis connection = node.getValue().getResource()) {
+                return connection.clusterSlots();
+            } catch (JedisException e) {
+                lastError = e;
+            }
+        }
+        if (lastError != null) {
+            throw lastError;
+        }
+        return Collections.emptyList();
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<String> mastersOf(List<Object> slots) {
+        Set<String> masters = new LinkedHashSet<>();
+        for (Object slotRange : slots) {
+            masters.add(masterOf((List<Object>) slotRange));
+        }
+        return new ArrayList<>(masters);
+    }
+
+    @SuppressWarnings("unchecked")
+    static String[] slotMastersOf(List<Object> slots) {
+        String[] slotMasters = new String[JedisCluster.HASHSLOTS];
+        for (Object slotRange : slots) {
+            List<Object> range = (List<Object>) slotRange;
+            String master = masterOf(range);
+            int end = ((Long) range.get(1)).intValue();
+            for (int slot = ((Long) range.get(0)).intValue(); slot <= end; slot++) {
+                slotMasters[slot] = master;
+            }
+        }
+        return slotMasters;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String masterOf(List<Object> range) {
+        // start, end, master, replica...
+        List<Object> master = (List<Object>) range.get(2);
+        return SafeEncoder.encode((byte[]) master.get(0)) + ":" + master.get(1);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import kotlin.text.Charsets;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a command line into arguments the way redis-cli does: arguments are separated by spaces, double quoted
+ * arguments understand the escapes {@code \n \r \t \b \a \" \\ \xHH}, single quoted ones only {@code \'}.
+ */
+public class RedisCommandLineParser {
+
+    /**
+     * @return the arguments of the line, empty for a blank line or a comment starting with '#'
+     * @throws IllegalArgumentException for unbalanced quotes
+     */
+    public static List<byte[]> parse(String line) {
+        List<byte[]> arguments = new ArrayList<>();
+        int length = line.length();
+        int i = 0;
+        while (true) {
+            while (i < length && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            if (i == length || (arguments.isEmpty() && line.charAt(i) == '#')) {
+                return arguments;
+            }
+            ByteArrayOutputStream argument = new ByteArrayOutputStream();
+            char quote = 0;
+            while (i < length) {
+                char c = line.charAt(i);
+                if (quote == '"') {
+                    if (c == '\\' && i + 1 < length) {
+                        i = unescape(line, i + 1, argument);
+                        continue;
+                    }
+                    if (c == '"') {
+                        quote = 0;
+                        i = closingQuote(line, i);
+                        break;
+                    }
+                } else if (quote == '\'') {
+                    if (c == '\\' && i + 1 < length && line.charAt(i + 1) == '\'') {
+                        argument.write('\'');
+                        i += 2;
+                        continue;
+                    }
+                    if (c == '\'') {
+                        quote = 0;
+                        i = closingQuote(line, i);
+                        break;
+                    }
+                } else if (Character.isWhitespace(c)) {
+                    break;
+                } else if ((c == '"' || c == '\'') && argument.size() == 0) {
+                    quote = c;
+                    i++;
+                    continue;
+                }
+                byte[] bytes = String.valueOf(c).getBytes(Charsets.UTF_8);
+                if (Character.isHighSurrogate(c) && i + 1 < length) {
+                    bytes = line.substring(i, i + 2).getBytes(Charsets.UTF_8);
+                    i++;
+                }
+                argument.write(bytes, 0, bytes.length);
+                i++;
+            }
+            if (quote != 0) {
+                throw new IllegalArgumentException("unbalanced quotes in: " + line);
+            }
+            arguments.add(argument.toByteArray());
+        }
+    }
+
+    private static int closingQuote(String line, int quoteIndex) {
+        int next = quoteIndex + 1;
+        if (next < line.length() && !Character.isWhitespace(line.charAt(next))) {
+            // as redis-cli, "foo"bar is an error rather than two arguments
+            throw new IllegalArgumentException("closing quote must be followed by a space in: " + line);
+        }
+        return next;
+    }
+
+    /**
+     * @return the index following the escape sequence starting at {@code index}
+     */
+    private static int unescape(String line, int index, ByteArrayOutputStream argument) {
+        char c = line.charAt(index);
+        switch (c) {
+            case 'n':
+                argument.write('\n');
+                break;
+            case 'r':
+                argument.write('\r');
+                break;
+            case 't':
+                argument.write('\t');
+                break;
+            case 'b':
+                argument.write('\b');
+                break;
+            case 'a':
+                argument.write(7);
+                break;
+            case 'x':
+                if (index + 2 < line.length() && isHexDigit(line.charAt(index + 1)) && isHexDigit(line.charAt(index + 2))) {
+                    argument.write(Integer.parseInt(line.substring(index + 1, index + 3), 16));
+                    return index + 3;
+                }
+                argument.write('x');
+                break;
+            default:
+                byte[] bytes = String.valueOf(c).getBytes(Charsets.UTF_8);
+                argument.write(bytes, 0, bytes.length);
+        }
+        return index + 1;
+    }
+
+    private static boolean isHexDigit(char c) {
+        return Character.digit(c, 16) >= 0;
+    }
+}
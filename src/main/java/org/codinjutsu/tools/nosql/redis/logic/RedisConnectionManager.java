@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import org.apache.commons.lang.StringUtils;
+import org.codinjutsu.tools.nosql.NoSqlConfiguration;
+import org.codinjutsu.tools.nosql.ServerConfiguration;
+import org.codinjutsu.tools.nosql.redis.model.RedisPoolSettings;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.*;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one connection pool per standalone server and one {@link JedisCluster} per cluster,
+ * so that queries reuse warm, authenticated connections. Everything is closed with the project.
+ * <p>
+ * The connections of a server are closed when its configuration is edited or removed, and all of them are
+ * recreated on their next use once the pool settings of the project have changed.
+ * <p>
+ * Connections borrowed with {@link #getConnection(ServerConfiguration)} must be closed by the caller when they are a {@link Jedis},
+ * which gives them back to the pool. Clusters are shared and must never be closed by the caller.
+ */
+public class RedisConnectionManager implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(RedisConnectionManager.class);
+
+    public static RedisConnectionManager getInstance(Project project) {
+        return ServiceManager.getService(project, RedisConnectionManager.class);
+    }
+
+    private final Map<String, Closeable> clientsByServer = new ConcurrentHashMap<>();
+    private final Project project;
+    private volatile boolean disposed;
+    // settings the current clients were created with
+    private RedisPoolSettings appliedSettings;
+
+    public RedisConnectionManager() {
+        this(null);
+    }
+
+    public RedisConnectionManager(@Nullable Project project) {
+        this.project = project;
+    }
+
+    public JedisCommands getConnection(ServerConfiguration serverConfiguration) {
+        Closeable client = getClient(serverConfiguration);
+        if (client instanceof JedisPool) {
+            return ((JedisPool) client).getResource();
+        }
+        return (JedisCluster) client;
+    }
+
+    /**
+     * Opens connections apart from the pools, for commands holding their connection such as PSUBSCRIBE: one to the
+     * server, or one to every master of a cluster. They have no read timeout and must be closed by the caller.
+     */
+    public List<Jedis> openDedicatedConnections(ServerConfiguration serverConfiguration) {
+        List<Jedis> connections = new ArrayList<>();
+        try {
+            for (HostAndPort node : dedicatedNodes(serverConfiguration)) {
+                connections.add(openDedicatedConnection(node, serverConfiguration));
+            }
+        } catch (RuntimeException ex) {
+            for (Jedis connection : connections) {
+                connection.close();
+            }
+            throw ex;
+        }
+        return connections;
+    }
+
+    /**
+     * Opens a single connection apart from the pools: to the server, or to the first reachable master of a cluster.
+     * It has no read timeout and must be closed by the caller.
+     */
+    public Jedis openDedicatedConnection(ServerConfiguration serverConfiguration) {
+        RuntimeException failure = null;
+        for (HostAndPort node : dedicatedNodes(serverConfiguration)) {
+            try {
+                return openDedicatedConnection(node, serverConfiguration);
+            } catch (RuntimeException ex) {
+                failure = ex;
+            }
+        }
+        throw failure != null ? failure : new JedisException("no master to connect to");
+    }
+
+    private Set<HostAndPort> dedicatedNodes(ServerConfiguration serverConfiguration) {
+        Set<HostAndPort> nodes = new LinkedHashSet<>();
+        JedisCommands commands = getConnection(serverConfiguration);
+        if (commands instanceof JedisCluster) {
+            for (String master : new RedisClusterNodes((JedisCluster) commands).slotMasters()) {
+                if (master != null) {
+                    nodes.add(parseHostAndPort(master));
+                }
+            }
+        } else {
+            try (Jedis jedis = (Jedis) commands) {
+                nodes.add(new HostAndPort(jedis.getClient().getHost(), jedis.getClient().getPort()));
+            }
+        }
+        return nodes;
+    }
+
+    private Jedis openDedicatedConnection(HostAndPort node, ServerConfiguration serverConfiguration) {
+        String password = StringUtils.defaultIfEmpty(serverConfiguration.getAuthenticationSettings().getPassword(), null);
+        Jedis connection = new Jedis(node.getHost(), node.getPort(), poolSettings().getConnectTimeoutMillis(), 0);
+        try {
+            if (password != null) {
+                connection.auth(password);
+            } else {
+                connection.connect();
+            }
+        } catch (RuntimeException ex) {
+            connection.close();
+            throw ex;
+        }
+        return connection;
+    }
+
+    private Closeable getClient(ServerConfiguration serverConfiguration) {
+        if (disposed) {
+            throw new IllegalStateException("Redis connections are already closed");
+        }
+        releaseAllIfSettingsChanged();
+        return clientsByServer.computeIfAbsent(connectionKey(serverConfiguration), key -> createClient(serverConfiguration));
+    }
+
+    private synchronized void releaseAllIfSettingsChanged() {
+        RedisPoolSettings settings = poolSettings();
+        if (settings.equals(appliedSettings)) {
+            return;
+        }
+        if (appliedSettings != null) {
+            releaseAll();
+        }
+        appliedSettings = settings.clone();
+    }
+
+    private RedisPoolSettings poolSettings() {
+        return project == null ? new RedisPoolSettings() : NoSqlConfiguration.getInstance(project).getRedisPoolSettings();
+    }
+
+    /**
+     * Closes the connections of a server after its configuration was edited or removed. Connections still borrowed
+     * are closed when they are given back.
+     */
+    public void release(ServerConfiguration serverConfiguration) {
+        Closeable client = clientsByServer.remove(connectionKey(serverConfiguration));
+        if (client != null) {
+            closeQuietly(client);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        releaseAll();
+    }
+
+    private void releaseAll() {
+        for (String key : new HashSet<>(clientsByServer.keySet())) {
+            Closeable client = clientsByServer.remove(key);
+            if (client != null) {
+                closeQuietly(client);
+            }
+        }
+    }
+
+    private Closeable createClient(ServerConfiguration serverConfiguration) {
+        String[] servers = serverConfiguration.getServerUrl().split(",");
+        if (servers.length == 0 || StringUtils.isBlank(servers[0])) {
+            throw new RuntimeException("Service configuration error:");
+        }
+        RedisPoolSettings settings = poolSettings();
+        String password = StringUtils.defaultIfEmpty(serverConfiguration.getAuthenticationSettings().getPassword(), null);
+        if (servers.length > 1) {
+            Set<HostAndPort> hostAndPortSet = new HashSet<>();
+            for (String server : servers) {
+                hostAndPortSet.add(parseHostAndPort(server));
+            }
+            return new JedisCluster(hostAndPortSet, settings.getConnectTimeoutMillis(), settings.getTimeoutMillis(), JedisCluster.DEFAULT_MAX_REDIRECTIONS,
+                    password, settings.toPoolConfig());
+        }
+        HostAndPort hostAndPort = parseHostAndPort(servers[0]);
+        // the password is given apart from the url so that special characters such as '[' or ']' are not mangled
+        return new JedisPool(settings.toPoolConfig(), hostAndPort.getHost(), hostAndPort.getPort(), settings.getConnectTimeoutMillis(),
+                settings.getTimeoutMillis(), password, Protocol.DEFAULT_DATABASE, null);
+    }
+
+    static HostAndPort parseHostAndPort(String server) {
+        String[] hostAndPort = server.trim().split(":");
+        int port = hostAndPort.length > 1 ? Integer.parseInt(hostAndPort[1]) : Protocol.DEFAULT_PORT;
+        return new HostAndPort(hostAndPort[0], port);
+    }
+
+    private static String connectionKey(ServerConfiguration serverConfiguration) {
+        return serverConfiguration.getServerUrl() + '\u0000' + StringUtils.defaultString(serverConfiguration.getAuthenticationSettings().getPassword());
+    }
+
+    private static void closeQuietly(Closeable client) {
+        try {
+            client.close();
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Unable to close Redis connections", e);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import kotlin.text.Charsets;
+import redis.clients.jedis.Jedis;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Console session speaking RESP on its own connection: the lines typed at once are sent as one pipeline, then the
+ * replies are read one by one and formatted as redis-cli does while they are parsed, so that a large reply shows up
+ * piece by piece instead of once fully in memory.
+ * <p>
+ * The connection is opened on the first command, authenticated and on the database of the console. Commands
+ * switching the connection to a push mode are refused, the console reading exactly one reply per command.
+ */
+public class RedisConsoleSession implements Closeable {
+
+    static final int OUTPUT_CHUNK_SIZE = 8 * 1024;
+
+    private static final List<String> UNSUPPORTED_COMMANDS = Arrays.asList("SUBSCRIBE", "PSUBSCRIBE", "SSUBSCRIBE", "MONITOR",
+            "SYNC", "PSYNC");
+
+    public interface Output {
+
+        void reply(String text);
+
+        void error(String text);
+
+        void info(String text);
+    }
+
+    private final Supplier<Jedis> connectionFactory;
+    private final int database;
+    private Jedis connection;
+    private InputStream input;
+    private OutputStream output;
+    private volatile boolean closed;
+
+    /**
+     * @param connectionFactory opens a dedicated connection, not taken from a pool: the session may change its state
+     */
+    public RedisConsoleSession(Supplier<Jedis> connectionFactory, int database) {
+        this.connectionFactory = connectionFactory;
+        this.database = database;
+    }
+
+    /**
+     * Runs the commands of a text, one per line. Must not be called concurrently.
+     */
+    public void execute(String text, Output out) {
+        List<byte[][]> commands = new ArrayList<>();
+        for (String line : text.split("\r?\n")) {
+            List<byte[]> arguments;
+            try {
+                arguments = RedisCommandLineParser.parse(line);
+            } catch (IllegalArgumentException ex) {
+                out.error("(error) " + ex.getMessage() + "\n");
+                return;
+            }
+            if (arguments.isEmpty()) {
+                continue;
+            }
+            String name = new String(arguments.get(0), Charsets.UTF_8).toUpperCase(Locale.ROOT);
+            if (UNSUPPORTED_COMMANDS.contains(name)) {
+                out.error("(error) " + name + " is not supported by the console\n");
+                return;
+            }
+            commands.add(arguments.toArray(new byte[0][]));
+        }
+        if (commands.isEmpty()) {
+            return;
+        }
+        try {
+            ensureConnected(out);
+            ByteArrayOutputStream pipeline = new ByteArrayOutputStream();
+            for (byte[][] command : commands) {
+                RedisExportFormat.writeCommand(pipeline, command);
+            }
+            long start = System.nanoTime();
+            pipeline.writeTo(output);
+            output.flush();
+            for (int i = 0; i < commands.size(); i++) {
+                ReplyWriter writer = new ReplyWriter(out);
+                readReply(writer, 0);
+                writer.newLine();
+                writer.flush();
+                long end = System.nanoTime();
+                // pipelined replies are timed from the previous one
+                out.info(String.format("(%.2f ms)%n", (end - start) / 1e6));
+                start = end;
+            }
+        } catch (IOException | RuntimeException ex) {
+            out.error("(error) " + (closed ? "console closed" : ex.getMessage()) + "\n");
+            disconnect();
+        }
+    }
+
+    private void ensureConnected(Output out) throws IOException {
+        if (connection != null) {
+            return;
+        }
+        connection = connectionFactory.get();
+        connection.connect();
+        if (database != 0) {
+            connection.select(database);
+        }
+        Socket socket = connection.getClient().getSocket();
+        // the client has no pending reply: the session owns the streams from now on
+        input = new BufferedInputStream(socket.getInputStream(), OUTPUT_CHUNK_SIZE);
+        output = socket.getOutputStream();
+        out.info(String.format("Connected to %s:%d, database %d%n", connection.getClient().getHost(), connection.getClient().getPort(), database));
+    }
+
+    private void readReply(ReplyWriter writer, int indent) throws IOException {
+        int type = input.read();
+        switch (type) {
+            case '+':
+                writer.append(readLine());
+                break;
+            case '-':
+                writer.markError();
+                writer.append("(error) ").append(readLine());
+                break;
+            case ':':
+                writer.append("(integer) ").append(readLine());
+                break;
+            case '$':
+                long length = Long.parseLong(readLine());
+                if (length < 0) {
+                    writer.append("(nil)");
+                } else {
+                    readBulk(writer, length);
+                }
+                break;
+            case '*':
+                long count = Long.parseLong(readLine());
+                if (count < 0) {
+                    writer.append("(nil)");
+                } else if (count == 0) {
+                    writer.append("(empty array)");
+                }
+                for (long element = 1; element <= count; element++) {
+                    if (element > 1) {
+                        writer.newLine();
+                        writer.indent(indent);
+                    }
+                    String prefix = element + ") ";
+                    writer.append(prefix);
+                    readReply(writer, indent + prefix.length());
+                }
+                break;
+            case -1:
+                throw new EOFException("connection closed by the server");
+            default:
+                throw new IOException("unexpected reply type '" + (char) type + "'");
+        }
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = input.read()) != '\r') {
+            if (b == -1) {
+                throw new EOFException("connection closed by the server");
+            }
+            line.write(b);
+        }
+        input.read(); // \n
+        return new String(line.toByteArray(), Charsets.UTF_8);
+    }
+
+    /**
+     * Streams a bulk string as a quoted, escaped string, chunk by chunk.
+     */
+    private void readBulk(ReplyWriter writer, long length) throws IOException {
+        writer.append("\"");
+        byte[] chunk = new byte[OUTPUT_CHUNK_SIZE];
+        int pending = 0;
+        long remaining = length;
+        while (remaining > 0) {
+            int read = input.read(chunk, pending, (int) Math.min(chunk.length - pending, remaining));
+            if (read == -1) {
+                throw new EOFException("connection closed by the server");
+            }
+            remaining -= read;
+            int available = pending + read;
+            // a UTF-8 sequence cut by the chunk is decoded with the next one
+            int end = remaining == 0 ? available : utf8Boundary(chunk, available);
+            writer.appendEscaped(new String(chunk, 0, end, Charsets.UTF_8));
+            pending = available - end;
+            System.arraycopy(chunk, end, chunk, 0, pending);
+        }
+        input.read(); // \r
+        input.read(); // \n
+        writer.append("\"");
+    }
+
+    private static int utf8Boundary(byte[] bytes, int length) {
+        for (int i = length - 1; i >= Math.max(0, length - 4); i--) {
+            int b = bytes[i] & 0xff;
+            if (b < 0x80) {
+                return length;
+            }
+            if (b >= 0xc0) {
+                int sequenceLength = b >= 0xf0 ? 4 : b >= 0xe0 ? 3 : 2;
+                return i + sequenceLength <= length ? length : i;
+            }
+        }
+        return length;
+    }
+
+    private void disconnect() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (RuntimeException ignored) {
+                // already broken
+            }
+            connection = null;
+        }
+    }
+
+    /**
+     * Closes the connection, which also interrupts a command waiting for its reply.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Jedis current = connection;
+        if (current != null) {
+            try {
+                current.getClient().getSocket().close();
+            } catch (IOException | RuntimeException ignored) {
+                // the console is gone anyway
+            }
+        }
+    }
+
+    /**
+     * Formats a reply into chunks handed to the output as soon as they are big enough.
+     */
+    private static class ReplyWriter {
+
+        private final Output out;
+        private final StringBuilder buffer = new StringBuilder();
+        private boolean error;
+
+        ReplyWriter(Output out) {
+            this.out = out;
+        }
+
+        void markError() {
+            error = true;
+        }
+
+        ReplyWriter append(String text) {
+            buffer.append(text);
+            if (buffer.length() >= OUTPUT_CHUNK_SIZE) {
+                flush();
+            }
+            return this;
+        }
+
+        void appendEscaped(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"':
+                        buffer.append("\\\"");
+                        break;
+                    case '\\':
+                        buffer.append("\\\\");
+                        break;
+                    case '\n':
+                        buffer.append("\\n");
+                        break;
+                    case '\r':
+                        buffer.append("\\r");
+                        break;
+                    case '\t':
+                        buffer.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20 || c == 0x7f) {
+                            buffer.append(String.format("\\x%02x", (int) c));
+                        } else {
+                            buffer.append(c);
+                        }
+                }
+            }
+            if (buffer.length() >= OUTPUT_CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        void newLine() {
+            append("\n");
+        }
+
+        void indent(int width) {
+            for (int i = 0; i < width; i++) {
+                buffer.append(' ');
+            }
+        }
+
+        void flush() {
+            if (buffer.length() == 0) {
+                return;
+            }
+            if (error) {
+                out.error(buffer.toString());
+            } else {
+                out.reply(buffer.toString());
+            }
+            buffer.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import kotlin.text.Charsets;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType;
+import redis.clients.jedis.Tuple;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.codinjutsu.tools.nosql.redis.logic.RedisValuePager.decode;
+
+/**
+ * File formats written by the export, each one readable again by the matching {@link RedisImportFormat}.
+ * <p>
+ * A collection is written page by page through a {@link ValueWriter}, so that a key never has to be held whole in
+ * memory; the TTL is known before the value.
+ */
+public enum RedisExportFormat {
+
+    /**
+     * One JSON object per key, in the layout read by {@link RedisImportFormat#NDJSON}. Values are decoded as UTF-8.
+     */
+    NDJSON("ndjson", false) {
+        @Override
+        ValueWriter startKey(OutputStream out, byte[] key, RedisKeyType keyType, long ttlMillis) throws IOException {
+            write(out, "{\"key\":" + GSON.toJson(decode(key)) + ",\"type\":" + GSON.toJson(keyType.label) + ",\"value\":");
+            boolean object = RedisKeyType.HASH.equals(keyType) || RedisKeyType.ZSET.equals(keyType);
+            if (!RedisKeyType.STRING.equals(keyType)) {
+                write(out, object ? "{" : "[");
+            }
+            return new ValueWriter() {
+                private boolean firstElement = true;
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public void write(Object values) throws IOException {
+                    StringBuilder json = new StringBuilder();
+                    if (RedisKeyType.STRING.equals(keyType)) {
+                        json.append(GSON.toJson(decode((byte[]) values)));
+                    } else if (RedisKeyType.LIST.equals(keyType) || RedisKeyType.SET.equals(keyType)) {
+                        for (byte[] element : (Collection<byte[]>) values) {
+                            separate(json).append(GSON.toJson(decode(element)));
+                        }
+                    } else if (RedisKeyType.HASH.equals(keyType)) {
+                        for (Map.Entry<byte[], byte[]> entry : ((Map<byte[], byte[]>) values).entrySet()) {
+                            separate(json).append(GSON.toJson(decode(entry.getKey()))).append(':').append(GSON.toJson(decode(entry.getValue())));
+                        }
+                    } else {
+                        for (Tuple tuple : (Collection<Tuple>) values) {
+                            separate(json).append(GSON.toJson(decode(tuple.getBinaryElement()))).append(':').append(scoreJson(tuple.getScore()));
+                        }
+                    }
+                    RedisExportFormat.write(out, json);
+                }
+
+                private StringBuilder separate(StringBuilder json) {
+                    if (!firstElement) {
+                        json.append(',');
+                    }
+                    firstElement = false;
+                    return json;
+                }
+
+                @Override
+                public void end() throws IOException {
+                    StringBuilder json = new StringBuilder();
+                    if (!RedisKeyType.STRING.equals(keyType)) {
+                        json.append(object ? '}' : ']');
+                    }
+                    if (ttlMillis > 0) {
+                        // the import reads seconds: round up so that the key does not expire earlier than it would have
+                        json.append(",\"ttl\":").append((ttlMillis + 999) / 1000);
+                    }
+                    RedisExportFormat.write(out, json.append("}\n"));
+                }
+            };
+        }
+    },
+
+    /**
+     * The commands recreating each key, in the protocol read by {@link RedisImportFormat#RESP} and
+     * {@code redis-cli --pipe}. Every key is deleted first so that collections are not merged into existing ones.
+     */
+    RESP("resp", false) {
+        @Override
+        ValueWriter startKey(OutputStream out, byte[] key, RedisKeyType keyType, long ttlMillis) throws IOException {
+            writeCommand(out, bytes("DEL"), key);
+            return new ValueWriter() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void write(Object values) throws IOException {
+                    if (RedisKeyType.STRING.equals(keyType)) {
+                        writeCommand(out, bytes("SET"), key, (byte[]) values);
+                    } else if (RedisKeyType.LIST.equals(keyType) || RedisKeyType.SET.equals(keyType)) {
+                        List<byte[]> command = new ArrayList<>();
+                        byte[] name = bytes(RedisKeyType.LIST.equals(keyType) ? "RPUSH" : "SADD");
+                        for (byte[] element : (Collection<byte[]>) values) {
+                            command = writeIfFull(out, command, name, key, 1);
+                            command.add(element);
+                        }
+                        writeCommand(out, command, name, key);
+                    } else if (RedisKeyType.HASH.equals(keyType)) {
+                        List<byte[]> command = new ArrayList<>();
+                        byte[] name = bytes("HMSET");
+                        for (Map.Entry<byte[], byte[]> entry : ((Map<byte[], byte[]>) values).entrySet()) {
+                            command = writeIfFull(out, command, name, key, 2);
+                            command.add(entry.getKey());
+                            command.add(entry.getValue());
+                        }
+                        writeCommand(out, command, name, key);
+                    } else {
+                        List<byte[]> command = new ArrayList<>();
+                        byte[] name = bytes("ZADD");
+                        for (Tuple tuple : (Collection<Tuple>) values) {
+                            command = writeIfFull(out, command, name, key, 2);
+                            command.add(bytes(scoreArgument(tuple.getScore())));
+                            command.add(tuple.getBinaryElement());
+                        }
+                        writeCommand(out, command, name, key);
+                    }
+                }
+
+                @Override
+                public void end() throws IOException {
+                    if (ttlMillis > 0) {
+                        writeCommand(out, bytes("PEXPIRE"), key, bytes(Long.toString(ttlMillis)));
+                    }
+                }
+            };
+        }
+    },
+
+    /**
+     * One {@code RESTORE ... REPLACE} command per key, in the RESP protocol, carrying the serialized value returned
+     * by {@code DUMP}: binary safe and exact, encodings included, but only readable by a server of the same or a
+     * newer version. The serialized value comes in one piece, whatever the size of the key.
+     */
+    DUMP("dump.resp", true) {
+        @Override
+        ValueWriter startKey(OutputStream out, byte[] key, RedisKeyType keyType, long ttlMillis) {
+            return new ValueWriter() {
+                @Override
+                public void write(Object values) throws IOException {
+                    writeCommand(out, bytes("RESTORE"), key, bytes(Long.toString(Math.max(ttlMillis, 0))), (byte[]) values, bytes("REPLACE"));
+                }
+
+                @Override
+                public void end() {
+                }
+            };
+        }
+    };
+
+    /**
+     * Writes the value of one key, in one or several pages.
+     */
+    interface ValueWriter {
+
+        /**
+         * @param values the whole value of a string, the serialized value of {@code DUMP}, or the next page of a collection
+         */
+        void write(Object values) throws IOException;
+
+        void end() throws IOException;
+    }
+
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    public final String extension;
+    final boolean dumpValues;
+
+    RedisExportFormat(String extension, boolean dumpValues) {
+        this.extension = extension;
+        this.dumpValues = dumpValues;
+    }
+
+    /**
+     * Starts writing a key, whose value is then given to the returned writer.
+     *
+     * @param keyType   type of the key, null when the value is the serialized value of {@code DUMP}
+     * @param ttlMillis remaining time to live, 0 or less when the key does not expire
+     */
+    abstract ValueWriter startKey(OutputStream out, byte[] key, RedisKeyType keyType, long ttlMillis) throws IOException;
+
+    /**
+     * Writes a key and its whole value.
+     */
+    void writeKey(OutputStream out, byte[] key, RedisKeyType keyType, Object value, long ttlMillis) throws IOException {
+        ValueWriter writer = startKey(out, key, keyType, ttlMillis);
+        writer.write(value);
+        writer.end();
+    }
+
+    private static List<byte[]> writeIfFull(OutputStream out, List<byte[]> command, byte[] name, byte[] key, int argumentsPerElement)
+            throws IOException {
+        if (command.size() < RedisImportFormat.ELEMENTS_PER_COMMAND * argumentsPerElement) {
+            return command;
+        }
+        writeCommand(out, command, name, key);
+        return new ArrayList<>();
+    }
+
+    private static void writeCommand(OutputStream out, List<byte[]> arguments, byte[] name, byte[] key) throws IOException {
+        if (arguments.isEmpty()) {
+            return;
+        }
+        List<byte[]> command = new ArrayList<>(arguments.size() + 2);
+        command.add(name);
+        command.add(key);
+        command.addAll(arguments);
+        writeCommand(out, command.toArray(new byte[0][]));
+    }
+
+    static void writeCommand(ByteArrayOutputStream out, byte[]... command) {
+        try {
+            writeCommand((OutputStream) out, command);
+        } catch (IOException ex) {
+            // not thrown by a byte array
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    static void writeCommand(OutputStream out, byte[]... command) throws IOException {
+        writeLine(out, '*', command.length);
+        for (byte[] argument : command) {
+            writeLine(out, '$', argument.length);
+            out.write(argument, 0, argument.length);
+            out.write('\r');
+            out.write('\n');
+        }
+    }
+
+    private static void writeLine(OutputStream out, char prefix, int length) throws IOException {
+        byte[] line = (prefix + Integer.toString(length) + "\r\n").getBytes(Charsets.US_ASCII);
+        out.write(line, 0, line.length);
+    }
+
+    private static void write(OutputStream out, CharSequence text) throws IOException {
+        byte[] bytes = text.toString().getBytes(Charsets.UTF_8);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return the score as ZADD reads it: Redis allows infinite scores, written "inf" and "-inf"
+     */
+    private static String scoreArgument(double score) {
+        if (Double.isInfinite(score)) {
+            return score > 0 ? "inf" : "-inf";
+        }
+        return Double.toString(score);
+    }
+
+    /**
+     * @return a JSON number, or the ZADD argument as a string for an infinite score, which JSON cannot represent
+     */
+    private static String scoreJson(double score) {
+        return Double.isInfinite(score) ? GSON.toJson(scoreArgument(score)) : GSON.toJson(score);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(Charsets.UTF_8);
+    }
+}
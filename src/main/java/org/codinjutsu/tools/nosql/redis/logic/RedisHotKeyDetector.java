@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import kotlin.text.Charsets;
+import org.codinjutsu.tools.nosql.redis.model.RedisHotKey;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisCommands;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds the most accessed keys of a server without MONITOR: every round samples a bounded number of keys with SCAN,
+ * resuming where the previous round stopped, and scores them with OBJECT FREQ when an LFU eviction policy is set,
+ * or with OBJECT IDLETIME otherwise. Scores are accumulated in a {@link CountMinSketch} and the hottest keys kept
+ * in a bounded heap, so the client memory does not depend on the size of the keyspace.
+ * <p>
+ * Every {@link #DECAY_ROUNDS} rounds the accumulated scores are halved so that keys cooling down leave the top.
+ */
+public class RedisHotKeyDetector {
+
+    public static final int DEFAULT_TOP_KEY_COUNT = 50;
+    public static final int DEFAULT_SAMPLES_PER_ROUND = 1000;
+    public static final int DEFAULT_INTERVAL_SECONDS = 5;
+
+    static final int SCAN_COUNT = 100;
+    static final int DECAY_ROUNDS = 12;
+    static final int SKETCH_DEPTH = 4;
+    static final int SKETCH_WIDTH = 4096;
+
+    private static final int FREQUENCY_SCORE = 1;
+    private static final int IDLE_TIME_SCORE = 0;
+
+    // OBJECT FREQ fails unless an LFU policy is set, OBJECT IDLETIME fails when one is
+    private static final byte[] SCORE_SCRIPT = ("local ok, freq = pcall(redis.call, 'OBJECT', 'FREQ', KEYS[1])\n" +
+            "if ok then\n" +
+            "  if freq then return {1, freq} end\n" +
+            "  return {-1, 0}\n" +
+            "end\n" +
+            "local idle = redis.call('OBJECT', 'IDLETIME', KEYS[1])\n" +
+            "if idle then return {0, idle} end\n" +
+            "return {-1, 0}\n").getBytes(Charsets.UTF_8);
+
+    private final int topKeyCount;
+    private final int samplesPerRound;
+    private final long recentIdleSeconds;
+
+    private final CountMinSketch sketch = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+    private final PriorityQueue<HotKeyEntry> topKeys = new PriorityQueue<>(Comparator.comparingLong(entry -> entry.hotness));
+    private final Map<String, HotKeyEntry> topKeysById = new HashMap<>();
+    private final Map<String, byte[]> cursors = new ConcurrentHashMap<>();
+    private final AtomicLong sampledKeys = new AtomicLong();
+    private int rounds;
+    private volatile Boolean frequencyScores;
+
+    /**
+     * @param recentIdleSeconds idle time under which a key counts as accessed, when OBJECT FREQ is not available
+     */
+    public RedisHotKeyDetector(int topKeyCount, int samplesPerRound, long recentIdleSeconds) {
+        this.topKeyCount = topKeyCount;
+        this.samplesPerRound = samplesPerRound;
+        this.recentIdleSeconds = recentIdleSeconds;
+    }
+
+    /**
+     * Samples up to {@code samplesPerRound} keys of every non-empty database, or of every master on a cluster.
+     */
+    public void sample(JedisCommands commands) {
+        if (commands instanceof Jedis) {
+            Jedis jedis = (Jedis) commands;
+            List<Integer> databases = nonEmptyDatabases(jedis.info("keyspace"));
+            for (int database : databases) {
+                jedis.select(database);
+                sampleNode(jedis, "db" + database, Math.max(1, samplesPerRound / databases.size()));
+            }
+        } else if (commands instanceof JedisCluster) {
+            Map<String, String> nodeErrors = new RedisClusterNodes((JedisCluster) commands).forEachMaster((node, connection) ->
+                    sampleNode(connection, node, samplesPerRound));
+            if (!nodeErrors.isEmpty()) {
+                throw new JedisException("Some cluster nodes could not be sampled: " + nodeErrors);
+            }
+        }
+        endRound();
+    }
+
+    static List<Integer> nonEmptyDatabases(String keyspaceInfo) {
+        List<Integer> databases = new ArrayList<>();
+        for (String line : keyspaceInfo.split("\r?\n")) {
+            // db0:keys=12,expires=0,avg_ttl=0
+            int colon = line.indexOf(':');
+            if (line.startsWith("db") && colon > 2) {
+                databases.add(Integer.parseInt(line.substring(2, colon)));
+            }
+        }
+        return databases;
+    }
+
+    private void sampleNode(Jedis jedis, String database, int budget) {
+        ScanParams scanParams = new ScanParams().count(Math.min(SCAN_COUNT, budget));
+        byte[] cursor = cursors.getOrDefault(database, ScanParams.SCAN_POINTER_START_BINARY);
+        int sampled = 0;
+        do {
+            ScanResult<byte[]> scanResult = jedis.scan(cursor, scanParams);
+            cursor = scanResult.getCursorAsBytes();
+            if (!scanResult.getResult().isEmpty()) {
+                score(jedis, database, scanResult.getResult());
+                sampled += scanResult.getResult().size();
+            }
+            // a round never goes past the end of the keyspace, so that no key is scored twice in a round
+        } while (sampled < budget && !Arrays.equals(cursor, ScanParams.SCAN_POINTER_START_BINARY));
+        cursors.put(database, cursor);
+        sampledKeys.addAndGet(sampled);
+    }
+
+    private void score(Jedis jedis, String database, List<byte[]> keys) {
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<Object>> scores = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            scores.add(pipeline.eval(SCORE_SCRIPT, Collections.singletonList(key), Collections.<byte[]>emptyList()));
+        }
+        pipeline.sync();
+        synchronized (this) {
+            for (int i = 0; i < keys.size(); i++) {
+                List<?> score = (List<?>) scores.get(i).get();
+                int kind = ((Long) score.get(0)).intValue();
+                if (kind == FREQUENCY_SCORE || kind == IDLE_TIME_SCORE) {
+                    frequencyScores = kind == FREQUENCY_SCORE;
+                    record(database, new String(keys.get(i), Charsets.UTF_8), kind, (Long) score.get(1));
+                }
+            }
+        }
+    }
+
+    private void record(String database, String key, int kind, long score) {
+        long weight = kind == FREQUENCY_SCORE ? score : (score <= recentIdleSeconds ? 1 : 0);
+        String id = database + '\u0000' + key;
+        long hotness = sketch.add(id.getBytes(Charsets.UTF_8), weight);
+        HotKeyEntry entry = topKeysById.get(id);
+        if (entry != null) {
+            topKeys.remove(entry);
+            entry.hotness = hotness;
+            entry.lastScore = score;
+            topKeys.add(entry);
+        } else if (weight > 0 && (topKeys.size() < topKeyCount || topKeys.peek().hotness < hotness)) {
+            if (topKeys.size() >= topKeyCount) {
+                topKeysById.remove(topKeys.poll().id);
+            }
+            entry = new HotKeyEntry(id, database, key, hotness, score);
+            topKeys.add(entry);
+            topKeysById.put(id, entry);
+        }
+    }
+
+    private synchronized void endRound() {
+        rounds++;
+        if (rounds % DECAY_ROUNDS == 0) {
+            sketch.decay();
+            // halving every entry keeps the heap ordered
+            for (HotKeyEntry entry : topKeys) {
+                entry.hotness >>= 1;
+            }
+        }
+    }
+
+    /**
+     * @return the hottest keys, hottest first
+     */
+    public synchronized List<RedisHotKey> getHotKeys() {
+        List<HotKeyEntry> entries = new ArrayList<>(topKeys);
+        entries.sort(Comparator.comparingLong((HotKeyEntry entry) -> entry.hotness).reversed());
+        List<RedisHotKey> hotKeys = new ArrayList<>(entries.size());
+        for (HotKeyEntry entry : entries) {
+            hotKeys.add(new RedisHotKey(entry.database, entry.key, entry.hotness, entry.lastScore));
+        }
+        return hotKeys;
+    }
+
+    public long getSampledKeys() {
+        return sampledKeys.get();
+    }
+
+    public synchronized int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * @return true when keys are scored with OBJECT FREQ, false with OBJECT IDLETIME, null until a key was scored
+     */
+    public Boolean isFrequencyScored() {
+        return frequencyScores;
+    }
+
+    private static class HotKeyEntry {
+
+        private final String id;
+        private final String database;
+        private final String key;
+        private long hotness;
+        private long lastScore;
+
+        HotKeyEntry(String id, String database, String key, long hotness, long lastScore) {
+            this.id = id;
+            this.database = database;
+            this.key = key;
+            this.hotness = hotness;
+            this.lastScore = lastScore;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import kotlin.text.Charsets;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * File formats read by the bulk import. Every format is streamed: a record is handed to the writer as soon as it is
+ * read, so the size of the file does not matter.
+ */
+public enum RedisImportFormat {
+
+    /**
+     * One element per line: {@code type,key,value} for strings, list elements and set members,
+     * {@code hash,key,field,value} and {@code zset,key,score,member}. Fields may be double quoted, with "" for a quote,
+     * but cannot span lines. A first line starting with "type," is a header.
+     */
+    CSV("csv") {
+        @Override
+        public void read(InputStream input, RedisBulkWriter writer) throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input, Charsets.UTF_8));
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || (lineNumber == 1 && line.startsWith("type,"))) {
+                    continue;
+                }
+                List<String> fields = splitCsvLine(line);
+                RedisKeyType keyType = fields.isEmpty() ? null : RedisKeyType.getKeyType(fields.get(0).toLowerCase());
+                if (keyType == null || fields.size() < 3) {
+                    throw new IOException("line " + lineNumber + ": expected type,key,value");
+                }
+                String key = fields.get(1);
+                if (RedisKeyType.HASH.equals(keyType) || RedisKeyType.ZSET.equals(keyType)) {
+                    if (fields.size() < 4) {
+                        throw new IOException("line " + lineNumber + ": expected " + fields.get(0) + ",key,"
+                                + (RedisKeyType.HASH.equals(keyType) ? "field,value" : "score,member"));
+                    }
+                    writer.write(RedisKeyType.HASH.equals(keyType) ? "HSET" : "ZADD", key, fields.get(2), fields.get(3));
+                } else {
+                    writer.write(writeCommand(keyType), key, fields.get(2));
+                }
+            }
+        }
+    },
+
+    /**
+     * One JSON object per line: {@code {"key": "...", "type": "hash", "value": {...}, "ttl": 60}}. The value is a string,
+     * an array for lists and sets, an object of fields for hashes and an object of member scores for sorted sets.
+     * The optional ttl, in seconds, replaces the TTL of the import.
+     */
+    NDJSON("ndjson", "jsonl", "json") {
+        @Override
+        public void read(InputStream input, RedisBulkWriter writer) throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input, Charsets.UTF_8));
+            JsonParser parser = new JsonParser();
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                JsonObject record = parser.parse(line).getAsJsonObject();
+                RedisKeyType keyType = record.has("type") ? RedisKeyType.getKeyType(record.get("type").getAsString().toLowerCase()) : null;
+                if (keyType == null || !record.has("key") || !record.has("value")) {
+                    throw new IOException("line " + lineNumber + ": expected an object with key, type and value");
+                }
+                String key = record.get("key").getAsString();
+                writeValue(writer, keyType, key, record.get("value"));
+                if (record.has("ttl") && !record.get("ttl").isJsonNull()) {
+                    writer.expire(key.getBytes(Charsets.UTF_8), record.get("ttl").getAsLong() * 1000);
+                }
+            }
+        }
+    },
+
+    /**
+     * The Redis protocol as sent by {@code redis-cli --pipe}: every command is an array of bulk strings.
+     */
+    RESP("resp", "redis") {
+        @Override
+        public void read(InputStream input, RedisBulkWriter writer) throws IOException {
+            int first;
+            while ((first = input.read()) != -1) {
+                if (first == '\r' || first == '\n') {
+                    continue;
+                }
+                if (first != '*') {
+                    throw new IOException("expected a RESP array, found '" + (char) first + "'");
+                }
+                int count = (int) readNumber(input);
+                byte[][] command = new byte[count][];
+                for (int i = 0; i < count; i++) {
+                    if (input.read() != '$') {
+                        throw new IOException("expected a RESP bulk string");
+                    }
+                    command[i] = readBulk(input, (int) readNumber(input));
+                }
+                writer.write(command);
+            }
+        }
+    };
+
+    /**
+     * Elements sent in one command when a collection comes whole, as in NDJSON.
+     */
+    static final int ELEMENTS_PER_COMMAND = 1000;
+
+    private final String[] extensions;
+
+    RedisImportFormat(String... extensions) {
+        this.extensions = extensions;
+    }
+
+    public abstract void read(InputStream input, RedisBulkWriter writer) throws IOException;
+
+    /**
+     * @return the format matching the extension of a file name, NDJSON when unknown
+     */
+    public static RedisImportFormat forFileName(String fileName) {
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
+        for (RedisImportFormat format : values()) {
+            for (String formatExtension : format.extensions) {
+                if (formatExtension.equals(extension)) {
+                    return format;
+                }
+            }
+        }
+        return NDJSON;
+    }
+
+    private static String writeCommand(RedisKeyType keyType) {
+        switch (keyType) {
+            case LIST:
+                return "RPUSH";
+            case SET:
+                return "SADD";
+            default:
+                return "SET";
+        }
+    }
+
+    private static void writeValue(RedisBulkWriter writer, RedisKeyType keyType, String key, JsonElement value) {
+        if (RedisKeyType.STRING.equals(keyType)) {
+            writer.write("SET", key, value.getAsString());
+            return;
+        }
+        List<String> command = newCommand(keyType, key);
+        if (RedisKeyType.LIST.equals(keyType) || RedisKeyType.SET.equals(keyType)) {
+            for (JsonElement element : value.getAsJsonArray()) {
+                command.add(element.getAsString());
+                command = flushIfFull(writer, command, keyType, key);
+            }
+        } else {
+            for (Map.Entry<String, JsonElement> entry : value.getAsJsonObject().entrySet()) {
+                if (RedisKeyType.HASH.equals(keyType)) {
+                    command.add(entry.getKey());
+                    command.add(entry.getValue().getAsString());
+                } else {
+                    command.add(entry.getValue().getAsString());
+                    command.add(entry.getKey());
+                }
+                command = flushIfFull(writer, command, keyType, key);
+            }
+        }
+        if (command.size() > 2) {
+            writer.write(command.toArray(new String[0]));
+        }
+    }
+
+    private static List<String> newCommand(RedisKeyType keyType, String key) {
+        List<String> command = new ArrayList<>();
+        command.add(RedisKeyType.HASH.equals(keyType) ? "HMSET" : RedisKeyType.ZSET.equals(keyType) ? "ZADD" : writeCommand(keyType));
+        command.add(key);
+        return command;
+    }
+
+    private static List<String> flushIfFull(RedisBulkWriter writer, List<String> command, RedisKeyType keyType, String key) {
+        if (command.size() - 2 < ELEMENTS_PER_COMMAND) {
+            return command;
+        }
+        writer.write(command.toArray(new String[0]));
+        return newCommand(keyType, key);
+    }
+
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static long readNumber(InputStream input) throws IOException {
+        long number = 0;
+        boolean negative = false;
+        int b;
+        while ((b = input.read()) != '\r') {
+            if (b == -1) {
+                throw new EOFException("truncated RESP input");
+            }
+            if (b == '-') {
+                negative = true;
+            } else {
+                number = number * 10 + (b - '0');
+            }
+        }
+        input.read(); // \n
+        return negative ? -number : number;
+    }
+
+    private static byte[] readBulk(InputStream input, int length) throws IOException {
+        byte[] bulk = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int count = input.read(bulk, read, length - read);
+            if (count == -1) {
+                throw new EOFException("truncated RESP input");
+            }
+            read += count;
+        }
+        input.read(); // \r
+        input.read(); // \n
+        return bulk;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.text.StringUtil;
+import kotlin.text.Charsets;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyAnalysis;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyMetadata;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType;
+import org.codinjutsu.tools.nosql.redis.model.RedisLoadTimings;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisCommands;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds the keys dominating the memory of a database: keys are scanned and the type, length and MEMORY USAGE of
+ * every batch are fetched in one pipelined round trip, then folded into a {@link RedisKeyAnalysis}. Only one batch
+ * per node and the bounded report are held in memory, whatever the size of the database.
+ * <p>
+ * On a cluster every master is analyzed on its own connection.
+ */
+public class RedisKeyAnalyzer {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_TOP_KEY_COUNT = 20;
+    // same default as the server, 0 samples every element of the collections
+    public static final int DEFAULT_MEMORY_SAMPLES = 5;
+    public static final String DEFAULT_SEPARATOR = ":";
+
+    private static final String NONE_TYPE = "none";
+
+    // one script per key keeps it routable on a cluster; MEMORY USAGE does not exist before Redis 4
+    private static final byte[] KEY_USAGE_SCRIPT = ("local keyType = redis.call('TYPE', KEYS[1])['ok']\n" +
+            "local length = 0\n" +
+            "if keyType == 'string' then length = redis.call('STRLEN', KEYS[1])\n" +
+            "elseif keyType == 'list' then length = redis.call('LLEN', KEYS[1])\n" +
+            "elseif keyType == 'set' then length = redis.call('SCARD', KEYS[1])\n" +
+            "elseif keyType == 'hash' then length = redis.call('HLEN', KEYS[1])\n" +
+            "elseif keyType == 'zset' then length = redis.call('ZCARD', KEYS[1]) end\n" +
+            "local ok, bytes = pcall(redis.call, 'MEMORY', 'USAGE', KEYS[1], 'SAMPLES', ARGV[1])\n" +
+            "if not ok or not bytes then bytes = -1 end\n" +
+            "return {keyType, length, bytes}\n").getBytes(Charsets.UTF_8);
+
+    private final RedisKeyAnalysis analysis;
+    private final List<byte[]> scriptArguments;
+    private final int batchSize;
+    private final ProgressIndicator indicator;
+    private final AtomicLong analyzedKeys = new AtomicLong();
+    private long expectedKeys;
+
+    /**
+     * @param memorySamples number of elements MEMORY USAGE samples in collections, 0 for all of them
+     * @param separator     separator ending the prefix the memory is aggregated by
+     */
+    public RedisKeyAnalyzer(int topKeyCount, int memorySamples, String separator, int batchSize, @Nullable ProgressIndicator indicator) {
+        this.analysis = new RedisKeyAnalysis(topKeyCount, separator);
+        this.scriptArguments = Collections.singletonList(String.valueOf(memorySamples).getBytes(Charsets.UTF_8));
+        this.batchSize = batchSize;
+        this.indicator = indicator;
+    }
+
+    /**
+     * Analyzes the keys matching a glob pattern.
+     */
+    public RedisKeyAnalysis analyze(JedisCommands commands, byte[] pattern) {
+        RedisKeyScanner scanner = new RedisKeyScanner(batchSize, Integer.MAX_VALUE, indicator, new RedisLoadTimings());
+        if (commands instanceof Jedis) {
+            Jedis jedis = (Jedis) commands;
+            if (indicator != null && pattern.length == 1 && pattern[0] == '*') {
+                expectedKeys = jedis.dbSize();
+                indicator.setIndeterminate(false);
+            }
+            scanner.scan(jedis, pattern, keys -> analyzeBatch(jedis, keys));
+        } else if (commands instanceof JedisCluster) {
+            Map<String, String> nodeErrors = scanner.scan((JedisCluster) commands, pattern,
+                    (connection, keys) -> analyzeBatch(connection, keys));
+            if (!nodeErrors.isEmpty()) {
+                throw new JedisException("Some cluster nodes could not be analyzed: " + nodeErrors);
+            }
+        }
+        return analysis;
+    }
+
+    private void analyzeBatch(Jedis jedis, List<byte[]> keys) {
+        if (indicator != null) {
+            indicator.checkCanceled();
+        }
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<Object>> usages = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            usages.add(pipeline.eval(KEY_USAGE_SCRIPT, Collections.singletonList(key), scriptArguments));
+        }
+        pipeline.sync();
+
+        int analyzed = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            List<?> usage = (List<?>) usages.get(i).get();
+            String type = new String((byte[]) usage.get(0), Charsets.UTF_8);
+            if (NONE_TYPE.equals(type)) {
+                // deleted since it was scanned
+                continue;
+            }
+            long memoryBytes = (Long) usage.get(2);
+            analysis.add(new String(keys.get(i), Charsets.UTF_8), RedisKeyType.getKeyType(type), (Long) usage.get(1),
+                    memoryBytes < 0 ? RedisKeyMetadata.UNKNOWN_MEMORY : memoryBytes);
+            analyzed++;
+        }
+        reportProgress(analyzedKeys.addAndGet(analyzed));
+    }
+
+    private void reportProgress(long analyzed) {
+        if (indicator == null) {
+            return;
+        }
+        indicator.setText2(String.format("%d keys analyzed, %s in total", analyzed, StringUtil.formatFileSize(analysis.getTotalSize())));
+        if (expectedKeys > 0) {
+            indicator.setFraction(Math.min(1.0, (double) analyzed / expectedKeys));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import kotlin.text.Charsets;
+import org.codinjutsu.tools.nosql.redis.model.RedisLoadTimings;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisCommands;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.JedisClusterCRC16;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes keys in batches: each batch is a single UNLINK, falling back to DEL on servers older than Redis 4, and
+ * the batches are pipelined. UNLINK frees the values in the background, so big keys do not block the server.
+ * <p>
+ * On a cluster, the keys are grouped by hash slot, a multi-key command being refused across slots, and every master
+ * deletes its own slots on its own connection.
+ */
+public class RedisKeyDeleter {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    static final int BATCHES_PER_PIPELINE = 20;
+
+    // UNLINK is not exposed by the client: the script keeps the fallback on the server side
+    private static final byte[] UNLINK_SCRIPT = ("local ok, deleted = pcall(redis.call, 'UNLINK', unpack(KEYS))\n" +
+            "if ok then return deleted end\n" +
+            "return redis.call('DEL', unpack(KEYS))\n").getBytes(Charsets.UTF_8);
+
+    private final int batchSize;
+    private final ProgressIndicator indicator;
+    private final AtomicLong deletedKeys = new AtomicLong();
+
+    public RedisKeyDeleter(@Nullable ProgressIndicator indicator) {
+        this(DEFAULT_BATCH_SIZE, indicator);
+    }
+
+    public RedisKeyDeleter(int batchSize, @Nullable ProgressIndicator indicator) {
+        this.batchSize = batchSize;
+        this.indicator = indicator;
+    }
+
+    /**
+     * @return the number of keys actually deleted so far
+     */
+    public long getDeletedKeys() {
+        return deletedKeys.get();
+    }
+
+    public void delete(JedisCommands commands, Collection<byte[]> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (commands instanceof Jedis) {
+            deleteBatches((Jedis) commands, Collections.singletonList(new ArrayList<>(keys)));
+        } else if (commands instanceof JedisCluster) {
+            RedisClusterNodes nodes = new RedisClusterNodes((JedisCluster) commands);
+            String[] slotMasters = nodes.slotMasters();
+            Map<String, Map<Integer, List<byte[]>>> keysByMaster = new HashMap<>();
+            for (byte[] key : keys) {
+                int slot = JedisClusterCRC16.getSlot(key);
+                String master = slotMasters[slot];
+                if (master == null) {
+                    throw new JedisException("hash slot " + slot + " is not served by any node");
+                }
+                keysByMaster.computeIfAbsent(master, node -> new HashMap<>())
+                        .computeIfAbsent(slot, s -> new ArrayList<>())
+                        .add(key);
+            }
+            checkNodeErrors(nodes.forEachMaster((node, connection) -> {
+                Map<Integer, List<byte[]>> keysBySlot = keysByMaster.get(node);
+                if (keysBySlot != null) {
+                    deleteBatches(connection, keysBySlot.values());
+                }
+            }));
+        }
+    }
+
+    /**
+     * Deletes the keys matching a glob pattern, batch by batch while the keyspace is scanned.
+     */
+    public void deleteMatching(JedisCommands commands, byte[] pattern) {
+        RedisKeyScanner scanner = new RedisKeyScanner(batchSize, Integer.MAX_VALUE, indicator, new RedisLoadTimings());
+        if (commands instanceof Jedis) {
+            Jedis jedis = (Jedis) commands;
+            scanner.scan(jedis, pattern, keys -> deleteBatches(jedis, Collections.singletonList(keys)));
+        } else if (commands instanceof JedisCluster) {
+            checkNodeErrors(scanner.scan((JedisCluster) commands, pattern,
+                    (connection, keys) -> deleteBatches(connection, groupBySlot(keys))));
+        }
+    }
+
+    private static Collection<List<byte[]>> groupBySlot(List<byte[]> keys) {
+        Map<Integer, List<byte[]>> keysBySlot = new HashMap<>();
+        for (byte[] key : keys) {
+            keysBySlot.computeIfAbsent(JedisClusterCRC16.getSlot(key), slot -> new ArrayList<>()).add(key);
+        }
+        return keysBySlot.values();
+    }
+
+    /**
+     * Sends each group of keys in batches of at most {@code batchSize} keys, {@link #BATCHES_PER_PIPELINE} batches
+     * per round trip. The keys of a group must share a hash slot on a cluster.
+     */
+    private void deleteBatches(Jedis jedis, Collection<List<byte[]>> keyGroups) {
+        Pipeline pipeline = null;
+        List<Response<Object>> responses = new ArrayList<>();
+        for (List<byte[]> keys : keyGroups) {
+            for (int from = 0; from < keys.size(); from += batchSize) {
+                checkCanceled();
+                if (pipeline == null) {
+                    pipeline = jedis.pipelined();
+                }
+                responses.add(pipeline.eval(UNLINK_SCRIPT, keys.subList(from, Math.min(from + batchSize, keys.size())),
+                        Collections.<byte[]>emptyList()));
+                if (responses.size() == BATCHES_PER_PIPELINE) {
+                    sync(pipeline, responses);
+                    pipeline = null;
+                }
+            }
+        }
+        if (pipeline != null) {
+            sync(pipeline, responses);
+        }
+    }
+
+    private void sync(Pipeline pipeline, List<Response<Object>> responses) {
+        pipeline.sync();
+        long deleted = 0;
+        for (Response<Object> response : responses) {
+            deleted += (Long) response.get();
+        }
+        responses.clear();
+        long total = deletedKeys.addAndGet(deleted);
+        if (indicator != null) {
+            indicator.setText2(String.format("%d keys deleted", total));
+        }
+    }
+
+    private void checkCanceled() {
+        if (indicator != null) {
+            indicator.checkCanceled();
+        }
+    }
+
+    private static void checkNodeErrors(Map<String, String> nodeErrors) {
+        if (!nodeErrors.isEmpty()) {
+            throw new JedisException("Some cluster nodes could not delete their keys: " + nodeErrors);
+        }
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.text.StringUtil;
+import kotlin.text.Charsets;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType;
+import org.codinjutsu.tools.nosql.redis.model.RedisLoadTimings;
+import org.codinjutsu.tools.nosql.redis.model.RedisValuePage;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisCommands;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams the keys of a database to a file: keys are scanned, then one pipelined script per batch gives their type,
+ * length and TTL. The values of small keys are fetched with pipelines of at most {@link #MAX_PIPELINE_ELEMENTS}
+ * collection elements and {@link #MAX_PIPELINE_BYTES} bytes of strings; collections longer than the paged length
+ * are read page by page with the {@link RedisValuePager}. Records are encoded straight into the buffer of the channel,
+ * so the memory used is bounded by one pipeline or one page per node, whatever the size of the database or of a key.
+ * <p>
+ * On a cluster every master is exported on its own connection; the records are written to the file as they come.
+ */
+public class RedisKeyExporter {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    static final int BUFFER_SIZE = 256 * 1024;
+    static final int DEFAULT_PAGED_LENGTH = 1000;
+    static final int MAX_PIPELINE_ELEMENTS = 10000;
+    static final long MAX_PIPELINE_BYTES = 8 * 1024 * 1024;
+
+    private static final String NONE_TYPE = "none";
+
+    // one script per key keeps it routable on a cluster
+    private static final byte[] KEY_SHAPE_SCRIPT = ("local keyType = redis.call('TYPE', KEYS[1])['ok']\n" +
+            "local length = 0\n" +
+            "if keyType == 'string' then length = redis.call('STRLEN', KEYS[1])\n" +
+            "elseif keyType == 'list' then length = redis.call('LLEN', KEYS[1])\n" +
+            "elseif keyType == 'set' then length = redis.call('SCARD', KEYS[1])\n" +
+            "elseif keyType == 'hash' then length = redis.call('HLEN', KEYS[1])\n" +
+            "elseif keyType == 'zset' then length = redis.call('ZCARD', KEYS[1]) end\n" +
+            "return {keyType, length, redis.call('PTTL', KEYS[1])}\n").getBytes(Charsets.UTF_8);
+
+    private final RedisExportFormat format;
+    private final int batchSize;
+    private final int pagedLength;
+    private final RedisValuePager pager;
+    private final ProgressIndicator indicator;
+    private final AtomicLong exportedKeys = new AtomicLong();
+    private long expectedKeys;
+
+    public RedisKeyExporter(RedisExportFormat format, int batchSize, @Nullable ProgressIndicator indicator) {
+        this(format, batchSize, DEFAULT_PAGED_LENGTH, indicator);
+    }
+
+    /**
+     * @param pagedLength collections longer than this are read page by page, pages of this size
+     */
+    RedisKeyExporter(RedisExportFormat format, int batchSize, int pagedLength, @Nullable ProgressIndicator indicator) {
+        this.format = format;
+        this.batchSize = batchSize;
+        this.pagedLength = pagedLength;
+        this.pager = new RedisValuePager(pagedLength);
+        this.indicator = indicator;
+    }
+
+    public long getExportedKeys() {
+        return exportedKeys.get();
+    }
+
+    /**
+     * Exports the keys matching a glob pattern into a file, replaced if it exists.
+     *
+     * @return the number of exported keys
+     */
+    public long export(JedisCommands commands, byte[] pattern, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            export(commands, pattern, channel);
+        }
+        return exportedKeys.get();
+    }
+
+    public void export(JedisCommands commands, byte[] pattern, WritableByteChannel channel) throws IOException {
+        ChannelOutput output = new ChannelOutput(channel);
+        RedisKeyScanner scanner = new RedisKeyScanner(batchSize, Integer.MAX_VALUE, indicator, new RedisLoadTimings());
+        try {
+            if (commands instanceof Jedis) {
+                Jedis jedis = (Jedis) commands;
+                if (indicator != null && isMatchAll(pattern)) {
+                    expectedKeys = jedis.dbSize();
+                    indicator.setIndeterminate(false);
+                }
+                scanner.scan(jedis, pattern, keys -> exportBatch(jedis, keys, output));
+            } else if (commands instanceof JedisCluster) {
+                Map<String, String> nodeErrors = scanner.scan((JedisCluster) commands, pattern,
+                        (connection, keys) -> exportBatch(connection, keys, output));
+                if (!nodeErrors.isEmpty()) {
+                    throw new JedisException("Some cluster nodes could not export their keys: " + nodeErrors);
+                }
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        output.flush();
+    }
+
+    private void exportBatch(Jedis jedis, List<byte[]> keys, ChannelOutput output) {
+        checkCanceled();
+        try {
+            int exported = format.dumpValues ? dumpBatch(jedis, keys, output) : fetchBatch(jedis, keys, output);
+            reportProgress(exportedKeys.addAndGet(exported), output.getWrittenBytes());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private int dumpBatch(Jedis jedis, List<byte[]> keys, ChannelOutput output) throws IOException {
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<byte[]>> dumps = new ArrayList<>(keys.size());
+        List<Response<Long>> ttls = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            dumps.add(pipeline.dump(key));
+            ttls.add(pipeline.pttl(key));
+        }
+        pipeline.sync();
+        int exported = 0;
+        synchronized (output) {
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] dump = dumps.get(i).get();
+                if (dump != null) {
+                    // deleted since it was scanned otherwise
+                    format.writeKey(output, keys.get(i), null, dump, ttls.get(i).get());
+                    exported++;
+                }
+            }
+        }
+        return exported;
+    }
+
+    private int fetchBatch(Jedis jedis, List<byte[]> keys, ChannelOutput output) throws IOException {
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<Object>> shapes = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            shapes.add(pipeline.eval(KEY_SHAPE_SCRIPT, Collections.singletonList(key), Collections.emptyList()));
+        }
+        pipeline.sync();
+
+        List<KeyShape> smallKeys = new ArrayList<>();
+        List<KeyShape> pagedKeys = new ArrayList<>();
+        long pipelineElements = 0;
+        long pipelineBytes = 0;
+        int exported = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            List<?> shape = (List<?>) shapes.get(i).get();
+            String type = new String((byte[]) shape.get(0), Charsets.UTF_8);
+            RedisKeyType keyType = RedisKeyType.getKeyType(type);
+            if (keyType == null) {
+                if (!NONE_TYPE.equals(type)) {
+                    throw new JedisException("unSupport type:" + type);
+                }
+                // deleted since it was scanned
+                continue;
+            }
+            KeyShape keyShape = new KeyShape(keys.get(i), keyType, (Long) shape.get(1), (Long) shape.get(2));
+            if (!RedisKeyType.STRING.equals(keyType) && keyShape.length > pagedLength) {
+                pagedKeys.add(keyShape);
+                continue;
+            }
+            if (RedisKeyType.STRING.equals(keyType)) {
+                pipelineBytes += keyShape.length;
+            } else {
+                pipelineElements += keyShape.length;
+            }
+            smallKeys.add(keyShape);
+            if (pipelineElements >= MAX_PIPELINE_ELEMENTS || pipelineBytes >= MAX_PIPELINE_BYTES) {
+                exported += fetchValues(jedis, smallKeys, output);
+                smallKeys.clear();
+                pipelineElements = 0;
+                pipelineBytes = 0;
+            }
+        }
+        exported += fetchValues(jedis, smallKeys, output);
+        for (KeyShape keyShape : pagedKeys) {
+            exported += fetchPages(jedis, keyShape, output);
+        }
+        return exported;
+    }
+
+    private int fetchValues(Jedis jedis, List<KeyShape> keyShapes, ChannelOutput output) throws IOException {
+        if (keyShapes.isEmpty()) {
+            return 0;
+        }
+        checkCanceled();
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<?>> values = new ArrayList<>(keyShapes.size());
+        for (KeyShape keyShape : keyShapes) {
+            byte[] key = keyShape.key;
+            switch (keyShape.keyType) {
+                case STRING:
+                    values.add(pipeline.get(key));
+                    break;
+                case LIST:
+                    values.add(pipeline.lrange(key, 0, -1));
+                    break;
+                case SET:
+                    values.add(pipeline.smembers(key));
+                    break;
+                case HASH:
+                    values.add(pipeline.hgetAll(key));
+                    break;
+                default:
+                    values.add(pipeline.zrangeWithScores(key, 0, -1));
+            }
+        }
+        pipeline.sync();
+
+        int exported = 0;
+        synchronized (output) {
+            for (int i = 0; i < keyShapes.size(); i++) {
+                Object value = values.get(i).get();
+                if (value != null) {
+                    KeyShape keyShape = keyShapes.get(i);
+                    format.writeKey(output, keyShape.key, keyShape.keyType, value, keyShape.ttlMillis);
+                    exported++;
+                }
+            }
+        }
+        return exported;
+    }
+
+    /**
+     * Writes a long collection page by page. The output is held meanwhile, so that the records of other nodes are
+     * not interleaved with its pages.
+     */
+    private int fetchPages(Jedis jedis, KeyShape keyShape, ChannelOutput output) throws IOException {
+        synchronized (output) {
+            RedisExportFormat.ValueWriter writer = format.startKey(output, keyShape.key, keyShape.keyType, keyShape.ttlMillis);
+            String cursor = null;
+            do {
+                checkCanceled();
+                RedisValuePage page = pager.loadRawPage(jedis, keyShape.key, keyShape.keyType, cursor);
+                writer.write(page.getValues());
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+            writer.end();
+        }
+        return 1;
+    }
+
+    private void reportProgress(long exported, long writtenBytes) {
+        if (indicator == null) {
+            return;
+        }
+        indicator.setText2(String.format("%d keys exported, %s written", exported, StringUtil.formatFileSize(writtenBytes)));
+        if (expectedKeys > 0) {
+            indicator.setFraction(Math.min(1.0, (double) exported / expectedKeys));
+        }
+    }
+
+    private void checkCanceled() {
+        if (indicator != null) {
+            indicator.checkCanceled();
+        }
+    }
+
+    private static boolean isMatchAll(byte[] pattern) {
+        return pattern.length == 1 && pattern[0] == '*';
+    }
+
+    private static class KeyShape {
+
+        private final byte[] key;
+        private final RedisKeyType keyType;
+        private final long length;
+        private final long ttlMillis;
+
+        KeyShape(byte[] key, RedisKeyType keyType, long length, long ttlMillis) {
+            this.key = key;
+            this.keyType = keyType;
+            this.length = length;
+            this.ttlMillis = ttlMillis;
+        }
+    }
+
+    /**
+     * Buffers the records of all the nodes into one direct buffer, written to the channel when full.
+     * A node writing a record holds the lock of the output so that records are not interleaved.
+     */
+    private static class ChannelOutput extends OutputStream {
+
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long writtenBytes;
+
+        ChannelOutput(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) b);
+            writtenBytes++;
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length > buffer.remaining()) {
+                drain();
+            }
+            if (length > buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(bytes, offset, length));
+            } else {
+                buffer.put(bytes, offset, length);
+            }
+            writtenBytes += length;
+        }
+
+        synchronized long getWrittenBytes() {
+            return writtenBytes;
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.text.StringUtil;
+import kotlin.text.Charsets;
+import org.codinjutsu.tools.nosql.redis.model.RedisLoadTimings;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisCommands;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies keys from one server to another with {@code DUMP} and {@code RESTORE ... REPLACE}, values being moved in
+ * their serialized form whatever their type.
+ * <p>
+ * The source is scanned and dumped batch per batch, with {@code DUMP} and {@code PTTL} pipelined, while the batches
+ * already dumped are restored on the target by a second thread. The two sides are connected by a bounded queue:
+ * reads wait when the target falls behind, so no more than {@link #QUEUED_BATCHES} batches are held in memory.
+ * Writes go through a {@link RedisBulkWriter}, which routes them by hash slot on a cluster target.
+ */
+public class RedisKeyMigrator {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    static final int QUEUED_BATCHES = 8;
+
+    private static final byte[] RESTORE = "RESTORE".getBytes(Charsets.UTF_8);
+    private static final byte[] REPLACE = "REPLACE".getBytes(Charsets.UTF_8);
+    private static final List<byte[][]> END_OF_KEYS = Collections.emptyList();
+
+    private final int batchSize;
+    private final ProgressIndicator indicator;
+    private final AtomicLong copiedKeys = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private long expectedKeys;
+
+    public RedisKeyMigrator(int batchSize, @Nullable ProgressIndicator indicator) {
+        this.batchSize = batchSize;
+        this.indicator = indicator;
+    }
+
+    public long getCopiedKeys() {
+        return copiedKeys.get();
+    }
+
+    /**
+     * Copies the keys matching a glob pattern, replacing the target keys of the same name.
+     *
+     * @param source a connection with the source database selected, or a cluster
+     * @param target a connection with the target database selected, or a cluster
+     * @return the number of copied keys
+     */
+    public long copy(JedisCommands source, JedisCommands target, byte[] pattern) {
+        BlockingQueue<List<byte[][]>> dumpedBatches = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+        RedisKeyScanner scanner = new RedisKeyScanner(batchSize, Integer.MAX_VALUE, indicator, new RedisLoadTimings());
+        if (source instanceof Jedis && pattern.length == 1 && pattern[0] == '*') {
+            expectedKeys = ((Jedis) source).dbSize();
+            if (indicator != null) {
+                indicator.setIndeterminate(false);
+            }
+        }
+
+        Future<?> restore = executeOnPooledThread(() -> restoreBatches(target, dumpedBatches, scanner));
+        try {
+            if (source instanceof Jedis) {
+                Jedis jedis = (Jedis) source;
+                scanner.scan(jedis, pattern, keys -> enqueue(dumpedBatches, dumpBatch(jedis, keys), restore));
+            } else if (source instanceof JedisCluster) {
+                Map<String, String> nodeErrors = scanner.scan((JedisCluster) source, pattern,
+                        (connection, keys) -> enqueue(dumpedBatches, dumpBatch(connection, keys), restore));
+                if (!nodeErrors.isEmpty() && !restore.isDone()) {
+                    throw new JedisException("Some cluster nodes could not dump their keys: " + nodeErrors);
+                }
+            }
+            enqueue(dumpedBatches, END_OF_KEYS, restore);
+            waitFor(restore);
+        } catch (RedisKeyScanner.ScanCancelledException ex) {
+            // the scan is only cancelled by a failing restore thread: its error is the one to report
+            waitFor(restore);
+            throw ex;
+        } finally {
+            // stops the restore thread when the scan failed or was cancelled
+            scanner.cancel();
+            restore.cancel(true);
+        }
+        return copiedKeys.get();
+    }
+
+    private List<byte[][]> dumpBatch(Jedis jedis, List<byte[]> keys) {
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<byte[]>> dumps = new ArrayList<>(keys.size());
+        List<Response<Long>> ttls = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            dumps.add(pipeline.dump(key));
+            ttls.add(pipeline.pttl(key));
+        }
+        pipeline.sync();
+        List<byte[][]> restores = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] dump = dumps.get(i).get();
+            if (dump != null) {
+                // null when the key was deleted since it was scanned
+                long ttl = Math.max(ttls.get(i).get(), 0);
+                restores.add(new byte[][]{RESTORE, keys.get(i), Long.toString(ttl).getBytes(Charsets.UTF_8), dump, REPLACE});
+            }
+        }
+        return restores;
+    }
+
+    private void enqueue(BlockingQueue<List<byte[][]>> dumpedBatches, List<byte[][]> batch, Future<?> restore) {
+        try {
+            while (!dumpedBatches.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (restore.isDone()) {
+                    // the target failed: its error is reported by waitFor
+                    waitFor(restore);
+                }
+                checkCanceled();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException();
+        }
+    }
+
+    private void restoreBatches(JedisCommands target, BlockingQueue<List<byte[][]>> dumpedBatches, RedisKeyScanner scanner) {
+        try (RedisBulkWriter writer = new RedisBulkWriter(target, batchSize, 0, null)) {
+            List<byte[][]> batch;
+            while ((batch = dumpedBatches.take()) != END_OF_KEYS) {
+                for (byte[][] restore : batch) {
+                    writer.write(restore);
+                }
+                writer.flush();
+                reportProgress(copiedKeys.addAndGet(batch.size()));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            scanner.cancel();
+            throw ex;
+        }
+    }
+
+    private void reportProgress(long copied) {
+        if (indicator == null) {
+            return;
+        }
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        long keysPerSecond = copied * 1000 / elapsedMillis;
+        if (expectedKeys > 0) {
+            indicator.setFraction(Math.min(1.0, (double) copied / expectedKeys));
+            long remainingMillis = keysPerSecond == 0 ? 0 : Math.max(0, expectedKeys - copied) * 1000 / keysPerSecond;
+            indicator.setText2(String.format("%d of %d keys copied, %d keys/s, %s left", copied, expectedKeys, keysPerSecond,
+                    StringUtil.formatDuration(remainingMillis)));
+        } else {
+            indicator.setText2(String.format("%d keys copied, %d keys/s", copied, keysPerSecond));
+        }
+    }
+
+    private void checkCanceled() {
+        if (indicator != null) {
+            indicator.checkCanceled();
+        }
+    }
+
+    private static void waitFor(Future<?> restore) {
+        try {
+            restore.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new JedisException(cause);
+        }
+    }
+
+    private static Future<?> executeOnPooledThread(Runnable task) {
+        if (ApplicationManager.getApplication() != null) {
+            return ApplicationManager.getApplication().executeOnPooledThread(task);
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(task);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.codinjutsu.tools.nosql.redis.model.RedisLoadTimings;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.util.JedisClusterCRC16;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Walks the keyspace with SCAN instead of KEYS so that the server is never blocked for more than one COUNT batch.
+ * <p>
+ * A scanner is created per search: the key cap is shared by every node it is used on.
+ */
+public class RedisKeyScanner {
+
+    public interface KeyBatchConsumer {
+        void consume(List<byte[]> keys);
+    }
+
+    public interface NodeKeyBatchConsumer {
+        void consume(Jedis connection, List<byte[]> keys);
+    }
+
+    private final int countHint;
+    private final int maxKeys;
+    private final ProgressIndicator indicator;
+    private final RedisLoadTimings timings;
+
+    private final AtomicInteger deliveredKeys = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile boolean limitReached;
+
+    public RedisKeyScanner(int countHint, int maxKeys, @Nullable ProgressIndicator indicator, RedisLoadTimings timings) {
+        this.countHint = countHint;
+        this.maxKeys = maxKeys;
+        this.indicator = indicator;
+        this.timings = timings;
+    }
+
+    /**
+     * Scans the database currently selected on the given connection and hands over the matching keys batch per batch.
+     *
+     * @return the number of keys delivered by this call
+     */
+    public int scan(Jedis jedis, byte[] pattern, KeyBatchConsumer consumer) {
+        if (!hasGlobCharacters(pattern)) {
+            return lookupSingleKey(jedis, pattern, consumer);
+        }
+
+        ScanParams scanParams = new ScanParams().match(pattern).count(countHint);
+        byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+        int delivered = 0;
+        do {
+            checkCanceled();
+            long start = System.nanoTime();
+            ScanResult<byte[]> scanResult = jedis.scan(cursor, scanParams);
+            timings.add(RedisLoadTimings.Phase.SCAN, System.nanoTime() - start);
+            timings.addRoundTrip();
+            cursor = scanResult.getCursorAsBytes();
+
+            delivered += deliver(distinctKeys(scanResult.getResult()), consumer);
+        } while (!limitReached && !Arrays.equals(cursor, ScanParams.SCAN_POINTER_START_BINARY));
+        return delivered;
+    }
+
+    /**
+     * Scans every master of a cluster in parallel and hands over the matching keys with the connection of their node.
+     * A key without glob characters is only looked up on the master owning its hash slot: the others would reply MOVED.
+     *
+     * @return the error message of each node that failed, by "host:port"
+     */
+    public Map<String, String> scan(JedisCluster cluster, byte[] pattern, NodeKeyBatchConsumer consumer) {
+        RedisClusterNodes nodes = new RedisClusterNodes(cluster);
+        if (!hasGlobCharacters(pattern)) {
+            return nodes.onSlotMaster(JedisClusterCRC16.getSlot(pattern), (node, connection) ->
+                    lookupSingleKey(connection, pattern, keys -> consumer.consume(connection, keys)));
+        }
+        return nodes.forEachMaster((node, connection) -> {
+            if (!limitReached) {
+                scan(connection, pattern, keys -> consumer.consume(connection, keys));
+            }
+        });
+    }
+
+    /**
+     * SCAN may return the same key twice while the server rehashes. Only the keys of one reply are compared, so that
+     * a long scan does not hold a copy of every key: a key returned again by a later call is delivered again.
+     */
+    private static List<byte[]> distinctKeys(List<byte[]> keys) {
+        Set<ByteBuffer> seenKeys = new HashSet<>(keys.size() * 2);
+        List<byte[]> batch = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            if (seenKeys.add(ByteBuffer.wrap(key))) {
+                batch.add(key);
+            }
+        }
+        return batch;
+    }
+
+    private int lookupSingleKey(Jedis jedis, byte[] key, KeyBatchConsumer consumer) {
+        checkCanceled();
+        long start = System.nanoTime();
+        boolean exists = Boolean.TRUE.equals(jedis.exists(key));
+        timings.add(RedisLoadTimings.Phase.SCAN, System.nanoTime() - start);
+        timings.addRoundTrip();
+        if (!exists) {
+            return 0;
+        }
+        return deliver(Collections.singletonList(key), consumer);
+    }
+
+    private int deliver(List<byte[]> batch, KeyBatchConsumer consumer) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int total = deliveredKeys.addAndGet(batch.size());
+        int overflow = total - maxKeys;
+        if (overflow >= 0) {
+            limitReached = true;
+            if (overflow > 0) {
+                batch = batch.subList(0, Math.max(0, batch.size() - overflow));
+            }
+        }
+        if (!batch.isEmpty()) {
+            consumer.consume(batch);
+        }
+        if (indicator != null) {
+            indicator.setText2(String.format("%d keys found", Math.min(total, maxKeys)));
+        }
+        return batch.size();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isLimitReached() {
+        return limitReached;
+    }
+
+    public int getDeliveredKeys() {
+        return Math.min(deliveredKeys.get(), maxKeys);
+    }
+
+    private void checkCanceled() {
+        if (cancelled) {
+            throw new ScanCancelledException();
+        }
+        if (indicator != null) {
+            indicator.checkCanceled();
+        }
+    }
+
+    static boolean hasGlobCharacters(byte[] pattern) {
+        for (byte b : pattern) {
+            if (b == '*' || b == '?' || b == '[' || b == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class ScanCancelledException extends RuntimeException {
+        public ScanCancelledException() {
+            super("Key scan cancelled");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import com.intellij.openapi.diagnostic.Logger;
+import kotlin.text.Charsets;
+import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Listens to the keyspace notifications of a database, {@code __keyspace@<db>__:<key>} channels whose message is the
+ * event, on dedicated connections: one per server or cluster master, each blocked in PSUBSCRIBE on its own thread.
+ * <p>
+ * The key pattern is matched by the server, with the same glob syntax as SCAN.
+ */
+public class RedisKeyspaceSubscriber {
+
+    private static final Logger LOG = Logger.getInstance(RedisKeyspaceSubscriber.class);
+
+    /**
+     * Events after which the key does not exist anymore in the database.
+     */
+    public static final List<String> REMOVAL_EVENTS = Arrays.asList("del", "expired", "evicted", "rename_from", "move_from");
+
+    public interface KeyEventListener {
+
+        /**
+         * Called on a subscriber thread.
+         */
+        void keyChanged(byte[] key, String event);
+
+        void subscriptionFailed(Exception error);
+    }
+
+    private final List<Jedis> connections;
+    private final byte[] channelPrefix;
+    private final byte[] channelPattern;
+    private final KeyEventListener listener;
+    private final List<BinaryJedisPubSub> subscriptions = new ArrayList<>();
+    private volatile boolean stopped;
+
+    public RedisKeyspaceSubscriber(List<Jedis> connections, int database, byte[] keyPattern, KeyEventListener listener) {
+        this.connections = connections;
+        this.channelPrefix = ("__keyspace@" + database + "__:").getBytes(Charsets.UTF_8);
+        this.channelPattern = Arrays.copyOf(channelPrefix, channelPrefix.length + keyPattern.length);
+        System.arraycopy(keyPattern, 0, channelPattern, channelPrefix.length, keyPattern.length);
+        this.listener = listener;
+    }
+
+    /**
+     * @return the event classes of {@code notify-keyspace-events} missing to see every change of the keys, empty when
+     * none is missing or when the configuration cannot be read
+     */
+    public String getMissingNotificationClasses() {
+        List<String> config;
+        try {
+            config = connections.get(0).configGet("notify-keyspace-events");
+        } catch (RuntimeException ex) {
+            // CONFIG is often renamed or disabled on managed servers
+            LOG.debug("Cannot read notify-keyspace-events", ex);
+            return "";
+        }
+        String classes = config.size() > 1 ? config.get(1) : "";
+        if (!classes.contains("K")) {
+            return "KA";
+        }
+        if (classes.contains("A")) {
+            return "";
+        }
+        StringBuilder missing = new StringBuilder();
+        for (char eventClass : "g$lshzxe".toCharArray()) {
+            if (classes.indexOf(eventClass) < 0) {
+                missing.append(eventClass);
+            }
+        }
+        return missing.toString();
+    }
+
+    public void start() {
+        for (final Jedis connection : connections) {
+            final BinaryJedisPubSub subscription = new BinaryJedisPubSub() {
+                @Override
+                public void onPMessage(byte[] pattern, byte[] channel, byte[] message) {
+                    listener.keyChanged(Arrays.copyOfRange(channel, channelPrefix.length, channel.length), new String(message, Charsets.UTF_8));
+                }
+            };
+            subscriptions.add(subscription);
+            Thread thread = new Thread(() -> {
+                try {
+                    connection.psubscribe(subscription, channelPattern);
+                } catch (RuntimeException ex) {
+                    if (!stopped) {
+                        listener.subscriptionFailed(ex);
+                    }
+                }
+            }, "Redis keyspace notifications of " + connection.getClient().getHost() + ":" + connection.getClient().getPort());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Unsubscribes and closes the connections.
+     */
+    public void stop() {
+        stopped = true;
+        for (BinaryJedisPubSub subscription : subscriptions) {
+            try {
+                if (subscription.isSubscribed()) {
+                    subscription.punsubscribe();
+                }
+            } catch (RuntimeException ex) {
+                LOG.debug("Cannot unsubscribe from keyspace notifications", ex);
+            }
+        }
+        for (Jedis connection : connections) {
+            try {
+                connection.close();
+            } catch (RuntimeException ex) {
+                LOG.debug("Cannot close a keyspace notification connection", ex);
+            }
+        }
+    }
+}
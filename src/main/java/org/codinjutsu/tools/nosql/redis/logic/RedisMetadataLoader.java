@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import kotlin.text.Charsets;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyMetadata;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType;
+import org.codinjutsu.tools.nosql.redis.model.RedisRecord;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.JedisClusterCRC16;
+
+import java.util.*;
+
+/**
+ * Fetches the metadata of a batch of keys in a single pipelined round trip: PTTL, the length command of the key
+ * type, OBJECT ENCODING and MEMORY USAGE for every key.
+ * <p>
+ * On a cluster the keys are sent to the master of their hash slot, one pipeline per master.
+ */
+public class RedisMetadataLoader {
+
+    // MEMORY USAGE is not exposed by the client and does not exist before Redis 4
+    private static final byte[] MEMORY_USAGE_SCRIPT = ("local ok, bytes = pcall(redis.call, 'MEMORY', 'USAGE', KEYS[1])\n" +
+            "if ok then return bytes end\n" +
+            "return -1\n").getBytes(Charsets.UTF_8);
+
+    /**
+     * @param keyTypes type of each key, as loaded with the key; null for an unknown type
+     * @return the metadata of each key, in the order of the keys
+     */
+    public List<RedisKeyMetadata> load(Jedis jedis, List<byte[]> keys, List<RedisKeyType> keyTypes) {
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<Long>> ttls = new ArrayList<>(keys.size());
+        List<Response<Long>> lengths = new ArrayList<>(keys.size());
+        List<Response<byte[]>> encodings = new ArrayList<>(keys.size());
+        List<Response<Object>> memories = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] key = keys.get(i);
+            ttls.add(pipeline.pttl(key));
+            lengths.add(length(pipeline, key, keyTypes.get(i)));
+            encodings.add(pipeline.objectEncoding(key));
+            memories.add(pipeline.eval(MEMORY_USAGE_SCRIPT, Collections.singletonList(key), Collections.<byte[]>emptyList()));
+        }
+        pipeline.sync();
+
+        List<RedisKeyMetadata> metadata = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Object memory = memories.get(i).get();
+            byte[] encoding = encodings.get(i).get();
+            metadata.add(new RedisKeyMetadata(
+                    ttls.get(i).get(),
+                    lengthOf(lengths.get(i)),
+                    encoding == null ? null : new String(encoding, Charsets.UTF_8),
+                    // MEMORY USAGE replies nil for a missing key
+                    memory instanceof Long ? (Long) memory : RedisKeyMetadata.UNKNOWN_MEMORY));
+        }
+        return metadata;
+    }
+
+    public List<RedisKeyMetadata> load(JedisCluster cluster, List<byte[]> keys, List<RedisKeyType> keyTypes) {
+        String[] slotMasters = new RedisClusterNodes(cluster).slotMasters();
+        Map<String, List<Integer>> keyIndicesByMaster = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            int slot = JedisClusterCRC16.getSlot(keys.get(i));
+            String master = slotMasters[slot];
+            if (master == null) {
+                throw new JedisException("hash slot " + slot + " is not served by any node");
+            }
+            keyIndicesByMaster.computeIfAbsent(master, node -> new ArrayList<>()).add(i);
+        }
+
+        RedisKeyMetadata[] metadata = new RedisKeyMetadata[keys.size()];
+        Map<String, JedisPool> pools = cluster.getClusterNodes();
+        for (Map.Entry<String, List<Integer>> masterKeys : keyIndicesByMaster.entrySet()) {
+            JedisPool pool = pools.get(masterKeys.getKey());
+            if (pool == null) {
+                throw new JedisException("no connection pool for cluster node " + masterKeys.getKey());
+            }
+            List<byte[]> nodeKeys = new ArrayList<>(masterKeys.getValue().size());
+            List<RedisKeyType> nodeKeyTypes = new ArrayList<>(masterKeys.getValue().size());
+            for (int index : masterKeys.getValue()) {
+                nodeKeys.add(keys.get(index));
+                nodeKeyTypes.add(keyTypes.get(index));
+            }
+            List<RedisKeyMetadata> nodeMetadata;
+            try (Jedis connection = pool.getResource()) {
+                nodeMetadata = load(connection, nodeKeys, nodeKeyTypes);
+            }
+            for (int i = 0; i < nodeMetadata.size(); i++) {
+                metadata[masterKeys.getValue().get(i)] = nodeMetadata.get(i);
+            }
+        }
+        return Arrays.asList(metadata);
+    }
+
+    /**
+     * @return the length, unknown when the key changed its type since it was loaded and the command replied WRONGTYPE
+     */
+    private static long lengthOf(Response<Long> length) {
+        if (length == null) {
+            return RedisRecord.UNKNOWN_LENGTH;
+        }
+        try {
+            return length.get();
+        } catch (JedisDataException ex) {
+            return RedisRecord.UNKNOWN_LENGTH;
+        }
+    }
+
+    private static Response<Long> length(Pipeline pipeline, byte[] key, RedisKeyType keyType) {
+        if (keyType == null) {
+            return null;
+        }
+        switch (keyType) {
+            case STRING:
+                return pipeline.strlen(key);
+            case LIST:
+                return pipeline.llen(key);
+            case SET:
+                return pipeline.scard(key);
+            case HASH:
+                return pipeline.hlen(key);
+            default:
+                return pipeline.zcard(key);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType;
+import org.codinjutsu.tools.nosql.redis.model.RedisLoadTimings;
+import org.codinjutsu.tools.nosql.redis.model.RedisLoadTimings.Phase;
+import org.codinjutsu.tools.nosql.redis.model.RedisQuery;
+import org.codinjutsu.tools.nosql.redis.model.RedisRecord;
+import org.codinjutsu.tools.nosql.redis.model.RedisResult;
+import org.codinjutsu.tools.nosql.redis.model.RedisValuePage;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Tuple;
+
+import java.util.*;
+
+import static org.codinjutsu.tools.nosql.redis.logic.RedisValuePager.decode;
+
+/**
+ * Loads the type and value of a batch of keys with pipelined round trips instead of two round trips per key.
+ * <p>
+ * Only the first page of a collection is read: lists and sorted sets are ranged in the value pipeline along with
+ * their length, sets and hashes are read whole when their length fits in a page and scanned otherwise.
+ * In keys only mode the second round trip fetches the length of each key instead of its value.
+ */
+public class RedisPipelinedLoader implements RedisBatchLoader {
+
+    private static final String NONE_TYPE = "none";
+
+    private final int batchSize;
+    private final RedisValuePager pager;
+    private final boolean keysOnly;
+    private final boolean fetchLengths;
+    private final RedisLoadTimings timings;
+
+    public RedisPipelinedLoader(int batchSize, int pageSize, boolean keysOnly, boolean fetchLengths, RedisLoadTimings timings) {
+        this.batchSize = batchSize;
+        this.pager = new RedisValuePager(pageSize);
+        this.keysOnly = keysOnly;
+        this.fetchLengths = fetchLengths;
+        this.timings = timings;
+    }
+
+    public static RedisPipelinedLoader forQuery(RedisQuery query, RedisLoadTimings timings) {
+        return new RedisPipelinedLoader(query.getPipelineBatchSize(), query.getValuePageSize(), query.isKeysOnly(), query.isFetchLengths(), timings);
+    }
+
+    public static RedisPipelinedLoader forSingleKey(RedisLoadTimings timings) {
+        return new RedisPipelinedLoader(1, RedisQuery.DEFAULT_VALUE_PAGE_SIZE, false, false, timings);
+    }
+
+    @Override
+    public RedisLoadTimings getTimings() {
+        return timings;
+    }
+
+    public RedisValuePager getPager() {
+        return pager;
+    }
+
+    @Override
+    public RedisResult load(Jedis jedis, List<byte[]> keys) {
+        RedisResult redisResult = new RedisResult();
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            loadBatch(jedis, keys.subList(from, Math.min(from + batchSize, keys.size())), redisResult);
+        }
+        return redisResult;
+    }
+
+    /**
+     * Loads a single key through the cluster routing: used when a key is expanded in browse mode.
+     */
+    public RedisResult load(JedisCluster cluster, byte[] key) {
+        RedisResult redisResult = new RedisResult();
+        long start = System.nanoTime();
+        String type = cluster.type(key);
+        timings.add(Phase.TYPE, System.nanoTime() - start);
+        timings.addRoundTrip();
+
+        RedisKeyType keyType = RedisKeyType.getKeyType(type);
+        if (NONE_TYPE.equals(type)) {
+            return redisResult;
+        } else if (keyType == null) {
+            throw new RuntimeException("unSupport type:" + type);
+        }
+
+        start = System.nanoTime();
+        if (RedisKeyType.STRING.equals(keyType)) {
+            redisResult.addString(key, decode(cluster.get(key)));
+        } else {
+            redisResult.addPage(key, pager.loadPage(cluster, key, keyType, null), RedisRecord.UNKNOWN_LENGTH);
+        }
+        timings.add(Phase.FETCH, System.nanoTime() - start);
+        timings.addRoundTrip();
+        timings.addKeys(1);
+        return redisResult;
+    }
+
+    private void loadBatch(Jedis jedis, List<byte[]> keys, RedisResult redisResult) {
+        List<String> types = fetchTypes(jedis, keys);
+        if (keysOnly) {
+            loadKeysBatch(jedis, keys, types, redisResult);
+            return;
+        }
+
+        int size = keys.size();
+        List<Response<?>> values = new ArrayList<>(size);
+        List<Response<Long>> lengths = new ArrayList<>(size);
+        fetchFirstPages(jedis, keys, types, values, lengths);
+        RedisValuePage[] scannedPages = fetchSetsAndHashes(jedis, keys, types, values, lengths);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            RedisKeyType keyType = RedisKeyType.getKeyType(types.get(i));
+            if (keyType == null) {
+                continue;
+            }
+            byte[] key = keys.get(i);
+            if (RedisKeyType.STRING.equals(keyType)) {
+                redisResult.addString(key, decode((byte[]) values.get(i).get()));
+            } else {
+                RedisValuePage page = scannedPages[i] != null ? scannedPages[i] : decodeFirstPage(keyType, values.get(i).get());
+                redisResult.addPage(key, page, lengths.get(i).get());
+            }
+        }
+        timings.add(Phase.DECODE, System.nanoTime() - start);
+        timings.addKeys(size);
+    }
+
+    private void fetchFirstPages(Jedis jedis, List<byte[]> keys, List<String> types, List<Response<?>> values, List<Response<Long>> lengths) {
+        long start = System.nanoTime();
+        int lastIndex = pager.getPageSize() - 1;
+        Pipeline pipeline = jedis.pipelined();
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] key = keys.get(i);
+            String type = types.get(i);
+            RedisKeyType keyType = RedisKeyType.getKeyType(type);
+            if (RedisKeyType.LIST.equals(keyType)) {
+                values.add(pipeline.lrange(key, 0, lastIndex));
+                lengths.add(pipeline.llen(key));
+            } else if (RedisKeyType.ZSET.equals(keyType)) {
+                values.add(pipeline.zrangeWithScores(key, 0, lastIndex));
+                lengths.add(pipeline.zcard(key));
+            } else if (RedisKeyType.SET.equals(keyType)) {
+                values.add(null);
+                lengths.add(pipeline.scard(key));
+            } else if (RedisKeyType.HASH.equals(keyType)) {
+                values.add(null);
+                lengths.add(pipeline.hlen(key));
+            } else if (RedisKeyType.STRING.equals(keyType)) {
+                values.add(pipeline.get(key));
+                lengths.add(null);
+            } else if (NONE_TYPE.equals(type)) {
+                // expired or deleted between SCAN and TYPE
+                values.add(null);
+                lengths.add(null);
+            } else {
+                throw new RuntimeException("unSupport type:" + type);
+            }
+        }
+        pipeline.sync();
+        timings.add(Phase.FETCH, System.nanoTime() - start);
+        timings.addRoundTrip();
+    }
+
+    /**
+     * Sets and hashes fitting in a page are read in one more pipeline, bigger ones are scanned one page each.
+     *
+     * @return the first page of the scanned keys, indexed like the keys
+     */
+    private RedisValuePage[] fetchSetsAndHashes(Jedis jedis, List<byte[]> keys, List<String> types, List<Response<?>> values,
+                                                List<Response<Long>> lengths) {
+        long start = System.nanoTime();
+        RedisValuePage[] scannedPages = new RedisValuePage[keys.size()];
+        Pipeline pipeline = null;
+        for (int i = 0; i < keys.size(); i++) {
+            RedisKeyType keyType = RedisKeyType.getKeyType(types.get(i));
+            if (!RedisKeyType.SET.equals(keyType) && !RedisKeyType.HASH.equals(keyType)) {
+                continue;
+            }
+            byte[] key = keys.get(i);
+            if (lengths.get(i).get() > pager.getPageSize()) {
+                continue;
+            }
+            if (pipeline == null) {
+                pipeline = jedis.pipelined();
+            }
+            values.set(i, RedisKeyType.SET.equals(keyType) ? pipeline.smembers(key) : pipeline.hgetAll(key));
+        }
+        if (pipeline != null) {
+            pipeline.sync();
+            timings.addRoundTrip();
+        }
+
+        for (int i = 0; i < keys.size(); i++) {
+            RedisKeyType keyType = RedisKeyType.getKeyType(types.get(i));
+            if ((RedisKeyType.SET.equals(keyType) || RedisKeyType.HASH.equals(keyType)) && values.get(i) == null) {
+                scannedPages[i] = pager.loadPage(jedis, keys.get(i), keyType, null);
+                timings.addRoundTrip();
+            }
+        }
+        timings.add(Phase.FETCH, System.nanoTime() - start);
+        return scannedPages;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisValuePage decodeFirstPage(RedisKeyType keyType, Object value) {
+        if (RedisKeyType.LIST.equals(keyType)) {
+            return pager.listPage((List<byte[]>) value, 0);
+        } else if (RedisKeyType.ZSET.equals(keyType)) {
+            return pager.sortedSetPage((Set<Tuple>) value, 0);
+        } else if (RedisKeyType.SET.equals(keyType)) {
+            return new RedisValuePage(keyType, RedisValuePager.decodeSet((Set<byte[]>) value), 0, null);
+        }
+        return new RedisValuePage(keyType, RedisValuePager.decodeHash((Map<byte[], byte[]>) value), 0, null);
+    }
+
+    private void loadKeysBatch(Jedis jedis, List<byte[]> keys, List<String> types, RedisResult redisResult) {
+        List<Response<Long>> lengths = fetchLengths ? fetchLengths(jedis, keys, types) : null;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < keys.size(); i++) {
+            RedisKeyType keyType = RedisKeyType.getKeyType(types.get(i));
+            if (keyType == null) {
+                continue;
+            }
+            Response<Long> length = lengths == null ? null : lengths.get(i);
+            redisResult.addKey(keyType, keys.get(i), length == null ? RedisRecord.UNKNOWN_LENGTH : length.get());
+        }
+        timings.add(Phase.DECODE, System.nanoTime() - start);
+        timings.addKeys(keys.size());
+    }
+
+    private List<Response<Long>> fetchLengths(Jedis jedis, List<byte[]> keys, List<String> types) {
+        long start = System.nanoTime();
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<Long>> responses = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] key = keys.get(i);
+            String type = types.get(i);
+            RedisKeyType keyType = RedisKeyType.getKeyType(type);
+            if (RedisKeyType.LIST.equals(keyType)) {
+                responses.add(pipeline.llen(key));
+            } else if (RedisKeyType.SET.equals(keyType)) {
+                responses.add(pipeline.scard(key));
+            } else if (RedisKeyType.HASH.equals(keyType)) {
+                responses.add(pipeline.hlen(key));
+            } else if (RedisKeyType.ZSET.equals(keyType)) {
+                responses.add(pipeline.zcard(key));
+            } else if (RedisKeyType.STRING.equals(keyType)) {
+                responses.add(pipeline.strlen(key));
+            } else if (NONE_TYPE.equals(type)) {
+                responses.add(null);
+            } else {
+                throw new RuntimeException("unSupport type:" + type);
+            }
+        }
+        pipeline.sync();
+        timings.add(Phase.FETCH, System.nanoTime() - start);
+        timings.addRoundTrip();
+        return responses;
+    }
+
+    private List<String> fetchTypes(Jedis jedis, List<byte[]> keys) {
+        long start = System.nanoTime();
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<String>> responses = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            responses.add(pipeline.type(key));
+        }
+        pipeline.sync();
+
+        List<String> types = new ArrayList<>(keys.size());
+        for (Response<String> response : responses) {
+            types.add(response.get());
+        }
+        timings.add(Phase.TYPE, System.nanoTime() - start);
+        timings.addRoundTrip();
+        return types;
+    }
+}
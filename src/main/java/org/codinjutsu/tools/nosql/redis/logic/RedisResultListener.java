@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import org.codinjutsu.tools.nosql.redis.model.RedisResult;
+
+/**
+ * Receives the records of a query as soon as each SCAN batch has been loaded.
+ */
+public interface RedisResultListener {
+
+    RedisResultListener NONE = new RedisResultListener() {
+        @Override
+        public void batchLoaded(RedisResult batch) {
+        }
+    };
+
+    void batchLoaded(RedisResult batch);
+
+    /**
+     * @return true when the listener keeps the records itself: the query result then only carries the key limit flag,
+     * the timings and the node errors, so that the keys are not held twice
+     */
+    default boolean keepsRecords() {
+        return false;
+    }
+}
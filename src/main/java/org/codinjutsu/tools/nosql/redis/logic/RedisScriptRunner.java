@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import kotlin.text.Charsets;
+import org.codinjutsu.tools.nosql.redis.model.RedisScriptReport;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisCommands;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.JedisClusterCRC16;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a script of commands, one per line with the quoting of redis-cli, sending them {@code batchSize} at a time
+ * in a single pipeline. A failing command is reported with its line and the run goes on.
+ * <p>
+ * With transactions, each block of lines ended by a blank line is wrapped in MULTI/EXEC. A block, like a
+ * MULTI ... EXEC written in the script, is never split across batches. On a cluster, each command or block goes to
+ * the master of its first key, so the commands of different masters are not ordered between them.
+ * <p>
+ * The run borrows a connection of the pool, hence the commands changing it for good are refused: SELECT, AUTH, HELLO,
+ * READONLY, READWRITE, CLIENT REPLY, the subscriptions, MONITOR, the replication commands, QUIT and RESET.
+ */
+public class RedisScriptRunner {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final List<String> REFUSED_COMMANDS = Arrays.asList("SELECT", "SUBSCRIBE", "PSUBSCRIBE", "SSUBSCRIBE",
+            "MONITOR", "SYNC", "PSYNC", "QUIT", "RESET", "AUTH", "HELLO", "READONLY", "READWRITE");
+    private static final List<String> TRANSACTION_COMMANDS = Arrays.asList("MULTI", "EXEC", "DISCARD");
+    private static final byte[] MULTI = "MULTI".getBytes(Charsets.UTF_8);
+    private static final byte[] EXEC = "EXEC".getBytes(Charsets.UTF_8);
+
+    private final JedisCommands commands;
+    private final int batchSize;
+    private final boolean transactionPerBlock;
+    private final ProgressIndicator indicator;
+    private final String[] slotMasters;
+
+    private final RedisScriptReport report = new RedisScriptReport();
+    private final List<Unit> pendingUnits = new ArrayList<>();
+    private int pendingCommandCount;
+    private List<ScriptCommand> openTransaction;
+    private long startNanos;
+
+    /**
+     * @param commands            a connection with the target database selected, or a cluster
+     * @param transactionPerBlock whether each block of lines is run in a MULTI/EXEC transaction
+     */
+    public RedisScriptRunner(JedisCommands commands, int batchSize, boolean transactionPerBlock, @Nullable ProgressIndicator indicator) {
+        this.commands = commands;
+        this.batchSize = batchSize;
+        this.transactionPerBlock = transactionPerBlock;
+        this.indicator = indicator;
+        this.slotMasters = commands instanceof JedisCluster ? new RedisClusterNodes((JedisCluster) commands).slotMasters() : null;
+    }
+
+    public RedisScriptReport run(BufferedReader script) throws IOException {
+        startNanos = System.nanoTime();
+        List<ScriptCommand> block = new ArrayList<>();
+        int lineNumber = 0;
+        String line;
+        while ((line = script.readLine()) != null) {
+            lineNumber++;
+            String text = line.trim();
+            if (text.isEmpty()) {
+                endBlock(block);
+                continue;
+            }
+            List<byte[]> arguments;
+            try {
+                arguments = RedisCommandLineParser.parse(text);
+            } catch (IllegalArgumentException ex) {
+                report.addError(lineNumber, text, ex.getMessage());
+                continue;
+            }
+            if (arguments.isEmpty()) {
+                continue;
+            }
+            ScriptCommand command = new ScriptCommand(lineNumber, text, arguments.toArray(new byte[0][]));
+            if (REFUSED_COMMANDS.contains(command.name)) {
+                report.addError(lineNumber, text, command.name + " is not supported in a script");
+            } else if (isClientReply(command)) {
+                report.addError(lineNumber, text, "CLIENT REPLY is not supported in a script");
+            } else if (transactionPerBlock) {
+                block.add(command);
+            } else {
+                addCommand(command);
+            }
+        }
+        endBlock(block);
+        if (openTransaction != null) {
+            ScriptCommand multi = openTransaction.get(0);
+            report.addError(multi.line, multi.text, "MULTI without EXEC, the transaction was not sent");
+        }
+        flush();
+        return report;
+    }
+
+    /**
+     * @return whether the command turns off the replies the pipeline waits for
+     */
+    private static boolean isClientReply(ScriptCommand command) {
+        return "CLIENT".equals(command.name) && command.arguments.length > 1
+                && "REPLY".equalsIgnoreCase(new String(command.arguments[1], Charsets.UTF_8));
+    }
+
+    private void endBlock(List<ScriptCommand> block) {
+        if (block.isEmpty()) {
+            return;
+        }
+        if (openTransaction == null && block.stream().noneMatch(command -> TRANSACTION_COMMANDS.contains(command.name))) {
+            add(new Unit(new ArrayList<>(block), true));
+        } else {
+            // the script handles its transactions itself
+            for (ScriptCommand command : block) {
+                addCommand(command);
+            }
+        }
+        block.clear();
+    }
+
+    private void addCommand(ScriptCommand command) {
+        if (openTransaction != null) {
+            openTransaction.add(command);
+            if ("EXEC".equals(command.name) || "DISCARD".equals(command.name)) {
+                add(new Unit(openTransaction, false));
+                openTransaction = null;
+            }
+        } else if ("MULTI".equals(command.name)) {
+            openTransaction = new ArrayList<>();
+            openTransaction.add(command);
+        } else {
+            add(new Unit(Collections.singletonList(command), false));
+        }
+    }
+
+    private void add(Unit unit) {
+        if (!pendingUnits.isEmpty() && pendingCommandCount + unit.commands.size() > batchSize) {
+            flush();
+        }
+        pendingUnits.add(unit);
+        pendingCommandCount += unit.commands.size();
+        if (pendingCommandCount >= batchSize) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (!pendingUnits.isEmpty()) {
+            if (indicator != null) {
+                indicator.checkCanceled();
+            }
+            List<Unit> batch = new ArrayList<>(pendingUnits);
+            pendingUnits.clear();
+            pendingCommandCount = 0;
+            if (commands instanceof Jedis) {
+                send((Jedis) commands, batch);
+            } else if (commands instanceof JedisCluster) {
+                sendToMasters((JedisCluster) commands, batch);
+            }
+        }
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        if (indicator != null) {
+            indicator.setText2(String.format("%d commands executed, %d failed, %d/s", report.getExecutedCommands(),
+                    report.getFailedCommands(), report.getThroughput()));
+        }
+    }
+
+    private void sendToMasters(JedisCluster cluster, List<Unit> batch) {
+        Map<String, List<Unit>> unitsByMaster = new LinkedHashMap<>();
+        for (Unit unit : batch) {
+            String master = masterOf(unit);
+            if (master == null) {
+                failAll(unit, "the hash slot of the key is not served by any node");
+            } else {
+                unitsByMaster.computeIfAbsent(master, node -> new ArrayList<>()).add(unit);
+            }
+        }
+        Map<String, JedisPool> pools = cluster.getClusterNodes();
+        for (Map.Entry<String, List<Unit>> masterUnits : unitsByMaster.entrySet()) {
+            JedisPool pool = pools.get(masterUnits.getKey());
+            if (pool == null) {
+                masterUnits.getValue().forEach(unit -> failAll(unit, "no connection pool for cluster node " + masterUnits.getKey()));
+                continue;
+            }
+            try (Jedis connection = pool.getResource()) {
+                send(connection, masterUnits.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return the master owning the first key of the unit, any master for commands without key
+     */
+    @Nullable
+    private String masterOf(Unit unit) {
+        for (ScriptCommand command : unit.commands) {
+            if (command.arguments.length > 1) {
+                return slotMasters[JedisClusterCRC16.getSlot(command.arguments[1])];
+            }
+        }
+        for (String master : slotMasters) {
+            if (master != null) {
+                return master;
+            }
+        }
+        return null;
+    }
+
+    private void send(Jedis jedis, List<Unit> batch) {
+        ByteArrayOutputStream pipeline = new ByteArrayOutputStream();
+        for (Unit unit : batch) {
+            if (unit.wrapped) {
+                RedisExportFormat.writeCommand(pipeline, MULTI);
+            }
+            for (ScriptCommand command : unit.commands) {
+                RedisExportFormat.writeCommand(pipeline, command.arguments);
+            }
+            if (unit.wrapped) {
+                RedisExportFormat.writeCommand(pipeline, EXEC);
+            }
+        }
+        Client client = jedis.getClient();
+        try {
+            // any command: written as is, the client only reads the replies
+            OutputStream output = client.getSocket().getOutputStream();
+            pipeline.writeTo(output);
+            output.flush();
+        } catch (IOException ex) {
+            client.disconnect();
+            throw new JedisConnectionException(ex);
+        }
+        for (Unit unit : batch) {
+            if (unit.wrapped) {
+                readTransaction(client, unit);
+            } else {
+                for (ScriptCommand command : unit.commands) {
+                    readReply(client, command);
+                }
+            }
+            report.addExecuted(unit.commands.size());
+        }
+    }
+
+    private void readReply(Client client, ScriptCommand command) {
+        Object reply = read(client);
+        if (reply instanceof JedisDataException) {
+            report.addError(command.line, command.text, ((JedisDataException) reply).getMessage());
+        } else if ("EXEC".equals(command.name) && reply instanceof List) {
+            // failures inside a transaction written in the script are reported on its EXEC
+            for (Object result : (List<?>) reply) {
+                if (result instanceof JedisDataException) {
+                    report.addError(command.line, command.text, ((JedisDataException) result).getMessage());
+                }
+            }
+        }
+    }
+
+    private void readTransaction(Client client, Unit unit) {
+        read(client); // MULTI
+        List<ScriptCommand> queued = new ArrayList<>();
+        for (ScriptCommand command : unit.commands) {
+            Object reply = read(client);
+            if (reply instanceof JedisDataException) {
+                report.addError(command.line, command.text, ((JedisDataException) reply).getMessage());
+            } else {
+                queued.add(command);
+            }
+        }
+        Object results = read(client);
+        if (results instanceof JedisDataException) {
+            // EXECABORT: none of the queued commands ran
+            String message = "not executed: " + ((JedisDataException) results).getMessage();
+            queued.forEach(command -> report.addError(command.line, command.text, message));
+        } else if (results instanceof List) {
+            List<?> replies = (List<?>) results;
+            for (int i = 0; i < replies.size() && i < queued.size(); i++) {
+                if (replies.get(i) instanceof JedisDataException) {
+                    ScriptCommand command = queued.get(i);
+                    report.addError(command.line, command.text, ((JedisDataException) replies.get(i)).getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the reply, or the error replied by the server
+     */
+    private static Object read(Client client) {
+        try {
+            return client.getOne();
+        } catch (JedisDataException ex) {
+            return ex;
+        }
+    }
+
+    private void failAll(Unit unit, String message) {
+        unit.commands.forEach(command -> report.addError(command.line, command.text, message));
+    }
+
+    private static class ScriptCommand {
+
+        private final int line;
+        private final String text;
+        private final String name;
+        private final byte[][] arguments;
+
+        ScriptCommand(int line, String text, byte[][] arguments) {
+            this.line = line;
+            this.text = text;
+            this.name = new String(arguments[0], Charsets.UTF_8).toUpperCase(Locale.ROOT);
+            this.arguments = arguments;
+        }
+    }
+
+    /**
+     * Commands sent together on the same connection: a single command, a transaction of the script, or a block
+     * wrapped in MULTI/EXEC.
+     */
+    private static class Unit {
+
+        private final List<ScriptCommand> commands;
+        private final boolean wrapped;
+
+        Unit(List<ScriptCommand> commands, boolean wrapped) {
+            this.commands = commands;
+            this.wrapped = wrapped;
+        }
+    }
+}
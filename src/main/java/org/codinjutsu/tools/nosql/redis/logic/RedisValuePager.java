@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import kotlin.text.Charsets;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType;
+import org.codinjutsu.tools.nosql.redis.model.RedisValuePage;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.Tuple;
+
+import java.util.*;
+
+/**
+ * Reads collection values window by window so that the memory used by one key is bounded by the page size.
+ * <p>
+ * Lists and sorted sets are paged by rank with LRANGE/ZRANGE, which keeps their order; sets and hashes are paged with
+ * SSCAN/HSCAN. The page size is only a COUNT hint for the latter.
+ */
+public class RedisValuePager {
+
+    private static final String SCAN_END = ScanParams.SCAN_POINTER_START;
+
+    private final int pageSize;
+
+    public RedisValuePager(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public RedisValuePage loadPage(Jedis jedis, byte[] key, RedisKeyType keyType, @Nullable String cursor) {
+        return decodePage(loadRawPage(jedis, key, keyType, cursor));
+    }
+
+    /**
+     * Loads a window without decoding it: a list of byte arrays for lists and sets, a map of byte arrays for hashes
+     * and a set of tuples for sorted sets.
+     */
+    public RedisValuePage loadRawPage(Jedis jedis, byte[] key, RedisKeyType keyType, @Nullable String cursor) {
+        if (RedisKeyType.LIST.equals(keyType)) {
+            long offset = rankOf(cursor);
+            List<byte[]> elements = jedis.lrange(key, offset, offset + pageSize - 1);
+            return new RedisValuePage(RedisKeyType.LIST, elements, offset, nextRank(offset, elements.size()));
+        } else if (RedisKeyType.ZSET.equals(keyType)) {
+            long offset = rankOf(cursor);
+            Set<Tuple> tuples = jedis.zrangeWithScores(key, offset, offset + pageSize - 1);
+            return new RedisValuePage(RedisKeyType.ZSET, tuples, offset, nextRank(offset, tuples.size()));
+        } else if (RedisKeyType.SET.equals(keyType)) {
+            ScanResult<byte[]> scanResult = jedis.sscan(key, scanCursorOf(cursor), scanParams());
+            return new RedisValuePage(RedisKeyType.SET, scanResult.getResult(), 0, nextScanCursor(scanResult));
+        } else if (RedisKeyType.HASH.equals(keyType)) {
+            ScanResult<Map.Entry<byte[], byte[]>> scanResult = jedis.hscan(key, scanCursorOf(cursor), scanParams());
+            Map<byte[], byte[]> entries = new LinkedHashMap<>();
+            for (Map.Entry<byte[], byte[]> entry : scanResult.getResult()) {
+                entries.put(entry.getKey(), entry.getValue());
+            }
+            return new RedisValuePage(RedisKeyType.HASH, entries, 0, nextScanCursor(scanResult));
+        }
+        throw new IllegalArgumentException("Not a collection type: " + keyType);
+    }
+
+    private static RedisValuePage decodePage(RedisValuePage rawPage) {
+        Object values = rawPage.getValues();
+        if (RedisKeyType.LIST.equals(rawPage.getKeyType())) {
+            values = decodeList((List<byte[]>) values);
+        } else if (RedisKeyType.SET.equals(rawPage.getKeyType())) {
+            values = decodeSet((List<byte[]>) values);
+        } else if (RedisKeyType.HASH.equals(rawPage.getKeyType())) {
+            values = decodeHash((Map<byte[], byte[]>) values);
+        }
+        return new RedisValuePage(rawPage.getKeyType(), values, rawPage.getOffset(), rawPage.getNextCursor());
+    }
+
+    public RedisValuePage loadPage(JedisCluster cluster, byte[] key, RedisKeyType keyType, @Nullable String cursor) {
+        if (RedisKeyType.LIST.equals(keyType)) {
+            long offset = rankOf(cursor);
+            return listPage(cluster.lrange(key, offset, offset + pageSize - 1), offset);
+        } else if (RedisKeyType.ZSET.equals(keyType)) {
+            long offset = rankOf(cursor);
+            return sortedSetPage(cluster.zrangeWithScores(key, offset, offset + pageSize - 1), offset);
+        } else if (RedisKeyType.SET.equals(keyType)) {
+            return setPage(cluster.sscan(key, scanCursorOf(cursor), scanParams()));
+        } else if (RedisKeyType.HASH.equals(keyType)) {
+            return hashPage(cluster.hscan(key, scanCursorOf(cursor), scanParams()));
+        }
+        throw new IllegalArgumentException("Not a collection type: " + keyType);
+    }
+
+    RedisValuePage listPage(List<byte[]> elements, long offset) {
+        return new RedisValuePage(RedisKeyType.LIST, decodeList(elements), offset, nextRank(offset, elements.size()));
+    }
+
+    RedisValuePage sortedSetPage(Set<Tuple> tuples, long offset) {
+        return new RedisValuePage(RedisKeyType.ZSET, tuples, offset, nextRank(offset, tuples.size()));
+    }
+
+    private static RedisValuePage setPage(ScanResult<byte[]> scanResult) {
+        return new RedisValuePage(RedisKeyType.SET, decodeSet(scanResult.getResult()), 0, nextScanCursor(scanResult));
+    }
+
+    private static RedisValuePage hashPage(ScanResult<Map.Entry<byte[], byte[]>> scanResult) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (Map.Entry<byte[], byte[]> entry : scanResult.getResult()) {
+            values.put(decode(entry.getKey()), decode(entry.getValue()));
+        }
+        return new RedisValuePage(RedisKeyType.HASH, values, 0, nextScanCursor(scanResult));
+    }
+
+    private String nextRank(long offset, int returned) {
+        return returned < pageSize ? null : String.valueOf(offset + returned);
+    }
+
+    private static String nextScanCursor(ScanResult<?> scanResult) {
+        String cursor = scanResult.getStringCursor();
+        return SCAN_END.equals(cursor) ? null : cursor;
+    }
+
+    private ScanParams scanParams() {
+        return new ScanParams().count(pageSize);
+    }
+
+    private static long rankOf(@Nullable String cursor) {
+        return cursor == null ? 0 : Long.parseLong(cursor);
+    }
+
+    private static byte[] scanCursorOf(@Nullable String cursor) {
+        return cursor == null ? ScanParams.SCAN_POINTER_START_BINARY : cursor.getBytes(Charsets.UTF_8);
+    }
+
+    static List<String> decodeList(List<byte[]> elements) {
+        List<String> values = new ArrayList<>(elements.size());
+        for (byte[] element : elements) {
+            values.add(decode(element));
+        }
+        return values;
+    }
+
+    static Set<String> decodeSet(Collection<byte[]> elements) {
+        Set<String> values = new LinkedHashSet<>(elements.size() * 4 / 3 + 1);
+        for (byte[] element : elements) {
+            values.add(decode(element));
+        }
+        return values;
+    }
+
+    static Map<String, String> decodeHash(Map<byte[], byte[]> entries) {
+        Map<String, String> values = new LinkedHashMap<>(entries.size() * 4 / 3 + 1);
+        for (Map.Entry<byte[], byte[]> entry : entries.entrySet()) {
+            values.put(decode(entry.getKey()), decode(entry.getValue()));
+        }
+        return values;
+    }
+
+    static String decode(byte[] b) {
+        if (b == null) {
+            return null;
+        }
+        return new String(b, Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.logic;
+
+import kotlin.text.Charsets;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType;
+import org.codinjutsu.tools.nosql.redis.model.RedisLoadTimings;
+import org.codinjutsu.tools.nosql.redis.model.RedisLoadTimings.Phase;
+import org.codinjutsu.tools.nosql.redis.model.RedisQuery;
+import org.codinjutsu.tools.nosql.redis.model.RedisRecord;
+import org.codinjutsu.tools.nosql.redis.model.RedisResult;
+import org.codinjutsu.tools.nosql.redis.model.RedisValuePage;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.JedisClusterCRC16;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.codinjutsu.tools.nosql.redis.logic.RedisValuePager.decode;
+
+/**
+ * Searches the values of the scanned keys on the server: each batch of keys is handed to a Lua script which reads
+ * them and only sends back the matching strings, elements and hash fields.
+ * <p>
+ * A script call stops once it has read {@code budget} elements, the remaining keys of the batch going to the next
+ * call, so the server is never blocked for more than one budget. A collection bigger than the budget on its own is
+ * not read at all and reported as skipped.
+ * <p>
+ * The keys are declared as KEYS, as the scripting contract requires. On a cluster a script may only touch the keys of
+ * one hash slot, so the batch of a node is split by slot and the calls of every slot are sent in one pipeline.
+ */
+public class RedisValueSearch implements RedisBatchLoader {
+
+    static final int MAX_REPORTED_SKIPPED_KEYS = 20;
+
+    private static final String NO_SCRIPT = "NOSCRIPT";
+
+    static final String SCRIPT = "local fieldNeedle = ARGV[1]\n" +
+            "local valueNeedle = ARGV[2]\n" +
+            "local budget = tonumber(ARGV[3])\n" +
+            "local spent, processed = 0, 0\n" +
+            "local matches, skipped = {}, {}\n" +
+            "local function contains(text, needle)\n" +
+            "  return needle == '' or string.find(text, needle, 1, true) ~= nil\n" +
+            "end\n" +
+            "local function check(key, keyType, field, value, extra)\n" +
+            "  if contains(field, fieldNeedle) and contains(value, valueNeedle) then\n" +
+            "    local n = #matches\n" +
+            "    matches[n + 1], matches[n + 2], matches[n + 3], matches[n + 4] = key, keyType, value, extra\n" +
+            "  end\n" +
+            "end\n" +
+            "for i = 1, #KEYS do\n" +
+            "  local key = KEYS[i]\n" +
+            "  local keyType = redis.call('TYPE', key).ok\n" +
+            "  local size = 1\n" +
+            "  if keyType == 'hash' then size = redis.call('HLEN', key)\n" +
+            "  elseif keyType == 'set' then size = redis.call('SCARD', key)\n" +
+            "  elseif keyType == 'zset' then size = redis.call('ZCARD', key)\n" +
+            "  elseif keyType == 'list' then size = redis.call('LLEN', key) end\n" +
+            "  if size > budget then\n" +
+            "    skipped[#skipped + 1] = key\n" +
+            "  elseif processed > 0 and spent + size > budget then\n" +
+            "    break\n" +
+            "  else\n" +
+            "    spent = spent + size\n" +
+            "    if keyType == 'string' then\n" +
+            "      check(key, keyType, '', redis.call('GET', key), '')\n" +
+            "    elseif keyType == 'hash' then\n" +
+            "      local entries = redis.call('HGETALL', key)\n" +
+            "      for j = 1, #entries, 2 do check(key, keyType, entries[j], entries[j + 1], entries[j]) end\n" +
+            "    elseif keyType == 'set' then\n" +
+            "      for _, member in ipairs(redis.call('SMEMBERS', key)) do check(key, keyType, '', member, '') end\n" +
+            "    elseif keyType == 'zset' then\n" +
+            "      local entries = redis.call('ZRANGE', key, 0, -1, 'WITHSCORES')\n" +
+            "      for j = 1, #entries, 2 do check(key, keyType, '', entries[j], entries[j + 1]) end\n" +
+            "    elseif keyType == 'list' then\n" +
+            "      local elements = redis.call('LRANGE', key, 0, -1)\n" +
+            "      for j = 1, #elements do check(key, keyType, '', elements[j], '') end\n" +
+            "    end\n" +
+            "  end\n" +
+            "  processed = processed + 1\n" +
+            "end\n" +
+            "return {processed, matches, skipped}\n";
+
+    private static final byte[] SCRIPT_BYTES = SCRIPT.getBytes(Charsets.UTF_8);
+    private static final byte[] SCRIPT_SHA = sha1Hex(SCRIPT_BYTES).getBytes(Charsets.UTF_8);
+
+    private final List<byte[]> arguments;
+    private final boolean cluster;
+    private final RedisLoadTimings timings;
+
+    private final AtomicInteger skippedKeyCount = new AtomicInteger();
+    private final List<String> skippedKeys = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * @param fieldNeedle text the hash fields must contain, empty for any; other types have no field and never match it
+     * @param valueNeedle text the values must contain, empty for any
+     * @param cluster     true when the keys are searched on cluster nodes, where a script call must stay in one slot
+     */
+    public RedisValueSearch(String fieldNeedle, String valueNeedle, int budget, boolean cluster, RedisLoadTimings timings) {
+        this.arguments = Arrays.asList(fieldNeedle.getBytes(Charsets.UTF_8), valueNeedle.getBytes(Charsets.UTF_8),
+                String.valueOf(budget).getBytes(Charsets.UTF_8));
+        this.cluster = cluster;
+        this.timings = timings;
+    }
+
+    public static RedisValueSearch forQuery(RedisQuery query, boolean cluster, RedisLoadTimings timings) {
+        return new RedisValueSearch(query.getFieldFilter(), query.getValueFilter(), query.getSearchBudget(), cluster, timings);
+    }
+
+    @Override
+    public RedisLoadTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * @return the number of keys too big to be searched within the budget
+     */
+    public int getSkippedKeyCount() {
+        return skippedKeyCount.get();
+    }
+
+    /**
+     * @return the first skipped keys, at most {@link #MAX_REPORTED_SKIPPED_KEYS}
+     */
+    public List<String> getSkippedKeys() {
+        synchronized (skippedKeys) {
+            return new ArrayList<>(skippedKeys);
+        }
+    }
+
+    @Override
+    public RedisResult load(Jedis jedis, List<byte[]> keys) {
+        RedisResult redisResult = new RedisResult();
+        List<List<byte[]>> pendingKeys = cluster ? groupBySlot(keys) : Collections.singletonList(keys);
+        while (!pendingKeys.isEmpty()) {
+            long start = System.nanoTime();
+            List<Object> replies = evalScripts(jedis, pendingKeys);
+            timings.add(Phase.FETCH, System.nanoTime() - start);
+            timings.addRoundTrip();
+
+            start = System.nanoTime();
+            List<List<byte[]>> remainingKeys = new ArrayList<>();
+            for (int i = 0; i < replies.size(); i++) {
+                List<Object> reply = (List<Object>) replies.get(i);
+                int processed = ((Long) reply.get(0)).intValue();
+                addMatches((List<Object>) reply.get(1), redisResult);
+                addSkippedKeys((List<Object>) reply.get(2));
+                timings.addKeys(processed);
+                // the script always processes at least one key
+                List<byte[]> callKeys = pendingKeys.get(i);
+                int from = Math.max(1, processed);
+                if (from < callKeys.size()) {
+                    remainingKeys.add(callKeys.subList(from, callKeys.size()));
+                }
+            }
+            timings.add(Phase.DECODE, System.nanoTime() - start);
+            pendingKeys = remainingKeys;
+        }
+        return redisResult;
+    }
+
+    private static List<List<byte[]>> groupBySlot(List<byte[]> keys) {
+        Map<Integer, List<byte[]>> keysBySlot = new LinkedHashMap<>();
+        for (byte[] key : keys) {
+            keysBySlot.computeIfAbsent(JedisClusterCRC16.getSlot(key), slot -> new ArrayList<>()).add(key);
+        }
+        return new ArrayList<>(keysBySlot.values());
+    }
+
+    /**
+     * @return the reply of one script call per list of keys, the calls being pipelined when there are several
+     */
+    private List<Object> evalScripts(Jedis jedis, List<List<byte[]>> keyGroups) {
+        if (keyGroups.size() == 1) {
+            return Collections.singletonList(evalScript(jedis, keyGroups.get(0)));
+        }
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<Object>> responses = new ArrayList<>(keyGroups.size());
+        for (List<byte[]> keys : keyGroups) {
+            responses.add(pipeline.evalsha(SCRIPT_SHA, keys, arguments));
+        }
+        pipeline.sync();
+        List<Object> replies = new ArrayList<>(keyGroups.size());
+        for (int i = 0; i < responses.size(); i++) {
+            try {
+                replies.add(responses.get(i).get());
+            } catch (JedisDataException ex) {
+                if (!isNoScript(ex)) {
+                    throw ex;
+                }
+                replies.add(jedis.eval(SCRIPT_BYTES, keyGroups.get(i), arguments));
+            }
+        }
+        return replies;
+    }
+
+    private Object evalScript(Jedis jedis, List<byte[]> keys) {
+        try {
+            return jedis.evalsha(SCRIPT_SHA, keys, arguments);
+        } catch (JedisDataException ex) {
+            if (!isNoScript(ex)) {
+                throw ex;
+            }
+            // EVAL caches the script on the server for the next calls
+            return jedis.eval(SCRIPT_BYTES, keys, arguments);
+        }
+    }
+
+    private static boolean isNoScript(JedisDataException ex) {
+        return ex.getMessage() != null && ex.getMessage().startsWith(NO_SCRIPT);
+    }
+
+    /**
+     * The matches come as (key, type, value, extra) quadruplets, grouped by key; extra is the field of a hash entry
+     * and the score of a sorted set member.
+     */
+    private static void addMatches(List<Object> matches, RedisResult redisResult) {
+        int index = 0;
+        while (index < matches.size()) {
+            byte[] key = (byte[]) matches.get(index);
+            RedisKeyType keyType = RedisKeyType.getKeyType(decode((byte[]) matches.get(index + 1)));
+            if (RedisKeyType.STRING.equals(keyType)) {
+                redisResult.addString(key, decode((byte[]) matches.get(index + 2)));
+                index += 4;
+                continue;
+            }
+            List<String> elements = new ArrayList<>();
+            Set<String> members = new LinkedHashSet<>();
+            Set<Tuple> scoredMembers = new LinkedHashSet<>();
+            Map<String, String> entries = new LinkedHashMap<>();
+            while (index < matches.size() && Arrays.equals(key, (byte[]) matches.get(index))) {
+                String value = decode((byte[]) matches.get(index + 2));
+                byte[] extra = (byte[]) matches.get(index + 3);
+                if (RedisKeyType.HASH.equals(keyType)) {
+                    entries.put(decode(extra), value);
+                } else if (RedisKeyType.ZSET.equals(keyType)) {
+                    scoredMembers.add(new Tuple(value, Double.valueOf(decode(extra))));
+                } else if (RedisKeyType.SET.equals(keyType)) {
+                    members.add(value);
+                } else {
+                    elements.add(value);
+                }
+                index += 4;
+            }
+            Object values = RedisKeyType.HASH.equals(keyType) ? entries
+                    : RedisKeyType.ZSET.equals(keyType) ? scoredMembers
+                    : RedisKeyType.SET.equals(keyType) ? members : elements;
+            // only the matching part of the collection is shown: its full length would be misleading
+            redisResult.addPage(key, new RedisValuePage(keyType, values, 0, null), RedisRecord.UNKNOWN_LENGTH);
+        }
+    }
+
+    private void addSkippedKeys(List<Object> keys) {
+        for (Object key : keys) {
+            if (skippedKeyCount.incrementAndGet() <= MAX_REPORTED_SKIPPED_KEYS) {
+                skippedKeys.add(decode((byte[]) key));
+            }
+        }
+    }
+
+    private static String sha1Hex(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(bytes)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.model;
+
+/**
+ * Key seen accessed often by the hot-key sampling, with its estimated hotness.
+ */
+public class RedisHotKey {
+
+    private final String database;
+    private final String key;
+    private final long hotness;
+    private final long lastScore;
+
+    public RedisHotKey(String database, String key, long hotness, long lastScore) {
+        this.database = database;
+        this.key = key;
+        this.hotness = hotness;
+        this.lastScore = lastScore;
+    }
+
+    /**
+     * @return the database of the key, or the cluster node serving it
+     */
+    public String getDatabase() {
+        return database;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the weight accumulated by the key over the sampling rounds, as estimated by the sketch
+     */
+    public long getHotness() {
+        return hotness;
+    }
+
+    /**
+     * @return the OBJECT FREQ of the key, or its OBJECT IDLETIME in seconds, when it was last sampled
+     */
+    public long getLastScore() {
+        return lastScore;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.model;
+
+import java.util.*;
+
+/**
+ * Memory report of a keyspace, accumulated key by key in bounded memory: the biggest keys of each type are kept in
+ * a heap of {@code topKeyCount} keys and the memory is summed by key prefix, up to {@link #MAX_PREFIXES} prefixes,
+ * the following ones being counted together under {@link #OTHER_PREFIXES}.
+ * <p>
+ * Sizes are the MEMORY USAGE of the keys, or their length on servers older than Redis 4.
+ */
+public class RedisKeyAnalysis {
+
+    public static final int MAX_PREFIXES = 10000;
+    public static final String NO_PREFIX = "(no prefix)";
+    public static final String OTHER_PREFIXES = "(other prefixes)";
+
+    private static final Comparator<BigKey> BY_SIZE = new Comparator<BigKey>() {
+        @Override
+        public int compare(BigKey key1, BigKey key2) {
+            return Long.compare(key1.getSize(), key2.getSize());
+        }
+    };
+
+    private final int topKeyCount;
+    private final String separator;
+
+    private final Map<RedisKeyType, PriorityQueue<BigKey>> biggestKeys = new EnumMap<>(RedisKeyType.class);
+    private final Map<RedisKeyType, long[]> countAndSizeByType = new EnumMap<>(RedisKeyType.class);
+    private final Map<String, long[]> countAndSizeByPrefix = new HashMap<>();
+    private long keyCount;
+    private long totalSize;
+    private boolean memoryUsageAvailable = true;
+
+    public RedisKeyAnalysis(int topKeyCount, String separator) {
+        this.topKeyCount = topKeyCount;
+        this.separator = separator;
+    }
+
+    /**
+     * @param memoryBytes MEMORY USAGE of the key, {@link RedisKeyMetadata#UNKNOWN_MEMORY} when the server cannot tell
+     */
+    public synchronized void add(String key, RedisKeyType keyType, long length, long memoryBytes) {
+        if (memoryBytes == RedisKeyMetadata.UNKNOWN_MEMORY) {
+            memoryUsageAvailable = false;
+        }
+        long size = memoryBytes == RedisKeyMetadata.UNKNOWN_MEMORY ? length : memoryBytes;
+        keyCount++;
+        totalSize += size;
+        addTo(countAndSizeByPrefix, prefixOf(key), size);
+        if (keyType == null) {
+            return;
+        }
+        long[] typeCountAndSize = countAndSizeByType.computeIfAbsent(keyType, type -> new long[2]);
+        typeCountAndSize[0]++;
+        typeCountAndSize[1] += size;
+
+        PriorityQueue<BigKey> heap = biggestKeys.computeIfAbsent(keyType, type -> new PriorityQueue<>(topKeyCount + 1, BY_SIZE));
+        if (heap.size() < topKeyCount) {
+            heap.add(new BigKey(key, keyType, length, size));
+        } else if (!heap.isEmpty() && heap.peek().getSize() < size) {
+            heap.poll();
+            heap.add(new BigKey(key, keyType, length, size));
+        }
+    }
+
+    private String prefixOf(String key) {
+        int end = separator.isEmpty() ? -1 : key.indexOf(separator);
+        return end <= 0 ? NO_PREFIX : key.substring(0, end);
+    }
+
+    private static void addTo(Map<String, long[]> countAndSizeByPrefix, String prefix, long size) {
+        long[] countAndSize = countAndSizeByPrefix.get(prefix);
+        if (countAndSize == null) {
+            if (countAndSizeByPrefix.size() >= MAX_PREFIXES) {
+                prefix = OTHER_PREFIXES;
+                countAndSize = countAndSizeByPrefix.get(prefix);
+            }
+            if (countAndSize == null) {
+                countAndSize = new long[2];
+                countAndSizeByPrefix.put(prefix, countAndSize);
+            }
+        }
+        countAndSize[0]++;
+        countAndSize[1] += size;
+    }
+
+    public synchronized long getKeyCount() {
+        return keyCount;
+    }
+
+    public synchronized long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * @return false when the sizes are lengths, the server not supporting MEMORY USAGE
+     */
+    public synchronized boolean isMemoryUsageAvailable() {
+        return memoryUsageAvailable;
+    }
+
+    /**
+     * @return the biggest keys of every type, biggest first
+     */
+    public synchronized List<BigKey> getBiggestKeys() {
+        List<BigKey> keys = new ArrayList<>();
+        for (PriorityQueue<BigKey> heap : biggestKeys.values()) {
+            keys.addAll(heap);
+        }
+        keys.sort(Collections.reverseOrder(BY_SIZE));
+        return keys;
+    }
+
+    /**
+     * @return the key count and size of every type
+     */
+    public synchronized List<Usage> getUsageByType() {
+        List<Usage> usages = new ArrayList<>();
+        for (Map.Entry<RedisKeyType, long[]> entry : countAndSizeByType.entrySet()) {
+            usages.add(new Usage(entry.getKey().label, entry.getValue()[0], entry.getValue()[1]));
+        }
+        usages.sort(Usage.BIGGEST_FIRST);
+        return usages;
+    }
+
+    /**
+     * @return the key count and size of every prefix, biggest first
+     */
+    public synchronized List<Usage> getUsageByPrefix() {
+        List<Usage> usages = new ArrayList<>(countAndSizeByPrefix.size());
+        for (Map.Entry<String, long[]> entry : countAndSizeByPrefix.entrySet()) {
+            usages.add(new Usage(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+        }
+        usages.sort(Usage.BIGGEST_FIRST);
+        return usages;
+    }
+
+    public static class BigKey {
+
+        private final String key;
+        private final RedisKeyType keyType;
+        private final long length;
+        private final long size;
+
+        BigKey(String key, RedisKeyType keyType, long length, long size) {
+            this.key = key;
+            this.keyType = keyType;
+            this.length = length;
+            this.size = size;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public RedisKeyType getKeyType() {
+            return keyType;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    public static class Usage {
+
+        static final Comparator<Usage> BIGGEST_FIRST = new Comparator<Usage>() {
+            @Override
+            public int compare(Usage usage1, Usage usage2) {
+                return Long.compare(usage2.size, usage1.size);
+            }
+        };
+
+        private final String name;
+        private final long keyCount;
+        private final long size;
+
+        Usage(String name, long keyCount, long size) {
+            this.name = name;
+            this.keyCount = keyCount;
+            this.size = size;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getKeyCount() {
+            return keyCount;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
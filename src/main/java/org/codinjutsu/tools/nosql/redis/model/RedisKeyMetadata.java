@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.model;
+
+/**
+ * TTL, length, encoding and memory footprint of a key, fetched on demand for the displayed keys.
+ */
+public class RedisKeyMetadata {
+
+    /**
+     * PTTL of a key without expiration
+     */
+    public static final long NO_EXPIRATION = -1;
+
+    /**
+     * PTTL of a key deleted since it was loaded
+     */
+    public static final long MISSING_KEY = -2;
+
+    public static final long UNKNOWN_MEMORY = -1;
+
+    private final long ttlMillis;
+    private final long length;
+    private final String encoding;
+    private final long memoryBytes;
+
+    public RedisKeyMetadata(long ttlMillis, long length, String encoding, long memoryBytes) {
+        this.ttlMillis = ttlMillis;
+        this.length = length;
+        this.encoding = encoding;
+        this.memoryBytes = memoryBytes;
+    }
+
+    /**
+     * @return the remaining time to live when the metadata was fetched, {@link #NO_EXPIRATION} or {@link #MISSING_KEY}
+     */
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * STRLEN, LLEN, SCARD, HLEN or ZCARD of the key, {@link RedisRecord#UNKNOWN_LENGTH} when the key is missing
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * OBJECT ENCODING of the key, null when the key is missing
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * MEMORY USAGE of the key, {@link #UNKNOWN_MEMORY} before Redis 4
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * @return the memory used by the key when the server tells it, its length otherwise
+     */
+    public long getSize() {
+        return memoryBytes != UNKNOWN_MEMORY ? memoryBytes : length;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-phase time spent loading a query result. Safe to share between the threads scanning several nodes.
+ */
+public class RedisLoadTimings {
+
+    public enum Phase {
+        SCAN, TYPE, FETCH, DECODE
+    }
+
+    private final AtomicLong[] nanosByPhase = new AtomicLong[Phase.values().length];
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final AtomicLong keys = new AtomicLong();
+
+    public RedisLoadTimings() {
+        for (int i = 0; i < nanosByPhase.length; i++) {
+            nanosByPhase[i] = new AtomicLong();
+        }
+    }
+
+    public void add(Phase phase, long nanos) {
+        nanosByPhase[phase.ordinal()].addAndGet(nanos);
+    }
+
+    public void addRoundTrip() {
+        roundTrips.incrementAndGet();
+    }
+
+    public void addKeys(int count) {
+        keys.addAndGet(count);
+    }
+
+    public long getMillis(Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(nanosByPhase[phase.ordinal()].get());
+    }
+
+    public long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    public long getKeys() {
+        return keys.get();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(keys.get()).append(" keys in ").append(roundTrips.get()).append(" round trips (");
+        Phase[] phases = Phase.values();
+        for (int i = 0; i < phases.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(phases[i].name().toLowerCase()).append(' ').append(getMillis(phases[i])).append(" ms");
+        }
+        return builder.append(')').toString();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.model;
+
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Protocol;
+
+/**
+ * Connection pool settings shared by every Redis server of a project.
+ */
+public class RedisPoolSettings implements Cloneable {
+
+    /**
+     * Half of the {@link Protocol#DEFAULT_TIMEOUT} Jedis uses for both timeouts: a TCP connect to a reachable server,
+     * even a remote one, takes a few milliseconds, while a slow command can take longer.
+     */
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 1000;
+
+    private int maxTotal = 16;
+    private int maxIdle = 8;
+    private int minIdle = 1;
+    private long minEvictableIdleMillis = 60000;
+    private long evictionRunMillis = 30000;
+    private boolean testOnBorrow = true;
+    private int timeoutMillis = Protocol.DEFAULT_TIMEOUT;
+    private int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    public void setMaxIdle(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public long getMinEvictableIdleMillis() {
+        return minEvictableIdleMillis;
+    }
+
+    public void setMinEvictableIdleMillis(long minEvictableIdleMillis) {
+        this.minEvictableIdleMillis = minEvictableIdleMillis;
+    }
+
+    public long getEvictionRunMillis() {
+        return evictionRunMillis;
+    }
+
+    public void setEvictionRunMillis(long evictionRunMillis) {
+        this.evictionRunMillis = evictionRunMillis;
+    }
+
+    public boolean isTestOnBorrow() {
+        return testOnBorrow;
+    }
+
+    public void setTestOnBorrow(boolean testOnBorrow) {
+        this.testOnBorrow = testOnBorrow;
+    }
+
+    public int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return how long opening a connection may take, apart from the read timeout: shorter by default so that an
+     * unreachable server fails in a second rather than in the two seconds of the read timeout
+     */
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public JedisPoolConfig toPoolConfig() {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(maxTotal);
+        poolConfig.setMaxIdle(maxIdle);
+        poolConfig.setMinIdle(minIdle);
+        poolConfig.setMinEvictableIdleTimeMillis(minEvictableIdleMillis);
+        poolConfig.setTimeBetweenEvictionRunsMillis(evictionRunMillis);
+        poolConfig.setTestOnBorrow(testOnBorrow);
+        poolConfig.setTestWhileIdle(true);
+        return poolConfig;
+    }
+
+    @Override
+    public RedisPoolSettings clone() {
+        try {
+            return (RedisPoolSettings) super.clone();
+        } catch (CloneNotSupportedException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RedisPoolSettings that = (RedisPoolSettings) o;
+
+        return maxTotal == that.maxTotal
+                && maxIdle == that.maxIdle
+                && minIdle == that.minIdle
+                && minEvictableIdleMillis == that.minEvictableIdleMillis
+                && evictionRunMillis == that.evictionRunMillis
+                && testOnBorrow == that.testOnBorrow
+                && timeoutMillis == that.timeoutMillis
+                && connectTimeoutMillis == that.connectTimeoutMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = maxTotal;
+        result = 31 * result + maxIdle;
+        result = 31 * result + minIdle;
+        result = 31 * result + (int) (minEvictableIdleMillis ^ (minEvictableIdleMillis >>> 32));
+        result = 31 * result + (int) (evictionRunMillis ^ (evictionRunMillis >>> 32));
+        result = 31 * result + (testOnBorrow ? 1 : 0);
+        result = 31 * result + timeoutMillis;
+        result = 31 * result + connectTimeoutMillis;
+        return result;
+    }
+}
@@ -18,13 +18,129 @@ package org.codinjutsu.tools.nosql.redis.model;
 
 public class RedisQuery {
 
+    public static final int DEFAULT_SCAN_COUNT = 1000;
+    public static final int DEFAULT_MAX_KEYS = 100000;
+    public static final int DEFAULT_PIPELINE_BATCH_SIZE = 500;
+    public static final int DEFAULT_VALUE_PAGE_SIZE = 1000;
+    public static final int DEFAULT_SEARCH_BUDGET = 10000;
+
     private String filter;
+    private int scanCount;
+    private int maxKeys;
+    private int pipelineBatchSize = DEFAULT_PIPELINE_BATCH_SIZE;
+    private int valuePageSize = DEFAULT_VALUE_PAGE_SIZE;
+    private boolean keysOnly;
+    private boolean fetchLengths = true;
+    private String fieldFilter = "";
+    private String valueFilter = "";
+    private int searchBudget = DEFAULT_SEARCH_BUDGET;
 
     public RedisQuery(String filter) {
+        this(filter, DEFAULT_SCAN_COUNT, DEFAULT_MAX_KEYS);
+    }
+
+    public RedisQuery(String filter, int scanCount, int maxKeys) {
         this.filter = filter;
+        this.scanCount = scanCount;
+        this.maxKeys = maxKeys;
     }
 
     public String getFilter() {
         return filter;
     }
+
+    /**
+     * COUNT hint sent with every SCAN call
+     */
+    public int getScanCount() {
+        return scanCount;
+    }
+
+    /**
+     * Hard cap of keys loaded by one query
+     */
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * Number of keys sent in one TYPE or value fetching pipeline
+     */
+    public int getPipelineBatchSize() {
+        return pipelineBatchSize;
+    }
+
+    public void setPipelineBatchSize(int pipelineBatchSize) {
+        this.pipelineBatchSize = pipelineBatchSize;
+    }
+
+    /**
+     * Maximum number of elements loaded at once for a list, set, hash or sorted set
+     */
+    public int getValuePageSize() {
+        return valuePageSize;
+    }
+
+    public void setValuePageSize(int valuePageSize) {
+        this.valuePageSize = valuePageSize;
+    }
+
+    /**
+     * When enabled, only names, types and lengths are fetched: values are loaded when a key is expanded
+     */
+    public boolean isKeysOnly() {
+        return keysOnly;
+    }
+
+    public void setKeysOnly(boolean keysOnly) {
+        this.keysOnly = keysOnly;
+    }
+
+    public boolean isFetchLengths() {
+        return fetchLengths;
+    }
+
+    public void setFetchLengths(boolean fetchLengths) {
+        this.fetchLengths = fetchLengths;
+    }
+
+    /**
+     * Text the hash fields of a value search must contain, empty for any field
+     */
+    public String getFieldFilter() {
+        return fieldFilter;
+    }
+
+    public void setFieldFilter(String fieldFilter) {
+        this.fieldFilter = fieldFilter == null ? "" : fieldFilter;
+    }
+
+    /**
+     * Text the values of a value search must contain, empty for any value
+     */
+    public String getValueFilter() {
+        return valueFilter;
+    }
+
+    public void setValueFilter(String valueFilter) {
+        this.valueFilter = valueFilter == null ? "" : valueFilter;
+    }
+
+    /**
+     * When enabled, the values of the scanned keys are searched on the server and only the matches are loaded
+     */
+    public boolean isValueSearch() {
+        return !fieldFilter.isEmpty() || !valueFilter.isEmpty();
+    }
+
+    /**
+     * Maximum number of elements read by one value search script call
+     */
+    public int getSearchBudget() {
+        return searchBudget;
+    }
+
+    public void setSearchBudget(int searchBudget) {
+        this.searchBudget = searchBudget;
+    }
 }
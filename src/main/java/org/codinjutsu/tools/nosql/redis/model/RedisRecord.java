@@ -17,16 +17,33 @@
 package org.codinjutsu.tools.nosql.redis.model;
 
 public class RedisRecord<T> {
+
+    public static final long UNKNOWN_LENGTH = -1;
+
     private final RedisKeyType keyType;
     private final String keyName;
     private final T keyValue;
     private final byte[] keyNameBytes;
+    private final long length;
+    private final boolean valueLoaded;
+    private final String valueCursor;
 
     public RedisRecord(RedisKeyType keyType, String keyName, T keyValue,byte[] keyNameBytes) {
+        this(keyType, keyName, keyValue, keyNameBytes, UNKNOWN_LENGTH, true);
+    }
+
+    public RedisRecord(RedisKeyType keyType, String keyName, T keyValue, byte[] keyNameBytes, long length, boolean valueLoaded) {
+        this(keyType, keyName, keyValue, keyNameBytes, length, valueLoaded, null);
+    }
+
+    public RedisRecord(RedisKeyType keyType, String keyName, T keyValue, byte[] keyNameBytes, long length, boolean valueLoaded, String valueCursor) {
         this.keyType = keyType;
         this.keyName = keyName;
         this.keyValue = keyValue;
         this.keyNameBytes = keyNameBytes;
+        this.length = length;
+        this.valueLoaded = valueLoaded;
+        this.valueCursor = valueCursor;
     }
 
     public RedisKeyType getKeyType() {
@@ -45,4 +62,27 @@ public class RedisRecord<T> {
     public byte[] getKeyNameBytes() {
         return keyNameBytes;
     }
+
+    /**
+     * STRLEN, LLEN, SCARD, HLEN or ZCARD of the key, {@link #UNKNOWN_LENGTH} when it was not fetched
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * false when only the key name and type were loaded (browse mode)
+     */
+    public boolean isValueLoaded() {
+        return valueLoaded;
+    }
+
+    /**
+     * Cursor of the next page when only the first page of a collection has been loaded, null otherwise
+     *
+     * @see RedisValuePage#getNextCursor()
+     */
+    public String getValueCursor() {
+        return valueCursor;
+    }
 }
@@ -16,40 +16,354 @@
 
 package org.codinjutsu.tools.nosql.redis.model;
 
+import kotlin.text.Charsets;
 import redis.clients.jedis.Tuple;
 
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
+/**
+ * Keys of a query result stored by column: the key names sit back to back in a single byte arena indexed by offset,
+ * the types in a byte array and the lengths in a long array. Key names are only decoded when they are asked for,
+ * so a keys-only browse costs about the size of the raw key names.
+ * <p>
+ * Not thread-safe: batches loaded concurrently must be merged under a lock.
+ */
 public class RedisResult {
 
-    private final List<RedisRecord> redisRecords = new LinkedList<RedisRecord>();
+    private static final int INITIAL_CAPACITY = 16;
+    private static final byte NO_TYPE = -1;
+    private static final RedisKeyType[] KEY_TYPES = RedisKeyType.values();
+
+    private int size;
+
+    private byte[] keyArena = new byte[INITIAL_CAPACITY * 16];
+    private int arenaLength;
+    private int[] keyOffsets = new int[INITIAL_CAPACITY + 1];
+    private byte[] keyTypes = new byte[INITIAL_CAPACITY];
+
+    // the following columns are only allocated once a key needs them
+    private long[] lengths;
+    private Object[] values;
+    private String[] valueCursors;
+    private final BitSet valueLoaded = new BitSet();
+    private RedisKeyMetadata[] metadata;
+    // open addressing table of key index + 1, built on the first lookup by key
+    private int[] keyLookup;
+
+    private boolean keyLimitReached;
+
+    private RedisLoadTimings timings;
+
+    private Map<String, String> nodeErrors = Collections.emptyMap();
+
+    private int skippedKeyCount;
+    private List<String> skippedKeys = Collections.emptyList();
 
 
     public void addString(String key, String value,byte[] keyBytes) {
-        redisRecords.add(new RedisRecord<String>(RedisKeyType.STRING, key, value,keyBytes));
+        add(keyBytesOf(key, keyBytes), RedisKeyType.STRING, value, RedisRecord.UNKNOWN_LENGTH, true, null);
     }
 
     public void addList(String key, List values,byte[] keyBytes) {
-        redisRecords.add(new RedisRecord<List>(RedisKeyType.LIST, key, values,keyBytes));
+        add(keyBytesOf(key, keyBytes), RedisKeyType.LIST, values, RedisRecord.UNKNOWN_LENGTH, true, null);
     }
 
     public void addSet(String key, Set values,byte[] keyBytes) {
-        redisRecords.add(new RedisRecord<Set>(RedisKeyType.SET, key, values,keyBytes));
+        add(keyBytesOf(key, keyBytes), RedisKeyType.SET, values, RedisRecord.UNKNOWN_LENGTH, true, null);
     }
 
     public void addHash(String key, Map values,byte[] keyBytes) {
-        redisRecords.add(new RedisRecord<Map>(RedisKeyType.HASH, key, values,keyBytes));
+        add(keyBytesOf(key, keyBytes), RedisKeyType.HASH, values, RedisRecord.UNKNOWN_LENGTH, true, null);
     }
 
     public void addSortedSet(String key, Set<Tuple> values,byte[] keyBytes) {
-        redisRecords.add(new RedisRecord<Set<Tuple>>(RedisKeyType.ZSET, key, values,keyBytes));
+        add(keyBytesOf(key, keyBytes), RedisKeyType.ZSET, values, RedisRecord.UNKNOWN_LENGTH, true, null);
     }
 
+    public void addString(byte[] keyBytes, String value) {
+        add(keyBytes, RedisKeyType.STRING, value, RedisRecord.UNKNOWN_LENGTH, true, null);
+    }
+
+    public void addKey(RedisKeyType keyType, byte[] keyBytes, long length) {
+        add(keyBytes, keyType, null, length, false, null);
+    }
+
+    public void addPage(byte[] keyBytes, RedisValuePage page, long length) {
+        add(keyBytes, page.getKeyType(), page.getValues(), length, true, page.getNextCursor());
+    }
+
+    public void addAll(RedisResult other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.keyArena, other.keyOffsets[i], other.keyOffsets[i + 1] - other.keyOffsets[i], other.keyTypes[i],
+                    other.getValue(i), other.getLength(i), other.isValueLoaded(i), other.getValueCursor(i));
+            if (other.getMetadata(i) != null) {
+                setMetadata(size - 1, other.getMetadata(i));
+            }
+        }
+    }
+
+    private void add(byte[] keyBytes, RedisKeyType keyType, Object value, long length, boolean loaded, String valueCursor) {
+        add(keyBytes, 0, keyBytes.length, keyType == null ? NO_TYPE : (byte) keyType.ordinal(), value, length, loaded, valueCursor);
+    }
+
+    private void add(byte[] source, int offset, int keyLength, byte keyType, Object value, long length, boolean loaded, String valueCursor) {
+        ensureCapacity(size + 1, arenaLength + keyLength);
+        System.arraycopy(source, offset, keyArena, arenaLength, keyLength);
+        arenaLength += keyLength;
+        keyOffsets[size + 1] = arenaLength;
+        keyTypes[size] = keyType;
+        if (length != RedisRecord.UNKNOWN_LENGTH) {
+            lengths()[size] = length;
+        } else if (lengths != null) {
+            lengths[size] = RedisRecord.UNKNOWN_LENGTH;
+        }
+        if (value != null) {
+            values()[size] = value;
+        }
+        if (valueCursor != null) {
+            valueCursors()[size] = valueCursor;
+        }
+        valueLoaded.set(size, loaded);
+        size++;
+        if (keyLookup != null) {
+            if (size * 2 > keyLookup.length) {
+                buildKeyLookup();
+            } else {
+                insertInKeyLookup(size - 1);
+            }
+        }
+    }
+
+    private void ensureCapacity(int keyCount, int arenaSize) {
+        if (keyCount > keyTypes.length) {
+            int capacity = Math.max(keyCount, keyTypes.length * 2);
+            keyTypes = Arrays.copyOf(keyTypes, capacity);
+            keyOffsets = Arrays.copyOf(keyOffsets, capacity + 1);
+            if (lengths != null) {
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            if (values != null) {
+                values = Arrays.copyOf(values, capacity);
+            }
+            if (valueCursors != null) {
+                valueCursors = Arrays.copyOf(valueCursors, capacity);
+            }
+            if (metadata != null) {
+                metadata = Arrays.copyOf(metadata, capacity);
+            }
+        }
+        if (arenaSize > keyArena.length) {
+            keyArena = Arrays.copyOf(keyArena, Math.max(arenaSize, keyArena.length * 2));
+        }
+    }
+
+    private long[] lengths() {
+        if (lengths == null) {
+            lengths = new long[keyTypes.length];
+            Arrays.fill(lengths, RedisRecord.UNKNOWN_LENGTH);
+        }
+        return lengths;
+    }
+
+    private Object[] values() {
+        if (values == null) {
+            values = new Object[keyTypes.length];
+        }
+        return values;
+    }
+
+    private String[] valueCursors() {
+        if (valueCursors == null) {
+            valueCursors = new String[keyTypes.length];
+        }
+        return valueCursors;
+    }
+
+    private static byte[] keyBytesOf(String key, byte[] keyBytes) {
+        return keyBytes != null ? keyBytes : key.getBytes(Charsets.UTF_8);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getKey(int index) {
+        int offset = keyOffsets[index];
+        return new String(keyArena, offset, keyOffsets[index + 1] - offset, Charsets.UTF_8);
+    }
+
+    public byte[] getKeyBytes(int index) {
+        return Arrays.copyOfRange(keyArena, keyOffsets[index], keyOffsets[index + 1]);
+    }
+
+    public RedisKeyType getKeyType(int index) {
+        byte keyType = keyTypes[index];
+        return keyType == NO_TYPE ? null : KEY_TYPES[keyType];
+    }
+
+    public Object getValue(int index) {
+        return values == null ? null : values[index];
+    }
+
+    public long getLength(int index) {
+        return lengths == null ? RedisRecord.UNKNOWN_LENGTH : lengths[index];
+    }
+
+    public boolean isValueLoaded(int index) {
+        return valueLoaded.get(index);
+    }
+
+    public String getValueCursor(int index) {
+        return valueCursors == null ? null : valueCursors[index];
+    }
+
+    /**
+     * @return the metadata of the key, null until it is fetched
+     */
+    public RedisKeyMetadata getMetadata(int index) {
+        return metadata == null ? null : metadata[index];
+    }
+
+    public void setMetadata(int index, RedisKeyMetadata keyMetadata) {
+        if (metadata == null) {
+            metadata = new RedisKeyMetadata[keyTypes.length];
+        }
+        metadata[index] = keyMetadata;
+    }
+
+    /**
+     * Replaces what is known of a key whose value changed: its type, and an unloaded value without length nor metadata.
+     */
+    public void resetKey(int index, RedisKeyType keyType) {
+        keyTypes[index] = keyType == null ? NO_TYPE : (byte) keyType.ordinal();
+        if (lengths != null) {
+            lengths[index] = RedisRecord.UNKNOWN_LENGTH;
+        }
+        if (values != null) {
+            values[index] = null;
+        }
+        if (valueCursors != null) {
+            valueCursors[index] = null;
+        }
+        if (metadata != null) {
+            metadata[index] = null;
+        }
+        valueLoaded.clear(index);
+    }
+
+    /**
+     * @return the index of a key, -1 if it is not in the result. The first call indexes every key, in 8 to 16 bytes per key.
+     */
+    public int indexOf(byte[] keyBytes) {
+        if (keyLookup == null) {
+            buildKeyLookup();
+        }
+        int mask = keyLookup.length - 1;
+        for (int slot = hash(keyBytes, 0, keyBytes.length) & mask; keyLookup[slot] != 0; slot = (slot + 1) & mask) {
+            int index = keyLookup[slot] - 1;
+            int offset = keyOffsets[index];
+            int keyLength = keyOffsets[index + 1] - offset;
+            if (keyLength == keyBytes.length && rangeEquals(keyArena, offset, keyBytes, keyLength)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private void buildKeyLookup() {
+        keyLookup = new int[Integer.highestOneBit(Math.max(INITIAL_CAPACITY, size * 4) - 1) << 1];
+        for (int index = 0; index < size; index++) {
+            insertInKeyLookup(index);
+        }
+    }
+
+    private void insertInKeyLookup(int index) {
+        int mask = keyLookup.length - 1;
+        int offset = keyOffsets[index];
+        int slot = hash(keyArena, offset, keyOffsets[index + 1] - offset) & mask;
+        while (keyLookup[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        keyLookup[slot] = index + 1;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // spread the high bits over the masked low ones
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean rangeEquals(byte[] arena, int offset, byte[] keyBytes, int length) {
+        for (int i = 0; i < length; i++) {
+            if (arena[offset + i] != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public RedisRecord<Object> getRecord(int index) {
+        return new RedisRecord<>(getKeyType(index), getKey(index), getValue(index), getKeyBytes(index), getLength(index),
+                isValueLoaded(index), getValueCursor(index));
+    }
+
+    /**
+     * @return a new list of records decoded from the columns; prefer the indexed accessors for large results
+     */
     public List<RedisRecord> getResults() {
-        return redisRecords;
+        List<RedisRecord> records = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            records.add(getRecord(i));
+        }
+        return records;
+    }
+
+    public boolean isKeyLimitReached() {
+        return keyLimitReached;
+    }
+
+    public void setKeyLimitReached(boolean keyLimitReached) {
+        this.keyLimitReached = keyLimitReached;
+    }
+
+    public RedisLoadTimings getTimings() {
+        return timings;
+    }
+
+    public void setTimings(RedisLoadTimings timings) {
+        this.timings = timings;
+    }
+
+    /**
+     * @return the error of each cluster node that could not be scanned, by "host:port"
+     */
+    public Map<String, String> getNodeErrors() {
+        return nodeErrors;
+    }
+
+    public void setNodeErrors(Map<String, String> nodeErrors) {
+        this.nodeErrors = nodeErrors;
     }
 
+    /**
+     * @return the number of keys a value search did not read because they were too big for its budget
+     */
+    public int getSkippedKeyCount() {
+        return skippedKeyCount;
+    }
+
+    /**
+     * @return the first of the skipped keys
+     */
+    public List<String> getSkippedKeys() {
+        return skippedKeys;
+    }
+
+    public void setSkippedKeys(int skippedKeyCount, List<String> skippedKeys) {
+        this.skippedKeyCount = skippedKeyCount;
+        this.skippedKeys = skippedKeys;
+    }
 }
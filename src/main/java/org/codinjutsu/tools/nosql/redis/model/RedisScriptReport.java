@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.codinjutsu.tools.nosql.redis.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a script run: how many commands were sent, how many failed and why, and the time it took.
+ * Only the first {@link #MAX_REPORTED_ERRORS} errors are kept, the failures are all counted.
+ */
+public class RedisScriptReport {
+
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final List<CommandError> errors = new ArrayList<>();
+    private long executedCommands;
+    private long failedCommands;
+    private long elapsedMillis;
+
+    public void addExecuted(int count) {
+        executedCommands += count;
+    }
+
+    public void addError(int line, String command, String message) {
+        failedCommands++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new CommandError(line, command, message));
+        }
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getExecutedCommands() {
+        return executedCommands;
+    }
+
+    public long getFailedCommands() {
+        return failedCommands;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return the executed commands per second
+     */
+    public long getThroughput() {
+        return executedCommands * 1000 / Math.max(1, elapsedMillis);
+    }
+
+    public List<CommandError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d commands, %d failed, %d ms, %d commands/s", executedCommands, failedCommands, elapsedMillis, getThroughput());
+    }
+
+    public static class CommandError {
+
+        private final int line;
+        private final String command;
+        private final String message;
+
+        CommandError(int line, String command, String message) {
+            this.line = line;
+            this.command = command;
+            this.message = message;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
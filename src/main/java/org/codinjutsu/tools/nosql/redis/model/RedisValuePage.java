@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.model;
+
+/**
+ * One window of a collection value.
+ * <p>
+ * The cursor is the rank of the next element for lists and sorted sets and the SSCAN/HSCAN cursor for sets and hashes.
+ */
+public class RedisValuePage {
+
+    private final RedisKeyType keyType;
+    private final Object values;
+    private final long offset;
+    private final String nextCursor;
+
+    public RedisValuePage(RedisKeyType keyType, Object values, long offset, String nextCursor) {
+        this.keyType = keyType;
+        this.values = values;
+        this.offset = offset;
+        this.nextCursor = nextCursor;
+    }
+
+    public RedisKeyType getKeyType() {
+        return keyType;
+    }
+
+    /**
+     * List of strings for lists, set of strings for sets, map for hashes and set of tuples for sorted sets
+     */
+    public Object getValues() {
+        return values;
+    }
+
+    /**
+     * Rank of the first element of the page, 0 for collections paged with a SCAN cursor
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the cursor of the next page, null when the collection has been fully read
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean isComplete() {
+        return nextCursor == null;
+    }
+}
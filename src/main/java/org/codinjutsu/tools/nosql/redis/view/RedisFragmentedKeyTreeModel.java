@@ -16,18 +16,14 @@
 
 package org.codinjutsu.tools.nosql.redis.view;
 
-import org.codinjutsu.tools.nosql.commons.utils.StringUtils;
 import org.codinjutsu.tools.nosql.commons.view.NoSqlTreeNode;
 import org.codinjutsu.tools.nosql.commons.view.nodedescriptor.NodeDescriptor;
-import org.codinjutsu.tools.nosql.redis.view.nodedescriptor.FragmentedKeyNodeDescriptor;
+import org.codinjutsu.tools.nosql.redis.model.RedisResult;
 import org.codinjutsu.tools.nosql.redis.view.nodedescriptor.RedisKeyValueDescriptor;
 
 import javax.swing.event.TreeModelListener;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
-import javax.swing.tree.MutableTreeNode;
-import java.util.Arrays;
-import java.util.Enumeration;
 
 import static org.apache.commons.lang.StringUtils.isEmpty;
 
@@ -126,69 +122,29 @@ public class RedisFragmentedKeyTreeModel extends DefaultTreeModel {
         getFragmentedKeyModel().reload();
     }
 
+    /**
+     * Groups the keys of the source tree by prefix. The grouping is linear in the total length of the keys;
+     * the grouped nodes themselves are only created when they are displayed. The keys of a virtual result root
+     * are read from its columns, without creating its key nodes, and the groups index them by their index in the result.
+     */
     public static DefaultMutableTreeNode wrapNodes(DefaultMutableTreeNode source, String separator) {
         if (isEmpty(separator)) {
             return source;
         }
-        DefaultMutableTreeNode targetRootNode = (DefaultMutableTreeNode) source.clone();
-        for (int i = 0; i < source.getChildCount(); i++) {
-            DefaultMutableTreeNode originalChildNode = (DefaultMutableTreeNode) source.getChildAt(i);
-            NoSqlTreeNode clonedChildNode = (NoSqlTreeNode) originalChildNode.clone();
-            RedisKeyValueDescriptor descriptor = (RedisKeyValueDescriptor) clonedChildNode.getDescriptor();
-            String[] explodedKey = StringUtils.explode(descriptor.getKey(), separator);
-            if (explodedKey.length == 1) {
-                addChildren(clonedChildNode, originalChildNode);
-                targetRootNode.add(clonedChildNode);
-            } else {
-                updateTree(targetRootNode, originalChildNode, explodedKey, descriptor);
+        RedisKeyTrie trie = new RedisKeyTrie(separator);
+        if (source instanceof RedisResultRootNode) {
+            RedisResultRootNode resultRoot = (RedisResultRootNode) source;
+            RedisResult result = resultRoot.getResult();
+            for (int position = 0; position < resultRoot.getChildCount(); position++) {
+                int keyIndex = resultRoot.keyIndexAt(position);
+                trie.add(result.getKey(keyIndex), keyIndex);
             }
-        }
-        return targetRootNode;
-    }
-
-    private static void updateTree(DefaultMutableTreeNode parentTargetNode, DefaultMutableTreeNode originalChildNode, String[] explodedKey, RedisKeyValueDescriptor sourceDescriptor) {
-        if (explodedKey.length == 0) {
-            addChildren(parentTargetNode, originalChildNode);
-            return;
-        }
-        String keyFragment = explodedKey[0];
-        NoSqlTreeNode node = findNodeByKey(parentTargetNode, keyFragment);
-        if (node == null) {
-            if (explodedKey.length == 1) {
-                node = new NoSqlTreeNode(RedisKeyValueDescriptor.createDescriptor(sourceDescriptor.getKeyType(), keyFragment, sourceDescriptor.getValue(),sourceDescriptor.getKeyBytes()));
-            } else {
-                node = new NoSqlTreeNode(FragmentedKeyNodeDescriptor.createDescriptor(keyFragment));
+        } else {
+            for (int i = 0; i < source.getChildCount(); i++) {
+                NoSqlTreeNode keyNode = (NoSqlTreeNode) source.getChildAt(i);
+                trie.add(((RedisKeyValueDescriptor) keyNode.getDescriptor()).getKey(), i);
             }
         }
-        updateTree(node, originalChildNode, Arrays.copyOfRange(explodedKey, 1, explodedKey.length), sourceDescriptor);
-
-        parentTargetNode.add(node);
-    }
-
-    private static NoSqlTreeNode findNodeByKey(DefaultMutableTreeNode parentTargetNode, String keyFragment) {
-        for (int i = 0; i < parentTargetNode.getChildCount(); i++) {
-            NoSqlTreeNode currentChild = (NoSqlTreeNode) parentTargetNode.getChildAt(i);
-            NodeDescriptor descriptor = currentChild.getDescriptor();
-            String nodeKey;
-            if (descriptor instanceof FragmentedKeyNodeDescriptor) {
-                nodeKey = ((FragmentedKeyNodeDescriptor) descriptor).getKeyFragment();
-            } else if (descriptor instanceof RedisKeyValueDescriptor) {
-                nodeKey = ((RedisKeyValueDescriptor) descriptor).getKey();
-            } else {
-                return null;
-            }
-            if (keyFragment.equals(nodeKey)) {
-                return currentChild;
-            }
-        }
-        return null;
-    }
-
-    private static void addChildren(DefaultMutableTreeNode parentNode, DefaultMutableTreeNode originalChildNode) {
-        Enumeration children = originalChildNode.children();
-        while (children.hasMoreElements()) {
-            DefaultMutableTreeNode childNode = (DefaultMutableTreeNode) children.nextElement();
-            parentNode.add((MutableTreeNode) childNode.clone());
-        }
+        return new RedisKeyGroupNode((NodeDescriptor) source.getUserObject(), trie, trie.getRoot(), source);
     }
 }
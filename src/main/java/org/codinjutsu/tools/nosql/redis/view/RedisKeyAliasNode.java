@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view;
+
+import org.codinjutsu.tools.nosql.commons.view.NoSqlTreeNode;
+import org.codinjutsu.tools.nosql.redis.view.nodedescriptor.RedisKeyValueDescriptor;
+
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeNode;
+import java.util.Enumeration;
+
+/**
+ * A key of the result shown inside a group. The value nodes are not copied: they stay owned by the key node of the
+ * flat result tree and every child access or change is forwarded to it, so both views always show the same value.
+ * <p>
+ * The value nodes keep the flat key node as parent: tree model events must be fired with the alias as parent,
+ * which is what the paths of the displayed tree contain.
+ */
+class RedisKeyAliasNode extends NoSqlTreeNode {
+
+    private final NoSqlTreeNode keyNode;
+
+    RedisKeyAliasNode(NoSqlTreeNode keyNode, String displayedKey) {
+        super(displayedDescriptor((RedisKeyValueDescriptor) keyNode.getDescriptor(), displayedKey));
+        this.keyNode = keyNode;
+    }
+
+    private static RedisKeyValueDescriptor displayedDescriptor(RedisKeyValueDescriptor descriptor, String displayedKey) {
+        return displayedKey.equals(descriptor.getKey()) ? descriptor : descriptor.withKey(displayedKey);
+    }
+
+    NoSqlTreeNode getKeyNode() {
+        return keyNode;
+    }
+
+    String getKey() {
+        return ((RedisKeyValueDescriptor) keyNode.getDescriptor()).getKey();
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return keyNode.isLeaf();
+    }
+
+    @Override
+    public int getChildCount() {
+        return keyNode.getChildCount();
+    }
+
+    @Override
+    public TreeNode getChildAt(int index) {
+        return keyNode.getChildAt(index);
+    }
+
+    @Override
+    public int getIndex(TreeNode child) {
+        return keyNode.getIndex(child);
+    }
+
+    @Override
+    public Enumeration children() {
+        return keyNode.children();
+    }
+
+    @Override
+    public void insert(MutableTreeNode child, int index) {
+        keyNode.insert(child, index);
+    }
+
+    @Override
+    public void remove(int index) {
+        keyNode.remove(index);
+    }
+
+    @Override
+    public void remove(MutableTreeNode child) {
+        keyNode.remove(child);
+    }
+
+    @Override
+    public boolean isNodeChild(TreeNode node) {
+        return keyNode.isNodeChild(node);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view;
+
+import com.intellij.ui.treeStructure.treetable.TreeTableTree;
+import org.codinjutsu.tools.nosql.commons.view.NoSqlTreeNode;
+import org.codinjutsu.tools.nosql.commons.view.nodedescriptor.NodeDescriptor;
+import org.codinjutsu.tools.nosql.redis.view.nodedescriptor.FragmentedKeyNodeDescriptor;
+
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeNode;
+import javax.swing.tree.TreePath;
+import java.util.*;
+
+/**
+ * Group of the grouped view backed by a {@link RedisKeyTrie} node. Its children are only created the first time
+ * they are asked for, so grouping a large result costs nothing until the groups are expanded.
+ * <p>
+ * The keys are taken from the flat result tree by index, and only for the expanded groups.
+ * A key that is also the prefix of other keys is shown twice: as a group holding the longer keys and as a key.
+ * <p>
+ * The root group keeps the trie, so that keys hidden, shown or reset in the flat tree are applied to the groups
+ * already created without grouping the whole result again.
+ */
+class RedisKeyGroupNode extends RedisLazyTreeNode {
+
+    private final String prefix;
+    private final TreeNode flatRoot;
+    private final RedisKeyTrie trie;
+    private final RedisKeyTrie.Node trieNode;
+    // displayed children by trie node, filled once the children are created
+    private final Map<RedisKeyTrie.Node, RedisKeyGroupNode> groupChildren = new HashMap<>();
+    private final Map<RedisKeyTrie.Node, RedisKeyAliasNode> keyChildren = new HashMap<>();
+
+    RedisKeyGroupNode(NodeDescriptor descriptor, RedisKeyTrie trie, RedisKeyTrie.Node trieNode, TreeNode flatRoot) {
+        super(descriptor);
+        this.prefix = trieNode.getPrefix();
+        this.trie = trie;
+        this.trieNode = trieNode;
+        this.flatRoot = flatRoot;
+    }
+
+    String getPrefix() {
+        return prefix;
+    }
+
+    @Override
+    protected void createChildren() {
+        for (RedisKeyTrie.Node child : trieNode.getChildren()) {
+            if (child.hasChildren()) {
+                add(createGroup(child));
+            }
+            if (child.getKeyIndex() != RedisKeyTrie.NO_KEY) {
+                add(createAlias(child));
+            }
+        }
+    }
+
+    @Override
+    protected boolean isLeafBeforeCreation() {
+        return !trieNode.hasChildren();
+    }
+
+    private RedisKeyGroupNode createGroup(RedisKeyTrie.Node child) {
+        RedisKeyGroupNode group = new RedisKeyGroupNode(FragmentedKeyNodeDescriptor.createDescriptor(child.getFragment()), trie, child, flatRoot);
+        groupChildren.put(child, group);
+        return group;
+    }
+
+    private RedisKeyAliasNode createAlias(RedisKeyTrie.Node child) {
+        int keyIndex = child.getKeyIndex();
+        int position = flatRoot instanceof RedisResultRootNode ? ((RedisResultRootNode) flatRoot).positionOf(keyIndex) : keyIndex;
+        RedisKeyAliasNode alias = new RedisKeyAliasNode((NoSqlTreeNode) flatRoot.getChildAt(position), child.getFragment());
+        keyChildren.put(child, alias);
+        return alias;
+    }
+
+    /**
+     * Applies to the groups the keys hidden, shown or reset in the flat result tree, firing the tree model deltas.
+     * Must be called on the root group, on the EDT, once the flat tree is up to date.
+     * <p>
+     * A change costs one trie lookup per fragment of the key, plus one pass over the children of a displayed group
+     * when it loses or replaces a child; groups not created yet just read the updated trie when they are expanded.
+     *
+     * @param keys key of each given index, as read from the result
+     */
+    void applyKeyChanges(Map<Integer, String> keys, Collection<Integer> hiddenIndices, Collection<Integer> shownIndices,
+                         Collection<Integer> resetIndices, TreeTableTree tree) {
+        Map<RedisKeyGroupNode, Set<RedisKeyTrie.Node>> changes = new LinkedHashMap<>();
+        Set<RedisKeyTrie.Node> resetNodes = new HashSet<>();
+        for (int index : hiddenIndices) {
+            RedisKeyTrie.Node node = trie.find(keys.get(index), index);
+            if (node != null) {
+                // the path is read before the trie forgets it
+                collectChanges(node.getPath(), changes);
+                trie.remove(node);
+            }
+        }
+        for (int index : shownIndices) {
+            collectChanges(trie.add(keys.get(index), index).getPath(), changes);
+        }
+        for (int index : resetIndices) {
+            RedisKeyTrie.Node node = trie.find(keys.get(index), index);
+            if (node != null) {
+                resetNodes.add(node);
+                collectChanges(node.getPath(), changes);
+            }
+        }
+        for (Map.Entry<RedisKeyGroupNode, Set<RedisKeyTrie.Node>> change : changes.entrySet()) {
+            change.getKey().update(change.getValue(), resetNodes, tree);
+        }
+    }
+
+    /**
+     * Records, for every created group on the path of a key, the trie node below it whose display may change.
+     */
+    private void collectChanges(List<RedisKeyTrie.Node> path, Map<RedisKeyGroupNode, Set<RedisKeyTrie.Node>> changes) {
+        RedisKeyGroupNode group = this;
+        for (int depth = 1; depth < path.size() && group != null && group.areChildrenCreated(); depth++) {
+            RedisKeyTrie.Node child = path.get(depth);
+            changes.computeIfAbsent(group, node -> new LinkedHashSet<>()).add(child);
+            group = group.groupChildren.get(child);
+        }
+    }
+
+    /**
+     * Brings the displayed children of the given trie nodes in line with the trie: an entry no longer wanted is
+     * removed, a reset key gets a new alias reading its new node, and new entries are inserted next to the other
+     * entry of their trie node, or appended when the trie node is new.
+     */
+    private void update(Set<RedisKeyTrie.Node> changedNodes, Set<RedisKeyTrie.Node> resetNodes, TreeTableTree tree) {
+        DefaultTreeModel model = (DefaultTreeModel) tree.getModel();
+        TreePath path = new TreePath(getPath());
+        Set<TreeNode> removedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<RedisKeyTrie.Node> expandedKeys = new HashSet<>();
+        for (RedisKeyTrie.Node node : changedNodes) {
+            boolean attached = node.isAttached();
+            RedisKeyGroupNode group = groupChildren.get(node);
+            if (group != null && !(attached && node.hasChildren())) {
+                removedNodes.add(groupChildren.remove(node));
+            }
+            RedisKeyAliasNode alias = keyChildren.get(node);
+            if (alias != null && (!attached || node.getKeyIndex() == RedisKeyTrie.NO_KEY || resetNodes.contains(node))) {
+                if (tree.isExpanded(path.pathByAddingChild(alias))) {
+                    expandedKeys.add(node);
+                }
+                removedNodes.add(keyChildren.remove(node));
+            }
+        }
+        if (!removedNodes.isEmpty()) {
+            removeChildren(removedNodes, model);
+        }
+
+        for (RedisKeyTrie.Node node : changedNodes) {
+            if (!node.isAttached()) {
+                continue;
+            }
+            if (node.hasChildren() && !groupChildren.containsKey(node)) {
+                RedisKeyAliasNode alias = keyChildren.get(node);
+                // a group comes before the key of the same name
+                insertChild(createGroup(node), alias == null ? getChildCount() : getIndex(alias), model);
+            }
+            if (node.getKeyIndex() != RedisKeyTrie.NO_KEY && !keyChildren.containsKey(node)) {
+                RedisKeyGroupNode group = groupChildren.get(node);
+                RedisKeyAliasNode alias = createAlias(node);
+                insertChild(alias, group == null ? getChildCount() : getIndex(group) + 1, model);
+                if (expandedKeys.contains(node)) {
+                    tree.expandPath(path.pathByAddingChild(alias));
+                }
+            }
+        }
+    }
+
+    private void removeChildren(Set<TreeNode> removedNodes, DefaultTreeModel model) {
+        List<Integer> positions = new ArrayList<>(removedNodes.size());
+        List<Object> nodes = new ArrayList<>(removedNodes.size());
+        for (int position = 0; position < getChildCount(); position++) {
+            TreeNode child = getChildAt(position);
+            if (removedNodes.contains(child)) {
+                positions.add(position);
+                nodes.add(child);
+            }
+        }
+        for (int i = positions.size() - 1; i >= 0; i--) {
+            remove(positions.get(i));
+        }
+        int[] removedPositions = new int[positions.size()];
+        for (int i = 0; i < removedPositions.length; i++) {
+            removedPositions[i] = positions.get(i);
+        }
+        model.nodesWereRemoved(this, removedPositions, nodes.toArray());
+    }
+
+    private void insertChild(NoSqlTreeNode child, int position, DefaultTreeModel model) {
+        insert(child, position);
+        model.nodesWereInserted(this, new int[]{position});
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view;
+
+import org.codinjutsu.tools.nosql.commons.view.NoSqlTreeNode;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyMetadata;
+import org.codinjutsu.tools.nosql.redis.model.RedisResult;
+import org.codinjutsu.tools.nosql.redis.view.nodedescriptor.LoadingValueDescriptor;
+import org.codinjutsu.tools.nosql.redis.view.nodedescriptor.RedisKeyValueDescriptor;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Key of a {@link RedisResultRootNode}, created when its row is displayed. Its value nodes are only created when
+ * the key is expanded; from then on the node is pinned in its root so that the loaded value is kept.
+ * <p>
+ * Nodes are equal when they show the same key of the same root: a recycled node rebuilt for a row is then found
+ * again by the selection and the expanded paths of the tree.
+ */
+class RedisKeyNode extends RedisLazyTreeNode {
+
+    private final RedisResultRootNode root;
+    private final int index;
+
+    RedisKeyNode(RedisResultRootNode root, int index) {
+        super(RedisKeyValueDescriptor.createDescriptor(root.getResult().getRecord(index)));
+        this.root = root;
+        this.index = index;
+        setParent(root);
+    }
+
+    int getKeyIndex() {
+        return index;
+    }
+
+    RedisResultRootNode getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the metadata of the key, null until it is fetched
+     */
+    RedisKeyMetadata getMetadata() {
+        return root.getResult().getMetadata(index);
+    }
+
+    @Override
+    protected void createChildren() {
+        root.pin(this);
+        RedisResult result = root.getResult();
+        if (result.isValueLoaded(index)) {
+            RedisTreeModel.addValueNodes(this, result.getKeyType(index), result.getValue(index), 0, result.getValueCursor(index));
+        } else {
+            add(new NoSqlTreeNode(new LoadingValueDescriptor()));
+        }
+    }
+
+    @Override
+    protected boolean isLeafBeforeCreation() {
+        RedisResult result = root.getResult();
+        if (!result.isValueLoaded(index) || result.getValueCursor(index) != null) {
+            return false;
+        }
+        Object value = result.getValue(index);
+        if (value instanceof Collection) {
+            return ((Collection) value).isEmpty();
+        }
+        if (value instanceof Map) {
+            return ((Map) value).isEmpty();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof RedisKeyNode)) {
+            return false;
+        }
+        RedisKeyNode node = (RedisKeyNode) other;
+        return root == node.root && index == node.index;
+    }
+
+    @Override
+    public int hashCode() {
+        return index;
+    }
+}
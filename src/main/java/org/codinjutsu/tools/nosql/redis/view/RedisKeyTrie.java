@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefix tree of the keys split by a separator. Children are indexed by fragment, so inserting a key costs
+ * one hash lookup per fragment whatever the number of siblings.
+ * <p>
+ * As with {@link org.apache.commons.lang.StringUtils#split(String, String)}, every character of the separator
+ * splits the key and empty fragments are skipped. Keys that still end up on the same path, such as "a:b" and "a::b"
+ * or "user:1" and "user:1:", keep their own leaf: the first one is indexed on the path, the others by their full name.
+ * <p>
+ * Keys can be removed as well, e.g. when they are deleted while the result is displayed: the groups left empty are
+ * removed with them.
+ */
+class RedisKeyTrie {
+
+    static final int NO_KEY = -1;
+
+    static class Node {
+
+        private final String fragment;
+        private final String prefix;
+        private final Node parent;
+        private int keyIndex = NO_KEY;
+        private Map<String, Node> children;
+
+        private Node(String fragment, String prefix, Node parent) {
+            this.fragment = fragment;
+            this.prefix = prefix;
+            this.parent = parent;
+        }
+
+        String getFragment() {
+            return fragment;
+        }
+
+        /**
+         * @return the beginning of the keys up to this fragment, e.g. "user:42" for the fragment "42" of "user:42:name"
+         */
+        String getPrefix() {
+            return prefix;
+        }
+
+        /**
+         * @return the index in the result of the key ending at this fragment, {@link #NO_KEY} for a pure group
+         */
+        int getKeyIndex() {
+            return keyIndex;
+        }
+
+        boolean hasChildren() {
+            return children != null && !children.isEmpty();
+        }
+
+        Collection<Node> getChildren() {
+            return children == null ? Collections.<Node>emptyList() : children.values();
+        }
+
+        /**
+         * @return whether the node is still in the tree, i.e. was not removed with its last key
+         */
+        boolean isAttached() {
+            return parent == null || (parent.isAttached() && parent.children != null && parent.children.get(fragment) == this);
+        }
+
+        /**
+         * @return the nodes from the root down to this one, both included
+         */
+        List<Node> getPath() {
+            LinkedList<Node> path = new LinkedList<>();
+            for (Node node = this; node != null; node = node.parent) {
+                path.addFirst(node);
+            }
+            return path;
+        }
+
+        private Node child(String fragment, String key, int prefixEnd, boolean create) {
+            if (children == null) {
+                if (!create) {
+                    return null;
+                }
+                children = new LinkedHashMap<>();
+            }
+            Node child = children.get(fragment);
+            if (child == null && create) {
+                child = new Node(fragment, key.substring(0, prefixEnd), this);
+                children.put(fragment, child);
+            }
+            return child;
+        }
+    }
+
+    private final String separator;
+    private final Node root = new Node("", "", null);
+
+    RedisKeyTrie(String separator) {
+        this.separator = separator;
+    }
+
+    Node getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the node now holding the key
+     */
+    Node add(String key, int keyIndex) {
+        Node node = pathNode(key, true);
+        if (node.keyIndex != NO_KEY && node.keyIndex != keyIndex) {
+            // a colliding key holds a separator, so its full name never clashes with a fragment
+            node = node.parent.child(key, key, key.length(), true);
+        }
+        node.keyIndex = keyIndex;
+        return node;
+    }
+
+    /**
+     * @return the node holding the key, null when it is not in the tree
+     */
+    @Nullable
+    Node find(String key, int keyIndex) {
+        Node node = pathNode(key, false);
+        if (node != null && node.keyIndex != keyIndex) {
+            node = node.parent.child(key, key, key.length(), false);
+        }
+        return node != null && node.keyIndex == keyIndex ? node : null;
+    }
+
+    /**
+     * Removes the key of a node, then the groups left without keys.
+     */
+    void remove(Node node) {
+        node.keyIndex = NO_KEY;
+        while (node != root && node.keyIndex == NO_KEY && !node.hasChildren()) {
+            node.parent.children.remove(node.fragment);
+            node = node.parent;
+        }
+    }
+
+    private Node pathNode(String key, boolean create) {
+        Node node = root;
+        int fragmentCount = 0;
+        String firstFragment = null;
+        int firstFragmentEnd = 0;
+        int length = key.length();
+        int start = 0;
+        while (start < length && node != null) {
+            while (start < length && isSeparator(key.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && !isSeparator(key.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                String fragment = key.substring(start, end);
+                if (fragmentCount == 0) {
+                    // wait for a second fragment: a key that is not split is indexed by its full name
+                    firstFragment = fragment;
+                    firstFragmentEnd = end;
+                } else {
+                    if (fragmentCount == 1) {
+                        node = node.child(firstFragment, key, firstFragmentEnd, create);
+                    }
+                    if (node != null) {
+                        node = node.child(fragment, key, end, create);
+                    }
+                }
+                fragmentCount++;
+            }
+            start = end;
+        }
+        if (fragmentCount <= 1) {
+            node = root.child(key, key, length, create);
+        }
+        return node;
+    }
+
+    private boolean isSeparator(char c) {
+        return separator.indexOf(c) >= 0;
+    }
+}
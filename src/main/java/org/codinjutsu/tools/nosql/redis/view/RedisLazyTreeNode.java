@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view;
+
+import org.codinjutsu.tools.nosql.commons.view.NoSqlTreeNode;
+import org.codinjutsu.tools.nosql.commons.view.nodedescriptor.NodeDescriptor;
+
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeNode;
+import java.util.Enumeration;
+
+/**
+ * Tree node whose children are only created the first time they are asked for. Until then {@link #isLeaf()}
+ * must be answered without creating them.
+ */
+abstract class RedisLazyTreeNode extends NoSqlTreeNode {
+
+    private boolean childrenCreated;
+
+    RedisLazyTreeNode(NodeDescriptor descriptor) {
+        super(descriptor);
+    }
+
+    /**
+     * Adds the children with {@link #add(MutableTreeNode)}; called once, on first access.
+     */
+    protected abstract void createChildren();
+
+    /**
+     * @return whether the node will have no children, answered before they are created
+     */
+    protected abstract boolean isLeafBeforeCreation();
+
+    /**
+     * @return whether the children were created, i.e. asked for at least once
+     */
+    boolean areChildrenCreated() {
+        return childrenCreated;
+    }
+
+    private void ensureChildren() {
+        if (!childrenCreated) {
+            childrenCreated = true;
+            createChildren();
+        }
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return childrenCreated ? super.isLeaf() : isLeafBeforeCreation();
+    }
+
+    @Override
+    public int getChildCount() {
+        ensureChildren();
+        return super.getChildCount();
+    }
+
+    @Override
+    public TreeNode getChildAt(int index) {
+        ensureChildren();
+        return super.getChildAt(index);
+    }
+
+    @Override
+    public int getIndex(TreeNode child) {
+        ensureChildren();
+        return super.getIndex(child);
+    }
+
+    @Override
+    public Enumeration children() {
+        ensureChildren();
+        return super.children();
+    }
+
+    @Override
+    public void insert(MutableTreeNode child, int index) {
+        ensureChildren();
+        super.insert(child, index);
+    }
+
+    @Override
+    public void remove(int index) {
+        ensureChildren();
+        super.remove(index);
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.ui.treeStructure.treetable.TreeTableTree;
+import org.codinjutsu.tools.nosql.commons.utils.GuiUtils;
+import org.codinjutsu.tools.nosql.redis.logic.RedisKeyspaceSubscriber;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType;
+import org.codinjutsu.tools.nosql.redis.model.RedisRecord;
+import org.codinjutsu.tools.nosql.redis.model.RedisResult;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeNode;
+import javax.swing.tree.TreePath;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Applies the keyspace notifications of the displayed database to the displayed result, so that it stays current
+ * without scanning the database again.
+ * <p>
+ * Notifications are coalesced per key until the next frame. A timer then resolves the type of the changed keys in one
+ * round trip on a pooled thread, and on the EDT hides the deleted keys, resets the changed ones and appends the new
+ * ones, fired as tree model deltas. In a grouped view the same keys are applied to the groups already displayed,
+ * without grouping the whole result again.
+ */
+class RedisLiveUpdater implements RedisKeyspaceSubscriber.KeyEventListener {
+
+    static final int FRAME_MILLIS = 250;
+
+    private static final Logger LOG = Logger.getInstance(RedisLiveUpdater.class);
+    private static final String NONE_TYPE = "none";
+
+    interface Display {
+
+        /**
+         * @return the flat root of the displayed result, null while a query is loading another one
+         */
+        @Nullable
+        RedisResultRootNode getLiveRoot();
+
+        TreeTableTree getTree();
+
+        /**
+         * @return false when a value filter is set: new keys cannot be checked against it
+         */
+        boolean acceptsNewKeys();
+
+        void reloadValue(RedisKeyNode keyNode);
+
+        void keysReset(List<Integer> keyIndices);
+
+        void liveUpdatesFailed(Exception error);
+    }
+
+    interface KeyTypeSource {
+        List<String> loadTypes(List<byte[]> keys);
+    }
+
+    private final Display display;
+    private final KeyTypeSource source;
+    private final String pattern;
+    private final Map<ByteBuffer, String> pendingEvents = new LinkedHashMap<>();
+    private final Timer frameTimer;
+    private RedisKeyspaceSubscriber subscriber;
+    private boolean resolving;
+    private boolean stopped;
+
+    RedisLiveUpdater(Display display, KeyTypeSource source, String pattern) {
+        this.display = display;
+        this.source = source;
+        this.pattern = pattern;
+        this.frameTimer = new Timer(FRAME_MILLIS, event -> flush());
+    }
+
+    String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Must be called on the EDT.
+     */
+    void start(RedisKeyspaceSubscriber subscriber) {
+        this.subscriber = subscriber;
+        subscriber.start();
+        frameTimer.start();
+    }
+
+    /**
+     * Must be called on the EDT.
+     */
+    void stop() {
+        stopped = true;
+        frameTimer.stop();
+        if (subscriber != null) {
+            subscriber.stop();
+        }
+    }
+
+    @Override
+    public void keyChanged(byte[] key, String event) {
+        synchronized (pendingEvents) {
+            // the last event of a key tells whether it still exists
+            pendingEvents.remove(ByteBuffer.wrap(key));
+            pendingEvents.put(ByteBuffer.wrap(key), event);
+        }
+    }
+
+    @Override
+    public void subscriptionFailed(Exception error) {
+        GuiUtils.runInSwingThread(() -> {
+            if (!stopped) {
+                display.liveUpdatesFailed(error);
+            }
+        });
+    }
+
+    private void flush() {
+        final RedisResultRootNode root = display.getLiveRoot();
+        if (resolving || root == null) {
+            // the events wait for the query to end
+            return;
+        }
+        final List<byte[]> removedKeys = new ArrayList<>();
+        final List<byte[]> changedKeys = new ArrayList<>();
+        synchronized (pendingEvents) {
+            for (Map.Entry<ByteBuffer, String> pendingEvent : pendingEvents.entrySet()) {
+                boolean removal = RedisKeyspaceSubscriber.REMOVAL_EVENTS.contains(pendingEvent.getValue());
+                (removal ? removedKeys : changedKeys).add(pendingEvent.getKey().array());
+            }
+            pendingEvents.clear();
+        }
+        if (changedKeys.isEmpty()) {
+            if (!removedKeys.isEmpty()) {
+                apply(root, removedKeys, Collections.<byte[]>emptyList(), Collections.<String>emptyList());
+            }
+            return;
+        }
+        resolving = true;
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+                final List<String> types = source.loadTypes(changedKeys);
+                GuiUtils.runInSwingThread(() -> {
+                    resolving = false;
+                    // a result loaded since is already current
+                    if (!stopped && display.getLiveRoot() == root) {
+                        apply(root, removedKeys, changedKeys, types);
+                    }
+                });
+            } catch (Exception ex) {
+                LOG.warn("Cannot resolve the type of " + changedKeys.size() + " changed keys", ex);
+                GuiUtils.runInSwingThread(() -> resolving = false);
+            }
+        });
+    }
+
+    private void apply(RedisResultRootNode root, List<byte[]> removedKeys, List<byte[]> changedKeys, List<String> types) {
+        RedisResult result = root.getResult();
+        Set<Integer> hiddenIndices = new TreeSet<>();
+        List<Integer> resetIndices = new ArrayList<>();
+        List<Integer> reloadedIndices = new ArrayList<>();
+        List<Integer> shownIndices = new ArrayList<>();
+        RedisResult newKeys = new RedisResult();
+        for (byte[] key : removedKeys) {
+            int index = result.indexOf(key);
+            if (index >= 0 && root.positionOf(index) >= 0) {
+                hiddenIndices.add(index);
+            }
+        }
+        for (int i = 0; i < changedKeys.size(); i++) {
+            byte[] key = changedKeys.get(i);
+            int index = result.indexOf(key);
+            if (NONE_TYPE.equals(types.get(i))) {
+                if (index >= 0 && root.positionOf(index) >= 0) {
+                    hiddenIndices.add(index);
+                }
+                continue;
+            }
+            RedisKeyType keyType = RedisKeyType.getKeyType(types.get(i));
+            if (keyType == null) {
+                // streams and module types are not displayed
+                continue;
+            }
+            if (index < 0) {
+                if (display.acceptsNewKeys()) {
+                    newKeys.addKey(keyType, key, RedisRecord.UNKNOWN_LENGTH);
+                }
+                continue;
+            }
+            result.resetKey(index, keyType);
+            resetIndices.add(index);
+            boolean valueDisplayed = root.forget(index);
+            if (root.positionOf(index) < 0) {
+                shownIndices.add(index);
+            } else if (valueDisplayed) {
+                reloadedIndices.add(index);
+            }
+        }
+        if (hiddenIndices.isEmpty() && resetIndices.isEmpty() && newKeys.size() == 0) {
+            return;
+        }
+
+        TreeTableTree tree = display.getTree();
+        DefaultTreeModel model = (DefaultTreeModel) tree.getModel();
+        boolean flatView = model.getRoot() == root;
+        int firstShownPosition = root.getChildCount() - hiddenIndices.size();
+        if (!hiddenIndices.isEmpty()) {
+            hide(root, model, flatView, hiddenIndices);
+        }
+        for (int index : shownIndices) {
+            root.showKey(index);
+        }
+        int firstNewIndex = result.size();
+        root.append(newKeys);
+        display.keysReset(resetIndices);
+        if (!flatView) {
+            if (model.getRoot() instanceof RedisKeyGroupNode) {
+                applyToGroups((RedisKeyGroupNode) model.getRoot(), result, hiddenIndices, shownIndices, resetIndices, firstNewIndex, tree);
+            }
+            return;
+        }
+
+        List<Integer> changedPositions = new ArrayList<>();
+        for (int index : resetIndices) {
+            int position = root.positionOf(index);
+            if (position < firstShownPosition) {
+                changedPositions.add(position);
+            }
+        }
+        if (!changedPositions.isEmpty()) {
+            model.nodesChanged(root, toArray(changedPositions));
+        }
+        for (int index : reloadedIndices) {
+            RedisKeyNode keyNode = (RedisKeyNode) root.getChildAt(root.positionOf(index));
+            // the expanded node still shows the former value
+            model.nodeStructureChanged(keyNode);
+            display.reloadValue(keyNode);
+        }
+        int[] insertedPositions = new int[root.getChildCount() - firstShownPosition];
+        for (int i = 0; i < insertedPositions.length; i++) {
+            insertedPositions[i] = firstShownPosition + i;
+        }
+        if (insertedPositions.length > 0) {
+            model.nodesWereInserted(root, insertedPositions);
+            if (firstShownPosition == 0) {
+                // the hidden root could not be expanded while it had no children
+                tree.expandPath(new TreePath(root));
+            }
+        }
+    }
+
+    private static void applyToGroups(RedisKeyGroupNode groupRoot, RedisResult result, Set<Integer> hiddenIndices,
+                                      List<Integer> shownIndices, List<Integer> resetIndices, int firstNewIndex, TreeTableTree tree) {
+        Map<Integer, String> keys = new HashMap<>();
+        List<Integer> addedIndices = new ArrayList<>(shownIndices);
+        for (int index = firstNewIndex; index < result.size(); index++) {
+            addedIndices.add(index);
+        }
+        List<Integer> keptIndices = new ArrayList<>(resetIndices);
+        // a key shown again is added to the groups, not reset in them
+        keptIndices.removeAll(shownIndices);
+        for (Collection<Integer> indices : Arrays.asList(hiddenIndices, addedIndices, keptIndices)) {
+            for (int index : indices) {
+                keys.put(index, result.getKey(index));
+            }
+        }
+        groupRoot.applyKeyChanges(keys, hiddenIndices, addedIndices, keptIndices, tree);
+    }
+
+    private static void hide(RedisResultRootNode root, DefaultTreeModel model, boolean flatView, Set<Integer> hiddenIndices) {
+        int[] indices = new int[hiddenIndices.size()];
+        TreeMap<Integer, TreeNode> nodesByPosition = new TreeMap<>();
+        int i = 0;
+        for (int index : hiddenIndices) {
+            indices[i++] = index;
+            if (flatView) {
+                int position = root.positionOf(index);
+                nodesByPosition.put(position, root.getChildAt(position));
+            }
+        }
+        int[] removedPositions = root.hideKeys(indices);
+        if (flatView) {
+            model.nodesWereRemoved(root, removedPositions, nodesByPosition.values().toArray());
+        }
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
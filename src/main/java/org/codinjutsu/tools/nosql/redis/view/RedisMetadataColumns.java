@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.ui.ColumnInfo;
+import org.codinjutsu.tools.nosql.json.view.JsonTreeTableView;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyMetadata;
+import org.codinjutsu.tools.nosql.redis.model.RedisRecord;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableCellRenderer;
+import java.util.Arrays;
+
+/**
+ * Read-only columns showing the metadata of the key rows; empty for the other rows and until the metadata is fetched.
+ */
+class RedisMetadataColumns {
+
+    static final ColumnInfo[] COLUMNS_WITH_METADATA = withMetadata(JsonTreeTableView.COLUMNS_FOR_READING);
+
+    private static ColumnInfo[] withMetadata(ColumnInfo[] columns) {
+        ColumnInfo[] allColumns = Arrays.copyOf(columns, columns.length + 4);
+        allColumns[columns.length] = new MetadataColumnInfo("TTL", false) {
+            @Override
+            String format(RedisKeyMetadata metadata) {
+                if (metadata.getTtlMillis() == RedisKeyMetadata.NO_EXPIRATION) {
+                    return "none";
+                }
+                if (metadata.getTtlMillis() == RedisKeyMetadata.MISSING_KEY) {
+                    return "deleted";
+                }
+                return StringUtil.formatDuration(metadata.getTtlMillis());
+            }
+        };
+        allColumns[columns.length + 1] = new MetadataColumnInfo("Length", true) {
+            @Override
+            String format(RedisKeyMetadata metadata) {
+                return metadata.getLength() == RedisRecord.UNKNOWN_LENGTH ? "" : String.valueOf(metadata.getLength());
+            }
+        };
+        allColumns[columns.length + 2] = new MetadataColumnInfo("Encoding", false) {
+            @Override
+            String format(RedisKeyMetadata metadata) {
+                return StringUtil.notNullize(metadata.getEncoding());
+            }
+        };
+        allColumns[columns.length + 3] = new MetadataColumnInfo("Memory", true) {
+            @Override
+            String format(RedisKeyMetadata metadata) {
+                return metadata.getMemoryBytes() == RedisKeyMetadata.UNKNOWN_MEMORY ? "" : StringUtil.formatFileSize(metadata.getMemoryBytes());
+            }
+        };
+        return allColumns;
+    }
+
+    /**
+     * @return the metadata of the key shown by a row, null for the other rows and until it is fetched
+     */
+    static RedisKeyMetadata metadataOf(Object node) {
+        if (node instanceof RedisKeyAliasNode) {
+            node = ((RedisKeyAliasNode) node).getKeyNode();
+        }
+        return node instanceof RedisKeyNode ? ((RedisKeyNode) node).getMetadata() : null;
+    }
+
+    private abstract static class MetadataColumnInfo extends ColumnInfo<Object, String> {
+
+        private final TableCellRenderer renderer;
+
+        MetadataColumnInfo(String name, boolean numeric) {
+            super(name);
+            DefaultTableCellRenderer cellRenderer = new DefaultTableCellRenderer();
+            cellRenderer.setHorizontalAlignment(numeric ? SwingConstants.RIGHT : SwingConstants.LEFT);
+            this.renderer = cellRenderer;
+        }
+
+        abstract String format(RedisKeyMetadata metadata);
+
+        @Override
+        public String valueOf(Object node) {
+            RedisKeyMetadata metadata = metadataOf(node);
+            return metadata == null ? "" : format(metadata);
+        }
+
+        @Override
+        public TableCellRenderer getRenderer(Object node) {
+            return renderer;
+        }
+
+        @Override
+        public boolean isCellEditable(Object node) {
+            return false;
+        }
+    }
+}
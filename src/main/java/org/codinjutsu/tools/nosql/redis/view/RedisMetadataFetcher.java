@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.ui.treeStructure.treetable.TreeTable;
+import org.codinjutsu.tools.nosql.commons.utils.GuiUtils;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyMetadata;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType;
+import org.codinjutsu.tools.nosql.redis.model.RedisResult;
+
+import javax.swing.*;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreePath;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fetches the metadata of the keys displayed by a result table, never of the rows out of the viewport.
+ * <p>
+ * Scrolling, expanding and streamed keys restart a short timer; when it fires, the keys of the visible rows whose
+ * metadata is missing are fetched as one batch on a pooled thread and stored in the result on the EDT.
+ */
+class RedisMetadataFetcher {
+
+    static final int FETCH_DELAY_MILLIS = 150;
+
+    private static final Logger LOG = Logger.getInstance(RedisMetadataFetcher.class);
+
+    interface MetadataSource {
+        List<RedisKeyMetadata> load(List<byte[]> keys, List<RedisKeyType> keyTypes);
+    }
+
+    private final TreeTable table;
+    private final RedisResultRootNode root;
+    private final MetadataSource source;
+    private final Set<Integer> requestedKeys = new HashSet<>();
+    private final Timer fetchTimer;
+    private boolean stopped;
+
+    RedisMetadataFetcher(TreeTable table, RedisResultRootNode root, MetadataSource source) {
+        this.table = table;
+        this.root = root;
+        this.source = source;
+        this.fetchTimer = new Timer(FETCH_DELAY_MILLIS, event -> fetchVisibleKeys());
+        this.fetchTimer.setRepeats(false);
+    }
+
+    /**
+     * Listens to the viewport and the tree of the table, which must already be in its scroll pane.
+     */
+    void install(JViewport viewport) {
+        viewport.addChangeListener(event -> scheduleFetch());
+        table.getTree().addTreeExpansionListener(new TreeExpansionListener() {
+            @Override
+            public void treeExpanded(TreeExpansionEvent event) {
+                scheduleFetch();
+            }
+
+            @Override
+            public void treeCollapsed(TreeExpansionEvent event) {
+                scheduleFetch();
+            }
+        });
+        table.getTree().getModel().addTreeModelListener(new TreeModelListener() {
+            @Override
+            public void treeNodesChanged(TreeModelEvent event) {
+            }
+
+            @Override
+            public void treeNodesInserted(TreeModelEvent event) {
+                scheduleFetch();
+            }
+
+            @Override
+            public void treeNodesRemoved(TreeModelEvent event) {
+            }
+
+            @Override
+            public void treeStructureChanged(TreeModelEvent event) {
+                scheduleFetch();
+            }
+        });
+        scheduleFetch();
+    }
+
+    void stop() {
+        stopped = true;
+        fetchTimer.stop();
+    }
+
+    /**
+     * Lets the metadata of keys be fetched again, e.g. once their value changed.
+     */
+    void forgetKeys(List<Integer> keyIndices) {
+        requestedKeys.removeAll(keyIndices);
+        scheduleFetch();
+    }
+
+    private void scheduleFetch() {
+        if (!stopped) {
+            fetchTimer.restart();
+        }
+    }
+
+    private void fetchVisibleKeys() {
+        Rectangle visibleRect = table.getVisibleRect();
+        int firstRow = table.rowAtPoint(visibleRect.getLocation());
+        if (firstRow < 0) {
+            return;
+        }
+        int lastRow = table.rowAtPoint(new Point(visibleRect.x, visibleRect.y + visibleRect.height - 1));
+        if (lastRow < 0) {
+            lastRow = table.getRowCount() - 1;
+        }
+
+        RedisResult result = root.getResult();
+        final List<Integer> keyIndices = new ArrayList<>();
+        final List<byte[]> keys = new ArrayList<>();
+        final List<RedisKeyType> keyTypes = new ArrayList<>();
+        for (int row = firstRow; row <= lastRow; row++) {
+            TreePath path = table.getTree().getPathForRow(row);
+            Object node = path == null ? null : path.getLastPathComponent();
+            if (node instanceof RedisKeyAliasNode) {
+                node = ((RedisKeyAliasNode) node).getKeyNode();
+            }
+            if (!(node instanceof RedisKeyNode) || ((RedisKeyNode) node).getRoot() != root) {
+                continue;
+            }
+            int index = ((RedisKeyNode) node).getKeyIndex();
+            if (result.getMetadata(index) == null && requestedKeys.add(index)) {
+                keyIndices.add(index);
+                keys.add(result.getKeyBytes(index));
+                keyTypes.add(result.getKeyType(index));
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+                final List<RedisKeyMetadata> metadata = source.load(keys, keyTypes);
+                GuiUtils.runInSwingThread(() -> {
+                    for (int i = 0; i < keyIndices.size(); i++) {
+                        root.getResult().setMetadata(keyIndices.get(i), metadata.get(i));
+                    }
+                    table.repaint();
+                });
+            } catch (Exception ex) {
+                LOG.warn("Cannot fetch the metadata of " + keys.size() + " keys", ex);
+                GuiUtils.runInSwingThread(() -> requestedKeys.removeAll(keyIndices));
+            }
+        });
+    }
+}
@@ -23,45 +23,88 @@ import com.intellij.openapi.actionSystem.ActionManager;
 import com.intellij.openapi.actionSystem.ActionToolbar;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.DefaultActionGroup;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.impl.BackgroundableProcessIndicator;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.LoadingDecorator;
+import com.intellij.openapi.ui.MessageType;
+import com.intellij.openapi.ui.popup.Balloon;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.components.JBTextField;
 import com.intellij.ui.components.panels.NonOpaquePanel;
 import com.intellij.ui.treeStructure.treetable.TreeTableTree;
 import com.intellij.uiDesigner.core.GridConstraints;
 import com.intellij.uiDesigner.core.GridLayoutManager;
+import com.intellij.util.ui.ColumnInfo;
 import com.intellij.util.ui.tree.TreeUtil;
 import org.apache.commons.lang.StringUtils;
 import org.codinjutsu.tools.nosql.ServerConfiguration;
 import org.codinjutsu.tools.nosql.commons.utils.GuiUtils;
 import org.codinjutsu.tools.nosql.commons.view.ErrorPanel;
 import org.codinjutsu.tools.nosql.commons.view.NoSqlResultView;
+import org.codinjutsu.tools.nosql.commons.view.NoSqlTreeNode;
 import org.codinjutsu.tools.nosql.commons.view.action.AddKeyValueAction;
 import org.codinjutsu.tools.nosql.commons.view.action.ExecuteQuery;
 import org.codinjutsu.tools.nosql.commons.view.action.RemoveKeyAction;
 import org.codinjutsu.tools.nosql.json.view.JsonTreeTableView;
 import org.codinjutsu.tools.nosql.redis.logic.EmptyQueryExecutor;
 import org.codinjutsu.tools.nosql.redis.logic.RedisClient;
+import org.codinjutsu.tools.nosql.redis.logic.RedisKeyScanner;
+import org.codinjutsu.tools.nosql.redis.logic.RedisKeyspaceSubscriber;
 import org.codinjutsu.tools.nosql.redis.logic.RedisQueryExecutor;
+import org.codinjutsu.tools.nosql.redis.logic.RedisResultListener;
 import org.codinjutsu.tools.nosql.redis.model.RedisDatabase;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyMetadata;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType;
 import org.codinjutsu.tools.nosql.redis.model.RedisQuery;
+import org.codinjutsu.tools.nosql.redis.model.RedisRecord;
 import org.codinjutsu.tools.nosql.redis.model.RedisResult;
+import org.codinjutsu.tools.nosql.redis.model.RedisValuePage;
+import org.codinjutsu.tools.nosql.redis.view.action.BrowseKeysOnlyAction;
 import org.codinjutsu.tools.nosql.redis.view.action.EnableGroupingAction;
+import org.codinjutsu.tools.nosql.redis.view.action.ImportKeysAction;
+import org.codinjutsu.tools.nosql.redis.view.action.LiveUpdatesAction;
+import org.codinjutsu.tools.nosql.redis.view.action.RemoveMatchingKeysAction;
+import org.codinjutsu.tools.nosql.redis.view.action.RunScriptAction;
 import org.codinjutsu.tools.nosql.redis.view.action.SetSeparatorAction;
+import org.codinjutsu.tools.nosql.redis.view.action.ShowKeyMetadataAction;
+import org.codinjutsu.tools.nosql.redis.view.action.SortKeysBySizeAction;
+import org.codinjutsu.tools.nosql.redis.view.nodedescriptor.LoadMoreValuesDescriptor;
+import org.codinjutsu.tools.nosql.redis.view.nodedescriptor.RedisKeyValueDescriptor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class RedisPanel extends NoSqlResultView<RedisResult> {
 
+    /**
+     * Above this number of top level nodes, the table opens with the keys and groups collapsed.
+     */
+    private static final int EXPANDED_RESULT_MAX_SIZE = 100;
+
     private JPanel toolBarPanel;
     private JPanel containerPanel;
     private JPanel errorPanel;
@@ -77,9 +120,17 @@ public class RedisPanel extends NoSqlResultView<RedisResult> {
     private final ServerConfiguration configuration;
     private final RedisDatabase database;
     private JBTextField filterField;
+    private JBTextField valueFilterField;
     private RedisResult redisResult;
     private boolean groupData;
     private String groupSeparator;
+    private boolean keysOnly;
+    private final Set<RedisKeyValueDescriptor> loadingDescriptors = new HashSet<>();
+    private ProgressIndicator runningQuery;
+    private RedisResultRootNode resultRoot;
+    private boolean showKeyMetadata;
+    private RedisMetadataFetcher metadataFetcher;
+    private RedisLiveUpdater liveUpdater;
 
     public RedisPanel(Project project, RedisClient redisClient, ServerConfiguration configuration, RedisDatabase database) {
         this.project = project;
@@ -94,15 +145,51 @@ public class RedisPanel extends NoSqlResultView<RedisResult> {
         loadingDecorator = new LoadingDecorator(resultPanel, this, 0);
 
         containerPanel.add(loadingDecorator.getComponent());
-        loadAndDisplayResults(getFilter(), this.groupData, this.groupSeparator, new EmptyQueryExecutor());
+        // the actions read the table before the first query ends
+        displayResultTree(new RedisResultRootNode(new RedisResult()));
 
         setLayout(new BorderLayout());
         add(mainPanel);
     }
 
-    private void loadAndDisplayResults(final String filter, final boolean groupByPrefix, final String separator, RedisQueryExecutor executor) {
-        redisResult = redisClient.loadRecords(configuration, database, new RedisQuery(filter), executor);
-        updateResultTableTree(redisResult, groupByPrefix, separator);
+    private RedisQuery createQuery() {
+        RedisQuery query = new RedisQuery(getFilter());
+        query.setKeysOnly(keysOnly);
+        String valueFilter = valueFilterField.getText();
+        int fieldEnd = valueFilter.indexOf('=');
+        if (fieldEnd >= 0) {
+            query.setFieldFilter(valueFilter.substring(0, fieldEnd));
+            query.setValueFilter(valueFilter.substring(fieldEnd + 1));
+        } else {
+            query.setValueFilter(valueFilter);
+        }
+        return query;
+    }
+
+    private void warnAboutSkippedKeys(RedisResult result) {
+        if (result.getSkippedKeyCount() == 0) {
+            return;
+        }
+        StringBuilder message = new StringBuilder("<html>").append(result.getSkippedKeyCount())
+                .append(" keys are too big to be searched and were skipped:");
+        for (String skippedKey : result.getSkippedKeys()) {
+            message.append("<br>").append(StringUtil.escapeXml(skippedKey));
+        }
+        if (result.getSkippedKeyCount() > result.getSkippedKeys().size()) {
+            message.append("<br>...");
+        }
+        GuiUtils.showNotification(resultPanel, MessageType.WARNING, message.append("</html>").toString(), Balloon.Position.above);
+    }
+
+    private void warnAboutNodeErrors(Map<String, String> nodeErrors) {
+        if (nodeErrors.isEmpty()) {
+            return;
+        }
+        StringBuilder message = new StringBuilder("<html>Some cluster nodes could not be scanned, their keys are missing:");
+        for (Map.Entry<String, String> nodeError : nodeErrors.entrySet()) {
+            message.append("<br>").append(nodeError.getKey()).append(": ").append(StringUtil.escapeXml(nodeError.getValue()));
+        }
+        GuiUtils.showNotification(resultPanel, MessageType.WARNING, message.append("</html>").toString(), Balloon.Position.above);
     }
 
     protected void buildQueryToolBar() {
@@ -126,6 +213,22 @@ public class RedisPanel extends NoSqlResultView<RedisResult> {
         filterPanel.add(Box.createHorizontalStrut(5), BorderLayout.EAST);
         westPanel.add(filterPanel, BorderLayout.WEST);
 
+        valueFilterField = new JBTextField();
+        valueFilterField.setColumns(10);
+        valueFilterField.setToolTipText("Only keep the values containing this text, or the hash entries matching field=text");
+        valueFilterField.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                executeQuery(new EmptyQueryExecutor());
+            }
+        });
+
+        NonOpaquePanel valueFilterPanel = new NonOpaquePanel();
+        valueFilterPanel.add(new JLabel("Value: "), BorderLayout.WEST);
+        valueFilterPanel.add(valueFilterField, BorderLayout.CENTER);
+        valueFilterPanel.add(Box.createHorizontalStrut(5), BorderLayout.EAST);
+        westPanel.add(valueFilterPanel, BorderLayout.EAST);
+
         toolBarPanel.add(westPanel, BorderLayout.WEST);
 
         addCommonsActions();
@@ -172,9 +275,16 @@ public class RedisPanel extends NoSqlResultView<RedisResult> {
         actionResultGroup.addSeparator();
         actionResultGroup.add(new EnableGroupingAction(this));
         actionResultGroup.add(new SetSeparatorAction(this));
+        actionResultGroup.add(new BrowseKeysOnlyAction(this));
+        actionResultGroup.add(new ShowKeyMetadataAction(this));
+        actionResultGroup.add(new SortKeysBySizeAction(this));
+        actionResultGroup.add(new LiveUpdatesAction(this));
         actionResultGroup.addSeparator();
         actionResultGroup.add(new AddKeyValueAction(this));
         actionResultGroup.add(new RemoveKeyAction(this));
+        actionResultGroup.add(new RemoveMatchingKeysAction(this));
+        actionResultGroup.add(new ImportKeysAction(this));
+        actionResultGroup.add(new RunScriptAction(this));
         actionResultGroup.add(expandAllAction);
         actionResultGroup.add(collapseAllAction);
 
@@ -188,7 +298,7 @@ public class RedisPanel extends NoSqlResultView<RedisResult> {
         toolBarPanel.add(actionToolBarComponent, BorderLayout.CENTER);
     }
 
-    private String getFilter() {
+    public String getFilter() {
         String filter = filterField.getText();
         if (StringUtils.isNotBlank(filter)) {
             return filter;
@@ -197,27 +307,160 @@ public class RedisPanel extends NoSqlResultView<RedisResult> {
     }
 
     void expandAll() {
-        TreeUtil.expandAll(resultTableView.getTree());
+        if (resultTableView != null) {
+            TreeUtil.expandAll(resultTableView.getTree());
+        }
     }
 
     void collapseAll() {
-        TreeTableTree tree = resultTableView.getTree();
-        TreeUtil.collapseAll(tree, 1);
+        if (resultTableView != null) {
+            TreeTableTree tree = resultTableView.getTree();
+            TreeUtil.collapseAll(tree, 1);
+        }
     }
 
     public void updateResultTableTree(RedisResult redisResult, boolean groupByPrefix, String separator) {
-        DefaultMutableTreeNode rootNode = RedisTreeModel.buildTree(redisResult);
-        DefaultMutableTreeNode renderedNode = rootNode;
+        if (redisResult != null) {
+            resultRoot = new RedisResultRootNode(redisResult);
+            displayResultTree(groupView(resultRoot, groupByPrefix, separator));
+        }
+    }
+
+    /**
+     * @return the tree to display over the flat key tree, which is never modified by the grouping
+     */
+    private static DefaultMutableTreeNode groupView(RedisResultRootNode flatRoot, boolean groupByPrefix, String separator) {
         if (groupByPrefix && StringUtils.isNotBlank(separator)) {
-            renderedNode = RedisFragmentedKeyTreeModel.wrapNodes(rootNode, separator);
+            return RedisFragmentedKeyTreeModel.wrapNodes(flatRoot, separator);
+        }
+        return flatRoot;
+    }
+
+    /**
+     * Swaps the group layer of the displayed table, keeping the table, the value nodes and the expanded keys and groups.
+     */
+    private void regroup() {
+        if (resultTableView == null || resultRoot == null) {
+            return;
         }
-        resultTableView = new JsonTreeTableView(renderedNode, JsonTreeTableView.COLUMNS_FOR_READING);
+        TreeTableTree tree = resultTableView.getTree();
+        RedisTreeExpansionState expansionState = RedisTreeExpansionState.capture(tree);
+        ((DefaultTreeModel) tree.getModel()).setRoot(groupView(resultRoot, groupData, groupSeparator));
+        expansionState.restore(tree);
+    }
+
+    private void displayResultTree(DefaultMutableTreeNode renderedNode) {
+        int expandedLevels = renderedNode.getChildCount() <= EXPANDED_RESULT_MAX_SIZE ? 2 : 1;
+        ColumnInfo[] columns = showKeyMetadata ? RedisMetadataColumns.COLUMNS_WITH_METADATA : JsonTreeTableView.COLUMNS_FOR_READING;
+        resultTableView = new JsonTreeTableView(renderedNode, columns, expandedLevels);
         resultTableView.setName("resultTreeTable");
+        // fixed height rows: the tree only asks the model for the displayed rows
+        resultTableView.getTree().setLargeModel(true);
+        resultTableView.getTree().addTreeWillExpandListener(new ValueLoadingListener());
+        resultTableView.addMouseListener(new LoadMoreValuesListener());
 
+        JBScrollPane scrollPane = new JBScrollPane(resultTableView);
         resultPanel.invalidate();
         resultPanel.removeAll();
-        resultPanel.add(new JBScrollPane(resultTableView));
+        resultPanel.add(scrollPane);
         resultPanel.validate();
+
+        if (metadataFetcher != null) {
+            metadataFetcher.stop();
+            metadataFetcher = null;
+        }
+        if (showKeyMetadata && resultRoot != null) {
+            metadataFetcher = new RedisMetadataFetcher(resultTableView, resultRoot,
+                    (keys, keyTypes) -> redisClient.loadMetadata(configuration, database, keys, keyTypes));
+            metadataFetcher.install(scrollPane.getViewport());
+        }
+    }
+
+    /**
+     * Displays the current tree again in a new table, keeping the expanded keys and groups.
+     */
+    private void redisplayResultTree() {
+        if (runningQuery != null || resultTableView == null) {
+            // the keys streamed by the running query are inserted in the current table
+            executeQuery(new EmptyQueryExecutor());
+            return;
+        }
+        TreeTableTree tree = resultTableView.getTree();
+        RedisTreeExpansionState expansionState = RedisTreeExpansionState.capture(tree);
+        displayResultTree((DefaultMutableTreeNode) tree.getModel().getRoot());
+        expansionState.restore(resultTableView.getTree());
+    }
+
+    /**
+     * Fetches the metadata of every key still missing it, then shows the biggest keys first: by memory usage when the
+     * server tells it, by length otherwise. The groups are built in that order: the keys of a group are sorted by size
+     * too, and the groups come in the order of their biggest key.
+     */
+    public void sortKeysBySize() {
+        if (runningQuery != null || resultRoot == null) {
+            return;
+        }
+        final RedisResultRootNode root = resultRoot;
+        final RedisResult result = root.getResult();
+        final List<Integer> missingKeys = new ArrayList<>();
+        for (int index = 0; index < result.size(); index++) {
+            if (result.getMetadata(index) == null) {
+                missingKeys.add(index);
+            }
+        }
+        final List<byte[]> keys = new ArrayList<>(missingKeys.size());
+        final List<RedisKeyType> keyTypes = new ArrayList<>(missingKeys.size());
+        for (int index : missingKeys) {
+            keys.add(result.getKeyBytes(index));
+            keyTypes.add(result.getKeyType(index));
+        }
+        new Task.Backgroundable(project, "Measuring keys", true) {
+
+            private final List<RedisKeyMetadata> metadata = new ArrayList<>(keys.size());
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                for (int from = 0; from < keys.size(); from += RedisQuery.DEFAULT_PIPELINE_BATCH_SIZE) {
+                    indicator.checkCanceled();
+                    int to = Math.min(from + RedisQuery.DEFAULT_PIPELINE_BATCH_SIZE, keys.size());
+                    metadata.addAll(redisClient.loadMetadata(configuration, database, keys.subList(from, to), keyTypes.subList(from, to)));
+                    indicator.setFraction((double) to / keys.size());
+                    indicator.setText2(String.format("%d of %d keys measured", to, keys.size()));
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                for (int i = 0; i < metadata.size(); i++) {
+                    result.setMetadata(missingKeys.get(i), metadata.get(i));
+                }
+                if (root != resultRoot) {
+                    return;
+                }
+                root.sortKeys(new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer index1, Integer index2) {
+                        return Long.compare(sizeOf(result, index2), sizeOf(result, index1));
+                    }
+                });
+                showKeyMetadata = true;
+                TreeTableTree tree = resultTableView.getTree();
+                RedisTreeExpansionState expansionState = RedisTreeExpansionState.capture(tree);
+                displayResultTree(groupView(root, isGroupDataEnabled(), getGroupSeparator()));
+                expansionState.restore(resultTableView.getTree());
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                showError(error instanceof Exception ? (Exception) error : new RuntimeException(error));
+            }
+        }.queue();
+    }
+
+    private static long sizeOf(RedisResult result, int index) {
+        RedisKeyMetadata metadata = result.getMetadata(index);
+        return metadata == null ? RedisRecord.UNKNOWN_LENGTH : metadata.getSize();
     }
 
     @Override
@@ -235,50 +478,318 @@ public class RedisPanel extends NoSqlResultView<RedisResult> {
         return redisResult;
     }
 
+    /**
+     * Loads the keys on a background thread. Without grouping, the keys are streamed into a fresh table as they arrive;
+     * with grouping, the grouped tree is built on the background thread and only the final table swap runs on the EDT.
+     * Starting a new query cancels the one still running.
+     */
     @Override
-    public void executeQuery(RedisQueryExecutor executor) {
+    public void executeQuery(final RedisQueryExecutor executor) {
         errorPanel.setVisible(false);
-        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Executing query", true) {
+        if (runningQuery != null) {
+            runningQuery.cancel();
+        }
+        if (liveUpdater != null && !liveUpdater.getPattern().equals(getFilter())) {
+            startLiveUpdates();
+        }
+        boolean groupByPrefix = isGroupDataEnabled() && StringUtils.isNotBlank(getGroupSeparator());
+        RedisResultTreeAppender appender = null;
+        if (groupByPrefix) {
+            loadingDecorator.startLoading(false);
+        } else {
+            RedisResultRootNode rootNode = new RedisResultRootNode(new RedisResult());
+            resultRoot = rootNode;
+            displayResultTree(rootNode);
+            appender = new RedisResultTreeAppender(resultTableView.getTree(), rootNode);
+            appender.start();
+        }
+        QueryTask task = new QueryTask(createQuery(), executor, groupByPrefix, getGroupSeparator(), appender);
+        runningQuery = new BackgroundableProcessIndicator(task);
+        ProgressManager.getInstance().runProcessWithProgressAsynchronously(task, runningQuery);
+    }
+
+    private void showError(Exception ex) {
+        errorPanel.invalidate();
+        errorPanel.removeAll();
+        GridConstraints gridConstraints = new GridConstraints();
+        gridConstraints.setAnchor(GridConstraints.ANCHOR_CENTER);
+        errorPanel.add(new ErrorPanel(ex), gridConstraints);
+        errorPanel.validate();
+        errorPanel.setVisible(true);
+    }
+
+    private void loadValue(final TreeTableTree tree, final NoSqlTreeNode keyNode, final RedisKeyValueDescriptor descriptor) {
+        if (descriptor.isValueLoaded() || !loadingDescriptors.add(descriptor)) {
+            return;
+        }
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
             @Override
-            public void run(ProgressIndicator indicator) {
+            public void run() {
                 try {
+                    final RedisRecord record = redisClient.loadValue(configuration, database, descriptor.getKeyBytes());
                     GuiUtils.runInSwingThread(new Runnable() {
                         @Override
                         public void run() {
-                            loadingDecorator.startLoading(false);
-                            //todo may need to check this.
-                            loadAndDisplayResults(getFilter(), isGroupDataEnabled(), getGroupSeparator(), executor);
+                            displayValue(tree, keyNode, descriptor, record);
                         }
                     });
                 } catch (final Exception ex) {
                     GuiUtils.runInSwingThread(new Runnable() {
                         @Override
                         public void run() {
-                            errorPanel.invalidate();
-                            errorPanel.removeAll();
-                            GridConstraints gridConstraints = new GridConstraints();
-                            gridConstraints.setAnchor(GridConstraints.ANCHOR_CENTER);
-                            errorPanel.add(new ErrorPanel(ex), gridConstraints);
-                            errorPanel.validate();
-                            errorPanel.setVisible(true);
+                            loadingDescriptors.remove(descriptor);
+                            showError(ex);
                         }
                     });
-                } finally {
+                }
+            }
+        });
+    }
+
+    private void displayValue(TreeTableTree tree, NoSqlTreeNode keyNode, RedisKeyValueDescriptor descriptor, RedisRecord record) {
+        loadingDescriptors.remove(descriptor);
+        descriptor.setLoadedValue(record == null ? null : record.getValue());
+        if (keyNode instanceof RedisKeyAliasNode) {
+            // the grouped view shows the key under its own descriptor
+            ((RedisKeyValueDescriptor) ((RedisKeyAliasNode) keyNode).getKeyNode().getDescriptor()).setLoadedValue(descriptor.getValue());
+        }
+        keyNode.removeAllChildren();
+        if (record != null) {
+            RedisTreeModel.addValueNodes(keyNode, record.getKeyType(), record.getValue(), 0, record.getValueCursor());
+        }
+        ((DefaultTreeModel) tree.getModel()).nodeStructureChanged(keyNode);
+        tree.expandPath(new TreePath(keyNode.getPath()));
+    }
+
+    private void loadNextValues(final TreeTableTree tree, final NoSqlTreeNode keyNode, final NoSqlTreeNode loadMoreNode,
+                                final LoadMoreValuesDescriptor descriptor) {
+        if (descriptor.isLoading() || keyNode == null || !(keyNode.getDescriptor() instanceof RedisKeyValueDescriptor)) {
+            return;
+        }
+        final byte[] keyBytes = ((RedisKeyValueDescriptor) keyNode.getDescriptor()).getKeyBytes();
+        descriptor.setLoading(true);
+        ((DefaultTreeModel) tree.getModel()).nodesChanged(keyNode, new int[]{keyNode.getIndex(loadMoreNode)});
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final RedisValuePage page = redisClient.loadValuePage(configuration, database, keyBytes, descriptor.getKeyType(),
+                            descriptor.getCursor(), descriptor.getPageSize());
                     GuiUtils.runInSwingThread(new Runnable() {
                         @Override
                         public void run() {
-                            loadingDecorator.stopLoading();
+                            appendValues(tree, keyNode, loadMoreNode, page);
+                        }
+                    });
+                } catch (final Exception ex) {
+                    GuiUtils.runInSwingThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            descriptor.setLoading(false);
+                            ((DefaultTreeModel) tree.getModel()).nodesChanged(keyNode, new int[]{keyNode.getIndex(loadMoreNode)});
+                            showError(ex);
                         }
                     });
                 }
             }
         });
+    }
+
+    private void appendValues(TreeTableTree tree, NoSqlTreeNode keyNode, NoSqlTreeNode loadMoreNode, RedisValuePage page) {
+        DefaultTreeModel model = (DefaultTreeModel) tree.getModel();
+        // not removeNodeFromParent: in the grouped view the displayed key node is not the parent of its values
+        int loadMoreIndex = keyNode.getIndex(loadMoreNode);
+        keyNode.remove(loadMoreIndex);
+        model.nodesWereRemoved(keyNode, new int[]{loadMoreIndex}, new Object[]{loadMoreNode});
+        int firstIndex = keyNode.getChildCount();
+        RedisTreeModel.addValueNodes(keyNode, page.getKeyType(), page.getValues(), page.getOffset(), page.getNextCursor());
+        int[] insertedIndices = new int[keyNode.getChildCount() - firstIndex];
+        for (int i = 0; i < insertedIndices.length; i++) {
+            insertedIndices[i] = firstIndex + i;
+        }
+        model.nodesWereInserted(keyNode, insertedIndices);
+    }
+
+    private class QueryTask extends Task.Backgroundable {
+
+        private final RedisQuery query;
+        private final RedisQueryExecutor executor;
+        private final boolean groupByPrefix;
+        private final String separator;
+        private final RedisResultTreeAppender appender;
+
+        QueryTask(RedisQuery query, RedisQueryExecutor executor, boolean groupByPrefix, String separator,
+                  @Nullable RedisResultTreeAppender appender) {
+            super(project, "Executing query", true);
+            this.query = query;
+            this.executor = executor;
+            this.groupByPrefix = groupByPrefix;
+            this.separator = separator;
+            this.appender = appender;
+        }
+
+        @Override
+        public void run(@NotNull final ProgressIndicator indicator) {
+            try {
+                indicator.setText("Loading keys matching " + query.getFilter());
+                RedisResultListener listener = appender != null ? appender : RedisResultListener.NONE;
+                final RedisResult result = redisClient.loadRecords(configuration, database, query, executor, listener, indicator);
+                indicator.checkCanceled();
+                final RedisResultRootNode flatRoot;
+                final DefaultMutableTreeNode renderedNode;
+                if (appender == null) {
+                    indicator.setText("Building result tree");
+                    flatRoot = new RedisResultRootNode(result);
+                    renderedNode = groupView(flatRoot, groupByPrefix, separator);
+                    indicator.checkCanceled();
+                } else {
+                    flatRoot = null;
+                    renderedNode = null;
+                }
+                GuiUtils.runInSwingThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (runningQuery != indicator) {
+                            return;
+                        }
+                        if (renderedNode != null) {
+                            redisResult = result;
+                            resultRoot = flatRoot;
+                            displayResultTree(renderedNode);
+                        } else {
+                            // the displayed columns hold the keys: the query result only carries its flags, timings and errors
+                            redisResult = appender.getReceivedRecords();
+                            redisResult.setKeyLimitReached(result.isKeyLimitReached());
+                            redisResult.setTimings(result.getTimings());
+                            redisResult.setNodeErrors(result.getNodeErrors());
+                            if (isGroupDataEnabled()) {
+                                // grouping was turned on while the keys were streamed
+                                regroup();
+                            }
+                        }
+                        warnAboutNodeErrors(result.getNodeErrors());
+                        warnAboutSkippedKeys(result);
+                    }
+                });
+            } catch (ProcessCanceledException | RedisKeyScanner.ScanCancelledException ex) {
+                GuiUtils.runInSwingThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // the streamed keys stay displayed when the user stops the query
+                        if (runningQuery == indicator && appender != null) {
+                            redisResult = appender.getReceivedRecords();
+                        }
+                    }
+                });
+            } catch (final Exception ex) {
+                GuiUtils.runInSwingThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        showError(ex);
+                    }
+                });
+            } finally {
+                GuiUtils.runInSwingThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (appender != null) {
+                            appender.stop();
+                        }
+                        if (runningQuery == indicator) {
+                            runningQuery = null;
+                            loadingDecorator.stopLoading();
+                        }
+                    }
+                });
+            }
+        }
+    }
 
+    private class LiveDisplay implements RedisLiveUpdater.Display {
+
+        @Nullable
+        @Override
+        public RedisResultRootNode getLiveRoot() {
+            return runningQuery == null && resultTableView != null ? resultRoot : null;
+        }
+
+        @Override
+        public TreeTableTree getTree() {
+            return resultTableView.getTree();
+        }
+
+        @Override
+        public boolean acceptsNewKeys() {
+            return StringUtils.isEmpty(valueFilterField.getText());
+        }
+
+        @Override
+        public void reloadValue(RedisKeyNode keyNode) {
+            loadValue(resultTableView.getTree(), keyNode, (RedisKeyValueDescriptor) keyNode.getDescriptor());
+        }
+
+        @Override
+        public void keysReset(List<Integer> keyIndices) {
+            if (metadataFetcher != null && !keyIndices.isEmpty()) {
+                metadataFetcher.forgetKeys(keyIndices);
+            }
+        }
+
+        @Override
+        public void liveUpdatesFailed(Exception error) {
+            stopLiveUpdates();
+            showError(error);
+        }
+    }
+
+    private class LoadMoreValuesListener extends MouseAdapter {
+
+        @Override
+        public void mouseClicked(MouseEvent event) {
+            if (event.getClickCount() != 2) {
+                return;
+            }
+            JsonTreeTableView tableView = (JsonTreeTableView) event.getSource();
+            TreePath path = tableView.getTree().getPathForRow(tableView.rowAtPoint(event.getPoint()));
+            if (path == null || !(path.getLastPathComponent() instanceof NoSqlTreeNode)) {
+                return;
+            }
+            NoSqlTreeNode node = (NoSqlTreeNode) path.getLastPathComponent();
+            if (node.getDescriptor() instanceof LoadMoreValuesDescriptor) {
+                NoSqlTreeNode keyNode = (NoSqlTreeNode) path.getParentPath().getLastPathComponent();
+                loadNextValues(tableView.getTree(), keyNode, node, (LoadMoreValuesDescriptor) node.getDescriptor());
+            }
+        }
+    }
+
+    private class ValueLoadingListener implements TreeWillExpandListener {
+
+        @Override
+        public void treeWillExpand(TreeExpansionEvent event) {
+            Object node = event.getPath().getLastPathComponent();
+            if (!(node instanceof NoSqlTreeNode)) {
+                return;
+            }
+            NoSqlTreeNode keyNode = (NoSqlTreeNode) node;
+            if (keyNode.getDescriptor() instanceof RedisKeyValueDescriptor) {
+                loadValue((TreeTableTree) event.getSource(), keyNode, (RedisKeyValueDescriptor) keyNode.getDescriptor());
+            }
+        }
+
+        @Override
+        public void treeWillCollapse(TreeExpansionEvent event) {
+        }
     }
 
     @Override
     public void dispose() {
-
+        if (runningQuery != null) {
+            runningQuery.cancel();
+        }
+        if (metadataFetcher != null) {
+            metadataFetcher.stop();
+        }
+        stopLiveUpdates();
     }
 
 
@@ -292,7 +803,88 @@ public class RedisPanel extends NoSqlResultView<RedisResult> {
 
     public void toggleGroupData(boolean enabled) {
         this.groupData = enabled;
-        updateResultTableTree(redisResult, this.groupData, this.groupSeparator);
+        regroup();
+    }
+
+    public boolean isKeyMetadataEnabled() {
+        return showKeyMetadata;
+    }
+
+    public void toggleKeyMetadata(boolean enabled) {
+        this.showKeyMetadata = enabled;
+        redisplayResultTree();
+    }
+
+    public boolean isLiveUpdatesEnabled() {
+        return liveUpdater != null;
+    }
+
+    public void toggleLiveUpdates(boolean enabled) {
+        if (enabled) {
+            startLiveUpdates();
+        } else {
+            stopLiveUpdates();
+        }
+    }
+
+    /**
+     * Subscribes to the keyspace notifications of the keys matching the filter, on a pooled thread as it connects.
+     */
+    private void startLiveUpdates() {
+        stopLiveUpdates();
+        final RedisLiveUpdater updater = new RedisLiveUpdater(new LiveDisplay(),
+                keys -> redisClient.loadKeyTypes(configuration, database, keys), getFilter());
+        liveUpdater = updater;
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final RedisKeyspaceSubscriber subscriber = redisClient.subscribeToKeyspace(configuration, database, updater.getPattern(), updater);
+                    final String missingClasses = subscriber.getMissingNotificationClasses();
+                    GuiUtils.runInSwingThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (liveUpdater != updater) {
+                                subscriber.stop();
+                                return;
+                            }
+                            updater.start(subscriber);
+                            if (!missingClasses.isEmpty()) {
+                                GuiUtils.showNotification(resultPanel, MessageType.WARNING, String.format(
+                                        "The server does not notify every change: add '%s' to its notify-keyspace-events", missingClasses),
+                                        Balloon.Position.above);
+                            }
+                        }
+                    });
+                } catch (final Exception ex) {
+                    GuiUtils.runInSwingThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (liveUpdater == updater) {
+                                liveUpdater = null;
+                                showError(ex);
+                            }
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private void stopLiveUpdates() {
+        if (liveUpdater != null) {
+            liveUpdater.stop();
+            liveUpdater = null;
+        }
+    }
+
+    public boolean isKeysOnlyEnabled() {
+        return keysOnly;
+    }
+
+    public void toggleKeysOnly(boolean enabled) {
+        this.keysOnly = enabled;
+        executeQuery(new EmptyQueryExecutor());
     }
 
     public String getGroupSeparator() {
@@ -301,7 +893,7 @@ public class RedisPanel extends NoSqlResultView<RedisResult> {
 
     public void setGroupSeparator(String groupSeparator) {
         this.groupSeparator = groupSeparator;
-        updateResultTableTree(redisResult, this.groupData, this.groupSeparator);
+        regroup();
     }
 
     {
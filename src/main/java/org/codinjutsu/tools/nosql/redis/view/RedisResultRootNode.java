@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view;
+
+import org.codinjutsu.tools.nosql.commons.view.NoSqlTreeNode;
+import org.codinjutsu.tools.nosql.redis.model.RedisResult;
+import org.codinjutsu.tools.nosql.redis.view.nodedescriptor.RedisResultDescriptor;
+
+import javax.swing.tree.MutableTreeNode;
+import javax.swing.tree.TreeNode;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Root of the flat result tree, backed by the columns of a {@link RedisResult} instead of one node per key.
+ * <p>
+ * Key nodes are created when the tree asks for them, which with a fixed row height is only for the displayed rows.
+ * The last {@link #RECYCLED_NODE_COUNT} created nodes are kept for the next repaints; older ones are left to the
+ * garbage collector unless they were expanded, in which case they are pinned with their value nodes.
+ * <p>
+ * The keys are shown in the order of the result unless {@link #sortKeys(Comparator)} reordered them or
+ * {@link #hideKeys(int[])} removed some of them; the key nodes are identified by their index in the result, whatever
+ * their position. Hidden keys stay in the result.
+ * <p>
+ * The result is only read and appended to on the EDT.
+ */
+class RedisResultRootNode extends NoSqlTreeNode {
+
+    static final int RECYCLED_NODE_COUNT = 1024;
+
+    private final RedisResult result;
+    // key index of each position and position of each key index (-1 when hidden), null while the keys are in result order
+    private int[] keyIndices;
+    private int[] positions;
+    private int visibleCount = -1;
+    private final Map<Integer, RedisKeyNode> pinnedNodes = new HashMap<>();
+    private final Map<Integer, RedisKeyNode> recentNodes = new LinkedHashMap<Integer, RedisKeyNode>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, RedisKeyNode> eldest) {
+            return size() > RECYCLED_NODE_COUNT;
+        }
+    };
+
+    RedisResultRootNode(RedisResult result) {
+        super(new RedisResultDescriptor());
+        this.result = result;
+    }
+
+    RedisResult getResult() {
+        return result;
+    }
+
+    /**
+     * Appends the keys of a batch as the last children; the caller fires {@code nodesWereInserted}.
+     */
+    void append(RedisResult batch) {
+        int firstIndex = result.size();
+        result.addAll(batch);
+        if (keyIndices != null) {
+            keyIndices = Arrays.copyOf(keyIndices, result.size());
+            positions = Arrays.copyOf(positions, result.size());
+            for (int index = firstIndex; index < result.size(); index++) {
+                keyIndices[visibleCount] = index;
+                positions[index] = visibleCount++;
+            }
+        }
+    }
+
+    /**
+     * Removes keys from the displayed children, e.g. once deleted on the server; the caller fires {@code nodesWereRemoved}.
+     *
+     * @param indices key indices of the result, all displayed
+     * @return the former positions of the keys, in ascending order
+     */
+    int[] hideKeys(int[] indices) {
+        ensureOrderColumns();
+        int[] removedPositions = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            removedPositions[i] = positions[indices[i]];
+            positions[indices[i]] = -1;
+            forget(indices[i]);
+        }
+        Arrays.sort(removedPositions);
+        int position = 0;
+        for (int previous = 0; previous < visibleCount; previous++) {
+            int index = keyIndices[previous];
+            if (positions[index] >= 0) {
+                keyIndices[position] = index;
+                positions[index] = position++;
+            }
+        }
+        visibleCount = position;
+        return removedPositions;
+    }
+
+    /**
+     * Displays again a hidden key as the last child; the caller fires {@code nodesWereInserted}.
+     *
+     * @return the position of the key
+     */
+    int showKey(int index) {
+        keyIndices[visibleCount] = index;
+        positions[index] = visibleCount;
+        return visibleCount++;
+    }
+
+    /**
+     * @return the position of a key, -1 when it is hidden
+     */
+    int positionOf(int index) {
+        return positions == null ? index : positions[index];
+    }
+
+    /**
+     * Drops the node of a key, so that the next one created reads the key again from the result.
+     *
+     * @return whether the node was pinned, i.e. its value was displayed
+     */
+    boolean forget(int index) {
+        recentNodes.remove(index);
+        return pinnedNodes.remove(index) != null;
+    }
+
+    private void ensureOrderColumns() {
+        if (keyIndices == null) {
+            keyIndices = new int[result.size()];
+            positions = new int[result.size()];
+            for (int index = 0; index < keyIndices.length; index++) {
+                keyIndices[index] = index;
+                positions[index] = index;
+            }
+            visibleCount = result.size();
+        }
+    }
+
+    /**
+     * Reorders the keys; the caller reloads the model.
+     *
+     * @param comparator compares key indices of the result
+     */
+    void sortKeys(Comparator<Integer> comparator) {
+        Integer[] sorted = new Integer[getChildCount()];
+        for (int position = 0; position < sorted.length; position++) {
+            sorted[position] = keyIndexAt(position);
+        }
+        Arrays.sort(sorted, comparator);
+        ensureOrderColumns();
+        for (int position = 0; position < sorted.length; position++) {
+            keyIndices[position] = sorted[position];
+            positions[sorted[position]] = position;
+        }
+    }
+
+    /**
+     * @return the index in the result of the key shown at a position
+     */
+    int keyIndexAt(int position) {
+        return keyIndices == null ? position : keyIndices[position];
+    }
+
+    void pin(RedisKeyNode keyNode) {
+        pinnedNodes.put(keyNode.getKeyIndex(), keyNode);
+        recentNodes.remove(keyNode.getKeyIndex());
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return getChildCount() == 0;
+    }
+
+    @Override
+    public int getChildCount() {
+        return keyIndices == null ? result.size() : visibleCount;
+    }
+
+    @Override
+    public TreeNode getChildAt(int position) {
+        if (position < 0 || position >= getChildCount()) {
+            throw new ArrayIndexOutOfBoundsException("node has no child at " + position);
+        }
+        int index = keyIndexAt(position);
+        RedisKeyNode keyNode = pinnedNodes.get(index);
+        if (keyNode == null) {
+            keyNode = recentNodes.get(index);
+        }
+        if (keyNode == null) {
+            keyNode = new RedisKeyNode(this, index);
+            recentNodes.put(index, keyNode);
+        }
+        return keyNode;
+    }
+
+    @Override
+    public int getIndex(TreeNode child) {
+        if (child instanceof RedisKeyNode && child.getParent() == this) {
+            return positionOf(((RedisKeyNode) child).getKeyIndex());
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean isNodeChild(TreeNode node) {
+        return getIndex(node) >= 0;
+    }
+
+    @Override
+    public Enumeration children() {
+        return new Enumeration<TreeNode>() {
+            private int next;
+
+            @Override
+            public boolean hasMoreElements() {
+                return next < getChildCount();
+            }
+
+            @Override
+            public TreeNode nextElement() {
+                if (!hasMoreElements()) {
+                    throw new NoSuchElementException();
+                }
+                return getChildAt(next++);
+            }
+        };
+    }
+
+    @Override
+    public void insert(MutableTreeNode child, int index) {
+        throw new UnsupportedOperationException("keys are appended with append(RedisResult)");
+    }
+
+    @Override
+    public void remove(int index) {
+        throw new UnsupportedOperationException("keys are removed with hideKeys(int[])");
+    }
+}
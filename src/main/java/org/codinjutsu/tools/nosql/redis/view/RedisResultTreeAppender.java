@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view;
+
+import com.intellij.ui.treeStructure.treetable.TreeTableTree;
+import org.codinjutsu.tools.nosql.redis.logic.RedisResultListener;
+import org.codinjutsu.tools.nosql.redis.model.RedisResult;
+
+import javax.swing.*;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Streams the key batches of a running query into a displayed tree.
+ * <p>
+ * Batches are queued by the query thread; a Swing timer appends whatever is queued to the columns of the
+ * virtual root and fires a single {@code nodesWereInserted} per tick, so the table stays usable while the scan goes on.
+ */
+class RedisResultTreeAppender implements RedisResultListener {
+
+    static final int FLUSH_DELAY_MILLIS = 100;
+
+    private final TreeTableTree tree;
+    private final RedisResultRootNode rootNode;
+    private final ConcurrentLinkedQueue<RedisResult> pendingBatches = new ConcurrentLinkedQueue<>();
+    private final Timer flushTimer;
+
+    RedisResultTreeAppender(TreeTableTree tree, RedisResultRootNode rootNode) {
+        this.tree = tree;
+        this.rootNode = rootNode;
+        this.flushTimer = new Timer(FLUSH_DELAY_MILLIS, event -> flush());
+    }
+
+    void start() {
+        flushTimer.start();
+    }
+
+    /**
+     * Stops the timer and appends the batches still queued. Must be called on the EDT.
+     */
+    void stop() {
+        flushTimer.stop();
+        flush();
+    }
+
+    /**
+     * @return the records displayed so far, used as the panel result once the query is over. Must be called on the EDT.
+     */
+    RedisResult getReceivedRecords() {
+        flush();
+        return rootNode.getResult();
+    }
+
+    @Override
+    public void batchLoaded(RedisResult batch) {
+        pendingBatches.add(batch);
+    }
+
+    @Override
+    public boolean keepsRecords() {
+        return true;
+    }
+
+    private void flush() {
+        if (pendingBatches.isEmpty()) {
+            return;
+        }
+        int firstIndex = rootNode.getChildCount();
+        RedisResult batch;
+        while ((batch = pendingBatches.poll()) != null) {
+            rootNode.append(batch);
+        }
+        int[] insertedIndices = new int[rootNode.getChildCount() - firstIndex];
+        for (int i = 0; i < insertedIndices.length; i++) {
+            insertedIndices[i] = firstIndex + i;
+        }
+        if (insertedIndices.length == 0) {
+            return;
+        }
+        ((DefaultTreeModel) tree.getModel()).nodesWereInserted(rootNode, insertedIndices);
+        if (firstIndex == 0) {
+            // the hidden root could not be expanded while it had no children
+            tree.expandPath(new TreePath(rootNode));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view;
+
+import com.intellij.ui.treeStructure.treetable.TreeTableTree;
+import org.codinjutsu.tools.nosql.commons.view.NoSqlTreeNode;
+import org.codinjutsu.tools.nosql.redis.model.RedisResult;
+import org.codinjutsu.tools.nosql.redis.view.nodedescriptor.RedisKeyValueDescriptor;
+
+import javax.swing.tree.TreeNode;
+import javax.swing.tree.TreePath;
+import java.util.Enumeration;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Expanded keys and groups of a result tree, identified by key and prefix so that they can be expanded again
+ * in the same result displayed with another grouping.
+ */
+class RedisTreeExpansionState {
+
+    private static final char GROUP_MARK = '\u0000';
+
+    private final NavigableSet<String> expandedIds = new TreeSet<>();
+
+    static RedisTreeExpansionState capture(TreeTableTree tree) {
+        RedisTreeExpansionState state = new RedisTreeExpansionState();
+        TreeNode root = (TreeNode) tree.getModel().getRoot();
+        Enumeration<TreePath> expandedPaths = tree.getExpandedDescendants(new TreePath(root));
+        if (expandedPaths == null) {
+            return state;
+        }
+        while (expandedPaths.hasMoreElements()) {
+            String id = idOf((TreeNode) expandedPaths.nextElement().getLastPathComponent(), root);
+            if (id != null) {
+                state.expandedIds.add(id);
+            }
+        }
+        return state;
+    }
+
+    void restore(TreeTableTree tree) {
+        if (expandedIds.isEmpty()) {
+            return;
+        }
+        TreeNode root = (TreeNode) tree.getModel().getRoot();
+        restore(tree, new TreePath(root), root);
+    }
+
+    private void restore(TreeTableTree tree, TreePath parentPath, TreeNode root) {
+        TreeNode parent = (TreeNode) parentPath.getLastPathComponent();
+        if (parent instanceof RedisResultRootNode) {
+            restoreKeys(tree, parentPath, ((RedisResultRootNode) parent));
+            return;
+        }
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            TreeNode child = parent.getChildAt(i);
+            String id = idOf(child, root);
+            if (id == null) {
+                continue;
+            }
+            TreePath childPath = parentPath.pathByAddingChild(child);
+            if (expandedIds.contains(id)) {
+                tree.expandPath(childPath);
+            }
+            if (child instanceof RedisKeyGroupNode && containsPrefix(((RedisKeyGroupNode) child).getPrefix())) {
+                // only the groups leading to something expanded are walked, the others stay unmaterialized
+                restore(tree, childPath, root);
+            }
+        }
+    }
+
+    /**
+     * Matches the keys of a virtual root by name, so that only the expanded key nodes are created.
+     */
+    private void restoreKeys(TreeTableTree tree, TreePath rootPath, RedisResultRootNode root) {
+        RedisResult result = root.getResult();
+        for (int position = 0; position < root.getChildCount(); position++) {
+            if (expandedIds.contains(result.getKey(root.keyIndexAt(position)))) {
+                tree.expandPath(rootPath.pathByAddingChild(root.getChildAt(position)));
+            }
+        }
+    }
+
+    private boolean containsPrefix(String prefix) {
+        String candidate = expandedIds.ceiling(prefix);
+        return candidate != null && candidate.startsWith(prefix);
+    }
+
+    private static String idOf(TreeNode node, TreeNode root) {
+        if (node instanceof RedisKeyGroupNode) {
+            return node == root ? null : ((RedisKeyGroupNode) node).getPrefix() + GROUP_MARK;
+        }
+        if (node instanceof RedisKeyAliasNode) {
+            return ((RedisKeyAliasNode) node).getKey();
+        }
+        if (node.getParent() == root && node instanceof NoSqlTreeNode) {
+            Object descriptor = ((NoSqlTreeNode) node).getDescriptor();
+            if (descriptor instanceof RedisKeyValueDescriptor) {
+                return ((RedisKeyValueDescriptor) descriptor).getKey();
+            }
+        }
+        return null;
+    }
+}
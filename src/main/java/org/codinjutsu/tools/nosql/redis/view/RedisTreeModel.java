@@ -18,10 +18,9 @@ package org.codinjutsu.tools.nosql.redis.view;
 
 import org.codinjutsu.tools.nosql.commons.view.NoSqlTreeNode;
 import org.codinjutsu.tools.nosql.redis.model.RedisKeyType;
-import org.codinjutsu.tools.nosql.redis.model.RedisRecord;
-import org.codinjutsu.tools.nosql.redis.model.RedisResult;
+import org.codinjutsu.tools.nosql.redis.model.RedisQuery;
+import org.codinjutsu.tools.nosql.redis.view.nodedescriptor.LoadMoreValuesDescriptor;
 import org.codinjutsu.tools.nosql.redis.view.nodedescriptor.RedisKeyValueDescriptor;
-import org.codinjutsu.tools.nosql.redis.view.nodedescriptor.RedisResultDescriptor;
 import org.codinjutsu.tools.nosql.redis.view.nodedescriptor.RedisValueDescriptor;
 
 import java.util.List;
@@ -29,38 +28,32 @@ import java.util.Map;
 import java.util.Set;
 
 public class RedisTreeModel {
-    public static NoSqlTreeNode buildTree(RedisResult redisResult) {
-        NoSqlTreeNode rootNode = new NoSqlTreeNode(new RedisResultDescriptor());
 
-        List<RedisRecord> redisRecords = redisResult.getResults();
-        for (RedisRecord redisRecord : redisRecords) {
-            processRecord(rootNode, redisRecord);
-        }
-
-        return rootNode;
-    }
-
-    private static void processRecord(NoSqlTreeNode rootNode, RedisRecord redisRecord) {
-        RedisKeyType keyType = redisRecord.getKeyType();
-        NoSqlTreeNode treeNode = new NoSqlTreeNode(RedisKeyValueDescriptor.createDescriptor(keyType, redisRecord.getKey(), redisRecord.getValue(),redisRecord.getKeyNameBytes()));
+    /**
+     * Adds the nodes of a (page of) value, followed by a "load next" node when the collection has more pages.
+     *
+     * @param offset rank of the first element, used to index list elements
+     * @param cursor cursor of the next page, null when the collection is complete
+     */
+    public static void addValueNodes(NoSqlTreeNode treeNode, RedisKeyType keyType, Object value, long offset, String cursor) {
         if (RedisKeyType.LIST.equals(keyType)) {
-            List<String> valuesFromList = (List<String>) redisRecord.getValue();
+            List<String> valuesFromList = (List<String>) value;
             for (int index = 0; index < valuesFromList.size(); index++) {
-                String value = valuesFromList.get(index);
-                treeNode.add(new NoSqlTreeNode(RedisValueDescriptor.createDescriptor(index, value)));
+                treeNode.add(new NoSqlTreeNode(RedisValueDescriptor.createDescriptor((int) (offset + index), valuesFromList.get(index))));
             }
         } else if (RedisKeyType.SET.equals(keyType) || RedisKeyType.ZSET.equals(keyType)) {
-            Set valuesFromSet = (Set) redisRecord.getValue();
-            for (Object value : valuesFromSet) {
-                treeNode.add(new NoSqlTreeNode(RedisValueDescriptor.createUnindexedDescriptor(value)));
+            Set valuesFromSet = (Set) value;
+            for (Object element : valuesFromSet) {
+                treeNode.add(new NoSqlTreeNode(RedisValueDescriptor.createUnindexedDescriptor(element)));
             }
         } else if (RedisKeyType.HASH.equals(keyType)) {
-            Map<String, String> valuesFromMap = (Map<String, String>) redisRecord.getValue();
+            Map<String, String> valuesFromMap = (Map<String, String>) value;
             for (Map.Entry<String, String> entry : valuesFromMap.entrySet()) {
                 treeNode.add(new NoSqlTreeNode(RedisKeyValueDescriptor.createDescriptor(entry.getKey(), entry.getValue())));
             }
         }
-        rootNode.add(treeNode);
-
+        if (cursor != null) {
+            treeNode.add(new NoSqlTreeNode(new LoadMoreValuesDescriptor(keyType, cursor, RedisQuery.DEFAULT_VALUE_PAGE_SIZE)));
+        }
     }
 }
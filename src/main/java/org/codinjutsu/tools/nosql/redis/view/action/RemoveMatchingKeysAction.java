@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view.action;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.ui.Messages;
+import kotlin.text.Charsets;
+import org.codinjutsu.tools.nosql.redis.executors.RemoveKeyExecutor;
+import org.codinjutsu.tools.nosql.redis.view.RedisPanel;
+
+import java.util.HashSet;
+
+public class RemoveMatchingKeysAction extends AnAction {
+
+    private final RedisPanel redisPanel;
+
+    public RemoveMatchingKeysAction(RedisPanel redisPanel) {
+        super("Remove keys matching filter", "Remove every key matching the filter, as they are scanned", AllIcons.Actions.GC);
+        this.redisPanel = redisPanel;
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent event) {
+        String filter = redisPanel.getFilter();
+        int answer = Messages.showYesNoDialog(event.getProject(),
+                String.format("Remove every key matching '%s'? This cannot be undone.", filter),
+                "Remove Keys", Messages.getWarningIcon());
+        if (answer != Messages.YES) {
+            return;
+        }
+        redisPanel.executeQuery(new RemoveKeyExecutor(new HashSet<>(), filter.getBytes(Charsets.UTF_8)));
+    }
+}
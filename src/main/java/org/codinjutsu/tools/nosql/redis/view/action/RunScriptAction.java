@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.codinjutsu.tools.nosql.redis.view.action;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.MessageType;
+import com.intellij.openapi.ui.popup.Balloon;
+import org.codinjutsu.tools.nosql.commons.utils.GuiUtils;
+import org.codinjutsu.tools.nosql.dialog.RunScriptDialog;
+import org.codinjutsu.tools.nosql.dialog.ScriptReportDialog;
+import org.codinjutsu.tools.nosql.redis.executors.RunScriptExecutor;
+import org.codinjutsu.tools.nosql.redis.model.RedisScriptReport;
+import org.codinjutsu.tools.nosql.redis.view.RedisPanel;
+
+import java.io.File;
+
+public class RunScriptAction extends AnAction {
+
+    private final RedisPanel redisPanel;
+
+    public RunScriptAction(RedisPanel redisPanel) {
+        super("Run script file", "Run a file of redis commands in pipelined batches", AllIcons.Actions.Resume);
+        this.redisPanel = redisPanel;
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent event) {
+        RunScriptDialog dialog = new RunScriptDialog(event.getProject());
+        if (!dialog.showAndGet()) {
+            return;
+        }
+        File file = dialog.getFile();
+        Project project = event.getProject();
+        redisPanel.executeQuery(new RunScriptExecutor(file, dialog.getBatchSize(), dialog.isTransactionPerBlock(),
+                report -> GuiUtils.runInSwingThread(() -> showReport(project, file, report))));
+    }
+
+    private void showReport(Project project, File file, RedisScriptReport report) {
+        if (report.getFailedCommands() == 0) {
+            GuiUtils.showNotification(redisPanel.getResultPanel(), MessageType.INFO, file.getName() + ": " + report, Balloon.Position.above);
+        } else {
+            new ScriptReportDialog(project, file.getName(), report).show();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view.action;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import org.codinjutsu.tools.nosql.redis.view.RedisPanel;
+
+public class SortKeysBySizeAction extends AnAction {
+
+    private final RedisPanel redisPanel;
+
+    public SortKeysBySizeAction(RedisPanel redisPanel) {
+        super("Sort keys by size", "Show the keys using the most memory first", AllIcons.ObjectBrowser.Sorted);
+        this.redisPanel = redisPanel;
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent event) {
+        redisPanel.sortKeysBySize();
+    }
+}
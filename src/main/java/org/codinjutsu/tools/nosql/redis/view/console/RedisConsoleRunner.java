@@ -16,92 +16,94 @@
 
 package org.codinjutsu.tools.nosql.redis.view.console;
 
-import com.intellij.execution.ExecutionException;
-import com.intellij.execution.configurations.GeneralCommandLine;
-import com.intellij.execution.console.ConsoleHistoryController;
-import com.intellij.execution.console.ConsoleRootType;
-import com.intellij.execution.console.ProcessBackedConsoleExecuteActionHandler;
-import com.intellij.execution.process.OSProcessHandler;
-import com.intellij.execution.runners.AbstractConsoleRunnerWithHistory;
+import com.intellij.execution.Executor;
+import com.intellij.execution.ExecutionManager;
+import com.intellij.execution.console.LanguageConsoleBuilder;
+import com.intellij.execution.executors.DefaultRunExecutor;
+import com.intellij.execution.ui.ConsoleViewContentType;
+import com.intellij.execution.ui.RunContentDescriptor;
+import com.intellij.execution.ui.actions.CloseAction;
+import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.ActionToolbar;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.DefaultActionGroup;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.psi.PsiFile;
-import org.apache.commons.lang.StringUtils;
-import org.codinjutsu.tools.nosql.DatabaseVendor;
-import org.codinjutsu.tools.nosql.NoSqlConfiguration;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.codinjutsu.tools.nosql.ServerConfiguration;
 import org.codinjutsu.tools.nosql.commons.view.console.NoSqlConsoleView;
+import org.codinjutsu.tools.nosql.redis.logic.RedisClient;
+import org.codinjutsu.tools.nosql.redis.logic.RedisConsoleSession;
 import org.codinjutsu.tools.nosql.redis.model.RedisDatabase;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.ExecutorService;
 
-public class RedisConsoleRunner extends AbstractConsoleRunnerWithHistory<NoSqlConsoleView> {
+/**
+ * Redis console running the commands in process, on a connection of its own opened with the settings of the server:
+ * no redis-cli is needed. The commands run one input at a time on a single pooled thread; their replies are printed
+ * while they are read.
+ */
+public class RedisConsoleRunner {
+
+    private static final String CONSOLE_TITLE = "Redis Shell";
 
-    private static final Key<Boolean> SHELL_FILE = Key.create("REDIS_SHELL_FILE");
+    private final Project project;
     private final ServerConfiguration serverConfiguration;
     private final RedisDatabase database;
 
 
     public RedisConsoleRunner(@NotNull Project project, ServerConfiguration serverConfiguration, RedisDatabase database) {
-        super(project, "Redis Shell", "/tmp");
-
+        this.project = project;
         this.serverConfiguration = serverConfiguration;
         this.database = database;
     }
 
-    @Override
-    protected NoSqlConsoleView createConsoleView() {
-        NoSqlConsoleView res = new NoSqlConsoleView(getProject(), "Redis Console", serverConfiguration);
-
-        PsiFile file = res.getFile();
+    public void initAndRun() {
+        final NoSqlConsoleView consoleView = new NoSqlConsoleView(project, "Redis Console", serverConfiguration);
+        PsiFile file = consoleView.getFile();
         assert file.getContext() == null;
-        file.putUserData(SHELL_FILE, Boolean.TRUE);
-
-        return res;
-    }
-
-    @Nullable
-    @Override
-    protected Process createProcess() throws ExecutionException {
-
-        NoSqlConfiguration noSqlConfiguration = NoSqlConfiguration.getInstance(getProject());
-        String shellPath = noSqlConfiguration.getShellPath(DatabaseVendor.REDIS);
-        final GeneralCommandLine commandLine = new GeneralCommandLine();
-        commandLine.setExePath(shellPath);
-
-        commandLine.addParameter("-n");
-        commandLine.addParameter(database.getName());
 
-        String shellWorkingDir = serverConfiguration.getShellWorkingDir();
-        if (StringUtils.isNotBlank(shellWorkingDir)) {
-            commandLine.setWorkDirectory(shellWorkingDir);
-        }
-
-        String shellArgumentsLine = serverConfiguration.getShellArgumentsLine();
-        if (StringUtils.isNotBlank(shellArgumentsLine)) {
-            commandLine.addParameters(shellArgumentsLine.split(" "));
-        }
-
-        return commandLine.createProcess();
-    }
+        final RedisConsoleSession session = RedisClient.getInstance(project).openConsoleSession(serverConfiguration, database);
+        final ExecutorService commandExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor(CONSOLE_TITLE, 1);
+        final RedisConsoleSession.Output output = new RedisConsoleSession.Output() {
+            @Override
+            public void reply(String text) {
+                consoleView.print(text, ConsoleViewContentType.NORMAL_OUTPUT);
+            }
 
-    @Override
-    protected OSProcessHandler createProcessHandler(Process process) {
-        return new OSProcessHandler(process, null);
-    }
+            @Override
+            public void error(String text) {
+                consoleView.print(text, ConsoleViewContentType.ERROR_OUTPUT);
+            }
 
-    @NotNull
-    @Override
-    protected ProcessBackedConsoleExecuteActionHandler createExecuteActionHandler() {
-        ProcessBackedConsoleExecuteActionHandler handler = new ProcessBackedConsoleExecuteActionHandler(getProcessHandler(), false) {
             @Override
-            public String getEmptyExecuteAction() {
-                return "NoSql.Shell.Execute";
+            public void info(String text) {
+                consoleView.print(text, ConsoleViewContentType.SYSTEM_OUTPUT);
             }
         };
-        new ConsoleHistoryController(new ConsoleRootType("Redis Shell", null) {
-        }, null, getConsoleView()).install();
-        return handler;
+        AnAction executeAction = LanguageConsoleBuilder.registerExecuteAction(consoleView,
+                text -> commandExecutor.execute(() -> session.execute(text, output)), CONSOLE_TITLE, CONSOLE_TITLE, null);
+
+        Executor executor = DefaultRunExecutor.getRunExecutorInstance();
+        DefaultActionGroup toolbarActions = new DefaultActionGroup();
+        JPanel panel = new JPanel(new BorderLayout());
+        RunContentDescriptor descriptor = new RunContentDescriptor(consoleView, null, panel, CONSOLE_TITLE);
+        toolbarActions.add(executeAction);
+        toolbarActions.add(new CloseAction(executor, descriptor, project));
+        ActionToolbar toolbar = ActionManager.getInstance().createActionToolbar("RedisConsoleActions", toolbarActions, false);
+        toolbar.setTargetComponent(panel);
+        panel.add(toolbar.getComponent(), BorderLayout.WEST);
+        panel.add(consoleView.getComponent(), BorderLayout.CENTER);
+
+        Disposer.register(descriptor, () -> {
+            // interrupts the command still waiting for its reply
+            session.close();
+            commandExecutor.shutdownNow();
+        });
+        ExecutionManager.getInstance(project).getContentManager().showRunContent(executor, descriptor);
     }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view.nodedescriptor;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.ui.ColoredTableCellRenderer;
+import com.intellij.ui.ColoredTreeCellRenderer;
+import com.intellij.ui.SimpleTextAttributes;
+import org.codinjutsu.tools.nosql.commons.view.nodedescriptor.NodeDescriptor;
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType;
+
+/**
+ * Last child of a partially loaded collection: double-clicking it loads the next page.
+ */
+public class LoadMoreValuesDescriptor implements NodeDescriptor {
+
+    private final RedisKeyType keyType;
+    private final String cursor;
+    private final int pageSize;
+    private boolean loading;
+
+    public LoadMoreValuesDescriptor(RedisKeyType keyType, String cursor, int pageSize) {
+        this.keyType = keyType;
+        this.cursor = cursor;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public void renderValue(ColoredTableCellRenderer cellRenderer, boolean isNodeExpanded) {
+
+    }
+
+    @Override
+    public void renderNode(ColoredTreeCellRenderer cellRenderer) {
+        cellRenderer.setIcon(AllIcons.General.Add);
+        cellRenderer.append(getFormattedKey(), SimpleTextAttributes.LINK_ATTRIBUTES);
+    }
+
+    @Override
+    public String getFormattedKey() {
+        return loading ? "loading..." : String.format("load next %d", pageSize);
+    }
+
+    @Override
+    public String getFormattedValue() {
+        return "";
+    }
+
+    @Override
+    public Object getValue() {
+        return null;
+    }
+
+    @Override
+    public void setValue(Object value) {
+
+    }
+
+    public RedisKeyType getKeyType() {
+        return keyType;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    public void setLoading(boolean loading) {
+        this.loading = loading;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis.view.nodedescriptor;
+
+import com.intellij.ui.ColoredTableCellRenderer;
+import com.intellij.ui.ColoredTreeCellRenderer;
+import org.codinjutsu.tools.nosql.commons.style.StyleAttributesProvider;
+import org.codinjutsu.tools.nosql.commons.view.nodedescriptor.NodeDescriptor;
+
+/**
+ * Placeholder child of a key whose value has not been fetched yet: it makes the key expandable.
+ */
+public class LoadingValueDescriptor implements NodeDescriptor {
+
+    private static final String LOADING_TEXT = "loading...";
+
+    @Override
+    public void renderValue(ColoredTableCellRenderer cellRenderer, boolean isNodeExpanded) {
+
+    }
+
+    @Override
+    public void renderNode(ColoredTreeCellRenderer cellRenderer) {
+        cellRenderer.append(LOADING_TEXT, StyleAttributesProvider.getNullAttribute());
+    }
+
+    @Override
+    public String getFormattedKey() {
+        return LOADING_TEXT;
+    }
+
+    @Override
+    public String getFormattedValue() {
+        return "";
+    }
+
+    @Override
+    public Object getValue() {
+        return null;
+    }
+
+    @Override
+    public void setValue(Object value) {
+
+    }
+}
@@ -25,7 +25,7 @@ import org.codinjutsu.tools.nosql.commons.utils.StringUtils;
 import org.codinjutsu.tools.nosql.commons.view.nodedescriptor.NodeDescriptor;
 import org.codinjutsu.tools.nosql.redis.RedisUtils;
 import org.codinjutsu.tools.nosql.redis.model.RedisKeyType;
-import redis.clients.jedis.Tuple;
+import org.codinjutsu.tools.nosql.redis.model.RedisRecord;
 
 import javax.swing.*;
 import java.util.List;
@@ -37,34 +37,57 @@ public class RedisKeyValueDescriptor implements NodeDescriptor {
 
     private final RedisKeyType keyType;
     private final String key;
-    private final Object value;
+    private Object value;
     private final byte[] keyBytes;
+    private final long length;
+    private boolean valueLoaded;
+    private String formattedValue;
 
     private final SimpleTextAttributes valueTextAttributes;
-    private final Icon icon;
+    private Icon icon;
 
     public static RedisKeyValueDescriptor createDescriptor(RedisKeyType keyType, String key, Object value, byte[] keyBytes) {
         return new RedisKeyValueDescriptor(keyType, key, value, StyleAttributesProvider.getStringAttribute(), keyBytes);
     }
 
+    public static RedisKeyValueDescriptor createDescriptor(RedisRecord record) {
+        return new RedisKeyValueDescriptor(record.getKeyType(), record.getKey(), record.getValue(), StyleAttributesProvider.getStringAttribute(),
+                record.getKeyNameBytes(), record.getLength(), record.isValueLoaded());
+    }
+
+    /**
+     * Same key under another displayed name, used when keys are grouped by prefix
+     */
+    public RedisKeyValueDescriptor withKey(String displayedKey) {
+        return new RedisKeyValueDescriptor(keyType, displayedKey, value, valueTextAttributes, keyBytes, length, valueLoaded);
+    }
+
     public static NodeDescriptor createDescriptor(String key, String value) {
         //todo need fix this.
         return createDescriptor(null, key, value,null);
     }
 
     public RedisKeyValueDescriptor(RedisKeyType keyType, String key, Object value, SimpleTextAttributes valueTextAttributes, byte[] keyBytes) {
+        this(keyType, key, value, valueTextAttributes, keyBytes, RedisRecord.UNKNOWN_LENGTH, true);
+    }
+
+    private RedisKeyValueDescriptor(RedisKeyType keyType, String key, Object value, SimpleTextAttributes valueTextAttributes, byte[] keyBytes,
+                                    long length, boolean valueLoaded) {
         this.keyType = keyType;
         this.key = key;
         this.value = value;
-        this.icon = findIcon(value);
+        this.valueLoaded = valueLoaded;
+        this.icon = findIcon(keyType, value);
         this.valueTextAttributes = valueTextAttributes;
         this.keyBytes = keyBytes;
+        this.length = length;
     }
 
-    private Icon findIcon(Object object) {
-        if (object instanceof List) {
+    private static Icon findIcon(RedisKeyType keyType, Object object) {
+        if (RedisKeyType.LIST.equals(keyType) || object instanceof List) {
             return AllIcons.Json.Property_brackets;
-        } else if (object instanceof Set || object instanceof Map) {
+        } else if (RedisKeyType.SET.equals(keyType) || RedisKeyType.ZSET.equals(keyType) || RedisKeyType.HASH.equals(keyType)
+                || object instanceof Set || object instanceof Map) {
             return AllIcons.Json.Property_braces;
         }
         return null;
@@ -92,14 +115,26 @@ public class RedisKeyValueDescriptor implements NodeDescriptor {
         return key;
     }
 
+    /**
+     * Computed once per value: the cell is painted on every repaint and the collections can be huge.
+     */
     @Override
     public String getFormattedValue() {
-        if (RedisKeyType.ZSET.equals(keyType)) {
-            return getValueAndAbbreviateIfNecessary(RedisUtils.stringifySortedSet((Set<Tuple>) getValue()));
-        } else if (RedisKeyType.SET.equals(keyType)) {
-            return getValueAndAbbreviateIfNecessary(RedisUtils.stringifySet((Set) getValue()));
+        if (formattedValue == null) {
+            formattedValue = formatValue();
         }
-        return getValueAndAbbreviateIfNecessary(getValue().toString());
+        return formattedValue;
+    }
+
+    private String formatValue() {
+        if (!valueLoaded) {
+            return formatLength();
+        }
+        Object value = getValue();
+        if (value instanceof String || value == null) {
+            return getValueAndAbbreviateIfNecessary(String.valueOf(value));
+        }
+        return RedisUtils.previewValue(value, MAX_LENGTH);
     }
 
     @Override
@@ -112,6 +147,31 @@ public class RedisKeyValueDescriptor implements NodeDescriptor {
 
     }
 
+    public boolean isValueLoaded() {
+        return valueLoaded;
+    }
+
+    public void setLoadedValue(Object value) {
+        this.value = value;
+        this.valueLoaded = true;
+        this.formattedValue = null;
+        this.icon = findIcon(keyType, value);
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    private String formatLength() {
+        if (length == RedisRecord.UNKNOWN_LENGTH) {
+            return "";
+        }
+        if (RedisKeyType.STRING.equals(keyType)) {
+            return String.format("(%d bytes)", length);
+        }
+        return String.format("(%d elements)", length);
+    }
+
     public String getKey() {
         return key;
     }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2015 David Boissier
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.codinjutsu.tools.nosql.redis;
+
+import org.junit.Test;
+import redis.clients.jedis.Tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class RedisUtilsTest {
+
+    @Test
+    public void previewShortValueLikeStringify() throws Exception {
+        Set<Tuple> scores = new LinkedHashSet<>(Arrays.asList(new Tuple("quake", 9d), new Tuple("unreal", 8d)));
+        assertEquals(RedisUtils.stringifySortedSet(scores), RedisUtils.previewValue(scores, 150));
+
+        Set<String> countries = new LinkedHashSet<>(Arrays.asList("France", "Japan"));
+        assertEquals(RedisUtils.stringifySet(countries), RedisUtils.previewValue(countries, 150));
+
+        Map<String, String> aliases = new LinkedHashMap<>();
+        aliases.put("david", "dada");
+        aliases.put("bruno", "nono");
+        assertEquals(aliases.toString(), RedisUtils.previewValue(aliases, 150));
+
+        List<String> drinks = Arrays.asList("drink", "some", "beer");
+        assertEquals(drinks.toString(), RedisUtils.previewValue(drinks, 150));
+    }
+
+    @Test
+    public void previewLongValueStopsAtMaxLength() throws Exception {
+        List<String> elements = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            elements.add("element" + i);
+        }
+        assertEquals("[element0, element1, eleme...]", RedisUtils.previewValue(elements, 30));
+
+        char[] huge = new char[1000000];
+        Arrays.fill(huge, 'x');
+        assertEquals("[xxxxxxxxxxxxxxxxxxxxxxxxx...]", RedisUtils.previewValue(Arrays.asList(new String(huge)), 30));
+    }
+}
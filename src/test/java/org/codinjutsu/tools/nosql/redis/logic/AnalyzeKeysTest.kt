@@ -0,0 +1,36 @@
+package org.codinjutsu.tools.nosql.redis.logic
+
+import org.codinjutsu.tools.nosql.redis.RedisBaseTest
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+
+/**
+ *
+ * @author bruce ge
+ */
+class AnalyzeKeysTest : RedisBaseTest() {
+
+    @Test
+    fun testReportBiggestKeysAndPrefixes() {
+        jedis.set("user:1", "john")
+        jedis.set("user:2", "a much longer name than john")
+        jedis.rpush("queue:jobs", "a", "b", "c")
+        jedis.set("standalone", "value")
+
+        val analysis = RedisKeyAnalyzer(1, 0, ":", 10, null).analyze(jedis, "*".toByteArray())
+
+        assertEquals(4L, analysis.keyCount)
+        val biggestKeys = analysis.biggestKeys
+        assertEquals(listOf("user:2", "queue:jobs").sorted(), biggestKeys.map { it.key }.sorted())
+        assertEquals(RedisKeyType.LIST, biggestKeys.first { it.key == "queue:jobs" }.keyType)
+        assertEquals(3L, biggestKeys.first { it.key == "queue:jobs" }.length)
+
+        val prefixes = analysis.usageByPrefix.associateBy { it.name }
+        assertEquals(2L, prefixes["user"]!!.keyCount)
+        assertEquals(1L, prefixes["queue"]!!.keyCount)
+        assertEquals(1L, prefixes["(no prefix)"]!!.keyCount)
+        assertEquals(analysis.totalSize, analysis.usageByPrefix.map { it.size }.sum())
+    }
+}
@@ -0,0 +1,84 @@
+package org.codinjutsu.tools.nosql.redis.logic
+
+import org.codinjutsu.tools.nosql.redis.model.RedisLoadTimings
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Assume
+import org.junit.Before
+import org.junit.Test
+import redis.clients.jedis.HostAndPort
+import redis.clients.jedis.JedisCluster
+import redis.clients.jedis.exceptions.JedisException
+
+
+/**
+ * Needs a cluster whose first node listens on localhost:30001, as started by redis' utils/create-cluster;
+ * skipped otherwise.
+ *
+ * @author bruce ge
+ */
+class ClusterExactKeyTest {
+    private var cluster: JedisCluster? = null
+
+    @Before
+    fun setUp() {
+        cluster = try {
+            JedisCluster(HostAndPort("localhost", 30001)).also { it.exists("probe") }
+        } catch (ex: JedisException) {
+            null
+        }
+        Assume.assumeTrue("no redis cluster on localhost:30001", cluster != null)
+        for (i in 0 until 20) {
+            cluster!!.set("user:$i", "value$i")
+        }
+    }
+
+    @After
+    fun tearDown() {
+        cluster?.let { cluster ->
+            for (i in 0 until 20) {
+                cluster.del("user:$i")
+            }
+            cluster.close()
+        }
+    }
+
+    @Test
+    fun testExactKeyIsOnlyLookedUpOnItsMaster() {
+        val found = mutableListOf<String>()
+        val scanner = RedisKeyScanner(100, Int.MAX_VALUE, null, RedisLoadTimings())
+
+        val nodeErrors = scanner.scan(cluster!!, "user:7".toByteArray()) { _, keys -> found.addAll(keys.map { String(it) }) }
+
+        assertTrue(nodeErrors.isEmpty())
+        assertEquals(listOf("user:7"), found)
+    }
+
+    @Test
+    fun testDeleteExactKeyWithoutNodeErrors() {
+        RedisKeyDeleter(null).deleteMatching(cluster!!, "user:3".toByteArray())
+
+        assertFalse(cluster!!.exists("user:3"))
+        assertTrue(cluster!!.exists("user:4"))
+    }
+
+    @Test
+    fun testValueSearchDeclaresTheKeysOfOneSlotPerCall() {
+        val timings = RedisLoadTimings()
+        val search = RedisValueSearch("", "value1", 100, true, timings)
+        val found = mutableSetOf<String>()
+        val scanner = RedisKeyScanner(100, Int.MAX_VALUE, null, timings)
+
+        val nodeErrors = scanner.scan(cluster!!, "user:*".toByteArray()) { connection, keys ->
+            val result = search.load(connection, keys)
+            synchronized(found) {
+                (0 until result.size()).forEach { found.add(result.getKey(it)) }
+            }
+        }
+
+        assertTrue(nodeErrors.isEmpty())
+        assertEquals((listOf(1) + (10 until 20)).map { "user:$it" }.toSet(), found)
+    }
+}
@@ -0,0 +1,54 @@
+package org.codinjutsu.tools.nosql.redis.logic
+
+import org.codinjutsu.tools.nosql.redis.RedisBaseTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import redis.clients.jedis.Jedis
+
+
+/**
+ *
+ * @author bruce ge
+ */
+class ConsoleSessionTest : RedisBaseTest() {
+
+    @Test
+    fun testParseQuotedArguments() {
+        val arguments = RedisCommandLineParser.parse("set \"a key\" 'it\\'s' \"line\\nbreak\\x41\"").map { String(it) }
+
+        assertEquals(listOf("set", "a key", "it's", "line\nbreakA"), arguments)
+        assertTrue(RedisCommandLineParser.parse("  # a comment").isEmpty())
+    }
+
+    @Test
+    fun testPipelineCommandsAndFormatReplies() {
+        val replies = StringBuilder()
+        val errors = StringBuilder()
+        val infos = StringBuilder()
+        val session = RedisConsoleSession({ Jedis("localhost", 6379) }, 1)
+        try {
+            session.execute("SET greeting \"hello world\"\nRPUSH todos a b\nLRANGE todos 0 -1\nGET missing\nINCR greeting",
+                    object : RedisConsoleSession.Output {
+                        override fun reply(text: String) {
+                            replies.append(text)
+                        }
+
+                        override fun error(text: String) {
+                            errors.append(text)
+                        }
+
+                        override fun info(text: String) {
+                            infos.append(text)
+                        }
+                    })
+        } finally {
+            session.close()
+        }
+
+        assertEquals("OK\n(integer) 2\n1) \"a\"\n2) \"b\"\n(nil)\n", replies.toString())
+        assertTrue(errors.toString().startsWith("(error) ERR"))
+        assertEquals("hello world", jedis.get("greeting"))
+        assertEquals(5, infos.lines().count { it.endsWith(" ms)") })
+    }
+}
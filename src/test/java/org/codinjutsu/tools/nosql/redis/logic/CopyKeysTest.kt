@@ -0,0 +1,38 @@
+package org.codinjutsu.tools.nosql.redis.logic
+
+import org.codinjutsu.tools.nosql.redis.RedisBaseTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import redis.clients.jedis.Jedis
+
+
+/**
+ *
+ * @author bruce ge
+ */
+class CopyKeysTest : RedisBaseTest() {
+
+    @Test
+    fun testCopyKeysToAnotherDatabase() {
+        for (i in 0 until 1200) {
+            jedis.set("session:$i", "value$i")
+        }
+        jedis.hset("user:1", "name", "john")
+        jedis.expire("user:1", 60)
+        Jedis("localhost", 6379).use { target ->
+            target.select(2)
+            target.flushDB()
+            target.set("session:0", "stale")
+
+            val copied = RedisKeyMigrator(100, null).copy(jedis, target, "*".toByteArray())
+
+            assertEquals(1201L, copied)
+            assertEquals(1201L, target.dbSize())
+            assertEquals("value0", target.get("session:0"))
+            assertEquals("john", target.hget("user:1", "name"))
+            assertTrue(target.ttl("user:1") in 1L..60L)
+            target.flushDB()
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.codinjutsu.tools.nosql.redis.logic
+
+import org.codinjutsu.tools.nosql.redis.RedisBaseTest
+import org.codinjutsu.tools.nosql.redis.executors.BulkImportExecutor
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.File
+
+
+/**
+ *
+ * @author bruce ge
+ */
+class ExportKeysTest : RedisBaseTest() {
+
+    @Test
+    fun testExportedRespIsImportedBack() {
+        checkRoundTrip(RedisExportFormat.RESP, RedisImportFormat.RESP)
+    }
+
+    @Test
+    fun testExportedNdjsonIsImportedBack() {
+        checkRoundTrip(RedisExportFormat.NDJSON, RedisImportFormat.NDJSON)
+    }
+
+    @Test
+    fun testExportedDumpIsRestored() {
+        checkRoundTrip(RedisExportFormat.DUMP, RedisImportFormat.RESP)
+    }
+
+    @Test
+    fun testPagedRespIsImportedBack() {
+        checkRoundTrip(RedisExportFormat.RESP, RedisImportFormat.RESP, 1)
+    }
+
+    @Test
+    fun testPagedNdjsonIsImportedBack() {
+        checkRoundTrip(RedisExportFormat.NDJSON, RedisImportFormat.NDJSON, 1)
+    }
+
+    private fun checkRoundTrip(exportFormat: RedisExportFormat, importFormat: RedisImportFormat,
+                               pagedLength: Int = RedisKeyExporter.DEFAULT_PAGED_LENGTH) {
+        jedis.set("greeting", "hello")
+        jedis.rpush("todos", "coffee", "code", "coffee")
+        jedis.sadd("tags", "a", "b")
+        jedis.hset("user:1", "name", "john")
+        jedis.hset("user:1", "city", "paris")
+        jedis.zadd("scores", 12.5, "john")
+        jedis.zadd("scores", Double.NEGATIVE_INFINITY, "nobody")
+        jedis.expire("todos", 60)
+
+        val file = File.createTempFile("keys", "." + exportFormat.extension)
+        file.deleteOnExit()
+        val exported = RedisKeyExporter(exportFormat, 2, pagedLength, null).export(jedis, "*".toByteArray(), file.toPath())
+        assertEquals(5L, exported)
+
+        jedis.flushDB()
+        checkAndGetResult(BulkImportExecutor(file, importFormat, 1000, 0), "greeting", "todos", "tags", "user:1", "scores")
+        assertEquals("hello", jedis.get("greeting"))
+        assertEquals(listOf("coffee", "code", "coffee"), jedis.lrange("todos", 0, -1))
+        assertEquals(setOf("a", "b"), jedis.smembers("tags"))
+        assertEquals(mapOf("name" to "john", "city" to "paris"), jedis.hgetAll("user:1"))
+        assertEquals(12.5, jedis.zscore("scores", "john"), 0.0)
+        assertEquals(Double.NEGATIVE_INFINITY, jedis.zscore("scores", "nobody"), 0.0)
+        assertTrue(jedis.ttl("todos") in 1L..60L)
+        assertEquals(-1L, jedis.ttl("greeting"))
+    }
+}
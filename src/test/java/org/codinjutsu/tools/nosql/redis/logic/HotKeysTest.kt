@@ -0,0 +1,47 @@
+package org.codinjutsu.tools.nosql.redis.logic
+
+import org.codinjutsu.tools.nosql.redis.RedisBaseTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+
+/**
+ *
+ * @author bruce ge
+ */
+class HotKeysTest : RedisBaseTest() {
+
+    @Test
+    fun testSketchNeverUnderEstimates() {
+        val sketch = CountMinSketch(4, 64)
+        for (i in 0 until 1000) {
+            sketch.add("key$i".toByteArray(), 1)
+        }
+        sketch.add("hot".toByteArray(), 500)
+
+        assertTrue(sketch.estimate("hot".toByteArray()) >= 500)
+        assertTrue(sketch.estimate("key1".toByteArray()) >= 1)
+        sketch.decay()
+        assertTrue(sketch.estimate("hot".toByteArray()) >= 250)
+    }
+
+    @Test
+    fun testKeepOnlyTopKeys() {
+        for (i in 0 until 10) {
+            jedis.set("key$i", "value")
+        }
+
+        val detector = RedisHotKeyDetector(3, 1000, 60)
+        detector.sample(jedis)
+
+        assertEquals(1, detector.rounds)
+        assertTrue(detector.sampledKeys >= 10)
+        assertEquals(3, detector.hotKeys.size)
+    }
+
+    @Test
+    fun testParseKeyspaceInfo() {
+        assertEquals(listOf(0, 3), RedisHotKeyDetector.nonEmptyDatabases("# Keyspace\r\ndb0:keys=12,expires=0,avg_ttl=0\r\ndb3:keys=1,expires=1,avg_ttl=12\r\n"))
+    }
+}
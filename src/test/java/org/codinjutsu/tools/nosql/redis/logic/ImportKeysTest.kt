@@ -0,0 +1,86 @@
+package org.codinjutsu.tools.nosql.redis.logic
+
+import org.codinjutsu.tools.nosql.redis.RedisBaseTest
+import org.codinjutsu.tools.nosql.redis.executors.BulkImportExecutor
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.File
+
+
+/**
+ *
+ * @author bruce ge
+ */
+class ImportKeysTest : RedisBaseTest() {
+
+    @Test
+    fun testImportCsv() {
+        val file = File.createTempFile("keys", ".csv")
+        file.deleteOnExit()
+        file.writeText("type,key,value\n" +
+                "string,greeting,\"hello, \"\"world\"\"\"\n" +
+                "list,todos,coffee\n" +
+                "list,todos,code\n" +
+                "hash,user:1,name,john\n" +
+                "zset,scores,12.5,john\n")
+        checkAndGetResult(BulkImportExecutor(file, RedisImportFormat.CSV, 2, 60), "greeting", "todos", "user:1", "scores")
+        assertEquals("hello, \"world\"", jedis.get("greeting"))
+        assertEquals(listOf("coffee", "code"), jedis.lrange("todos", 0, -1))
+        assertEquals(12.5, jedis.zscore("scores", "john"), 0.0)
+        assertTrue(jedis.ttl("user:1") in 1L..60L)
+    }
+
+    @Test
+    fun testImportNdjsonAndResp() {
+        val ndjson = File.createTempFile("keys", ".ndjson")
+        ndjson.deleteOnExit()
+        ndjson.writeText("{\"key\":\"tags\",\"type\":\"set\",\"value\":[\"a\",\"b\"],\"ttl\":30}\n" +
+                "{\"key\":\"user:2\",\"type\":\"hash\",\"value\":{\"name\":\"jane\"}}\n")
+        val resp = File.createTempFile("keys", ".resp")
+        resp.deleteOnExit()
+        resp.writeText("*3\r\n\$3\r\nSET\r\n\$6\r\nstatus\r\n\$6\r\nonline\r\n")
+        checkAndGetResult(BulkImportExecutor(ndjson, RedisImportFormat.NDJSON, 1000, 0), "tags", "user:2")
+        checkAndGetResult(BulkImportExecutor(resp, RedisImportFormat.RESP, 1000, 0), "tags", "user:2", "status")
+        assertEquals(setOf("a", "b"), jedis.smembers("tags"))
+        assertTrue(jedis.ttl("tags") in 1L..30L)
+        assertEquals(-1L, jedis.ttl("status"))
+    }
+
+    @Test
+    fun testAnyCommandIsSentAndOnlyWritesGetTheTtl() {
+        jedis.set("stale", "old")
+        RedisBulkWriter(jedis, 1000, 60000, null).use { writer ->
+            writer.write("PING")
+            writer.write("INCRBY", "counter", "3")
+            writer.write("SET", "status", "online")
+            writer.write("DEL", "stale")
+        }
+        assertEquals("3", jedis.get("counter"))
+        assertEquals(-1L, jedis.ttl("counter"))
+        assertTrue(jedis.ttl("status") in 1L..60L)
+        assertEquals(false, jedis.exists("stale"))
+    }
+
+    @Test
+    fun testTtlOfTheStreamIsNotReplacedByTheDefaultOne() {
+        RedisBulkWriter(jedis, 1000, 60000, null).use { writer ->
+            writer.write("RPUSH", "todos", "coffee")
+            writer.write("PEXPIRE", "todos", "500000")
+            writer.write("SET", "session", "abc", "EX", "300")
+            writer.write("SET", "permanent", "yes")
+            writer.write("PERSIST", "permanent")
+            writer.write("SET", "status", "online")
+        }
+        RedisBulkWriter(jedis, 1, 60000, null).use { writer ->
+            writer.write("SADD", "tags", "a")
+            writer.write("PEXPIRE", "tags", "400000")
+            writer.write("SADD", "tags", "b")
+        }
+        assertTrue(jedis.ttl("todos") in 61L..500L)
+        assertTrue(jedis.ttl("session") in 61L..300L)
+        assertEquals(-1L, jedis.ttl("permanent"))
+        assertTrue(jedis.ttl("status") in 1L..60L)
+        assertTrue(jedis.ttl("tags") in 61L..400L)
+    }
+}
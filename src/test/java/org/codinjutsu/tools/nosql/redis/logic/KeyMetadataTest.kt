@@ -0,0 +1,52 @@
+package org.codinjutsu.tools.nosql.redis.logic
+
+import org.codinjutsu.tools.nosql.redis.RedisBaseTest
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyMetadata
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType
+import org.codinjutsu.tools.nosql.redis.model.RedisRecord
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+
+/**
+ *
+ * @author bruce ge
+ */
+class KeyMetadataTest : RedisBaseTest() {
+
+    @Test
+    fun testLoadMetadataOfBatch() {
+        jedis.set("greeting", "hello")
+        jedis.rpush("todos", "coffee", "code")
+        jedis.hset("user:1", "name", "john")
+        jedis.expire("user:1", 60)
+
+        val metadata = RedisMetadataLoader().load(jedis,
+                listOf("greeting".toByteArray(), "todos".toByteArray(), "user:1".toByteArray(), "missing".toByteArray()),
+                listOf(RedisKeyType.STRING, RedisKeyType.LIST, RedisKeyType.HASH, RedisKeyType.STRING))
+
+        assertEquals(RedisKeyMetadata.NO_EXPIRATION, metadata[0].ttlMillis)
+        assertEquals(5L, metadata[0].length)
+        assertNotNull(metadata[0].encoding)
+        assertEquals(2L, metadata[1].length)
+        assertTrue(metadata[2].ttlMillis in 1L..60000L)
+        assertEquals(1L, metadata[2].length)
+        assertEquals(RedisKeyMetadata.MISSING_KEY, metadata[3].ttlMillis)
+        assertEquals(RedisKeyMetadata.UNKNOWN_MEMORY, metadata[3].memoryBytes)
+    }
+
+    @Test
+    fun testKeyWhoseTypeChangedHasUnknownLength() {
+        jedis.set("greeting", "hello")
+        jedis.rpush("todos", "coffee", "code")
+
+        // "greeting" was loaded as a list before being replaced by a string
+        val metadata = RedisMetadataLoader().load(jedis, listOf("greeting".toByteArray(), "todos".toByteArray()),
+                listOf(RedisKeyType.LIST, RedisKeyType.LIST))
+
+        assertEquals(RedisRecord.UNKNOWN_LENGTH, metadata[0].length)
+        assertEquals(2L, metadata[1].length)
+    }
+}
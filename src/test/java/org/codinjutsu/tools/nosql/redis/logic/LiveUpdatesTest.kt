@@ -0,0 +1,72 @@
+package org.codinjutsu.tools.nosql.redis.logic
+
+import org.codinjutsu.tools.nosql.redis.RedisBaseTest
+import org.codinjutsu.tools.nosql.redis.model.RedisKeyType
+import org.codinjutsu.tools.nosql.redis.model.RedisRecord
+import org.codinjutsu.tools.nosql.redis.model.RedisResult
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import redis.clients.jedis.Jedis
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+
+/**
+ *
+ * @author bruce ge
+ */
+class LiveUpdatesTest : RedisBaseTest() {
+
+    @Test
+    fun testFindAndResetKeys() {
+        val result = RedisResult()
+        for (i in 0 until 100) {
+            result.addString("key$i".toByteArray(), "value$i")
+        }
+
+        assertEquals(42, result.indexOf("key42".toByteArray()))
+        assertEquals(-1, result.indexOf("missing".toByteArray()))
+        result.addKey(RedisKeyType.HASH, "added".toByteArray(), RedisRecord.UNKNOWN_LENGTH)
+        assertEquals(100, result.indexOf("added".toByteArray()))
+
+        result.resetKey(42, RedisKeyType.LIST)
+        assertEquals(RedisKeyType.LIST, result.getKeyType(42))
+        assertFalse(result.isValueLoaded(42))
+        assertNull(result.getValue(42))
+    }
+
+    @Test
+    fun testReceiveKeyspaceNotifications() {
+        val previousConfig = jedis.configGet("notify-keyspace-events")[1]
+        jedis.configSet("notify-keyspace-events", "KA")
+        val events = LinkedBlockingQueue<String>()
+        val subscriber = RedisKeyspaceSubscriber(listOf(Jedis("localhost", 6379, 2000, 0)), 1, "user:*".toByteArray(),
+                object : RedisKeyspaceSubscriber.KeyEventListener {
+                    override fun keyChanged(key: ByteArray, event: String) {
+                        events.add(String(key) + " " + event)
+                    }
+
+                    override fun subscriptionFailed(error: Exception) {
+                        events.add("failed " + error.message)
+                    }
+                })
+        try {
+            assertEquals("", subscriber.missingNotificationClasses)
+            subscriber.start()
+            Thread.sleep(200)
+            jedis.set("other", "ignored")
+            jedis.set("user:1", "john")
+            jedis.del("user:1")
+
+            assertEquals("user:1 set", events.poll(2, TimeUnit.SECONDS))
+            assertEquals("user:1 del", events.poll(2, TimeUnit.SECONDS))
+            assertTrue(events.isEmpty())
+        } finally {
+            subscriber.stop()
+            jedis.configSet("notify-keyspace-events", previousConfig)
+        }
+    }
+}
@@ -50,6 +50,27 @@ class RedisClientTest : RedisBaseTest() {
 
 
 
+    @Test
+    fun streamedKeysAreNotKeptInTheResult() {
+        jedis.set("status", "online")
+        jedis.lpush("todos", "coffee", "code")
+
+        val serverConfiguration = ServerConfiguration()
+        serverConfiguration.databaseVendor = DatabaseVendor.REDIS
+        serverConfiguration.serverUrl = "localhost:6379"
+        val streamed = RedisResult()
+        val listener = object : RedisResultListener {
+            override fun batchLoaded(batch: RedisResult) = streamed.addAll(batch)
+            override fun keepsRecords() = true
+        }
+
+        val result = RedisClient().loadRecords(serverConfiguration, RedisDatabase("1"), RedisQuery("*"), EmptyQueryExecutor(),
+                listener, null)
+
+        assertEquals(0, result.size())
+        assertEquals(setOf("status", "todos"), (0 until streamed.size()).map { streamed.getKey(it) }.toSet())
+    }
+
     @Test
     @Throws(Exception::class)
     fun loadWithFilter() {
@@ -76,4 +97,109 @@ class RedisClientTest : RedisBaseTest() {
     }
 
 
+    @Test
+    @Throws(Exception::class)
+    fun loadStopsAtKeyLimit() {
+        for (i in 0 until 50) {
+            jedis.set("key:$i", "value$i")
+        }
+
+        val redisClient = RedisClient()
+        val serverConfiguration = ServerConfiguration()
+        serverConfiguration.databaseVendor = DatabaseVendor.REDIS
+        serverConfiguration.serverUrl = "localhost:6379"
+
+        val query = RedisQuery("key:*", 10, 20)
+        val result = redisClient.loadRecords(serverConfiguration, RedisDatabase("1"), query, EmptyQueryExecutor())
+
+        assertEquals(20, result.results.size.toLong())
+        assertThat(result.isKeyLimitReached).isTrue()
+    }
+
+
+    @Test
+    @Throws(Exception::class)
+    fun loadKeysOnlyThenValueOnDemand() {
+        jedis.lpush("todos", "coffee", "code", "drink", "sleep")
+        jedis.set("status", "online")
+
+        val redisClient = RedisClient()
+        val serverConfiguration = ServerConfiguration()
+        serverConfiguration.databaseVendor = DatabaseVendor.REDIS
+        serverConfiguration.serverUrl = "localhost:6379"
+
+        val query = RedisQuery("*")
+        query.isKeysOnly = true
+        val result = redisClient.loadRecords(serverConfiguration, RedisDatabase("1"), query, EmptyQueryExecutor())
+
+        val recordsByKey = result.results.associateBy { it.key }
+        assertThat(recordsByKey.keys).containsExactlyInAnyOrder("todos", "status")
+        assertThat(recordsByKey.getValue("todos").isValueLoaded).isFalse()
+        assertEquals(4L, recordsByKey.getValue("todos").length)
+        assertEquals(6L, recordsByKey.getValue("status").length)
+
+        val todos = redisClient.loadValue(serverConfiguration, RedisDatabase("1"), "todos".toByteArray())!!
+        assertThat(todos.isValueLoaded).isTrue()
+        assertThat(todos.value as List<*>).containsExactly("sleep", "drink", "code", "coffee")
+    }
+
+
+    @Test
+    @Throws(Exception::class)
+    fun loadLargeListPageByPage() {
+        for (i in 0 until 25) {
+            jedis.rpush("events", "event$i")
+        }
+
+        val redisClient = RedisClient()
+        val serverConfiguration = ServerConfiguration()
+        serverConfiguration.databaseVendor = DatabaseVendor.REDIS
+        serverConfiguration.serverUrl = "localhost:6379"
+
+        val query = RedisQuery("events")
+        query.valuePageSize = 10
+        val result = redisClient.loadRecords(serverConfiguration, RedisDatabase("1"), query, EmptyQueryExecutor())
+
+        val events = result.results[0]
+        assertEquals(25L, events.length)
+        assertThat(events.value as List<*>).hasSize(10)
+        assertEquals("10", events.valueCursor)
+
+        val secondPage = redisClient.loadValuePage(serverConfiguration, RedisDatabase("1"), "events".toByteArray(), RedisKeyType.LIST, events.valueCursor, 10)
+        assertEquals(10L, secondPage.offset)
+        assertThat(secondPage.values as List<*>).startsWith("event10")
+        val lastPage = redisClient.loadValuePage(serverConfiguration, RedisDatabase("1"), "events".toByteArray(), RedisKeyType.LIST, secondPage.nextCursor, 10)
+        assertThat(lastPage.values as List<*>).hasSize(5)
+        assertThat(lastPage.isComplete).isTrue()
+    }
+
+
+    @Test
+    @Throws(Exception::class)
+    fun searchHashFieldsOnServer() {
+        jedis.hset("user:1", "city", "Paris")
+        jedis.hset("user:1", "name", "david")
+        jedis.hset("user:2", "city", "Lyon")
+        jedis.set("status", "Paris is online")
+        for (i in 0 until 30) {
+            jedis.sadd("big", "Paris$i")
+        }
+
+        val redisClient = RedisClient()
+        val serverConfiguration = ServerConfiguration()
+        serverConfiguration.databaseVendor = DatabaseVendor.REDIS
+        serverConfiguration.serverUrl = "localhost:6379"
+
+        val query = RedisQuery("*")
+        query.fieldFilter = "city"
+        query.valueFilter = "Paris"
+        query.searchBudget = 20
+        val result = redisClient.loadRecords(serverConfiguration, RedisDatabase("1"), query, EmptyQueryExecutor())
+
+        val records = result.results
+        assertThat(records.map { it.key }).containsExactly("user:1")
+        assertEquals(mapOf("city" to "Paris"), records[0].value)
+        assertEquals(1, result.skippedKeyCount)
+        assertThat(result.skippedKeys).containsExactly("big")
+    }
 }
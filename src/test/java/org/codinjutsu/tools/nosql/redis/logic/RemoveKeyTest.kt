@@ -0,0 +1,30 @@
+package org.codinjutsu.tools.nosql.redis.logic
+
+import org.codinjutsu.tools.nosql.redis.RedisBaseTest
+import org.codinjutsu.tools.nosql.redis.executors.RemoveKeyExecutor
+import org.junit.Test
+
+
+/**
+ *
+ * @author bruce ge
+ */
+class RemoveKeyTest : RedisBaseTest() {
+
+    @Test
+    fun testRemoveSelectedKeys() {
+        jedis.set("hello", "world")
+        jedis.lpush("todos", "coffee", "code")
+        jedis.set("status", "online")
+        checkAndGetResult(RemoveKeyExecutor(mutableSetOf("hello".toByteArray(), "todos".toByteArray())), "status")
+    }
+
+    @Test
+    fun testRemoveKeysMatchingPattern() {
+        for (i in 0 until 1200) {
+            jedis.set("session:$i", "value$i")
+        }
+        jedis.set("status", "online")
+        checkAndGetResult(RemoveKeyExecutor(mutableSetOf(), "session:*".toByteArray()), "status")
+    }
+}
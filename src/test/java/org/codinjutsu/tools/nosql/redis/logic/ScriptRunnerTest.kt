@@ -0,0 +1,64 @@
+package org.codinjutsu.tools.nosql.redis.logic
+
+import org.codinjutsu.tools.nosql.redis.RedisBaseTest
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.BufferedReader
+import java.io.StringReader
+
+
+/**
+ *
+ * @author bruce ge
+ */
+class ScriptRunnerTest : RedisBaseTest() {
+
+    @Test
+    fun testFailingCommandsDoNotStopTheScript() {
+        val script = """
+            # counters
+            SET "page views" 10
+            INCR "page views"
+            LPUSH "page views" x
+            RPUSH todos a b c
+            SELECT 2
+            SET unbalanced "quote
+            client reply off
+            HELLO 3
+            READONLY
+        """.trimIndent()
+
+        val report = RedisScriptRunner(jedis, 2, false, null).run(BufferedReader(StringReader(script)))
+
+        assertEquals(4L, report.executedCommands)
+        assertEquals(6L, report.failedCommands)
+        assertEquals(listOf(4, 6, 7, 8, 9, 10), report.errors.map { it.line })
+        assertEquals("11", jedis.get("page views"))
+        assertEquals(3L, jedis.llen("todos"))
+    }
+
+    @Test
+    fun testBlocksRunAsTransactions() {
+        val script = """
+            SET counter 1
+            INCR counter
+
+            SET name redis
+            INCR name
+            SET after 1
+
+            SET counter 10
+            NOTACOMMAND
+            SET lost 1
+        """.trimIndent()
+
+        val report = RedisScriptRunner(jedis, 1000, true, null).run(BufferedReader(StringReader(script)))
+
+        assertEquals(8L, report.executedCommands)
+        // INCR name fails inside its transaction, the unknown command aborts the last one
+        assertEquals(listOf(5, 9, 8, 10), report.errors.map { it.line })
+        assertEquals("2", jedis.get("counter"))
+        assertEquals("1", jedis.get("after"))
+        assertEquals(null, jedis.get("lost"))
+    }
+}
@@ -0,0 +1,54 @@
+package org.codinjutsu.tools.nosql.redis.view
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+
+/**
+ *
+ * @author bruce ge
+ */
+class RedisKeyTrieTest {
+
+    @Test
+    fun testKeysOnTheSamePathAreAllKept() {
+        val keys = listOf("a:b", "a::b", "user:1", "user:1:", "user:1:name", "status")
+        val trie = RedisKeyTrie(":")
+        keys.forEachIndexed { index, key -> trie.add(key, index) }
+
+        val leaves = mutableMapOf<Int, String>()
+        collect(trie.root, leaves)
+
+        assertEquals(keys.indices.toSet(), leaves.keys)
+        assertEquals("b", leaves[0])
+        assertEquals("a::b", leaves[1])
+        assertEquals("1", leaves[2])
+        assertEquals("user:1:", leaves[3])
+    }
+
+    @Test
+    fun testRemovedKeyTakesItsEmptyGroupsAlong() {
+        val trie = RedisKeyTrie(":")
+        trie.add("user:1:name", 0)
+        trie.add("user:2", 1)
+        val removed = trie.find("user:1:name", 0)!!
+
+        trie.remove(removed)
+
+        val leaves = mutableMapOf<Int, String>()
+        collect(trie.root, leaves)
+        assertEquals(mapOf(1 to "2"), leaves)
+        assertEquals(false, removed.isAttached)
+        assertEquals(listOf("2"), trie.root.children.single().children.map { it.fragment })
+        assertEquals(null, trie.find("user:1:name", 0))
+    }
+
+    private fun collect(node: RedisKeyTrie.Node, leaves: MutableMap<Int, String>) {
+        for (child in node.children) {
+            if (child.keyIndex != RedisKeyTrie.NO_KEY) {
+                leaves[child.keyIndex] = child.fragment
+            }
+            collect(child, leaves)
+        }
+    }
+}